@@ -1,10 +1,14 @@
 package com.cred.freestyle.flashsale.api.controller;
 
+import com.cred.freestyle.flashsale.api.dto.CartReservationRequest;
+import com.cred.freestyle.flashsale.api.dto.CartReservationResponse;
+import com.cred.freestyle.flashsale.api.dto.QueuePositionResponse;
 import com.cred.freestyle.flashsale.api.dto.ReservationRequest;
 import com.cred.freestyle.flashsale.api.dto.ReservationResponse;
 import com.cred.freestyle.flashsale.domain.model.Reservation;
 import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
 import com.cred.freestyle.flashsale.security.SecurityUtils;
+import com.cred.freestyle.flashsale.service.CartReservationService;
 import com.cred.freestyle.flashsale.service.ReservationService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
@@ -13,6 +17,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 /**
  * REST controller for reservation operations.
@@ -27,13 +36,16 @@ public class ReservationController {
     private static final Logger logger = LoggerFactory.getLogger(ReservationController.class);
 
     private final ReservationService reservationService;
+    private final CartReservationService cartReservationService;
     private final CloudWatchMetricsService metricsService;
 
     public ReservationController(
             ReservationService reservationService,
+            CartReservationService cartReservationService,
             CloudWatchMetricsService metricsService
     ) {
         this.reservationService = reservationService;
+        this.cartReservationService = cartReservationService;
         this.metricsService = metricsService;
     }
 
@@ -99,6 +111,132 @@ public class ReservationController {
         }
     }
 
+    /**
+     * Create a new reservation without holding a servlet thread for the batch round trip.
+     *
+     * Same contract as {@link #createReservation}, but the request is completed
+     * asynchronously when the batch outcome arrives, so a node can hold far more
+     * in-flight reservations than it has Tomcat worker threads.
+     *
+     * Additional responses:
+     * - 503 with Retry-After when the node already holds the maximum pending requests
+     * - 504 when the batch outcome does not arrive within the async timeout
+     * - 202 with Retry-After and the queue position when the user is placed in the waiting room
+     *
+     * Authorization: User can only create reservations for themselves
+     *
+     * @param request Reservation request with userId, skuId, quantity
+     * @return Deferred reservation response, completed with the batch outcome
+     */
+    @PostMapping("/async")
+    @PreAuthorize("isAuthenticated()")
+    public DeferredResult<ResponseEntity<ReservationResponse>> createReservationAsync(
+            @Valid @RequestBody ReservationRequest request
+    ) {
+        long startTime = System.currentTimeMillis();
+
+        // Verify user can only create reservations for themselves
+        SecurityUtils.verifyUserAccess(request.getUserId());
+
+        logger.info("Creating async reservation - user: {}, sku: {}, quantity: {}",
+                request.getUserId(), request.getSkuId(), request.getQuantity());
+
+        // Service enforces its own timeout; the container async timeout is only a backstop
+        DeferredResult<ResponseEntity<ReservationResponse>> result = new DeferredResult<>();
+
+        reservationService.createReservationAsync(
+                request.getUserId(),
+                request.getSkuId(),
+                request.getQuantity()
+        ).whenComplete((reservation, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                        ? ex.getCause()
+                        : ex;
+
+                if (cause instanceof IllegalStateException) {
+                    // Business logic exceptions (out of stock, user limit exceeded, etc.)
+                    logger.warn("Async reservation creation failed - user: {}, sku: {}, reason: {}",
+                            request.getUserId(), request.getSkuId(), cause.getMessage());
+                    metricsService.recordReservationFailure(request.getSkuId(),
+                            determineFailureReason(cause.getMessage()));
+                }
+
+                result.setErrorResult(cause); // Will be handled by global exception handler
+                return;
+            }
+
+            long duration = System.currentTimeMillis() - startTime;
+            metricsService.recordReservationLatency(duration);
+
+            logger.info("Successfully created async reservation: {} for user: {}, SKU: {}",
+                    reservation.getReservationId(), request.getUserId(), request.getSkuId());
+
+            result.setResult(ResponseEntity.status(HttpStatus.CREATED)
+                    .body(ReservationResponse.fromEntity(reservation)));
+        });
+
+        return result;
+    }
+
+    /**
+     * Reserve several products in one request, all-or-nothing.
+     *
+     * Every item is processed by its SKU's batch consumer in parallel; if any item is
+     * rejected, the holds taken for the others are released before responding, so a
+     * failed cart leaves no partial reservations behind.
+     *
+     * Responses:
+     * - 201 with one reservation per item
+     * - 409 naming the rejected SKU (other items released)
+     * - 202 with Retry-After when an item's SKU placed the user in its waiting room
+     * - 504 when an item's outcome does not arrive within the cart timeout
+     *
+     * Authorization: User can only create reservations for themselves
+     *
+     * @param request Cart with userId and items (skuId, quantity)
+     * @return Deferred cart response, completed when every item has an outcome
+     */
+    @PostMapping("/cart")
+    @PreAuthorize("isAuthenticated()")
+    public DeferredResult<ResponseEntity<CartReservationResponse>> createCartReservation(
+            @Valid @RequestBody CartReservationRequest request
+    ) {
+        long startTime = System.currentTimeMillis();
+
+        // Verify user can only create reservations for themselves
+        SecurityUtils.verifyUserAccess(request.getUserId());
+
+        Map<String, Integer> items = new LinkedHashMap<>();
+        for (CartReservationRequest.Item item : request.getItems()) {
+            if (items.putIfAbsent(item.getSkuId(), item.getQuantity()) != null) {
+                throw new IllegalArgumentException("Duplicate SKU in cart: " + item.getSkuId());
+            }
+        }
+
+        logger.info("Creating cart reservation - user: {}, skus: {}", request.getUserId(), items.keySet());
+
+        DeferredResult<ResponseEntity<CartReservationResponse>> result = new DeferredResult<>();
+
+        cartReservationService.reserveCart(request.getUserId(), items).whenComplete((reservations, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                        ? ex.getCause()
+                        : ex;
+                logger.warn("Cart reservation failed - user: {}, reason: {}", request.getUserId(), cause.getMessage());
+                result.setErrorResult(cause); // Will be handled by global exception handler
+                return;
+            }
+
+            metricsService.recordReservationLatency(System.currentTimeMillis() - startTime);
+
+            result.setResult(ResponseEntity.status(HttpStatus.CREATED)
+                    .body(CartReservationResponse.fromEntities(request.getUserId(), reservations)));
+        });
+
+        return result;
+    }
+
     /**
      * Get reservation details by ID.
      *
@@ -187,6 +325,32 @@ public class ReservationController {
         return ResponseEntity.ok(reservations);
     }
 
+    /**
+     * Get the user's position in a SKU's waiting room.
+     * Clients placed in the waiting room (202 on create) poll this and retry the
+     * reservation when their turn comes; polling keeps their place in the queue.
+     *
+     * Authorization: User can only view their own queue position
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     * @return Queue position (0 when not waiting) and waiting room size
+     */
+    @GetMapping("/queue-position")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<QueuePositionResponse> getQueuePosition(
+            @RequestParam String userId,
+            @RequestParam String skuId
+    ) {
+        // Verify user can only access their own queue position
+        SecurityUtils.verifyUserAccess(userId);
+
+        long position = reservationService.getQueuePosition(userId, skuId);
+        int queueDepth = reservationService.getQueueDepth(skuId);
+
+        return ResponseEntity.ok(QueuePositionResponse.of(userId, skuId, position, queueDepth));
+    }
+
     /**
      * Determine failure reason from exception message for metrics tagging.
      *
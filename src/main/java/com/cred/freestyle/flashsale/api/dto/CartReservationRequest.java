@@ -0,0 +1,86 @@
+package com.cred.freestyle.flashsale.api.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+/**
+ * Request DTO for reserving several SKUs at once (all-or-nothing).
+ *
+ * @author Flash Sale Team
+ */
+public class CartReservationRequest {
+
+    @NotBlank(message = "User ID is required")
+    private String userId;
+
+    @NotEmpty(message = "At least one item is required")
+    @Valid
+    private List<Item> items;
+
+    public CartReservationRequest() {
+    }
+
+    public CartReservationRequest(String userId, List<Item> items) {
+        this.userId = userId;
+        this.items = items;
+    }
+
+    // Getters and setters
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+
+    /**
+     * One SKU in the cart.
+     */
+    public static class Item {
+
+        @NotBlank(message = "SKU ID is required")
+        private String skuId;
+
+        @NotNull(message = "Quantity is required")
+        @Min(value = 1, message = "Quantity must be at least 1")
+        private Integer quantity;
+
+        public Item() {
+        }
+
+        public Item(String skuId, Integer quantity) {
+            this.skuId = skuId;
+            this.quantity = quantity;
+        }
+
+        public String getSkuId() {
+            return skuId;
+        }
+
+        public void setSkuId(String skuId) {
+            this.skuId = skuId;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.cred.freestyle.flashsale.api.dto;
+
+import com.cred.freestyle.flashsale.domain.model.Reservation;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Response DTO for a cart reservation: one reservation per SKU, all held together.
+ *
+ * @author Flash Sale Team
+ */
+public class CartReservationResponse {
+
+    private String userId;
+    private List<ReservationResponse> reservations;
+    private Integer itemCount;
+
+    public CartReservationResponse() {
+    }
+
+    /**
+     * Create response from the cart's reservations.
+     *
+     * @param userId User ID
+     * @param reservations Reservations, in cart order
+     * @return CartReservationResponse
+     */
+    public static CartReservationResponse fromEntities(String userId, List<Reservation> reservations) {
+        CartReservationResponse response = new CartReservationResponse();
+        response.setUserId(userId);
+        response.setReservations(reservations.stream()
+                .map(ReservationResponse::fromEntity)
+                .collect(Collectors.toList()));
+        response.setItemCount(reservations.size());
+        return response;
+    }
+
+    // Getters and setters
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public List<ReservationResponse> getReservations() {
+        return reservations;
+    }
+
+    public void setReservations(List<ReservationResponse> reservations) {
+        this.reservations = reservations;
+    }
+
+    public Integer getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(Integer itemCount) {
+        this.itemCount = itemCount;
+    }
+}
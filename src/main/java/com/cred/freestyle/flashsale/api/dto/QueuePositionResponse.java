@@ -0,0 +1,78 @@
+package com.cred.freestyle.flashsale.api.dto;
+
+/**
+ * Response DTO for a user's position in a SKU's waiting room.
+ *
+ * @author Flash Sale Team
+ */
+public class QueuePositionResponse {
+
+    private String userId;
+    private String skuId;
+    private Long position;
+    private Integer queueDepth;
+    private Boolean waiting;
+
+    public QueuePositionResponse() {
+    }
+
+    /**
+     * Create response from the waiting room state.
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     * @param position 1-based queue position, 0 if not waiting
+     * @param queueDepth Users currently waiting for the SKU
+     * @return QueuePositionResponse
+     */
+    public static QueuePositionResponse of(String userId, String skuId, long position, int queueDepth) {
+        QueuePositionResponse response = new QueuePositionResponse();
+        response.setUserId(userId);
+        response.setSkuId(skuId);
+        response.setPosition(position);
+        response.setQueueDepth(queueDepth);
+        response.setWaiting(position > 0);
+        return response;
+    }
+
+    // Getters and setters
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getSkuId() {
+        return skuId;
+    }
+
+    public void setSkuId(String skuId) {
+        this.skuId = skuId;
+    }
+
+    public Long getPosition() {
+        return position;
+    }
+
+    public void setPosition(Long position) {
+        this.position = position;
+    }
+
+    public Integer getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(Integer queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public Boolean getWaiting() {
+        return waiting;
+    }
+
+    public void setWaiting(Boolean waiting) {
+        this.waiting = waiting;
+    }
+}
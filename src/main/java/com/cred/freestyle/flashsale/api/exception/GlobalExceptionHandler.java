@@ -143,6 +143,103 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(httpStatus).body(error);
     }
 
+    /**
+     * Handle CartReservationFailedException.
+     * Returns 409 CONFLICT naming the rejected SKU; holds for the other items were released.
+     */
+    @ExceptionHandler(CartReservationFailedException.class)
+    public ResponseEntity<ErrorResponse> handleCartReservationFailedException(
+            CartReservationFailedException ex,
+            HttpServletRequest request
+    ) {
+        logger.warn("Cart reservation failed: {}", ex.getMessage());
+
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.CONFLICT.value(),
+                "Cart Reservation Failed",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        error.addDetail("skuId", ex.getSkuId());
+        error.addDetail("rejectionStatus", ex.getStatus());
+        error.addDetail("releasedReservations", ex.getReleasedCount());
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    /**
+     * Handle ReservationOverloadedException.
+     * Returns 503 SERVICE UNAVAILABLE with Retry-After when the node sheds async requests.
+     */
+    @ExceptionHandler(ReservationOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleReservationOverloadedException(
+            ReservationOverloadedException ex,
+            HttpServletRequest request
+    ) {
+        logger.warn("Reservation overloaded: {}", ex.getMessage());
+
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Service Overloaded",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        error.addDetail("retryAfter", ex.getRetryAfterSeconds());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error);
+    }
+
+    /**
+     * Handle ReservationQueuedException.
+     * Returns 202 ACCEPTED with Retry-After and the queue position when the user is in the waiting room.
+     */
+    @ExceptionHandler(ReservationQueuedException.class)
+    public ResponseEntity<ErrorResponse> handleReservationQueuedException(
+            ReservationQueuedException ex,
+            HttpServletRequest request
+    ) {
+        logger.debug("Reservation queued: {}", ex.getMessage());
+
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.ACCEPTED.value(),
+                "Waiting Room",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        error.addDetail("skuId", ex.getSkuId());
+        error.addDetail("queuePosition", ex.getQueuePosition());
+        error.addDetail("retryAfter", ex.getRetryAfterSeconds());
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error);
+    }
+
+    /**
+     * Handle ReservationTimeoutException.
+     * Returns 504 GATEWAY TIMEOUT when the batch outcome did not arrive in time.
+     */
+    @ExceptionHandler(ReservationTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handleReservationTimeoutException(
+            ReservationTimeoutException ex,
+            HttpServletRequest request
+    ) {
+        logger.warn("Reservation timed out: {}", ex.getMessage());
+
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.GATEWAY_TIMEOUT.value(),
+                "Reservation Timeout",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        error.addDetail("skuId", ex.getSkuId());
+        error.addDetail("timeoutMs", ex.getTimeoutMs());
+
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(error);
+    }
+
     /**
      * Handle ReservationNotFoundException.
      * Returns 404 NOT FOUND when reservation doesn't exist.
@@ -1,16 +1,22 @@
 package com.cred.freestyle.flashsale.config;
 
+import com.cred.freestyle.flashsale.infrastructure.messaging.codec.ReservationRequestSerializer;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -58,6 +64,9 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.fetch-max-wait-ms:500}")
     private Integer fetchMaxWaitMs;
 
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     /**
      * Kafka producer factory configuration.
      * Configured for high throughput and reliability.
@@ -103,6 +112,37 @@ public class KafkaConfig {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    /**
+     * Kafka template for the reservation-requests topic.
+     * Values use the compact binary format (ReservationRequestSerializer); one record
+     * may carry several requests for the same SKU.
+     *
+     * @return KafkaTemplate
+     */
+    @Bean
+    public KafkaTemplate<String, List<ReservationRequestMessage>> reservationRequestKafkaTemplate() {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                producerFactory().getConfigurationProperties(),
+                new StringSerializer(),
+                new ReservationRequestSerializer()
+        ));
+    }
+
+    /**
+     * Kafka template for the reservation-requests dead-letter topic.
+     * Poison records are forwarded with their original key and raw value bytes.
+     *
+     * @return KafkaTemplate
+     */
+    @Bean
+    public KafkaTemplate<String, byte[]> deadLetterKafkaTemplate() {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                producerFactory().getConfigurationProperties(),
+                new StringSerializer(),
+                new ByteArraySerializer()
+        ));
+    }
+
     /**
      * Kafka consumer factory configuration.
      *
@@ -124,8 +164,8 @@ public class KafkaConfig {
         config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, autoOffsetReset);
 
         // Performance tuning for batch processing
-        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords); // 250 per batch
-        config.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, maxPollIntervalMs); // 30 seconds
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords); // Ceiling - batches sized adaptively
+        config.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, maxPollIntervalMs); // Covers a full poll
         config.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, fetchMinBytes);
         config.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
         config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false); // Manual commit for reliability
@@ -153,7 +193,98 @@ public class KafkaConfig {
             org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL
         ); // Manual acknowledgment for reliability
         factory.getContainerProperties().setPollTimeout(3000);
+        applyListenerTaskExecutor(factory, "kafka-listener-");
+
+        return factory;
+    }
+
+    /**
+     * Kafka listener container factory for the reservation-requests topic.
+     * Same settings as kafkaListenerContainerFactory, but values are delivered as raw bytes
+     * and decoded by InventoryBatchConsumer (binary format, JSON fallback), so a bad record
+     * is skipped instead of failing the whole poll in the deserializer.
+     *
+     * @return ConcurrentKafkaListenerContainerFactory
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> reservationRequestListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(
+                consumerFactory().getConfigurationProperties(),
+                new StringDeserializer(),
+                new ByteArrayDeserializer()
+        ));
+        factory.setConcurrency(10); // 10 concurrent consumers (one per partition)
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(
+            org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL
+        );
+        factory.getContainerProperties().setPollTimeout(3000);
+        applyListenerTaskExecutor(factory, "kafka-listener-");
 
         return factory;
     }
+
+    /**
+     * Kafka listener container factory for reservation outcomes.
+     * Each node consumes the whole reservation-responses topic from the latest offset
+     * to complete its locally waiting callers, so offsets are never replayed.
+     *
+     * @return ConcurrentKafkaListenerContainerFactory
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> reservationResponseListenerContainerFactory() {
+        return broadcastListenerContainerFactory(2);
+    }
+
+    /**
+     * Kafka listener container factory for inventory updates.
+     * Each node consumes the whole flash-sale-inventory-updates topic from the latest
+     * offset to keep its in-process SoldOutRegistry current.
+     *
+     * @return ConcurrentKafkaListenerContainerFactory
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> inventoryUpdateListenerContainerFactory() {
+        return broadcastListenerContainerFactory(1);
+    }
+
+    /**
+     * Container factory for topics every node must see in full (per-node consumer group
+     * set on the listener, latest offset, auto commit).
+     */
+    private ConcurrentKafkaListenerContainerFactory<String, String> broadcastListenerContainerFactory(int concurrency) {
+        Map<String, Object> config = new HashMap<>(consumerFactory().getConfigurationProperties());
+        config.remove(ConsumerConfig.GROUP_ID_CONFIG); // Per-node group set on the listener
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest"); // Only events after startup matter
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true);
+        config.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 10); // Deliver events as soon as they arrive
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(config));
+        factory.setConcurrency(concurrency);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setPollTimeout(1000);
+        applyListenerTaskExecutor(factory, "kafka-broadcast-");
+
+        return factory;
+    }
+
+    /**
+     * Run listener consumer threads on virtual threads when spring.threads.virtual.enabled
+     * is set (virtual-threads profile, Java 21). Spring Boot only does this for the
+     * auto-configured factory, not for the factories declared here.
+     */
+    private void applyListenerTaskExecutor(ConcurrentKafkaListenerContainerFactory<?, ?> factory, String threadNamePrefix) {
+        if (!virtualThreads) {
+            return;
+        }
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        factory.getContainerProperties().setListenerTaskExecutor(executor);
+    }
 }
@@ -1,6 +1,7 @@
 package com.cred.freestyle.flashsale.config;
 
 import com.cred.freestyle.flashsale.security.HeaderAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -43,6 +44,7 @@ public class SecurityConfig {
      * - Header-based authentication filter
      * - Public endpoints for actuator and products
      * - All other endpoints require authentication
+     * - Async dispatches (DeferredResult completions) pass: the original request was authorized
      */
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -52,6 +54,9 @@ public class SecurityConfig {
 
             // Configure authorization rules
             .authorizeHttpRequests(auth -> auth
+                // Completion of an authorized async request - the header filter does not run again
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // Public endpoints - no authentication required
                 .requestMatchers("/actuator/**").permitAll()
                 .requestMatchers("/api/v1/products/**").permitAll()
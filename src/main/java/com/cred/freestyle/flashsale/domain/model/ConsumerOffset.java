@@ -0,0 +1,61 @@
+package com.cred.freestyle.flashsale.domain.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Next offset to consume per partition, committed by the batch consumer in the same
+ * transaction as the reservations of a batch. In batch-transaction mode this row, not the
+ * Kafka group offset, says which records are done: partitions are resumed from it on
+ * assignment.
+ *
+ * @author Flash Sale Team
+ */
+@Entity
+@Table(name = "consumer_offsets")
+@IdClass(ConsumerOffset.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsumerOffset {
+
+    @Id
+    @Column(name = "group_id", nullable = false, length = 100)
+    private String groupId;
+
+    @Id
+    @Column(name = "topic", nullable = false, length = 100)
+    private String topic;
+
+    @Id
+    @Column(name = "partition_id", nullable = false)
+    private Integer partitionId;
+
+    /**
+     * Offset of the first record not yet committed with its batch.
+     */
+    @Column(name = "next_offset", nullable = false)
+    private Long nextOffset;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    /**
+     * Primary key: consumer group, topic and partition.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String groupId;
+        private String topic;
+        private Integer partitionId;
+    }
+}
@@ -0,0 +1,40 @@
+package com.cred.freestyle.flashsale.exception;
+
+/**
+ * Exception thrown when one item of a cart reservation is rejected.
+ * Holds already taken for the other items have been released, so the cart
+ * left no reservations behind.
+ *
+ * @author Flash Sale Team
+ */
+public class CartReservationFailedException extends RuntimeException {
+
+    private final String skuId;
+    private final String status;
+    private final int releasedCount;
+
+    /**
+     * @param skuId SKU that was rejected
+     * @param status Rejection status (e.g., OUT_OF_STOCK, USER_ALREADY_PURCHASED)
+     * @param errorMessage Rejection reason
+     * @param releasedCount Reservations released for the other items
+     */
+    public CartReservationFailedException(String skuId, String status, String errorMessage, int releasedCount) {
+        super(String.format("Cart reservation failed on SKU %s: %s - %s", skuId, status, errorMessage));
+        this.skuId = skuId;
+        this.status = status;
+        this.releasedCount = releasedCount;
+    }
+
+    public String getSkuId() {
+        return skuId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getReleasedCount() {
+        return releasedCount;
+    }
+}
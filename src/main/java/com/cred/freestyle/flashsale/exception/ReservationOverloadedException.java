@@ -0,0 +1,27 @@
+package com.cred.freestyle.flashsale.exception;
+
+/**
+ * Exception thrown when a node already holds the maximum number of pending
+ * async reservation requests and sheds new ones instead of queueing them.
+ *
+ * @author Flash Sale Team
+ */
+public class ReservationOverloadedException extends RuntimeException {
+
+    private final int pendingRequests;
+    private final long retryAfterSeconds;
+
+    public ReservationOverloadedException(int pendingRequests, long retryAfterSeconds) {
+        super(String.format("Too many pending reservation requests (%d) - please retry shortly", pendingRequests));
+        this.pendingRequests = pendingRequests;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getPendingRequests() {
+        return pendingRequests;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,35 @@
+package com.cred.freestyle.flashsale.exception;
+
+/**
+ * Exception thrown when all admission tickets for a SKU are in flight and the user
+ * has been placed in the SKU's waiting room instead of being published to Kafka.
+ * The user keeps their place by retrying (or polling the queue position) before
+ * the waiting room idle timeout.
+ *
+ * @author Flash Sale Team
+ */
+public class ReservationQueuedException extends RuntimeException {
+
+    private final String skuId;
+    private final long queuePosition;
+    private final long retryAfterSeconds;
+
+    public ReservationQueuedException(String skuId, long queuePosition, long retryAfterSeconds) {
+        super(String.format("Waiting for SKU %s - queue position %d, please retry shortly", skuId, queuePosition));
+        this.skuId = skuId;
+        this.queuePosition = queuePosition;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getSkuId() {
+        return skuId;
+    }
+
+    public long getQueuePosition() {
+        return queuePosition;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
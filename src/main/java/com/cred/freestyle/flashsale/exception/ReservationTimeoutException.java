@@ -0,0 +1,29 @@
+package com.cred.freestyle.flashsale.exception;
+
+/**
+ * Exception thrown when the batch outcome of an async reservation request
+ * does not arrive within the configured timeout. The request may still be
+ * processed; clients should check their active reservations before retrying.
+ *
+ * @author Flash Sale Team
+ */
+public class ReservationTimeoutException extends RuntimeException {
+
+    private final String skuId;
+    private final long timeoutMs;
+
+    public ReservationTimeoutException(String skuId, long timeoutMs) {
+        super(String.format("Reservation request for SKU %s timed out after %dms - please check status later",
+                skuId, timeoutMs));
+        this.skuId = skuId;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public String getSkuId() {
+        return skuId;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+}
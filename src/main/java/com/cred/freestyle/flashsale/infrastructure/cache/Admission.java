@@ -0,0 +1,38 @@
+package com.cred.freestyle.flashsale.infrastructure.cache;
+
+/**
+ * Result of the admission gate together with the user's waiting room position.
+ * The position is only set (1-based) when the result is WAITING.
+ *
+ * @author Flash Sale Team
+ */
+public final class Admission {
+
+    private final AdmissionResult result;
+    private final long queuePosition;
+
+    private Admission(AdmissionResult result, long queuePosition) {
+        this.result = result;
+        this.queuePosition = queuePosition;
+    }
+
+    public static Admission of(AdmissionResult result) {
+        return new Admission(result, 0);
+    }
+
+    public static Admission waiting(long queuePosition) {
+        return new Admission(AdmissionResult.WAITING, queuePosition);
+    }
+
+    public AdmissionResult getResult() {
+        return result;
+    }
+
+    public long getQueuePosition() {
+        return queuePosition;
+    }
+
+    public boolean isAdmitted() {
+        return result.isAdmitted();
+    }
+}
@@ -0,0 +1,165 @@
+package com.cred.freestyle.flashsale.infrastructure.cache;
+
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Releases what the admission gate took - admission tickets and pending markers - off
+ * the threads that complete outcomes.
+ *
+ * Outcomes are completed on the reservation-responses listener, often one batch outcome
+ * for hundreds of requests of a SKU. Instead of a ZREM and a DEL per request on the
+ * listener thread, releases are queued and drained by a single releaser thread: every
+ * queued ticket of a SKU goes back with one ZREM and its pending markers are cleared with
+ * one DEL, all SKUs of a drain in one pipelined round trip (see RedisCacheService.releaseAdmissions).
+ *
+ * Best effort: a failed release is logged and dropped; tickets then lapse with their
+ * expiry score and pending markers with their TTL, as they would had the node died. The
+ * queue holds at most two entries per request this node admitted, so it is not bounded
+ * separately.
+ *
+ * @author Flash Sale Team
+ */
+@Component
+public class AdmissionReleaser {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionReleaser.class);
+
+    private final RedisCacheService cacheService;
+    private final CloudWatchMetricsService metricsService;
+
+    @Value("${flashsale.reservation.waiting-room.release-batch-size:1000}")
+    private int releaseBatchSize = 1000;
+
+    private final Queue<Release> queue = new ConcurrentLinkedQueue<>();
+
+    // Set while a drain is queued on the releaser thread
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final ExecutorService releaser = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "admission-releaser");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AdmissionReleaser(RedisCacheService cacheService, CloudWatchMetricsService metricsService) {
+        this.cacheService = cacheService;
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Queue a request's admission ticket for release. Never blocks.
+     *
+     * @param skuId Product SKU ID
+     * @param requestId Request ID the ticket was issued to
+     */
+    public void releaseTicket(String skuId, String requestId) {
+        enqueue(new Release(skuId, requestId, null));
+    }
+
+    /**
+     * Queue a user's pending marker for a SKU to be cleared, so they may submit again.
+     * Never blocks.
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     */
+    public void clearPending(String userId, String skuId) {
+        enqueue(new Release(skuId, null, userId));
+    }
+
+    private void enqueue(Release release) {
+        queue.add(release);
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                releaser.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);  // Shutting down - queued releases lapse
+            }
+        }
+    }
+
+    /**
+     * Release whatever is queued, then stop.
+     */
+    @PreDestroy
+    public void shutdown() {
+        releaser.shutdown();
+        try {
+            if (!releaser.awaitTermination(5, TimeUnit.SECONDS)) {
+                releaser.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaser.shutdownNow();
+        }
+    }
+
+    private void drain() {
+        // Cleared first: releases queued from here on schedule another drain
+        drainScheduled.set(false);
+
+        Map<String, List<String>> ticketsBySku = new HashMap<>();
+        Map<String, List<String>> pendingBySku = new HashMap<>();
+        int count = 0;
+        Release release;
+        while ((release = queue.poll()) != null) {
+            if (release.requestId != null) {
+                ticketsBySku.computeIfAbsent(release.skuId, sku -> new ArrayList<>()).add(release.requestId);
+            } else {
+                pendingBySku.computeIfAbsent(release.skuId, sku -> new ArrayList<>()).add(release.userId);
+            }
+            if (++count >= releaseBatchSize) {
+                write(ticketsBySku, pendingBySku, count);
+                ticketsBySku = new HashMap<>();
+                pendingBySku = new HashMap<>();
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            write(ticketsBySku, pendingBySku, count);
+        }
+    }
+
+    private void write(Map<String, List<String>> ticketsBySku, Map<String, List<String>> pendingBySku, int count) {
+        try {
+            cacheService.releaseAdmissions(ticketsBySku, pendingBySku);
+            logger.debug("Released {} admission tickets and pending markers", count);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to release {} admission tickets and pending markers for SKUs {}: {}",
+                       count, ticketsBySku.isEmpty() ? pendingBySku.keySet() : ticketsBySku.keySet(), e.toString());
+            metricsService.recordError("ADMISSION_RELEASE_ERROR", "releaseAdmissions");
+        }
+    }
+
+    /**
+     * One queued release: a ticket (request ID set) or a pending marker (user ID set).
+     */
+    private static final class Release {
+        private final String skuId;
+        private final String requestId;
+        private final String userId;
+
+        Release(String skuId, String requestId, String userId) {
+            this.skuId = skuId;
+            this.requestId = requestId;
+            this.userId = userId;
+        }
+    }
+}
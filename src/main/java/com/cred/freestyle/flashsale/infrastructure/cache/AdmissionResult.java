@@ -0,0 +1,41 @@
+package com.cred.freestyle.flashsale.infrastructure.cache;
+
+/**
+ * Outcome of the Redis admission gate run before a reservation request is published to Kafka.
+ * Codes match the values returned by the admission Lua script in RedisCacheService.
+ *
+ * @author Flash Sale Team
+ */
+public enum AdmissionResult {
+    ADMITTED(0),
+    USER_ALREADY_PURCHASED(1),
+    USER_HAS_ACTIVE_RESERVATION(2),
+    OUT_OF_STOCK(3),
+    REQUEST_IN_PROGRESS(4),  // Another request from the same user for the same SKU is in flight
+    WAITING(5);  // No admission ticket free for the SKU - user holds a place in the waiting room
+
+    private final long code;
+
+    AdmissionResult(long code) {
+        this.code = code;
+    }
+
+    /**
+     * Map a script return code to its result.
+     *
+     * @param code Script return code
+     * @return Admission result
+     */
+    public static AdmissionResult fromCode(long code) {
+        for (AdmissionResult result : values()) {
+            if (result.code == code) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Unknown admission code: " + code);
+    }
+
+    public boolean isAdmitted() {
+        return this == ADMITTED;
+    }
+}
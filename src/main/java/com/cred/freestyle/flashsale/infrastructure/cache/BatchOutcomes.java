@@ -0,0 +1,62 @@
+package com.cred.freestyle.flashsale.infrastructure.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cache writes for the outcomes of one SKU batch, applied by Redis in a single call:
+ * the stock decrement and the active reservation of each allocated user. Rejections
+ * are not cached - callers get them from the response topic, nothing reads them back.
+ *
+ * Each instance carries a unique ID, so a write retried after a lost reply is not
+ * applied (and the stock not decremented) twice.
+ *
+ * @author Flash Sale Team
+ */
+public final class BatchOutcomes {
+
+    private final String id = UUID.randomUUID().toString();
+    private final String skuId;
+    private int stockDecrement;
+    private final Map<String, String> reservations = new LinkedHashMap<>();  // userId -> reservationId
+
+    private BatchOutcomes(String skuId) {
+        this.skuId = skuId;
+    }
+
+    public static BatchOutcomes forSku(String skuId) {
+        return new BatchOutcomes(skuId);
+    }
+
+    public BatchOutcomes decrementStock(int quantity) {
+        stockDecrement += quantity;
+        return this;
+    }
+
+    public BatchOutcomes reservation(String userId, String reservationId) {
+        reservations.put(userId, reservationId);
+        return this;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSkuId() {
+        return skuId;
+    }
+
+    public int getStockDecrement() {
+        return stockDecrement;
+    }
+
+    public Map<String, String> getReservations() {
+        return Collections.unmodifiableMap(reservations);
+    }
+
+    public boolean isEmpty() {
+        return stockDecrement == 0 && reservations.isEmpty();
+    }
+}
@@ -4,11 +4,21 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Redis cache service for high-performance caching.
@@ -18,6 +28,13 @@ import java.util.Optional;
  * - stock:{sku_id} -> Available inventory count (Integer)
  * - product:{sku_id} -> Product details (JSON)
  * - user_limit:{user_id}:{sku_id} -> User purchase flag (Boolean)
+ * - reservation:{user_id}:{sku_id} -> Active reservation ID
+ * - rejection:{user_id}:{sku_id} -> Rejection status and message
+ * - pending:{user_id}:{sku_id} -> Request ID of an in-flight reservation request
+ * - tickets:{sku_id} -> Admission tickets in flight (ZSET request ID -> expiry millis)
+ * - waiting:{sku_id} -> Waiting room (ZSET user ID -> arrival millis)
+ * - waiting_seen:{sku_id} -> Waiting room last poll (ZSET user ID -> last seen millis)
+ * - outcomes:{batch_id} -> Marker of a batch outcome write already applied
  *
  * @author Flash Sale Team
  */
@@ -35,6 +52,11 @@ public class RedisCacheService {
     private static final String USER_LIMIT_PREFIX = "user_limit:";
     private static final String RESERVATION_PREFIX = "reservation:";
     private static final String REJECTION_PREFIX = "rejection:";
+    private static final String PENDING_PREFIX = "pending:";
+    private static final String TICKETS_PREFIX = "tickets:";
+    private static final String WAITING_PREFIX = "waiting:";
+    private static final String WAITING_SEEN_PREFIX = "waiting_seen:";
+    private static final String OUTCOMES_PREFIX = "outcomes:";
 
     // Cache TTL durations
     private static final Duration STOCK_TTL = Duration.ofMinutes(5);
@@ -42,6 +64,99 @@ public class RedisCacheService {
     private static final Duration USER_LIMIT_TTL = Duration.ofHours(24);
     private static final Duration RESERVATION_TTL = Duration.ofMinutes(3); // Slightly longer than reservation expiry
     private static final Duration REJECTION_TTL = Duration.ofMinutes(3); // Same as reservation TTL for polling
+    private static final Duration PENDING_TTL = Duration.ofSeconds(10); // Covers Kafka round trip + outcome timeout
+    private static final Duration WAITING_IDLE_TTL = Duration.ofSeconds(30); // Waiting users must poll within this
+    private static final Duration OUTCOMES_TTL = Duration.ofMinutes(5); // Longer than any retry of the write
+
+    /**
+     * Admission gate: checks user limit, active reservation, stock and in-flight duplicates,
+     * then either marks the request as pending or places the user in the SKU's waiting
+     * room - atomically, in a single round trip.
+     *
+     * Waiting room (over-admission factor > 0 and stock known): at most
+     * floor(stock x factor) admission tickets may be in flight per SKU. Users beyond that
+     * wait in arrival order; a waiting user is admitted on retry once their position is
+     * within the free tickets. Tickets expire with the pending marker, and waiting users
+     * that stop polling are pruned after the idle TTL.
+     *
+     * KEYS: user_limit, reservation, pending, stock, tickets, waiting, waiting_seen
+     * ARGV: quantity, pending TTL (ms), request ID, over-admission factor, user ID, now (ms), waiting idle TTL (ms)
+     * Returns an AdmissionResult code, or -position (1-based) when the user is waiting.
+     * A missing stock key is treated as unknown (admitted, no ticket).
+     */
+    private static final DefaultRedisScript<Long> ADMISSION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 1 end " +
+            "if redis.call('EXISTS', KEYS[2]) == 1 then return 2 end " +
+            "local stock = redis.call('GET', KEYS[4]) " +
+            "if stock and tonumber(stock) < tonumber(ARGV[1]) then return 3 end " +
+            "if redis.call('EXISTS', KEYS[3]) == 1 then return 4 end " +
+            "local factor = tonumber(ARGV[4]) " +
+            "if stock and factor > 0 then " +
+            "  local now = tonumber(ARGV[6]) " +
+            "  redis.call('ZREMRANGEBYSCORE', KEYS[5], '-inf', now) " +
+            "  local idle = redis.call('ZRANGEBYSCORE', KEYS[7], '-inf', now - tonumber(ARGV[7]), 'LIMIT', 0, 100) " +
+            "  if #idle > 0 then " +
+            "    redis.call('ZREM', KEYS[6], unpack(idle)) " +
+            "    redis.call('ZREM', KEYS[7], unpack(idle)) " +
+            "  end " +
+            "  local free = math.floor(tonumber(stock) * factor) - redis.call('ZCARD', KEYS[5]) " +
+            "  local rank = redis.call('ZRANK', KEYS[6], ARGV[5]) " +
+            "  if not rank then rank = redis.call('ZCARD', KEYS[6]) end " +
+            "  if rank >= free then " +
+            "    redis.call('ZADD', KEYS[6], 'NX', now, ARGV[5]) " +
+            "    redis.call('ZADD', KEYS[7], now, ARGV[5]) " +
+            "    redis.call('PEXPIRE', KEYS[6], ARGV[7]) " +
+            "    redis.call('PEXPIRE', KEYS[7], ARGV[7]) " +
+            "    return -(redis.call('ZRANK', KEYS[6], ARGV[5]) + 1) " +
+            "  end " +
+            "  redis.call('ZREM', KEYS[6], ARGV[5]) " +
+            "  redis.call('ZREM', KEYS[7], ARGV[5]) " +
+            "  redis.call('ZADD', KEYS[5], now + tonumber(ARGV[2]), ARGV[3]) " +
+            "  redis.call('PEXPIRE', KEYS[5], ARGV[2]) " +
+            "end " +
+            "redis.call('SET', KEYS[3], ARGV[3], 'PX', ARGV[2]) " +
+            "return 0",
+            Long.class
+    );
+
+    /**
+     * Waiting room poll: a waiting user's position, refreshing their last-seen time and
+     * the idle TTL of the room's keys - a room whose users only poll stays alive.
+     *
+     * KEYS: waiting, waiting_seen
+     * ARGV: user ID, now (ms), waiting idle TTL (ms)
+     * Returns the 1-based position, or 0 if the user is not waiting.
+     */
+    private static final DefaultRedisScript<Long> WAITING_POLL_SCRIPT = new DefaultRedisScript<>(
+            "local rank = redis.call('ZRANK', KEYS[1], ARGV[1]) " +
+            "if not rank then return 0 end " +
+            "redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1]) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+            "redis.call('PEXPIRE', KEYS[2], ARGV[3]) " +
+            "return rank + 1",
+            Long.class
+    );
+
+    /**
+     * Batch outcome write: stock decrement and reservation keys of one SKU batch,
+     * applied once per batch ID.
+     *
+     * KEYS: outcomes marker, stock, reservation keys...
+     * ARGV: marker TTL (ms), decrement, reservation TTL (ms), then one value per reservation key
+     * Returns 1 if applied, 0 if the batch was already applied. A missing stock key is
+     * left missing rather than created negative without a TTL.
+     */
+    private static final DefaultRedisScript<Long> BATCH_OUTCOMES_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('SET', KEYS[1], '1', 'NX', 'PX', ARGV[1]) then return 0 end " +
+            "if tonumber(ARGV[2]) > 0 and redis.call('EXISTS', KEYS[2]) == 1 then " +
+            "  redis.call('DECRBY', KEYS[2], ARGV[2]) " +
+            "end " +
+            "for i = 3, #KEYS do " +
+            "  redis.call('SET', KEYS[i], ARGV[i + 1], 'PX', ARGV[3]) " +
+            "end " +
+            "return 1",
+            Long.class
+    );
 
     public RedisCacheService(RedisTemplate<String, String> redisTemplate, ObjectMapper objectMapper) {
         this.redisTemplate = redisTemplate;
@@ -221,6 +336,52 @@ public class RedisCacheService {
         }
     }
 
+    /**
+     * Look up the purchase and active reservation markers of many users for one SKU
+     * in a single MGET round trip.
+     *
+     * @param skuId Product SKU ID
+     * @param userIds User IDs to check
+     * @return Flags for the users; empty (all misses) if Redis is unavailable
+     */
+    public UserSkuFlags getUserSkuFlags(String skuId, Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return UserSkuFlags.empty();
+        }
+
+        try {
+            List<String> users = new ArrayList<>(userIds);
+            List<String> keys = new ArrayList<>(users.size() * 2);
+            for (String userId : users) {
+                keys.add(USER_LIMIT_PREFIX + userId + ":" + skuId);
+            }
+            for (String userId : users) {
+                keys.add(RESERVATION_PREFIX + userId + ":" + skuId);
+            }
+
+            List<String> values = redisTemplate.opsForValue().multiGet(keys);
+            if (values == null) {
+                return UserSkuFlags.empty();
+            }
+
+            Set<String> purchased = new HashSet<>();
+            Set<String> activeReservation = new HashSet<>();
+            for (int i = 0; i < users.size(); i++) {
+                if ("true".equals(values.get(i))) {
+                    purchased.add(users.get(i));
+                }
+                if (values.get(users.size() + i) != null) {
+                    activeReservation.add(users.get(i));
+                }
+            }
+            return UserSkuFlags.of(purchased, activeReservation);
+        } catch (Exception e) {
+            logger.error("Error bulk checking user flags in cache for SKU {}", skuId, e);
+            // Fail open - every user falls through to the database check
+            return UserSkuFlags.empty();
+        }
+    }
+
     /**
      * Cache active reservation for a user and product.
      * Used to quickly check if user has pending reservation.
@@ -239,6 +400,37 @@ public class RedisCacheService {
         }
     }
 
+    /**
+     * Write the outcomes of a SKU batch in a single round trip: the stock decrement and
+     * the active reservation of every allocated user. Replaying the same outcomes is a no-op.
+     *
+     * Unlike the single-key writes, failures are thrown so the caller can retry.
+     *
+     * @param outcomes Outcomes of one SKU batch
+     * @return true if applied, false if these outcomes were already applied
+     */
+    public boolean writeBatchOutcomes(BatchOutcomes outcomes) {
+        String skuId = outcomes.getSkuId();
+        Map<String, String> reservations = outcomes.getReservations();
+
+        List<String> keys = new ArrayList<>(2 + reservations.size());
+        List<String> args = new ArrayList<>(3 + reservations.size());
+        keys.add(OUTCOMES_PREFIX + outcomes.getId());
+        keys.add(STOCK_PREFIX + skuId);
+        args.add(String.valueOf(OUTCOMES_TTL.toMillis()));
+        args.add(String.valueOf(outcomes.getStockDecrement()));
+        args.add(String.valueOf(RESERVATION_TTL.toMillis()));
+        reservations.forEach((userId, reservationId) -> {
+            keys.add(RESERVATION_PREFIX + userId + ":" + skuId);
+            args.add(reservationId);
+        });
+
+        Long applied = redisTemplate.execute(BATCH_OUTCOMES_SCRIPT, keys, args.toArray());
+        logger.debug("Wrote batch outcomes for SKU {}: decrement {}, reservations {}",
+                skuId, outcomes.getStockDecrement(), reservations.size());
+        return applied != null && applied == 1;
+    }
+
     /**
      * Get active reservation ID for user and product.
      *
@@ -337,6 +529,142 @@ public class RedisCacheService {
         }
     }
 
+    /**
+     * Run the reservation admission gate in a single Redis round trip.
+     * On ADMITTED the user is marked pending for the SKU until the request's outcome
+     * is known (or PENDING_TTL elapses), so duplicate submissions never reach Kafka.
+     * With a positive over-admission factor the request also takes one of the SKU's
+     * admission tickets, or the user is placed in the waiting room (WAITING).
+     *
+     * Fails open on Redis errors - the batch consumer re-validates every request.
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     * @param quantity Requested quantity
+     * @param requestId Request ID stored as the pending marker and admission ticket
+     * @param overAdmissionFactor Tickets per unit of cached stock (0 disables the waiting room)
+     * @return Admission result, with the queue position when WAITING
+     */
+    public Admission admitReservation(String userId, String skuId, Integer quantity, String requestId,
+                                      double overAdmissionFactor) {
+        try {
+            List<String> keys = List.of(
+                    USER_LIMIT_PREFIX + userId + ":" + skuId,
+                    RESERVATION_PREFIX + userId + ":" + skuId,
+                    PENDING_PREFIX + userId + ":" + skuId,
+                    STOCK_PREFIX + skuId,
+                    TICKETS_PREFIX + skuId,
+                    WAITING_PREFIX + skuId,
+                    WAITING_SEEN_PREFIX + skuId
+            );
+            Long code = redisTemplate.execute(ADMISSION_SCRIPT, keys,
+                    quantity.toString(), String.valueOf(PENDING_TTL.toMillis()), requestId,
+                    String.valueOf(overAdmissionFactor), userId,
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(WAITING_IDLE_TTL.toMillis()));
+            Admission admission;
+            if (code == null) {
+                admission = Admission.of(AdmissionResult.ADMITTED);
+            } else if (code < 0) {
+                admission = Admission.waiting(-code);
+            } else {
+                admission = Admission.of(AdmissionResult.fromCode(code));
+            }
+            logger.debug("Admission for user {} and SKU {}: {}", userId, skuId, admission.getResult());
+            return admission;
+        } catch (Exception e) {
+            logger.error("Error running admission gate for user {} and SKU {}", userId, skuId, e);
+            return Admission.of(AdmissionResult.ADMITTED);
+        }
+    }
+
+    /**
+     * Release what the admission gate took for many requests in a single pipelined round
+     * trip, per SKU one ZREM of the returned tickets and one DEL of the cleared pending
+     * markers. Returned tickets free places for the next waiting users; unreturned tickets
+     * expire with the pending marker.
+     *
+     * Unlike the single-key writes, failures are thrown so the caller can record them.
+     *
+     * @param requestIdsBySku SKU ID to the request IDs whose tickets are returned
+     * @param pendingUserIdsBySku SKU ID to the user IDs whose pending markers are cleared
+     */
+    public void releaseAdmissions(Map<String, List<String>> requestIdsBySku,
+                                  Map<String, List<String>> pendingUserIdsBySku) {
+        if (requestIdsBySku.isEmpty() && pendingUserIdsBySku.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                requestIdsBySku.forEach((skuId, requestIds) ->
+                        ops.opsForZSet().remove(TICKETS_PREFIX + skuId, requestIds.toArray()));
+                pendingUserIdsBySku.forEach((skuId, userIds) -> {
+                    List<String> keys = new ArrayList<>(userIds.size());
+                    for (String userId : userIds) {
+                        keys.add(PENDING_PREFIX + userId + ":" + skuId);
+                    }
+                    ops.delete(keys);
+                });
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Get a user's position in the SKU's waiting room, refreshing their last-seen time
+     * and the waiting room's TTL so neither is dropped while they keep polling.
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     * @return 1-based queue position, or 0 if the user is not waiting
+     */
+    public long getWaitingPosition(String userId, String skuId) {
+        try {
+            Long position = redisTemplate.execute(WAITING_POLL_SCRIPT,
+                    List.of(WAITING_PREFIX + skuId, WAITING_SEEN_PREFIX + skuId),
+                    userId, String.valueOf(System.currentTimeMillis()), String.valueOf(WAITING_IDLE_TTL.toMillis()));
+            return position != null ? position : 0;
+        } catch (Exception e) {
+            logger.error("Error getting waiting position for user {} and SKU {}", userId, skuId, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Get the number of users in the SKU's waiting room.
+     *
+     * @param skuId Product SKU ID
+     * @return Waiting users (0 if unknown)
+     */
+    public long getWaitingCount(String skuId) {
+        try {
+            Long count = redisTemplate.opsForZSet().zCard(WAITING_PREFIX + skuId);
+            return count != null ? count : 0;
+        } catch (Exception e) {
+            logger.error("Error getting waiting count for SKU {}", skuId, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Clear the pending marker so the user can submit again for this SKU.
+     * Called when an admitted request is rejected or fails to publish.
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     */
+    public void clearPendingReservation(String userId, String skuId) {
+        try {
+            String key = PENDING_PREFIX + userId + ":" + skuId;
+            redisTemplate.delete(key);
+            logger.debug("Cleared pending reservation for user {} and SKU {}", userId, skuId);
+        } catch (Exception e) {
+            logger.error("Error clearing pending reservation for user {} and SKU {}", userId, skuId, e);
+        }
+    }
+
     /**
      * Clear all cache entries (use with caution).
      * Primarily for testing or emergency cache flush.
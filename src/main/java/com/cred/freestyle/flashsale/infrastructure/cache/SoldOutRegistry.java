@@ -0,0 +1,94 @@
+package com.cred.freestyle.flashsale.infrastructure.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process registry of sold-out SKUs, kept on every API node.
+ *
+ * Once a SKU sells out, requests for it are rejected here in microseconds without
+ * touching Redis, Kafka or the batch consumer. The registry is fed by inventory
+ * updates broadcast on the flash-sale-inventory-updates topic:
+ * - InventoryBatchConsumer publishes SOLD_OUT when a batch exhausts the stock
+ * - Cancellations and ReservationExpiryScheduler publish RELEASED when stock returns,
+ *   which reopens the SKU on every node
+ *
+ * Markers also lapse after a short TTL, so a node that missed a RELEASED broadcast
+ * (e.g. during a rebalance) falls back to the Redis admission gate instead of
+ * rejecting a restocked SKU indefinitely.
+ *
+ * @author Flash Sale Team
+ */
+@Component
+public class SoldOutRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(SoldOutRegistry.class);
+
+    @Value("${flashsale.inventory.sold-out-registry.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${flashsale.inventory.sold-out-registry.ttl-ms:10000}")
+    private long ttlMs = 10000;
+
+    // skuId -> time the SKU was marked sold out (epoch millis)
+    private final Map<String, Long> soldOutSkus = new ConcurrentHashMap<>();
+
+    /**
+     * Check whether a SKU is known to be sold out on this node.
+     *
+     * @param skuId Product SKU ID
+     * @return true if the SKU was marked sold out within the TTL
+     */
+    public boolean isSoldOut(String skuId) {
+        if (!enabled) {
+            return false;
+        }
+
+        Long markedAt = soldOutSkus.get(skuId);
+        if (markedAt == null) {
+            return false;
+        }
+
+        if (System.currentTimeMillis() - markedAt > ttlMs) {
+            soldOutSkus.remove(skuId, markedAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Mark a SKU as sold out.
+     *
+     * @param skuId Product SKU ID
+     */
+    public void markSoldOut(String skuId) {
+        if (soldOutSkus.put(skuId, System.currentTimeMillis()) == null) {
+            logger.info("SKU {} marked sold out on this node", skuId);
+        }
+    }
+
+    /**
+     * Reopen a SKU after stock was returned (expiry or cancellation).
+     *
+     * @param skuId Product SKU ID
+     */
+    public void reopen(String skuId) {
+        if (soldOutSkus.remove(skuId) != null) {
+            logger.info("SKU {} reopened on this node", skuId);
+        }
+    }
+
+    /**
+     * Get number of SKUs currently marked sold out (including lapsed markers not yet evicted).
+     *
+     * @return Sold-out SKU count
+     */
+    public int getSoldOutCount() {
+        return soldOutSkus.size();
+    }
+}
@@ -0,0 +1,40 @@
+package com.cred.freestyle.flashsale.infrastructure.cache;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Cached per-user markers for one SKU, looked up for a whole batch of users at once:
+ * which users have purchased the product and which hold an active reservation.
+ * Users in neither set are cache misses, not confirmed negatives.
+ *
+ * @author Flash Sale Team
+ */
+public final class UserSkuFlags {
+
+    private static final UserSkuFlags EMPTY = new UserSkuFlags(Collections.emptySet(), Collections.emptySet());
+
+    private final Set<String> purchased;
+    private final Set<String> activeReservation;
+
+    private UserSkuFlags(Set<String> purchased, Set<String> activeReservation) {
+        this.purchased = purchased;
+        this.activeReservation = activeReservation;
+    }
+
+    public static UserSkuFlags of(Set<String> purchased, Set<String> activeReservation) {
+        return new UserSkuFlags(purchased, activeReservation);
+    }
+
+    public static UserSkuFlags empty() {
+        return EMPTY;
+    }
+
+    public boolean hasPurchased(String userId) {
+        return purchased.contains(userId);
+    }
+
+    public boolean hasActiveReservation(String userId) {
+        return activeReservation.contains(userId);
+    }
+}
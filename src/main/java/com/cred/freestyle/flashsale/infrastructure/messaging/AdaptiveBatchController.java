@@ -0,0 +1,240 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feedback controller for the batch consumer's batch size and linger, per partition.
+ *
+ * max.poll.records is only the ceiling: the consumer splits each partition's share of a poll
+ * into batches of the size chosen here, and after an underfilled poll the partition is
+ * paused for the linger time, so the next poll brings a fuller batch. After every batch:
+ * - Latency above target-latency-ms: shrink the batch by a quarter and drop the linger
+ * - Nothing allocated (sold out): rejections are answered in bulk, so go to the largest batch
+ * - Backlog (the poll held more than one batch, or sampled lag above one batch): grow the
+ *   batch step by step and drop the linger
+ * - Otherwise underfilled batches lengthen the linger while latency plus linger stays under
+ *   the target, and full ones (or an overrun budget) shorten it
+ *
+ * Batch size stays within [min-batch-size, max-batch-size], linger within [0, max-linger-ms].
+ * The decisions are published as gauges per partition.
+ *
+ * @author Flash Sale Team
+ */
+@Component
+public class AdaptiveBatchController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatchController.class);
+
+    private static final int BATCH_SIZE_STEP = 50;
+    private static final long LINGER_STEP_MS = 5;
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final ConsumerLagTracker lagTracker;
+    private final CloudWatchMetricsService metricsService;
+
+    @Value("${flashsale.kafka.adaptive-batch.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${flashsale.kafka.adaptive-batch.min-batch-size:50}")
+    private int minBatchSize = 50;
+
+    @Value("${flashsale.kafka.adaptive-batch.max-batch-size:1000}")
+    private int maxBatchSize = 1000;
+
+    @Value("${flashsale.kafka.adaptive-batch.initial-batch-size:250}")
+    private int initialBatchSize = 250;
+
+    @Value("${flashsale.kafka.adaptive-batch.target-latency-ms:50}")
+    private long targetLatencyMs = 50;
+
+    @Value("${flashsale.kafka.adaptive-batch.max-linger-ms:20}")
+    private long maxLingerMs = 20;
+
+    private final Map<Integer, PartitionState> states = new ConcurrentHashMap<>();
+
+    // Partitions paused for their linger, until resumed by the scheduler or on revocation
+    private final Set<TopicPartition> lingering = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "adaptive-batch-linger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AdaptiveBatchController(
+            KafkaListenerEndpointRegistry listenerRegistry,
+            ConsumerLagTracker lagTracker,
+            CloudWatchMetricsService metricsService
+    ) {
+        this.listenerRegistry = listenerRegistry;
+        this.lagTracker = lagTracker;
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Note a partition's share of a poll, and linger before the next poll if it was underfilled.
+     *
+     * @param partition Partition the records came from
+     * @param records Records of the poll from that partition
+     * @return Records per batch to process them in
+     */
+    public int onPoll(TopicPartition partition, int records) {
+        if (!enabled) {
+            return Integer.MAX_VALUE;
+        }
+
+        PartitionState state = state(partition.partition());
+        int batchSize = state.batchSize();
+        boolean backlog = records > batchSize || lagTracker.getPartitionLag(partition.partition()) > batchSize;
+        long lingerMs = state.onPoll(backlog);
+        if (!backlog && records < batchSize && lingerMs > 0) {
+            linger(partition, lingerMs);
+        }
+        return batchSize;
+    }
+
+    /**
+     * Adjust a partition's batch size and linger from a processed batch.
+     *
+     * @param partition Partition the batch came from
+     * @param records Records in the batch
+     * @param requests Requests in the batch
+     * @param allocated Reservations created
+     * @param latencyMs Time from poll to last outcome published
+     */
+    public void onBatchCompleted(int partition, int records, int requests, int allocated, long latencyMs) {
+        if (!enabled || requests == 0) {
+            return;
+        }
+        state(partition).onBatchCompleted(records, allocated, latencyMs);
+    }
+
+    /**
+     * Resume lingering partitions before they are handed over, so no pause outlives the assignment.
+     */
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        MessageListenerContainer container = listenerContainer();
+        for (TopicPartition partition : partitions) {
+            if (lingering.remove(partition) && container != null) {
+                container.resumePartition(partition);
+            }
+        }
+    }
+
+    public int batchSize(int partition) {
+        PartitionState state = states.get(partition);
+        return state == null ? initialBatchSize : state.batchSize();
+    }
+
+    public long lingerMs(int partition) {
+        PartitionState state = states.get(partition);
+        return state == null ? 0 : state.lingerMs();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void linger(TopicPartition partition, long lingerMs) {
+        MessageListenerContainer container = listenerContainer();
+        if (container == null || !lingering.add(partition)) {
+            return;
+        }
+
+        container.pausePartition(partition);
+        scheduler.schedule(() -> {
+            if (lingering.remove(partition)) {
+                container.resumePartition(partition);
+            }
+        }, lingerMs, TimeUnit.MILLISECONDS);
+    }
+
+    private MessageListenerContainer listenerContainer() {
+        return listenerRegistry.getListenerContainer(InventoryBatchConsumer.LISTENER_ID);
+    }
+
+    private PartitionState state(int partition) {
+        PartitionState state = states.get(partition);
+        if (state == null) {
+            int batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, initialBatchSize));
+            PartitionState created = new PartitionState(partition, batchSize);
+            state = states.putIfAbsent(partition, created);
+            if (state == null) {
+                state = created;
+                metricsService.registerAdaptiveBatchGauges(partition, created::batchSize, created::lingerMs);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Controller state of one partition. Polls are noted on the listener thread and
+     * batches completed on pipeline threads, so every access is synchronized.
+     */
+    private class PartitionState {
+        final int partition;
+        int batchSize;
+        long lingerMs;
+        boolean backlog;
+
+        PartitionState(int partition, int batchSize) {
+            this.partition = partition;
+            this.batchSize = batchSize;
+        }
+
+        synchronized int batchSize() {
+            return batchSize;
+        }
+
+        synchronized long lingerMs() {
+            return lingerMs;
+        }
+
+        synchronized long onPoll(boolean backlog) {
+            this.backlog = backlog;
+            return lingerMs;
+        }
+
+        synchronized void onBatchCompleted(int records, int allocated, long latencyMs) {
+            int previousBatchSize = batchSize;
+
+            if (latencyMs > targetLatencyMs) {
+                batchSize = Math.max(minBatchSize, batchSize * 3 / 4);  // Past the knee
+            } else if (allocated == 0) {
+                batchSize = maxBatchSize;  // Sold out: one bulk rejection per SKU, whatever the size
+            } else if (backlog) {
+                batchSize = Math.min(maxBatchSize, batchSize + BATCH_SIZE_STEP);
+            }
+
+            if (backlog || latencyMs > targetLatencyMs) {
+                lingerMs = 0;  // Records are waiting, or latency has no room left
+            } else if (records >= batchSize || latencyMs + lingerMs > targetLatencyMs) {
+                lingerMs = Math.max(0, lingerMs - LINGER_STEP_MS);  // Filling without it, or over budget
+            } else if (latencyMs + lingerMs + LINGER_STEP_MS <= targetLatencyMs) {
+                lingerMs = Math.min(maxLingerMs, lingerMs + LINGER_STEP_MS);
+            }
+
+            if (batchSize != previousBatchSize) {
+                logger.debug("Partition {}: batch size {} -> {} (latency {}ms, backlog {}, linger {}ms)",
+                            partition, previousBatchSize, batchSize, latencyMs, backlog, lingerMs);
+            }
+        }
+    }
+}
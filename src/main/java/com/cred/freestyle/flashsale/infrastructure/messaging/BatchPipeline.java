@@ -0,0 +1,173 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Bounded pipeline running batches through a fixed sequence of stages, one thread per stage.
+ *
+ * While batch N is in one stage, batch N+1 can be in the stage before it, so the network
+ * waits of different stages overlap instead of adding up. Guarantees:
+ * - Batches pass every stage in submission order (each stage is a single FIFO thread)
+ * - At most depth batches are in flight: submit() blocks the caller until a slot frees up,
+ *   which also bounds every hand-off queue by depth
+ * - A stage failure skips the rest of that batch and is kept until reset(), together with
+ *   its exception; it is visible before the next batch enters that stage. Later batches
+ *   still run, and the caller decides how to recover
+ *
+ * @param <T> Batch type
+ * @author Flash Sale Team
+ */
+public class BatchPipeline<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchPipeline.class);
+
+    private final String name;
+    private final int depth;
+    private final List<String> stageNames;
+    private final List<Consumer<T>> stageActions;
+    private final ExecutorService[] executors;
+    private final AtomicInteger[] occupancy;
+    private final Semaphore slots;
+    private final AtomicReference<T> failedBatch = new AtomicReference<>();
+    private volatile Throwable failure;
+
+    /**
+     * @param name Pipeline name (prefix of the stage thread names)
+     * @param depth Maximum number of batches in flight
+     * @param stages Stage name to stage action, in processing order
+     */
+    public BatchPipeline(String name, int depth, LinkedHashMap<String, Consumer<T>> stages) {
+        if (depth <= 0 || stages.isEmpty()) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid pipeline %s: depth=%d, stages=%d", name, depth, stages.size()));
+        }
+        this.name = name;
+        this.depth = depth;
+        this.stageNames = new ArrayList<>(stages.keySet());
+        this.stageActions = new ArrayList<>(stages.values());
+        this.executors = new ExecutorService[stages.size()];
+        this.occupancy = new AtomicInteger[stages.size()];
+        for (int i = 0; i < executors.length; i++) {
+            String threadName = name + "-" + stageNames.get(i);
+            executors[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            occupancy[i] = new AtomicInteger();
+        }
+        this.slots = new Semaphore(depth);
+    }
+
+    /**
+     * Hand a batch to the first stage, blocking while depth batches are in flight.
+     *
+     * @return Completes when the batch has left the pipeline (exceptionally if a stage failed)
+     * @throws InterruptedException if interrupted while waiting for a slot
+     */
+    public CompletableFuture<Void> submit(T batch) throws InterruptedException {
+        slots.acquire();
+        occupancy[0].incrementAndGet();
+
+        CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+        for (int i = 0; i < executors.length; i++) {
+            int stage = i;
+            future = future.thenRunAsync(() -> runStage(stage, batch), executors[stage]);
+        }
+        return future.whenComplete((ignored, error) -> slots.release());
+    }
+
+    /**
+     * Wait until every submitted batch has left the pipeline.
+     */
+    public void drain() throws InterruptedException {
+        slots.acquire(depth);
+        slots.release(depth);
+    }
+
+    /**
+     * The first batch a stage failed on since the last reset, or null.
+     */
+    public T failedBatch() {
+        return failedBatch.get();
+    }
+
+    /**
+     * The exception the failed batch's stage threw, or null.
+     */
+    public Throwable failure() {
+        return failure;
+    }
+
+    /**
+     * Forget the failed batch (once the caller has recovered from it).
+     */
+    public synchronized void reset() {
+        failure = null;
+        failedBatch.set(null);
+    }
+
+    public List<String> stageNames() {
+        return stageNames;
+    }
+
+    /**
+     * Number of batches waiting for or running in a stage.
+     */
+    public int occupancy(String stage) {
+        int index = stageNames.indexOf(stage);
+        return index < 0 ? 0 : occupancy[index].get();
+    }
+
+    /**
+     * Finish the batches already handed over, then stop the stage threads.
+     */
+    public void shutdown() {
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    logger.warn("Pipeline {} did not finish in-flight batches before shutdown", name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private synchronized void recordFailure(T batch, Throwable error) {
+        if (failedBatch.get() == null) {
+            failure = error;
+            failedBatch.set(batch);
+        }
+    }
+
+    private void runStage(int stage, T batch) {
+        try {
+            stageActions.get(stage).accept(batch);
+        } catch (RuntimeException | Error e) {
+            logger.error("Pipeline {} failed a batch in stage {}", name, stageNames.get(stage), e);
+            recordFailure(batch, e);
+            throw e;
+        } finally {
+            occupancy[stage].decrementAndGet();
+        }
+        if (stage + 1 < occupancy.length) {
+            occupancy[stage + 1].incrementAndGet();
+        }
+    }
+}
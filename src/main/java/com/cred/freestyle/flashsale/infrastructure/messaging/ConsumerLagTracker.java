@@ -0,0 +1,324 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks consumer lag of the batch consumer group on the reservation-requests topic.
+ *
+ * Every interval, an in-process AdminClient samples the end offset and the group's
+ * committed offset of each partition. The result is cached as an immutable snapshot,
+ * so lookups from the request path cost no I/O:
+ * - per-partition lag, and per-SKU lag through the same murmur2 hash the producer
+ *   uses for the SKU key (the SKU shares its partition's backlog with other SKUs)
+ * - per-partition consume rate (committed offset delta), giving a drain-time estimate
+ *   used for Retry-After hints
+ *
+ * Lag is counted in records; a micro-batched record carries several requests.
+ * Partition lag is published as live gauges; SKUs get a gauge once they are looked up,
+ * up to max-tracked-skus.
+ *
+ * @author Flash Sale Team
+ */
+@Component
+public class ConsumerLagTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerLagTracker.class);
+
+    private static final String RESERVATION_REQUESTS_TOPIC = "reservation-requests";
+    private static final long MIN_RETRY_AFTER_SECONDS = 1;
+    private static final long MAX_RETRY_AFTER_SECONDS = 30;
+
+    private final CloudWatchMetricsService metricsService;
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${spring.kafka.consumer.group-id:flash-sale-consumer-group}")
+    private String consumerGroupId;
+
+    @Value("${flashsale.kafka.lag-tracker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${flashsale.kafka.lag-tracker.request-timeout-ms:2000}")
+    private long requestTimeoutMs = 2000;
+
+    @Value("${flashsale.kafka.lag-tracker.max-tracked-skus:1000}")
+    private int maxTrackedSkus = 1000;
+
+    private volatile AdminClient adminClient;
+    private volatile LagSnapshot snapshot = LagSnapshot.EMPTY;
+
+    private final Set<Integer> partitionGauges = ConcurrentHashMap.newKeySet();
+    private final Set<String> trackedSkus = ConcurrentHashMap.newKeySet();
+
+    public ConsumerLagTracker(CloudWatchMetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Sample end and committed offsets for every partition and replace the cached snapshot.
+     * Failures keep the previous snapshot.
+     */
+    @Scheduled(
+            fixedDelayString = "${flashsale.kafka.lag-tracker.interval-ms:5000}",
+            initialDelayString = "${flashsale.kafka.lag-tracker.interval-ms:5000}"
+    )
+    public void sample() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            AdminClient admin = adminClient();
+            long timeoutMs = requestTimeoutMs;
+
+            int partitions = admin.describeTopics(List.of(RESERVATION_REQUESTS_TOPIC))
+                    .allTopicNames().get(timeoutMs, TimeUnit.MILLISECONDS)
+                    .get(RESERVATION_REQUESTS_TOPIC).partitions().size();
+
+            Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(consumerGroupId)
+                    .partitionsToOffsetAndMetadata().get(timeoutMs, TimeUnit.MILLISECONDS);
+
+            Map<TopicPartition, OffsetSpec> latestSpec = new HashMap<>();
+            Map<TopicPartition, OffsetSpec> earliestSpec = new HashMap<>();
+            for (int p = 0; p < partitions; p++) {
+                TopicPartition tp = new TopicPartition(RESERVATION_REQUESTS_TOPIC, p);
+                latestSpec.put(tp, OffsetSpec.latest());
+                if (committed.get(tp) == null) {
+                    earliestSpec.put(tp, OffsetSpec.earliest()); // Group has not committed yet - whole log is backlog
+                }
+            }
+
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> latest =
+                    admin.listOffsets(latestSpec).all().get(timeoutMs, TimeUnit.MILLISECONDS);
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> earliest = earliestSpec.isEmpty()
+                    ? Map.of()
+                    : admin.listOffsets(earliestSpec).all().get(timeoutMs, TimeUnit.MILLISECONDS);
+
+            long[] endOffsets = new long[partitions];
+            long[] committedOffsets = new long[partitions];
+            for (int p = 0; p < partitions; p++) {
+                TopicPartition tp = new TopicPartition(RESERVATION_REQUESTS_TOPIC, p);
+                endOffsets[p] = latest.get(tp).offset();
+                OffsetAndMetadata offset = committed.get(tp);
+                committedOffsets[p] = offset != null ? offset.offset() : earliest.get(tp).offset();
+            }
+
+            snapshot = LagSnapshot.from(endOffsets, committedOffsets, System.currentTimeMillis(), snapshot);
+            registerPartitionGauges(partitions);
+
+            logger.debug("Sampled consumer lag for {}: total={}", RESERVATION_REQUESTS_TOPIC, snapshot.getTotalLag());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Failed to sample consumer lag for {}: {}", RESERVATION_REQUESTS_TOPIC, e.getMessage());
+            metricsService.recordError("CONSUMER_LAG_SAMPLE_ERROR", "sample");
+        }
+    }
+
+    /**
+     * Get the lag of one partition from the last sample.
+     *
+     * @param partition Partition number
+     * @return Messages behind, 0 if unknown
+     */
+    public long getPartitionLag(int partition) {
+        return snapshot.getLag(partition);
+    }
+
+    /**
+     * Get the lag of the partition a SKU is published to, from the last sample.
+     *
+     * @param skuId Product SKU ID
+     * @return Messages behind, 0 if unknown
+     */
+    public long getLagForSku(String skuId) {
+        trackSku(skuId);
+        return currentSkuLag(skuId);
+    }
+
+    /**
+     * Get the total lag of the consumer group across all partitions.
+     *
+     * @return Messages behind, 0 if unknown
+     */
+    public long getTotalLag() {
+        return snapshot.getTotalLag();
+    }
+
+    /**
+     * Estimate how long the backlog ahead of a new request for this SKU takes to drain,
+     * from its partition's lag and recent consume rate.
+     *
+     * @param skuId Product SKU ID
+     * @return Estimated seconds (rounded up), 0 if there is no backlog or no rate yet
+     */
+    public long estimateDrainSeconds(String skuId) {
+        trackSku(skuId);
+        LagSnapshot current = snapshot;
+        if (current.getPartitionCount() == 0) {
+            return 0;
+        }
+        int partition = partitionFor(skuId, current.getPartitionCount());
+        long lag = current.getLag(partition);
+        double rate = current.getConsumeRate(partition);
+        if (lag <= 0 || rate <= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(lag / rate);
+    }
+
+    /**
+     * Retry-After hint for a request shed or queued for this SKU: the estimated drain
+     * time of its partition, bounded to 1..30 seconds.
+     *
+     * @param skuId Product SKU ID
+     * @return Seconds the client should wait before retrying
+     */
+    public long suggestRetryAfterSeconds(String skuId) {
+        return Math.max(MIN_RETRY_AFTER_SECONDS, Math.min(MAX_RETRY_AFTER_SECONDS, estimateDrainSeconds(skuId)));
+    }
+
+    /**
+     * Partition a SKU-keyed record is published to - same murmur2 hash as the Kafka
+     * producer's default partitioning for keyed records.
+     *
+     * @param skuId Product SKU ID (record key)
+     * @param partitionCount Number of partitions
+     * @return Partition number
+     */
+    public static int partitionFor(String skuId, int partitionCount) {
+        return Utils.toPositive(Utils.murmur2(skuId.getBytes(StandardCharsets.UTF_8))) % partitionCount;
+    }
+
+    @PreDestroy
+    public void close() {
+        AdminClient admin = adminClient;
+        if (admin != null) {
+            admin.close();
+        }
+    }
+
+    /**
+     * Admin client, created on first sample. Only the scheduler thread calls this.
+     */
+    private AdminClient adminClient() {
+        if (adminClient == null) {
+            Map<String, Object> config = new HashMap<>();
+            config.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+            config.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) requestTimeoutMs);
+            config.put(AdminClientConfig.CLIENT_ID_CONFIG, "flash-sale-lag-tracker");
+            adminClient = AdminClient.create(config);
+        }
+        return adminClient;
+    }
+
+    private void registerPartitionGauges(int partitions) {
+        for (int p = 0; p < partitions; p++) {
+            if (partitionGauges.add(p)) {
+                int partition = p;
+                metricsService.registerConsumerLagGauge(partition, () -> getPartitionLag(partition));
+            }
+        }
+    }
+
+    private void trackSku(String skuId) {
+        if (trackedSkus.contains(skuId) || trackedSkus.size() >= maxTrackedSkus) {
+            return;
+        }
+        if (trackedSkus.add(skuId)) {
+            metricsService.registerSkuLagGauge(skuId, () -> currentSkuLag(skuId));
+        }
+    }
+
+    private long currentSkuLag(String skuId) {
+        LagSnapshot current = snapshot;
+        if (current.getPartitionCount() == 0) {
+            return 0;
+        }
+        return current.getLag(partitionFor(skuId, current.getPartitionCount()));
+    }
+
+    /**
+     * Immutable result of one lag sample.
+     */
+    static final class LagSnapshot {
+
+        static final LagSnapshot EMPTY = new LagSnapshot(new long[0], new long[0], new double[0], 0, 0);
+
+        private final long[] lag;
+        private final long[] committedOffsets;
+        private final double[] consumeRate; // Messages per second since the previous sample
+        private final long totalLag;
+        private final long sampledAtMs;
+
+        private LagSnapshot(long[] lag, long[] committedOffsets, double[] consumeRate, long totalLag, long sampledAtMs) {
+            this.lag = lag;
+            this.committedOffsets = committedOffsets;
+            this.consumeRate = consumeRate;
+            this.totalLag = totalLag;
+            this.sampledAtMs = sampledAtMs;
+        }
+
+        /**
+         * Build a snapshot from sampled offsets. Consume rates are derived from the
+         * previous snapshot when it covers the same partitions.
+         */
+        static LagSnapshot from(long[] endOffsets, long[] committedOffsets, long sampledAtMs, LagSnapshot previous) {
+            int partitions = endOffsets.length;
+            long[] lag = new long[partitions];
+            double[] rate = new double[partitions];
+            long total = 0;
+
+            boolean hasPrevious = previous.lag.length == partitions && sampledAtMs > previous.sampledAtMs;
+            double elapsedSeconds = hasPrevious ? (sampledAtMs - previous.sampledAtMs) / 1000.0 : 0;
+
+            for (int p = 0; p < partitions; p++) {
+                lag[p] = Math.max(0, endOffsets[p] - committedOffsets[p]);
+                total += lag[p];
+                if (hasPrevious) {
+                    rate[p] = Math.max(0, committedOffsets[p] - previous.committedOffsets[p]) / elapsedSeconds;
+                }
+            }
+            return new LagSnapshot(lag, committedOffsets, rate, total, sampledAtMs);
+        }
+
+        int getPartitionCount() {
+            return lag.length;
+        }
+
+        long getLag(int partition) {
+            return partition >= 0 && partition < lag.length ? lag[partition] : 0;
+        }
+
+        double getConsumeRate(int partition) {
+            return partition >= 0 && partition < consumeRate.length ? consumeRate[partition] : 0;
+        }
+
+        long getTotalLag() {
+            return totalLag;
+        }
+    }
+}
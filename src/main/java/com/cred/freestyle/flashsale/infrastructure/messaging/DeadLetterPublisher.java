@@ -0,0 +1,127 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Forwards poison reservation-requests records to the reservation-requests.DLQ topic.
+ *
+ * The record keeps its key (skuId), raw value bytes and headers, and gets the standard
+ * Spring Kafka dead-letter headers (original topic, partition, offset, timestamp, consumer
+ * group, exception class, message and stack trace) plus the reason it was dead-lettered,
+ * so it can be inspected and replayed once fixed.
+ *
+ * Sends are synchronous: the caller only moves past a record once the dead-letter topic
+ * has acknowledged it, and a failed send is thrown so the record is redelivered instead.
+ * The caller bounds the wait (InventoryBatchConsumer shares one budget across a poll).
+ *
+ * @author Flash Sale Team
+ */
+@Component
+public class DeadLetterPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterPublisher.class);
+
+    static final String DEAD_LETTER_TOPIC = "reservation-requests.DLQ";
+
+    // Why the record was dead-lettered
+    static final String REASON_HEADER = "flashsale-dlq-reason";
+    public static final String REASON_UNDECODABLE = "UNDECODABLE";
+    public static final String REASON_PROCESSING_FAILED = "PROCESSING_FAILED";
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final CloudWatchMetricsService metricsService;
+
+    @Value("${spring.kafka.consumer.group-id:inventory-batch-consumer}")
+    private String consumerGroupId = "inventory-batch-consumer";
+
+    public DeadLetterPublisher(KafkaTemplate<String, byte[]> deadLetterKafkaTemplate,
+                               CloudWatchMetricsService metricsService) {
+        this.kafkaTemplate = deadLetterKafkaTemplate;
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Send a record to the dead-letter topic and wait for the acknowledgment.
+     *
+     * @param record Record consumed from reservation-requests
+     * @param reason Why it is dead-lettered (REASON_UNDECODABLE, REASON_PROCESSING_FAILED)
+     * @param cause Failure the record caused
+     * @param timeoutMs Longest wait for the acknowledgment
+     * @throws IllegalStateException if the dead-letter topic did not acknowledge the record in time
+     */
+    public void publish(ConsumerRecord<String, byte[]> record, String reason, Throwable cause, long timeoutMs) {
+        ProducerRecord<String, byte[]> deadLetter = new ProducerRecord<>(
+                DEAD_LETTER_TOPIC, null, record.key(), record.value(), headers(record, reason, cause));
+
+        try {
+            kafkaTemplate.send(deadLetter).get(Math.max(timeoutMs, 0), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dead-lettering " + describe(record), e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to dead-letter " + describe(record), e);
+        }
+
+        metricsService.recordDeadLetter(record.partition(), reason);
+        logger.warn("Dead-lettered {} ({}): {}", describe(record), reason, cause.toString());
+    }
+
+    private Headers headers(ConsumerRecord<String, byte[]> record, String reason, Throwable cause) {
+        Headers headers = new RecordHeaders(record.headers().toArray());
+        headers.add(KafkaHeaders.DLT_ORIGINAL_TOPIC, bytes(record.topic()));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, bytes(record.partition()));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, bytes(record.offset()));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_TIMESTAMP, bytes(record.timestamp()));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_TIMESTAMP_TYPE, bytes(record.timestampType().toString()));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_CONSUMER_GROUP, bytes(consumerGroupId));
+        headers.add(KafkaHeaders.DLT_EXCEPTION_FQCN, bytes(cause.getClass().getName()));
+        if (cause.getCause() != null) {
+            headers.add(KafkaHeaders.DLT_EXCEPTION_CAUSE_FQCN, bytes(cause.getCause().getClass().getName()));
+        }
+        headers.add(KafkaHeaders.DLT_EXCEPTION_MESSAGE, bytes(String.valueOf(cause.getMessage())));
+        headers.add(KafkaHeaders.DLT_EXCEPTION_STACKTRACE, bytes(stackTrace(cause)));
+        headers.add(REASON_HEADER, bytes(reason));
+        return headers;
+    }
+
+    private static String stackTrace(Throwable cause) {
+        StringWriter writer = new StringWriter();
+        cause.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(int value) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+    }
+
+    private static byte[] bytes(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    private static String describe(ConsumerRecord<String, byte[]> record) {
+        return String.format("record %s-%d@%d (key %s)", record.topic(), record.partition(), record.offset(),
+                record.key());
+    }
+}
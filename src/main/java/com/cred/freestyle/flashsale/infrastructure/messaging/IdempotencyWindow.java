@@ -0,0 +1,184 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, time-evicting set of idempotency keys recently stored by one consumer partition.
+ *
+ * Keys are kept as 64-bit hashes in open-addressing {@code long[]} tables, one per time
+ * bucket, arranged as a ring. Adding goes to the current bucket; when a bucket's time slice
+ * ends (or it is full) the ring advances and the oldest bucket is wiped and reused. Memory
+ * is allocated once and never grows:
+ * - a key is remembered for between (window - slice) and window milliseconds
+ * - at most max-keys keys are remembered; beyond that the oldest go first
+ *
+ * Only a fast path in front of the unique idempotency key index: a forgotten key is still
+ * caught on insert, and a hash collision (about n^2 / 2^65 for n keys) rejects one request.
+ *
+ * Methods are synchronized; a partition is normally used by one consumer thread, so the
+ * lock is uncontended.
+ *
+ * @author Flash Sale Team
+ */
+public class IdempotencyWindow {
+
+    private static final long EMPTY_SLOT = 0L;
+
+    private final long[][] buckets;
+    private final int[] sizes;
+    private final int mask;
+    private final int maxKeysPerBucket;
+    private final long sliceMs;
+    private final LongSupplier clock;
+
+    private int current;
+    private long currentSliceStart;
+
+    /**
+     * @param windowMs How long a key is remembered
+     * @param bucketCount Number of time buckets in the ring (eviction granularity)
+     * @param maxKeys Maximum number of keys remembered at once
+     */
+    public IdempotencyWindow(long windowMs, int bucketCount, int maxKeys) {
+        this(windowMs, bucketCount, maxKeys, System::currentTimeMillis);
+    }
+
+    IdempotencyWindow(long windowMs, int bucketCount, int maxKeys, LongSupplier clock) {
+        if (windowMs <= 0 || bucketCount <= 0 || maxKeys < bucketCount) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid idempotency window: window-ms=%d, buckets=%d, max-keys=%d",
+                    windowMs, bucketCount, maxKeys));
+        }
+        this.maxKeysPerBucket = maxKeys / bucketCount;
+        // Load factor <= 0.5 keeps probe sequences short and guarantees a free slot
+        int capacity = Integer.highestOneBit(Math.max(2, maxKeysPerBucket * 2 - 1)) << 1;
+        this.buckets = new long[bucketCount][capacity];
+        this.sizes = new int[bucketCount];
+        this.mask = capacity - 1;
+        this.sliceMs = Math.max(1, windowMs / bucketCount);
+        this.clock = clock;
+        this.currentSliceStart = clock.getAsLong();
+    }
+
+    /**
+     * Check whether a key was added within the window.
+     */
+    public synchronized boolean contains(String key) {
+        advance();
+        long hash = hash(key);
+        for (int b = 0; b < buckets.length; b++) {
+            if (sizes[b] > 0 && probe(buckets[b], hash) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remember a key for the length of the window.
+     */
+    public synchronized void add(String key) {
+        advance();
+        if (sizes[current] >= maxKeysPerBucket) {
+            rotate(clock.getAsLong()); // Full - start the next slice early, evicting the oldest
+        }
+
+        long hash = hash(key);
+        long[] table = buckets[current];
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (table[slot] != EMPTY_SLOT) {
+            if (table[slot] == hash) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = hash;
+        sizes[current]++;
+    }
+
+    /**
+     * Number of keys currently remembered.
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (int bucketSize : sizes) {
+            size += bucketSize;
+        }
+        return size;
+    }
+
+    /**
+     * Heap used by the hash tables, in bytes (fixed at construction).
+     */
+    public long footprintBytes() {
+        return (long) buckets.length * (mask + 1) * Long.BYTES;
+    }
+
+    /**
+     * Forget every key.
+     */
+    public synchronized void clear() {
+        for (int b = 0; b < buckets.length; b++) {
+            wipe(b);
+        }
+        current = 0;
+        currentSliceStart = clock.getAsLong();
+    }
+
+    private void advance() {
+        long now = clock.getAsLong();
+        long elapsedSlices = (now - currentSliceStart) / sliceMs;
+        if (elapsedSlices <= 0) {
+            return;
+        }
+        long steps = Math.min(elapsedSlices, buckets.length);
+        for (long i = 0; i < steps; i++) {
+            current = (current + 1) % buckets.length;
+            wipe(current);
+        }
+        currentSliceStart += elapsedSlices * sliceMs;
+    }
+
+    private void rotate(long now) {
+        current = (current + 1) % buckets.length;
+        wipe(current);
+        currentSliceStart = now;
+    }
+
+    private void wipe(int bucket) {
+        if (sizes[bucket] > 0) {
+            Arrays.fill(buckets[bucket], EMPTY_SLOT);
+            sizes[bucket] = 0;
+        }
+    }
+
+    private int probe(long[] table, long hash) {
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (table[slot] != EMPTY_SLOT) {
+            if (table[slot] == hash) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 64-bit FNV-1a over the key's chars, finished with the murmur3 avalanche step.
+     * Never returns the empty-slot marker.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY_SLOT ? 1L : h;
+    }
+}
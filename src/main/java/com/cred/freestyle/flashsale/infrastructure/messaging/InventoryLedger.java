@@ -0,0 +1,326 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.domain.model.Inventory;
+import com.cred.freestyle.flashsale.domain.model.Reservation.ReservationStatus;
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import com.cred.freestyle.flashsale.repository.InventoryRepository;
+import com.cred.freestyle.flashsale.repository.ReservationRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory inventory ledger of the batch consumer, one entry per SKU of the partitions it owns.
+ *
+ * Kafka keying makes each partition the single writer of reservations for its SKUs, so the
+ * owning consumer allocates from memory instead of running conditional updates on the hot
+ * inventory row. Other writers only ever return stock (expiry, cancellation) or move
+ * reserved to sold (checkout), so the ledger can only understate what is available - it
+ * never oversells:
+ * - Allocations are applied to the ledger at once and persisted write-behind: every
+ *   flush-interval-ms, the reserved delta of each SKU is written in one coalesced update
+ * - When a batch asks for more than the ledger holds, the SKU is reloaded from Postgres
+ *   (at most once per refresh-interval-ms) to pick up stock returned by other writers
+ * - Entries are rebuilt from Postgres on partition assignment and flushed on revocation.
+ *   Reserved is taken as the larger of the row and the RESERVED reservation count, so a
+ *   delta lost in a crash is detected and written back
+ *
+ * The inventory row lags the ledger by up to one flush interval.
+ *
+ * @author Flash Sale Team
+ */
+@Component
+public class InventoryLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryLedger.class);
+
+    private final InventoryRepository inventoryRepository;
+    private final ReservationRepository reservationRepository;
+    private final CloudWatchMetricsService metricsService;
+
+    @Value("${flashsale.kafka.inventory-ledger.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${flashsale.kafka.inventory-ledger.refresh-interval-ms:1000}")
+    private long refreshIntervalMs = 1000;
+
+    // skuId -> ledger entry, for SKUs seen on the partitions this node owns
+    private final Map<String, SkuLedger> ledgers = new ConcurrentHashMap<>();
+
+    public InventoryLedger(
+            InventoryRepository inventoryRepository,
+            ReservationRepository reservationRepository,
+            CloudWatchMetricsService metricsService
+    ) {
+        this.inventoryRepository = inventoryRepository;
+        this.reservationRepository = reservationRepository;
+        this.metricsService = metricsService;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Allocate up to the requested quantity, first come first served.
+     *
+     * @param partition Partition the SKU is consumed from
+     * @param skuId Product SKU ID
+     * @param requested Quantity requested by the batch
+     * @return Quantity allocated (0 if out of stock or the SKU has no inventory)
+     */
+    public int allocate(int partition, String skuId, int requested) {
+        SkuLedger ledger = ledgers.get(skuId);
+        if (ledger == null) {
+            ledger = load(partition, skuId);
+            if (ledger == null) {
+                return 0;
+            }
+        }
+
+        int granted = ledger.allocate(requested);
+        if (granted < requested && ledger.isRefreshDue(System.currentTimeMillis(), refreshIntervalMs)) {
+            // Short on stock - pick up units returned by expiry or cancellation since the last load
+            refresh(ledger);
+            granted += ledger.allocate(requested - granted);
+        }
+        return granted;
+    }
+
+    /**
+     * Units left to allocate, without allocating them. Used to size a batch's work before
+     * allocation; like allocate(), a SKU short of the wanted quantity is refreshed when due,
+     * so stock returned since the last load is not reported as sold out.
+     *
+     * @param partition Partition the SKU is consumed from
+     * @param skuId Product SKU ID
+     * @param wanted Quantity the caller would like to allocate
+     * @return Available quantity (0 if out of stock or the SKU has no inventory)
+     */
+    public int available(int partition, String skuId, int wanted) {
+        SkuLedger ledger = ledgers.get(skuId);
+        if (ledger == null) {
+            ledger = load(partition, skuId);
+            if (ledger == null) {
+                return 0;
+            }
+        }
+
+        int available = ledger.available();
+        if (available < wanted && ledger.isRefreshDue(System.currentTimeMillis(), refreshIntervalMs)) {
+            refresh(ledger);
+            available = ledger.available();
+        }
+        return available;
+    }
+
+    /**
+     * Return allocated units that were not used (e.g. the request turned out to be a duplicate).
+     */
+    public void release(String skuId, int quantity) {
+        SkuLedger ledger = ledgers.get(skuId);
+        if (ledger != null) {
+            ledger.release(quantity);
+        }
+    }
+
+    /**
+     * Local oversell check: reserved + sold beyond total.
+     *
+     * @return Oversold quantity, 0 if none (or the SKU is not in the ledger)
+     */
+    public int oversell(String skuId) {
+        SkuLedger ledger = ledgers.get(skuId);
+        return ledger == null ? 0 : ledger.oversell();
+    }
+
+    /**
+     * Forget SKUs of newly assigned partitions, so they are rebuilt from Postgres on first use.
+     */
+    public void onPartitionsAssigned(Collection<Integer> partitions) {
+        ledgers.values().removeIf(ledger -> partitions.contains(ledger.partition));
+    }
+
+    /**
+     * Persist and drop SKUs of revoked partitions before the new owner rebuilds them.
+     */
+    public void onPartitionsRevoked(Collection<Integer> partitions) {
+        for (SkuLedger ledger : ledgers.values()) {
+            if (partitions.contains(ledger.partition)) {
+                flush(ledger);
+                ledgers.remove(ledger.skuId, ledger);
+            }
+        }
+    }
+
+    /**
+     * Write the reserved delta of every SKU accumulated since the last flush, one update per SKU.
+     */
+    @Scheduled(fixedDelayString = "${flashsale.kafka.inventory-ledger.flush-interval-ms:100}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        for (SkuLedger ledger : ledgers.values()) {
+            flush(ledger);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void flush(SkuLedger ledger) {
+        int delta = ledger.takePending();
+        if (delta == 0) {
+            return;
+        }
+
+        try {
+            int rowsUpdated = delta > 0
+                    ? inventoryRepository.incrementReservedCount(ledger.skuId, delta)
+                    : inventoryRepository.decrementReservedCount(ledger.skuId, -delta);
+            if (rowsUpdated == 0) {
+                // The guard refused: the row holds less stock than the ledger allocated
+                logger.error("CRITICAL: Inventory row for SKU {} refused ledger delta {}", ledger.skuId, delta);
+                metricsService.recordError("INVENTORY_LEDGER_FLUSH_REFUSED", "flush");
+                ledger.restorePending(delta);
+                return;
+            }
+            ledger.completeFlush(delta);
+        } catch (Exception e) {
+            logger.error("Failed to flush inventory ledger for SKU: {}, delta: {}", ledger.skuId, delta, e);
+            metricsService.recordError("INVENTORY_LEDGER_FLUSH_ERROR", "flush");
+            ledger.restorePending(delta);
+        }
+    }
+
+    /**
+     * Build a SKU's entry from Postgres. Reservations the row does not account for
+     * (a write-behind delta lost in a crash) are queued to be written back.
+     */
+    private SkuLedger load(int partition, String skuId) {
+        Optional<Inventory> inventory = inventoryRepository.findBySkuId(skuId);
+        if (inventory.isEmpty()) {
+            logger.warn("No inventory for SKU: {}", skuId);
+            return null;
+        }
+
+        Inventory row = inventory.get();
+        long reservedRows = reservationRepository.countBySkuIdAndStatus(skuId, ReservationStatus.RESERVED);
+        int missing = (int) Math.max(0, reservedRows - row.getReservedCount());
+        if (missing > 0) {
+            logger.warn("SKU {}: {} reservations missing from the inventory row, writing them back", skuId, missing);
+        }
+
+        SkuLedger ledger = new SkuLedger(partition, skuId, row.getTotalCount(),
+                row.getReservedCount() + missing, row.getSoldCount(), missing);
+        SkuLedger existing = ledgers.putIfAbsent(skuId, ledger);
+        logger.info("Loaded inventory ledger for SKU: {}, total: {}, reserved: {}, sold: {}",
+                   skuId, ledger.total, ledger.reserved, ledger.sold);
+        return existing != null ? existing : ledger;
+    }
+
+    /**
+     * Reload total and sold, and reserved as seen by Postgres plus what the ledger has not
+     * persisted yet. Unflushed units are read before the row, so a flush committing in
+     * between is counted twice (understating stock) rather than not at all.
+     */
+    private void refresh(SkuLedger ledger) {
+        int unflushed = ledger.unflushed();
+        Optional<Inventory> inventory = inventoryRepository.findBySkuId(ledger.skuId);
+        if (inventory.isEmpty()) {
+            return;
+        }
+
+        Inventory row = inventory.get();
+        long reservedRows = reservationRepository.countBySkuIdAndStatus(ledger.skuId, ReservationStatus.RESERVED);
+        int reserved = (int) Math.max(row.getReservedCount() + unflushed, reservedRows);
+        ledger.reload(row.getTotalCount(), reserved, row.getSoldCount(), System.currentTimeMillis());
+    }
+
+    /**
+     * Ledger entry for one SKU. Allocation runs on the owning consumer thread; flushes run
+     * on the scheduler thread, so every access is synchronized.
+     */
+    private static class SkuLedger {
+        final int partition;
+        final String skuId;
+        int total;
+        int reserved;
+        int sold;
+        int pending;   // Reserved delta not yet written
+        int inflight;  // Reserved delta being written
+        long loadedAt;
+
+        SkuLedger(int partition, String skuId, int total, int reserved, int sold, int pending) {
+            this.partition = partition;
+            this.skuId = skuId;
+            this.total = total;
+            this.reserved = reserved;
+            this.sold = sold;
+            this.pending = pending;
+            this.loadedAt = System.currentTimeMillis();
+        }
+
+        synchronized int allocate(int requested) {
+            int granted = Math.max(0, Math.min(requested, total - reserved - sold));
+            reserved += granted;
+            pending += granted;
+            return granted;
+        }
+
+        synchronized int available() {
+            return Math.max(0, total - reserved - sold);
+        }
+
+        synchronized void release(int quantity) {
+            reserved -= quantity;
+            pending -= quantity;
+        }
+
+        synchronized int oversell() {
+            return Math.max(0, reserved + sold - total);
+        }
+
+        synchronized boolean isRefreshDue(long now, long refreshIntervalMs) {
+            return now - loadedAt >= refreshIntervalMs;
+        }
+
+        synchronized int unflushed() {
+            return pending + inflight;
+        }
+
+        synchronized void reload(int total, int reserved, int sold, long now) {
+            this.total = total;
+            this.reserved = reserved;
+            this.sold = sold;
+            this.loadedAt = now;
+        }
+
+        synchronized int takePending() {
+            int delta = pending;
+            pending = 0;
+            inflight += delta;
+            return delta;
+        }
+
+        synchronized void completeFlush(int delta) {
+            inflight -= delta;
+        }
+
+        synchronized void restorePending(int delta) {
+            inflight -= delta;
+            pending += delta;
+        }
+    }
+}
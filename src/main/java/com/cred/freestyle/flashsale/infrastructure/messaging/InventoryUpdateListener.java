@@ -0,0 +1,94 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.cache.SoldOutRegistry;
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Kafka listener keeping the per-node SoldOutRegistry in sync with inventory updates.
+ *
+ * Every API node joins the flash-sale-inventory-updates topic with its own consumer group
+ * (random suffix, starting from the latest offset), so a SOLD_OUT published by any batch
+ * consumer closes the SKU on all nodes, and a RELEASED published on expiry or cancellation
+ * reopens it. Other event types are ignored.
+ *
+ * @author Flash Sale Team
+ */
+@Service
+public class InventoryUpdateListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryUpdateListener.class);
+
+    private static final String INVENTORY_UPDATE_TOPIC = "flash-sale-inventory-updates";
+
+    private final SoldOutRegistry soldOutRegistry;
+    private final CloudWatchMetricsService metricsService;
+    private final ObjectMapper objectMapper;
+
+    public InventoryUpdateListener(
+            SoldOutRegistry soldOutRegistry,
+            CloudWatchMetricsService metricsService,
+            ObjectMapper objectMapper
+    ) {
+        this.soldOutRegistry = soldOutRegistry;
+        this.metricsService = metricsService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Kafka listener for inventory update events.
+     * Records are keyed by SKU, so events for one SKU arrive in publish order.
+     *
+     * @param records Batch of inventory update records
+     */
+    @KafkaListener(
+            topics = INVENTORY_UPDATE_TOPIC,
+            groupId = "inventory-updates-${random.uuid}",
+            containerFactory = "inventoryUpdateListenerContainerFactory"
+    )
+    public void consumeInventoryUpdates(List<ConsumerRecord<String, String>> records) {
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                JsonNode event = objectMapper.readTree(record.value());
+                applyInventoryUpdate(
+                    event.path("skuId").asText(null),
+                    event.path("eventType").asText(null)
+                );
+            } catch (JsonProcessingException e) {
+                logger.error("Failed to parse inventory update from partition {}, offset {}",
+                            record.partition(), record.offset(), e);
+                metricsService.recordError("MESSAGE_PARSE_ERROR", "consumeInventoryUpdates");
+            }
+        }
+    }
+
+    private void applyInventoryUpdate(String skuId, String eventType) {
+        if (skuId == null || eventType == null) {
+            return;
+        }
+
+        switch (eventType) {
+            case KafkaProducerService.INVENTORY_EVENT_SOLD_OUT:
+                soldOutRegistry.markSoldOut(skuId);
+                break;
+            case KafkaProducerService.INVENTORY_EVENT_RELEASED:
+                soldOutRegistry.reopen(skuId);
+                break;
+            default:
+                logger.debug("Ignoring inventory update for SKU: {}, type: {}", skuId, eventType);
+        }
+    }
+}
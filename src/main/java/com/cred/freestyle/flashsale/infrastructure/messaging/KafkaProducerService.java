@@ -1,6 +1,7 @@
 package com.cred.freestyle.flashsale.infrastructure.messaging;
 
 import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationEvent;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
@@ -33,6 +34,11 @@ public class KafkaProducerService {
     private static final String RESERVATION_TOPIC = "flash-sale-reservations";
     private static final String INVENTORY_UPDATE_TOPIC = "flash-sale-inventory-updates";
     private static final String ORDER_TOPIC = "flash-sale-orders";
+    private static final String RESERVATION_RESPONSES_TOPIC = "reservation-responses";
+
+    // Inventory update event types consumed by InventoryUpdateListener
+    public static final String INVENTORY_EVENT_SOLD_OUT = "SOLD_OUT";
+    public static final String INVENTORY_EVENT_RELEASED = "RELEASED";
 
     public KafkaProducerService(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
         this.kafkaTemplate = kafkaTemplate;
@@ -156,13 +162,45 @@ public class KafkaProducerService {
         }
     }
 
+    /**
+     * Publish the outcome of a reservation request.
+     * Consumed by ReservationResponseListener on every API node to wake the waiting caller.
+     *
+     * @param response Reservation outcome
+     */
+    public void publishReservationResponse(ReservationResponseMessage response) {
+        try {
+            String payload = objectMapper.writeValueAsString(response);
+            // Keyed by requestId (skuId for batch outcomes) - outcomes have no ordering requirement,
+            // so spread them across partitions
+            CompletableFuture<SendResult<String, String>> future = kafkaTemplate.send(
+                    RESERVATION_RESPONSES_TOPIC,
+                    response.isBatch() ? response.getSkuId() : response.getRequestId(),
+                    payload
+            );
+
+            future.whenComplete((result, ex) -> {
+                if (ex == null) {
+                    logger.debug("Published reservation response for request {}, status: {}",
+                            response.getRequestId(), response.getStatus());
+                } else {
+                    logger.error("Failed to publish reservation response for request {}, status: {}",
+                            response.getRequestId(), response.getStatus(), ex);
+                }
+            });
+        } catch (JsonProcessingException e) {
+            logger.error("Error serializing reservation response for request {}", response.getRequestId(), e);
+        }
+    }
+
     /**
      * Publish inventory update event.
      * Used for cache invalidation and real-time inventory updates.
+     * SOLD_OUT and RELEASED events drive the per-node SoldOutRegistry.
      *
      * @param skuId Product SKU ID
-     * @param availableCount New available count
-     * @param eventType Event type (e.g., "RESERVED", "RELEASED", "SOLD")
+     * @param availableCount New available count (null if unknown)
+     * @param eventType Event type (e.g., "SOLD_OUT", "RELEASED", "SOLD")
      */
     public void publishInventoryUpdate(String skuId, Integer availableCount, String eventType) {
         try {
@@ -0,0 +1,152 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.cache.BatchOutcomes;
+import com.cred.freestyle.flashsale.infrastructure.cache.RedisCacheService;
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the batch consumer's outcomes to Redis off the listener and pipeline threads.
+ *
+ * Each SKU batch hands over one BatchOutcomes, written by RedisCacheService in a single
+ * scripted call. A failed write is retried with exponential backoff, up to max-attempts;
+ * the write is idempotent, so a retry after a lost reply does not decrement stock twice.
+ *
+ * Buffering is bounded: once queue-capacity writes are queued or waiting for a retry,
+ * new outcomes are dropped instead of holding up the consumer. The cache is only a fast
+ * path - reservation keys expire within minutes, cached stock is refreshed
+ * from the database, and the consumer re-validates every request against Postgres.
+ *
+ * @author Flash Sale Team
+ */
+@Component
+public class OutcomeCacheWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutcomeCacheWriter.class);
+
+    private final RedisCacheService cacheService;
+    private final CloudWatchMetricsService metricsService;
+
+    @Value("${flashsale.kafka.outcome-cache.async:true}")
+    private boolean async = true;
+
+    @Value("${flashsale.kafka.outcome-cache.queue-capacity:1000}")
+    private int queueCapacity = 1000;
+
+    @Value("${flashsale.kafka.outcome-cache.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${flashsale.kafka.outcome-cache.retry-backoff-ms:50}")
+    private long retryBackoffMs = 50;
+
+    // Writes queued or waiting for a retry
+    private final AtomicInteger backlog = new AtomicInteger();
+
+    // One writer thread: outcomes are applied in the order batches completed
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "outcome-cache-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OutcomeCacheWriter(RedisCacheService cacheService, CloudWatchMetricsService metricsService) {
+        this.cacheService = cacheService;
+        this.metricsService = metricsService;
+        metricsService.registerOutcomeCacheBacklogGauge(backlog::get);
+    }
+
+    /**
+     * Queue the outcomes of a SKU batch for writing. Never blocks: when the buffer is full
+     * the outcomes are dropped.
+     *
+     * @param outcomes Outcomes of one SKU batch
+     */
+    public void write(BatchOutcomes outcomes) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        if (!async) {
+            if (!attempt(outcomes, 1)) {  // Caller's thread, no retry
+                drop(outcomes, "write failed");
+            }
+            return;
+        }
+        if (backlog.incrementAndGet() > queueCapacity) {
+            backlog.decrementAndGet();
+            drop(outcomes, "buffer full");
+            return;
+        }
+        try {
+            writer.execute(() -> writeWithRetry(outcomes, 1));
+        } catch (RuntimeException e) {
+            backlog.decrementAndGet();  // Shutting down
+            drop(outcomes, "writer stopped");
+        }
+    }
+
+    public int backlog() {
+        return backlog.get();
+    }
+
+    /**
+     * Give queued writes a moment to drain; retries still waiting for their backoff are dropped.
+     */
+    @PreDestroy
+    public void shutdown() {
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.shutdownNow();
+        }
+    }
+
+    private void writeWithRetry(BatchOutcomes outcomes, int attemptNumber) {
+        if (attempt(outcomes, attemptNumber)) {
+            backlog.decrementAndGet();
+            return;
+        }
+        if (attemptNumber >= maxAttempts) {
+            backlog.decrementAndGet();
+            drop(outcomes, "retries exhausted");
+            return;
+        }
+
+        long delayMs = retryBackoffMs << Math.min(attemptNumber - 1, 10);
+        try {
+            writer.schedule(() -> writeWithRetry(outcomes, attemptNumber + 1), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            backlog.decrementAndGet();  // Shutting down
+            drop(outcomes, "writer stopped");
+        }
+    }
+
+    private boolean attempt(BatchOutcomes outcomes, int attemptNumber) {
+        try {
+            cacheService.writeBatchOutcomes(outcomes);
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Outcome cache write for SKU {} failed (attempt {}): {}",
+                       outcomes.getSkuId(), attemptNumber, e.toString());
+            return false;
+        }
+    }
+
+    private void drop(BatchOutcomes outcomes, String reason) {
+        logger.warn("Dropped outcome cache write for SKU {} ({}): decrement {}, {} reservations",
+                   outcomes.getSkuId(), reason, outcomes.getStockDecrement(), outcomes.getReservations().size());
+        metricsService.recordError("OUTCOME_CACHE_DROPPED", "writeBatchOutcomes");
+    }
+}
@@ -0,0 +1,112 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-JVM registry of callers waiting for the outcome of a reservation request.
+ *
+ * The API thread registers a future keyed by requestId before the request is
+ * published to Kafka. When InventoryBatchConsumer publishes the outcome to the
+ * reservation-responses topic, ReservationResponseListener completes the matching
+ * future, waking the caller immediately instead of having it poll Redis.
+ *
+ * Entries remove themselves once their future completes, is cancelled or times out,
+ * so the map only ever holds in-flight requests for this node.
+ *
+ * @author Flash Sale Team
+ */
+@Component
+public class ReservationOutcomeRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationOutcomeRegistry.class);
+
+    private final Map<String, CompletableFuture<ReservationResponseMessage>> pendingOutcomes =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Register a caller waiting for the outcome of a request.
+     * Must be called before the request is published so a fast outcome cannot be missed.
+     *
+     * @param requestId Request ID
+     * @return Future completed with the outcome published by the batch consumer
+     */
+    public CompletableFuture<ReservationResponseMessage> register(String requestId) {
+        CompletableFuture<ReservationResponseMessage> future = new CompletableFuture<>();
+        pendingOutcomes.put(requestId, future);
+        future.whenComplete((response, ex) -> pendingOutcomes.remove(requestId, future));
+        return future;
+    }
+
+    /**
+     * Complete the waiting caller for a published outcome.
+     * Outcomes for requests submitted by other nodes are ignored.
+     *
+     * @param response Outcome published by the batch consumer
+     * @return true if a waiting caller on this node was completed
+     */
+    public boolean complete(ReservationResponseMessage response) {
+        if (response == null || response.getRequestId() == null) {
+            return false;
+        }
+
+        CompletableFuture<ReservationResponseMessage> future = pendingOutcomes.get(response.getRequestId());
+        if (future == null) {
+            return false;
+        }
+
+        logger.debug("Completing reservation outcome for requestId={}, status={}",
+                    response.getRequestId(), response.getStatus());
+        return future.complete(response);
+    }
+
+    /**
+     * Complete the waiting callers of a batch outcome (one outcome for several requests).
+     *
+     * @param response Batch outcome published by the batch consumer
+     * @return Number of waiting callers on this node that were completed
+     */
+    public int completeAll(ReservationResponseMessage response) {
+        int completed = 0;
+        for (ReservationResponseMessage outcome : response.expand()) {
+            if (complete(outcome)) {
+                completed++;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Fail the waiting caller, e.g. when pre-validation or the Kafka publish fails.
+     *
+     * @param requestId Request ID
+     * @param cause Failure cause
+     */
+    public void fail(String requestId, Throwable cause) {
+        CompletableFuture<ReservationResponseMessage> future = pendingOutcomes.get(requestId);
+        if (future == null) {
+            return;
+        }
+
+        Throwable unwrapped = cause instanceof CompletionException && cause.getCause() != null
+                ? cause.getCause()
+                : cause;
+        future.completeExceptionally(unwrapped);
+    }
+
+    /**
+     * Get number of callers on this node still waiting for an outcome.
+     *
+     * @return Pending outcome count
+     */
+    public int getPendingCount() {
+        return pendingOutcomes.size();
+    }
+}
@@ -0,0 +1,181 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-SKU micro-batcher for reservation requests published to Kafka.
+ *
+ * Instead of one Kafka record per request, requests for the same SKU arriving within
+ * a short window (window-ms) or up to max-requests are published as a single envelope
+ * record carrying all of them (binary format, see ReservationRequestSerializer).
+ * InventoryBatchConsumer unpacks envelopes transparently.
+ *
+ * The envelope is keyed by SKU like single records, so the single-writer partitioning is
+ * unchanged. Every caller gets its own future, completed with the envelope's send result;
+ * outcomes are still published per requestId by the batch consumer.
+ *
+ * Batches are guarded by a ReentrantLock rather than synchronized, so request threads
+ * do not pin their carrier when running on virtual threads.
+ *
+ * @author Flash Sale Team
+ */
+@Component
+public class ReservationRequestBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationRequestBatcher.class);
+
+    private static final String RESERVATION_REQUESTS_TOPIC = "reservation-requests";
+
+    private final KafkaTemplate<String, List<ReservationRequestMessage>> kafkaTemplate;
+
+    @Value("${flashsale.reservation.micro-batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${flashsale.reservation.micro-batch.window-ms:2}")
+    private long windowMs = 2;
+
+    @Value("${flashsale.reservation.micro-batch.max-requests:50}")
+    private int maxRequests = 50;
+
+    // skuId -> batch currently collecting requests
+    private final Map<String, PendingBatch> openBatches = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "reservation-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReservationRequestBatcher(KafkaTemplate<String, List<ReservationRequestMessage>> kafkaTemplate) {
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    /**
+     * Publish a reservation request, batching it with other requests for the same SKU.
+     *
+     * @param skuId Product SKU ID (partition key)
+     * @param message Reservation request
+     * @return Future completed when the record carrying this request is acknowledged
+     */
+    public CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> send(
+            String skuId,
+            ReservationRequestMessage message
+    ) {
+        if (!enabled || maxRequests <= 1) {
+            return kafkaTemplate.send(RESERVATION_REQUESTS_TOPIC, skuId, Collections.singletonList(message));
+        }
+
+        while (true) {
+            PendingBatch batch = openBatches.computeIfAbsent(skuId, PendingBatch::new);
+            batch.lock.lock();
+            try {
+                if (batch.closed) {
+                    continue; // Flushed concurrently - start a new batch
+                }
+
+                CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> future =
+                        new CompletableFuture<>();
+                batch.messages.add(message);
+                batch.futures.add(future);
+
+                if (batch.messages.size() == 1) {
+                    flushScheduler.schedule(() -> flush(batch), windowMs, TimeUnit.MILLISECONDS);
+                }
+                if (batch.messages.size() >= maxRequests) {
+                    close(batch);
+                    publish(batch);
+                }
+                return future;
+            } finally {
+                batch.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Publish whatever is still collecting, e.g. on shutdown.
+     */
+    @PreDestroy
+    public void flushAll() {
+        for (PendingBatch batch : openBatches.values()) {
+            flush(batch);
+        }
+        flushScheduler.shutdown();
+    }
+
+    private void flush(PendingBatch batch) {
+        batch.lock.lock();
+        try {
+            if (batch.closed) {
+                return; // Already published on reaching max-requests
+            }
+            close(batch);
+        } finally {
+            batch.lock.unlock();
+        }
+        publish(batch);
+    }
+
+    /**
+     * Stop accepting requests into a batch. Must hold the batch lock.
+     */
+    private void close(PendingBatch batch) {
+        batch.closed = true;
+        openBatches.remove(batch.skuId, batch);
+    }
+
+    private void publish(PendingBatch batch) {
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> sendFuture;
+        try {
+            sendFuture = kafkaTemplate.send(RESERVATION_REQUESTS_TOPIC, batch.skuId, batch.messages);
+        } catch (Exception e) {
+            sendFuture = CompletableFuture.failedFuture(e);
+        }
+
+        logger.debug("Publishing {} reservation requests for SKU {} in one record", batch.messages.size(), batch.skuId);
+
+        sendFuture.whenComplete((result, ex) -> {
+            for (CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> future : batch.futures) {
+                if (ex != null) {
+                    future.completeExceptionally(ex);
+                } else {
+                    future.complete(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Requests for one SKU collected within the current window.
+     */
+    private static class PendingBatch {
+        private final String skuId;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<ReservationRequestMessage> messages = new ArrayList<>();
+        private final List<CompletableFuture<SendResult<String, List<ReservationRequestMessage>>>> futures =
+                new ArrayList<>();
+        private boolean closed;
+
+        PendingBatch(String skuId) {
+            this.skuId = skuId;
+        }
+    }
+}
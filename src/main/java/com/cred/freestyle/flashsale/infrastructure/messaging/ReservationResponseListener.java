@@ -0,0 +1,83 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Kafka listener delivering reservation outcomes to callers waiting on this node.
+ *
+ * Every API node joins the reservation-responses topic with its own consumer group
+ * (random suffix, starting from the latest offset), so each node sees every outcome
+ * and completes the ones registered locally in ReservationOutcomeRegistry. Outcomes
+ * for requests submitted by other nodes are simply ignored. A batch outcome (e.g. every
+ * request a sold-out batch could not serve) completes each of its requests.
+ *
+ * @author Flash Sale Team
+ */
+@Service
+public class ReservationResponseListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationResponseListener.class);
+
+    private static final String RESERVATION_RESPONSES_TOPIC = "reservation-responses";
+
+    private final ReservationOutcomeRegistry outcomeRegistry;
+    private final CloudWatchMetricsService metricsService;
+    private final ObjectMapper objectMapper;
+
+    public ReservationResponseListener(
+            ReservationOutcomeRegistry outcomeRegistry,
+            CloudWatchMetricsService metricsService,
+            ObjectMapper objectMapper
+    ) {
+        this.outcomeRegistry = outcomeRegistry;
+        this.metricsService = metricsService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Kafka listener for reservation outcome messages.
+     *
+     * @param records Batch of outcome records
+     */
+    @KafkaListener(
+            topics = RESERVATION_RESPONSES_TOPIC,
+            groupId = "reservation-responses-${random.uuid}",
+            containerFactory = "reservationResponseListenerContainerFactory"
+    )
+    public void consumeReservationResponses(List<ConsumerRecord<String, String>> records) {
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+
+        int completed = 0;
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                ReservationResponseMessage response = objectMapper.readValue(
+                    record.value(),
+                    ReservationResponseMessage.class
+                );
+                if (response.isBatch()) {
+                    completed += outcomeRegistry.completeAll(response);
+                } else if (outcomeRegistry.complete(response)) {
+                    completed++;
+                }
+            } catch (JsonProcessingException e) {
+                logger.error("Failed to parse reservation response from partition {}, offset {}",
+                            record.partition(), record.offset(), e);
+                metricsService.recordError("MESSAGE_PARSE_ERROR", "consumeReservationResponses");
+            }
+        }
+
+        logger.debug("Delivered {} of {} reservation outcomes to local callers", completed, records.size());
+    }
+}
@@ -0,0 +1,189 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging.codec;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Binary wire format for reservation-requests records.
+ *
+ * Layout (version 1, big-endian):
+ * <pre>
+ * byte   magic (0xC5)
+ * byte   version (1)
+ * ushort request count (1..65535)
+ * per request:
+ *   long   timestamp, epoch millis (Long.MIN_VALUE if absent)
+ *   int    quantity
+ *   string requestId, userId, skuId, idempotencyKey
+ * string = ushort byte length (0xFFFF for null) + UTF-8 bytes
+ * </pre>
+ *
+ * The correlationId is not sent: it is always userId-skuId-timestamp and is rebuilt on decode.
+ * The leading magic byte never starts a JSON document, so decoders can tell binary records
+ * from JSON records published before the format switch.
+ *
+ * @author Flash Sale Team
+ */
+public final class ReservationRequestCodec {
+
+    public static final byte MAGIC = (byte) 0xC5;
+    public static final byte VERSION = 1;
+
+    private static final int HEADER_BYTES = 4; // magic + version + count
+    private static final int FIXED_REQUEST_BYTES = 8 + 4 + 4 * 2; // timestamp + quantity + 4 string lengths
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final int MAX_STRING_BYTES = 0xFFFE;
+    private static final int MAX_REQUESTS = 0xFFFF;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private ReservationRequestCodec() {
+    }
+
+    /**
+     * Check whether a record value uses the binary format.
+     *
+     * @param data Record value
+     * @return true if the value starts with the binary magic byte
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    /**
+     * Encode requests into one record value.
+     *
+     * @param messages Requests to encode (1..65535)
+     * @return Encoded bytes
+     * @throws SerializationException if a request is missing a required field
+     */
+    public static byte[] encode(List<ReservationRequestMessage> messages) {
+        if (messages == null || messages.isEmpty() || messages.size() > MAX_REQUESTS) {
+            throw new SerializationException("Reservation request record must carry 1.." + MAX_REQUESTS + " requests");
+        }
+
+        byte[][] strings = new byte[messages.size() * 4][];
+        int size = HEADER_BYTES;
+        for (int i = 0; i < messages.size(); i++) {
+            ReservationRequestMessage message = messages.get(i);
+            if (message.getRequestId() == null || message.getSkuId() == null || message.getQuantity() == null) {
+                throw new SerializationException("Reservation request is missing requestId, skuId or quantity");
+            }
+            strings[i * 4] = utf8(message.getRequestId());
+            strings[i * 4 + 1] = utf8(message.getUserId());
+            strings[i * 4 + 2] = utf8(message.getSkuId());
+            strings[i * 4 + 3] = utf8(message.getIdempotencyKey());
+
+            size += FIXED_REQUEST_BYTES;
+            for (int k = 0; k < 4; k++) {
+                size += strings[i * 4 + k] == null ? 0 : strings[i * 4 + k].length;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MAGIC).put(VERSION).putShort((short) messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            ReservationRequestMessage message = messages.get(i);
+            Instant timestamp = message.getTimestamp();
+            buffer.putLong(timestamp != null ? timestamp.toEpochMilli() : NO_TIMESTAMP);
+            buffer.putInt(message.getQuantity());
+            for (int k = 0; k < 4; k++) {
+                putString(buffer, strings[i * 4 + k]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decode a binary record value.
+     * Instances are taken from the supplier and overwritten field by field, so a caller
+     * may hand out recycled objects instead of allocating a new one per request.
+     *
+     * @param data Binary record value
+     * @param instances Supplier of message instances to fill
+     * @return Decoded requests, in publish order
+     * @throws SerializationException if the value is not a valid version 1 record
+     */
+    public static List<ReservationRequestMessage> decode(byte[] data, Supplier<ReservationRequestMessage> instances) {
+        if (data == null || data.length < HEADER_BYTES || data[0] != MAGIC) {
+            throw new SerializationException("Not a binary reservation request record");
+        }
+        if (data[1] != VERSION) {
+            throw new SerializationException("Unsupported reservation request format version: " + data[1]);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data, 2, data.length - 2);
+        int count = buffer.getShort() & 0xFFFF;
+        if (count == 0) {
+            throw new SerializationException("Reservation request record carries no requests");
+        }
+
+        List<ReservationRequestMessage> messages = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                ReservationRequestMessage message = instances.get();
+                long timestamp = buffer.getLong();
+                message.setQuantity(buffer.getInt());
+                message.setRequestId(getString(data, buffer));
+                message.setUserId(getString(data, buffer));
+                message.setSkuId(getString(data, buffer));
+                message.setIdempotencyKey(getString(data, buffer));
+                if (timestamp == NO_TIMESTAMP) {
+                    message.setTimestamp(null);
+                    message.setCorrelationId(null);
+                } else {
+                    message.setTimestamp(Instant.ofEpochMilli(timestamp));
+                    message.setCorrelationId(message.getUserId() + "-" + message.getSkuId() + "-" + timestamp);
+                }
+                messages.add(message);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated reservation request record", e);
+        }
+
+        if (buffer.hasRemaining()) {
+            throw new SerializationException("Unexpected trailing bytes in reservation request record");
+        }
+        return messages;
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new SerializationException("Reservation request field exceeds " + MAX_STRING_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_LENGTH);
+            return;
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(byte[] data, ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int position = buffer.position();
+        buffer.position(position + length);
+        return new String(data, position, length, StandardCharsets.UTF_8);
+    }
+}
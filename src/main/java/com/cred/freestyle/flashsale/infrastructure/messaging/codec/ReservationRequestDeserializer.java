@@ -0,0 +1,100 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging.codec;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Kafka deserializer for reservation-requests records.
+ *
+ * Decodes the binary format (see ReservationRequestCodec) and falls back to JSON for
+ * records published before the format switch: a single ReservationRequestMessage object
+ * or a JSON array of them.
+ *
+ * Besides the Kafka Deserializer contract (fresh objects per call), deserializeReusing
+ * fills recycled message instances. It is not thread-safe: use one instance per consumer
+ * thread and call recycle() once the previous poll's messages are no longer referenced.
+ *
+ * @author Flash Sale Team
+ */
+public class ReservationRequestDeserializer implements Deserializer<List<ReservationRequestMessage>> {
+
+    private final ObjectMapper objectMapper;
+
+    // Recycled instances for deserializeReusing, handed out in order until recycle()
+    private final List<ReservationRequestMessage> pool = new ArrayList<>();
+    private int pooled;
+
+    public ReservationRequestDeserializer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public List<ReservationRequestMessage> deserialize(String topic, byte[] data) {
+        return decode(data, ReservationRequestMessage::new);
+    }
+
+    /**
+     * Deserialize into recycled message instances.
+     * Returned messages stay valid until the next call to recycle().
+     *
+     * @param data Record value
+     * @return Decoded requests, in publish order
+     * @throws SerializationException if the value cannot be decoded
+     */
+    public List<ReservationRequestMessage> deserializeReusing(byte[] data) {
+        return decode(data, this::nextPooled);
+    }
+
+    /**
+     * Make every instance handed out by deserializeReusing available again.
+     */
+    public void recycle() {
+        pooled = 0;
+    }
+
+    private List<ReservationRequestMessage> decode(byte[] data, Supplier<ReservationRequestMessage> instances) {
+        if (data == null || data.length == 0) {
+            return Collections.emptyList();
+        }
+        if (ReservationRequestCodec.isBinary(data)) {
+            return ReservationRequestCodec.decode(data, instances);
+        }
+        return decodeJson(data);
+    }
+
+    private List<ReservationRequestMessage> decodeJson(byte[] data) {
+        try {
+            if (firstNonWhitespace(data) == '[') {
+                return Arrays.asList(objectMapper.readValue(data, ReservationRequestMessage[].class));
+            }
+            return Collections.singletonList(objectMapper.readValue(data, ReservationRequestMessage.class));
+        } catch (IOException e) {
+            throw new SerializationException("Invalid JSON reservation request record", e);
+        }
+    }
+
+    private ReservationRequestMessage nextPooled() {
+        if (pooled == pool.size()) {
+            pool.add(new ReservationRequestMessage());
+        }
+        return pool.get(pooled++);
+    }
+
+    private static byte firstNonWhitespace(byte[] data) {
+        for (byte b : data) {
+            if (!Character.isWhitespace(b)) {
+                return b;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,46 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging.codec;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Kafka serializer for reservation-requests records (binary format, see ReservationRequestCodec).
+ *
+ * A record carries one or more requests for a single SKU. Routing metadata is copied
+ * into headers so tooling and consumers can route or filter without
+ * decoding the value: the SKU once, and one idempotency key header per request.
+ *
+ * @author Flash Sale Team
+ */
+public class ReservationRequestSerializer implements Serializer<List<ReservationRequestMessage>> {
+
+    public static final String SKU_HEADER = "flashsale-sku-id";
+    public static final String IDEMPOTENCY_KEY_HEADER = "flashsale-idempotency-key";
+
+    @Override
+    public byte[] serialize(String topic, List<ReservationRequestMessage> data) {
+        return data == null ? null : ReservationRequestCodec.encode(data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, List<ReservationRequestMessage> data) {
+        if (data == null) {
+            return null;
+        }
+
+        byte[] value = ReservationRequestCodec.encode(data);
+        if (headers != null) {
+            headers.add(SKU_HEADER, data.get(0).getSkuId().getBytes(StandardCharsets.UTF_8));
+            for (ReservationRequestMessage message : data) {
+                if (message.getIdempotencyKey() != null) {
+                    headers.add(IDEMPOTENCY_KEY_HEADER, message.getIdempotencyKey().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return value;
+    }
+}
@@ -1,11 +1,18 @@
 package com.cred.freestyle.flashsale.infrastructure.messaging.events;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Response message for reservation requests processed by the Kafka consumer.
  * Used to communicate the result of batch processing back to waiting clients.
  *
+ * Normally one message per request. A SKU batch that runs out of stock publishes a single
+ * batch outcome instead, carrying the IDs of every request it could not serve.
+ *
  * @author Flash Sale Team
  */
 public class ReservationResponseMessage {
@@ -16,6 +23,8 @@ public class ReservationResponseMessage {
     private String errorMessage; // Null if successful
     private Instant expiresAt; // Null if reservation failed
     private Instant processedAt;
+    private String skuId; // Batch outcomes only
+    private List<String> requestIds; // Batch outcomes only - requestId is null then
 
     /**
      * Default constructor for deserialization.
@@ -56,6 +65,43 @@ public class ReservationResponseMessage {
         return response;
     }
 
+    /**
+     * Constructor for one failure outcome shared by several requests of a SKU batch.
+     *
+     * @param skuId Product SKU ID
+     * @param requestIds Original request IDs
+     * @param status Failure status
+     * @param errorMessage Error message
+     */
+    public static ReservationResponseMessage batchFailure(String skuId, List<String> requestIds,
+                                                          ResponseStatus status, String errorMessage) {
+        ReservationResponseMessage response = failure(null, status, errorMessage);
+        response.skuId = skuId;
+        response.requestIds = requestIds;
+        return response;
+    }
+
+    /**
+     * Whether this message carries the outcome of several requests.
+     */
+    @JsonIgnore
+    public boolean isBatch() {
+        return requestIds != null;
+    }
+
+    /**
+     * Split a batch outcome into one outcome per request.
+     */
+    public List<ReservationResponseMessage> expand() {
+        List<ReservationResponseMessage> responses = new ArrayList<>(requestIds.size());
+        for (String id : requestIds) {
+            ReservationResponseMessage response = failure(id, status, errorMessage);
+            response.processedAt = processedAt;
+            responses.add(response);
+        }
+        return responses;
+    }
+
     // Getters and setters
     public String getRequestId() {
         return requestId;
@@ -105,6 +151,22 @@ public class ReservationResponseMessage {
         this.processedAt = processedAt;
     }
 
+    public String getSkuId() {
+        return skuId;
+    }
+
+    public void setSkuId(String skuId) {
+        this.skuId = skuId;
+    }
+
+    public List<String> getRequestIds() {
+        return requestIds;
+    }
+
+    public void setRequestIds(List<String> requestIds) {
+        this.requestIds = requestIds;
+    }
+
     /**
      * Response status enum.
      */
@@ -127,6 +189,7 @@ public class ReservationResponseMessage {
                 ", errorMessage='" + errorMessage + '\'' +
                 ", expiresAt=" + expiresAt +
                 ", processedAt=" + processedAt +
+                (requestIds != null ? ", skuId='" + skuId + '\'' + ", requests=" + requestIds.size() : "") +
                 '}';
     }
 }
@@ -1,13 +1,19 @@
 package com.cred.freestyle.flashsale.infrastructure.metrics;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * CloudWatch metrics service for monitoring and observability.
@@ -20,6 +26,16 @@ import java.util.concurrent.TimeUnit;
  * - Error rates
  * - Cache hit/miss rates
  *
+ * Meters are resolved once per tag value and cached (MeterTable), so recording is a map
+ * lookup and an increment, with no builder or registry lookup. The sku_id tag is capped:
+ * the first max-sku-tags SKUs seen keep their own tag, later ones are folded into "other",
+ * so a sale over a long tail of SKUs cannot grow the number of CloudWatch metrics without limit.
+ *
+ * Point-in-time values (inventory, batch size, allocation rate, lag, queue depth) are live
+ * gauges over mutable state (GaugeTable): recording overwrites the state, and the registry
+ * samples the latest value on every publish. SKUs folded into "other" share one state,
+ * which reports the last value recorded for any of them.
+ *
  * @author Flash Sale Team
  */
 @Service
@@ -36,8 +52,90 @@ public class CloudWatchMetricsService {
     private static final String CACHE_PREFIX = METRIC_PREFIX + "cache.";
     private static final String ORDER_PREFIX = METRIC_PREFIX + "order.";
 
+    // sku_id tag of the SKUs beyond the tag limit
+    static final String OTHER_SKU = "other";
+
+    @Value("${flashsale.metrics.max-sku-tags:100}")
+    private int maxSkuTags = 100;
+
+    // SKUs with their own sku_id tag; once full, every other SKU is tagged OTHER_SKU
+    private final Set<String> taggedSkus = ConcurrentHashMap.newKeySet();
+    private volatile boolean skuTagsFull;
+
+    // Tagged meters, resolved on first use of each tag value
+    private final MeterTable<Counter> reservationSuccess = counters(RESERVATION_PREFIX + "success",
+            "Successful reservation creations", "sku_id");
+    private final MeterTable<Counter> reservationFailure = counters(RESERVATION_PREFIX + "failure",
+            "Failed reservation attempts", "sku_id", "reason");
+    private final MeterTable<Counter> reservationExpired = counters(RESERVATION_PREFIX + "expired",
+            "Expired reservations", "sku_id");
+    private final MeterTable<Counter> reservationConfirmed = counters(RESERVATION_PREFIX + "confirmed",
+            "Confirmed reservations", "sku_id");
+    private final MeterTable<Counter> reservationCancelled = counters(RESERVATION_PREFIX + "cancelled",
+            "Cancelled reservations", "sku_id");
+    private final MeterTable<Counter> inventoryStockOut = counters(INVENTORY_PREFIX + "stockout",
+            "Product stock out events", "sku_id");
+    private final MeterTable<Counter> inventoryOversell = counters(INVENTORY_PREFIX + "oversell",
+            "CRITICAL: Inventory oversell detected", "sku_id");
+    private final MeterTable<Counter> cacheHit = counters(CACHE_PREFIX + "hit", "Cache hits", "cache_type");
+    private final MeterTable<Counter> cacheMiss = counters(CACHE_PREFIX + "miss", "Cache misses", "cache_type");
+    private final MeterTable<Counter> orderSuccess = counters(ORDER_PREFIX + "success",
+            "Successful order creations", "sku_id");
+    private final MeterTable<Counter> orderFailure = counters(ORDER_PREFIX + "failure",
+            "Failed order creations", "sku_id", "reason");
+    private final MeterTable<Counter> revenue = counters(METRIC_PREFIX + "revenue", "Revenue from sales", "sku_id");
+    private final MeterTable<Counter> errors = counters(METRIC_PREFIX + "error", "System errors",
+            "error_type", "operation");
+    private final MeterTable<Counter> deadLetters = counters(METRIC_PREFIX + "consumer.dead_letter",
+            "Reservation request records sent to the dead-letter topic", "partition", "reason");
+    private final MeterTable<Counter> batchProcessed = counters(METRIC_PREFIX + "batch.processed",
+            "Batches processed", "sku_id");
+    private final MeterTable<Counter> batchAllocated = counters(METRIC_PREFIX + "batch.allocated",
+            "Successful allocations from batch", "sku_id");
+    private final MeterTable<Counter> batchRejected = counters(METRIC_PREFIX + "batch.rejected",
+            "Rejected requests from batch", "sku_id");
+    private final MeterTable<Timer> batchLatency = timers("sku_id", () ->
+            percentileTimer(METRIC_PREFIX + "batch.latency", "Batch processing latency"));
+    private final MeterTable<Timer> batchStageLatency = timers("sku_id", "stage", () ->
+            percentileTimer(METRIC_PREFIX + "batch.stage.latency", "SKU batch latency per processing stage"));
+    private final MeterTable<Timer> databaseLatency = timers("query_type", () ->
+            Timer.builder(METRIC_PREFIX + "database.latency").description("Database query latency"));
+    private final MeterTable<Timer> kafkaPublishLatency = timers("topic", () ->
+            Timer.builder(METRIC_PREFIX + "kafka.publish.latency").description("Kafka publish latency"));
+
+    private final Timer reservationLatency;
+    private final Timer checkoutLatency;
+    private final Timer endToEndLatency;
+
+    // Live gauges, sampled from their state on every publish
+    private final GaugeTable<String> inventoryAvailable;
+    private final GaugeTable<String> concurrentRequests;
+    private final GaugeTable<String> batchSize;
+    private final GaugeTable<String> batchAllocationRate;
+    private final GaugeTable<String> queueDepth;
+    private final GaugeTable<Integer> consumerLag;
+
     public CloudWatchMetricsService(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
+        this.inventoryAvailable = GaugeTable.longs(meterRegistry, INVENTORY_PREFIX + "available",
+                "Available inventory", "sku_id");
+        this.concurrentRequests = GaugeTable.longs(meterRegistry, METRIC_PREFIX + "concurrent.requests",
+                "Concurrent requests for a product", "sku_id");
+        this.batchSize = GaugeTable.longs(meterRegistry, METRIC_PREFIX + "batch.size",
+                "Requests in the last batch processed", "sku_id");
+        this.batchAllocationRate = GaugeTable.doubles(meterRegistry, METRIC_PREFIX + "batch.allocation.rate",
+                "Share of the last batch's requests allocated", "sku_id");
+        this.queueDepth = GaugeTable.longs(meterRegistry, METRIC_PREFIX + "queue.depth",
+                "Pending requests for a product", "sku_id");
+        this.consumerLag = GaugeTable.longs(meterRegistry, METRIC_PREFIX + "kafka.consumer.lag",
+                "Messages behind on reservation-requests", "partition");
+        this.reservationLatency = percentileTimer(RESERVATION_PREFIX + "latency", "Reservation API latency")
+                .register(meterRegistry);
+        this.checkoutLatency = percentileTimer(ORDER_PREFIX + "checkout.latency", "Checkout API latency")
+                .register(meterRegistry);
+        this.endToEndLatency = percentileTimer(RESERVATION_PREFIX + "e2e.latency",
+                "End-to-end reservation latency (API to Kafka to DB)")
+                .register(meterRegistry);
     }
 
     /**
@@ -46,12 +144,20 @@ public class CloudWatchMetricsService {
      * @param skuId Product SKU ID
      */
     public void recordReservationSuccess(String skuId) {
-        Counter.builder(RESERVATION_PREFIX + "success")
-                .tag("sku_id", skuId)
-                .description("Successful reservation creations")
-                .register(meterRegistry)
-                .increment();
-        logger.debug("Recorded reservation success for SKU: {}", skuId);
+        recordReservationSuccess(skuId, 1);
+    }
+
+    /**
+     * Record the successful reservation creations of a batch in one increment.
+     *
+     * @param skuId Product SKU ID
+     * @param count Reservations created
+     */
+    public void recordReservationSuccess(String skuId, int count) {
+        reservationSuccess.get(skuTag(skuId)).increment(count);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded {} reservation successes for SKU: {}", count, skuId);
+        }
     }
 
     /**
@@ -61,12 +167,7 @@ public class CloudWatchMetricsService {
      * @param reason Failure reason (e.g., "OUT_OF_STOCK", "USER_LIMIT_EXCEEDED")
      */
     public void recordReservationFailure(String skuId, String reason) {
-        Counter.builder(RESERVATION_PREFIX + "failure")
-                .tag("sku_id", skuId)
-                .tag("reason", reason)
-                .description("Failed reservation attempts")
-                .register(meterRegistry)
-                .increment();
+        reservationFailure.get(skuTag(skuId), reason).increment();
         logger.debug("Recorded reservation failure for SKU: {}, reason: {}", skuId, reason);
     }
 
@@ -76,11 +177,7 @@ public class CloudWatchMetricsService {
      * @param skuId Product SKU ID
      */
     public void recordReservationExpiry(String skuId) {
-        Counter.builder(RESERVATION_PREFIX + "expired")
-                .tag("sku_id", skuId)
-                .description("Expired reservations")
-                .register(meterRegistry)
-                .increment();
+        reservationExpired.get(skuTag(skuId)).increment();
         logger.debug("Recorded reservation expiry for SKU: {}", skuId);
     }
 
@@ -90,11 +187,7 @@ public class CloudWatchMetricsService {
      * @param skuId Product SKU ID
      */
     public void recordReservationConfirmation(String skuId) {
-        Counter.builder(RESERVATION_PREFIX + "confirmed")
-                .tag("sku_id", skuId)
-                .description("Confirmed reservations")
-                .register(meterRegistry)
-                .increment();
+        reservationConfirmed.get(skuTag(skuId)).increment();
         logger.debug("Recorded reservation confirmation for SKU: {}", skuId);
     }
 
@@ -104,11 +197,7 @@ public class CloudWatchMetricsService {
      * @param skuId Product SKU ID
      */
     public void recordReservationCancellation(String skuId) {
-        Counter.builder(RESERVATION_PREFIX + "cancelled")
-                .tag("sku_id", skuId)
-                .description("Cancelled reservations")
-                .register(meterRegistry)
-                .increment();
+        reservationCancelled.get(skuTag(skuId)).increment();
         logger.debug("Recorded reservation cancellation for SKU: {}", skuId);
     }
 
@@ -118,11 +207,7 @@ public class CloudWatchMetricsService {
      * @param skuId Product SKU ID
      */
     public void recordInventoryStockOut(String skuId) {
-        Counter.builder(INVENTORY_PREFIX + "stockout")
-                .tag("sku_id", skuId)
-                .description("Product stock out events")
-                .register(meterRegistry)
-                .increment();
+        inventoryStockOut.get(skuTag(skuId)).increment();
         logger.info("Recorded inventory stock out for SKU: {}", skuId);
     }
 
@@ -133,9 +218,10 @@ public class CloudWatchMetricsService {
      * @param availableCount Available inventory count
      */
     public void recordInventoryLevel(String skuId, Integer availableCount) {
-        meterRegistry.gauge(INVENTORY_PREFIX + "available",
-                io.micrometer.core.instrument.Tags.of("sku_id", skuId),
-                availableCount);
+        if (availableCount == null) {
+            return;
+        }
+        inventoryAvailable.set(skuTag(skuId), availableCount.longValue());
         logger.debug("Recorded inventory level for SKU: {}, count: {}", skuId, availableCount);
     }
 
@@ -145,11 +231,7 @@ public class CloudWatchMetricsService {
      * @param cacheType Type of cache (e.g., "stock", "product", "user_limit")
      */
     public void recordCacheHit(String cacheType) {
-        Counter.builder(CACHE_PREFIX + "hit")
-                .tag("cache_type", cacheType)
-                .description("Cache hits")
-                .register(meterRegistry)
-                .increment();
+        cacheHit.get(cacheType).increment();
     }
 
     /**
@@ -158,11 +240,7 @@ public class CloudWatchMetricsService {
      * @param cacheType Type of cache
      */
     public void recordCacheMiss(String cacheType) {
-        Counter.builder(CACHE_PREFIX + "miss")
-                .tag("cache_type", cacheType)
-                .description("Cache misses")
-                .register(meterRegistry)
-                .increment();
+        cacheMiss.get(cacheType).increment();
     }
 
     /**
@@ -171,11 +249,7 @@ public class CloudWatchMetricsService {
      * @param durationMs Duration in milliseconds
      */
     public void recordReservationLatency(long durationMs) {
-        Timer.builder(RESERVATION_PREFIX + "latency")
-                .description("Reservation API latency")
-                .publishPercentiles(0.5, 0.95, 0.99)
-                .register(meterRegistry)
-                .record(durationMs, TimeUnit.MILLISECONDS);
+        reservationLatency.record(durationMs, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -184,11 +258,7 @@ public class CloudWatchMetricsService {
      * @param durationMs Duration in milliseconds
      */
     public void recordCheckoutLatency(long durationMs) {
-        Timer.builder(ORDER_PREFIX + "checkout.latency")
-                .description("Checkout API latency")
-                .publishPercentiles(0.5, 0.95, 0.99)
-                .register(meterRegistry)
-                .record(durationMs, TimeUnit.MILLISECONDS);
+        checkoutLatency.record(durationMs, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -197,11 +267,7 @@ public class CloudWatchMetricsService {
      * @param skuId Product SKU ID
      */
     public void recordOrderSuccess(String skuId) {
-        Counter.builder(ORDER_PREFIX + "success")
-                .tag("sku_id", skuId)
-                .description("Successful order creations")
-                .register(meterRegistry)
-                .increment();
+        orderSuccess.get(skuTag(skuId)).increment();
         logger.debug("Recorded order success for SKU: {}", skuId);
     }
 
@@ -212,12 +278,7 @@ public class CloudWatchMetricsService {
      * @param reason Failure reason
      */
     public void recordOrderFailure(String skuId, String reason) {
-        Counter.builder(ORDER_PREFIX + "failure")
-                .tag("sku_id", skuId)
-                .tag("reason", reason)
-                .description("Failed order creations")
-                .register(meterRegistry)
-                .increment();
+        orderFailure.get(skuTag(skuId), reason).increment();
         logger.debug("Recorded order failure for SKU: {}, reason: {}", skuId, reason);
     }
 
@@ -228,11 +289,7 @@ public class CloudWatchMetricsService {
      * @param durationMs Duration in milliseconds
      */
     public void recordDatabaseLatency(String queryType, long durationMs) {
-        Timer.builder(METRIC_PREFIX + "database.latency")
-                .tag("query_type", queryType)
-                .description("Database query latency")
-                .register(meterRegistry)
-                .record(durationMs, TimeUnit.MILLISECONDS);
+        databaseLatency.get(queryType).record(durationMs, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -242,11 +299,7 @@ public class CloudWatchMetricsService {
      * @param durationMs Duration in milliseconds
      */
     public void recordKafkaPublishLatency(String topic, long durationMs) {
-        Timer.builder(METRIC_PREFIX + "kafka.publish.latency")
-                .tag("topic", topic)
-                .description("Kafka publish latency")
-                .register(meterRegistry)
-                .record(durationMs, TimeUnit.MILLISECONDS);
+        kafkaPublishLatency.get(topic).record(durationMs, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -257,10 +310,10 @@ public class CloudWatchMetricsService {
      * @param concurrentRequests Number of concurrent requests
      */
     public void recordConcurrentRequests(String skuId, int concurrentRequests) {
-        meterRegistry.gauge(METRIC_PREFIX + "concurrent.requests",
-                io.micrometer.core.instrument.Tags.of("sku_id", skuId),
-                concurrentRequests);
-        logger.debug("Recorded concurrent requests for SKU: {}, count: {}", skuId, concurrentRequests);
+        this.concurrentRequests.set(skuTag(skuId), concurrentRequests);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded concurrent requests for SKU: {}, count: {}", skuId, concurrentRequests);
+        }
     }
 
     /**
@@ -270,11 +323,7 @@ public class CloudWatchMetricsService {
      * @param amount Sale amount
      */
     public void recordRevenue(String skuId, Double amount) {
-        Counter.builder(METRIC_PREFIX + "revenue")
-                .tag("sku_id", skuId)
-                .description("Revenue from sales")
-                .register(meterRegistry)
-                .increment(amount);
+        revenue.get(skuTag(skuId)).increment(amount);
         logger.debug("Recorded revenue for SKU: {}, amount: {}", skuId, amount);
     }
 
@@ -285,15 +334,20 @@ public class CloudWatchMetricsService {
      * @param operation Operation where error occurred
      */
     public void recordError(String errorType, String operation) {
-        Counter.builder(METRIC_PREFIX + "error")
-                .tag("error_type", errorType)
-                .tag("operation", operation)
-                .description("System errors")
-                .register(meterRegistry)
-                .increment();
+        errors.get(errorType, operation).increment();
         logger.warn("Recorded error: type={}, operation={}", errorType, operation);
     }
 
+    /**
+     * Record a reservation-requests record sent to the dead-letter topic.
+     *
+     * @param partition Partition the record was consumed from
+     * @param reason Why it was dead-lettered (e.g., UNDECODABLE, PROCESSING_FAILED)
+     */
+    public void recordDeadLetter(int partition, String reason) {
+        deadLetters.get(String.valueOf(partition), reason).increment();
+    }
+
     /**
      * Record batch processing metrics.
      *
@@ -302,37 +356,137 @@ public class CloudWatchMetricsService {
      * @param durationMs Processing duration in milliseconds
      */
     public void recordBatchProcessing(String skuId, int batchSize, long durationMs) {
-        Counter.builder(METRIC_PREFIX + "batch.processed")
-                .tag("sku_id", skuId)
-                .description("Batches processed")
-                .register(meterRegistry)
-                .increment();
+        String skuTag = skuTag(skuId);
+        batchProcessed.get(skuTag).increment();
 
-        meterRegistry.gauge(METRIC_PREFIX + "batch.size",
-                io.micrometer.core.instrument.Tags.of("sku_id", skuId),
-                batchSize);
+        this.batchSize.set(skuTag, batchSize);
+        batchLatency.get(skuTag).record(durationMs, TimeUnit.MILLISECONDS);
 
-        Timer.builder(METRIC_PREFIX + "batch.latency")
-                .tag("sku_id", skuId)
-                .description("Batch processing latency")
-                .publishPercentiles(0.5, 0.95, 0.99)
-                .register(meterRegistry)
-                .record(durationMs, TimeUnit.MILLISECONDS);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded batch processing for SKU: {}, size: {}, duration: {}ms",
+                        skuId, batchSize, durationMs);
+        }
+    }
 
-        logger.debug("Recorded batch processing for SKU: {}, size: {}, duration: {}ms", skuId, batchSize, durationMs);
+    /**
+     * Record the latency of one stage of a SKU batch (queue, validate, allocate, persist, publish).
+     *
+     * @param skuId Product SKU ID
+     * @param stage Processing stage
+     * @param durationMs Stage duration in milliseconds
+     */
+    public void recordBatchStageLatency(String skuId, String stage, long durationMs) {
+        batchStageLatency.get(skuTag(skuId), stage).record(durationMs, TimeUnit.MILLISECONDS);
     }
 
     /**
      * Record Kafka consumer lag.
+     * Same gauge as registerConsumerLagGauge: for a partition whose gauge the lag tracker
+     * registered, the tracker's sampled lag is reported.
      *
      * @param partition Partition number
      * @param lag Number of messages behind
      */
     public void recordConsumerLag(int partition, long lag) {
-        meterRegistry.gauge(METRIC_PREFIX + "kafka.consumer.lag",
-                io.micrometer.core.instrument.Tags.of("partition", String.valueOf(partition)),
-                lag);
-        logger.debug("Recorded consumer lag for partition {}: {}", partition, lag);
+        consumerLag.set(partition, lag);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded consumer lag for partition {}: {}", partition, lag);
+        }
+    }
+
+    /**
+     * Register a live consumer lag gauge for a partition, sampled from the supplier
+     * on every registry scrape.
+     *
+     * @param partition Partition number
+     * @param lag Supplier of the partition's current lag
+     */
+    public void registerConsumerLagGauge(int partition, Supplier<Number> lag) {
+        Gauge.builder(METRIC_PREFIX + "kafka.consumer.lag", lag)
+                .tag("partition", String.valueOf(partition))
+                .description("Messages behind on reservation-requests")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register a live consumer lag gauge for a SKU (the lag of the partition the SKU hashes to).
+     *
+     * @param skuId Product SKU ID
+     * @param lag Supplier of the SKU's current lag
+     */
+    public void registerSkuLagGauge(String skuId, Supplier<Number> lag) {
+        Gauge.builder(METRIC_PREFIX + "kafka.consumer.sku.lag", lag)
+                .tag("sku_id", skuId)
+                .description("Messages behind on the SKU's reservation-requests partition")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register live gauges for the batch consumer's idempotency windows, summed over
+     * the partitions it currently owns.
+     *
+     * @param keys Supplier of the number of keys remembered
+     * @param bytes Supplier of the heap used by the windows
+     */
+    public void registerIdempotencyWindowGauges(Supplier<Number> keys, Supplier<Number> bytes) {
+        Gauge.builder(METRIC_PREFIX + "idempotency.window.keys", keys)
+                .description("Idempotency keys remembered by the batch consumer")
+                .strongReference(true)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "idempotency.window.bytes", bytes)
+                .description("Heap used by the batch consumer's idempotency windows")
+                .baseUnit("bytes")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register the occupancy gauge of a batch pipeline stage.
+     *
+     * @param stage Pipeline stage
+     * @param occupancy Batches waiting for or running in the stage
+     */
+    public void registerPipelineStageGauge(String stage, Supplier<Number> occupancy) {
+        Gauge.builder(METRIC_PREFIX + "pipeline.stage.occupancy", occupancy)
+                .tag("stage", stage)
+                .description("Batches waiting for or running in a batch pipeline stage")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register the gauge of batch outcomes waiting to be written to Redis.
+     *
+     * @param backlog Outcome writes queued or waiting for a retry
+     */
+    public void registerOutcomeCacheBacklogGauge(Supplier<Number> backlog) {
+        Gauge.builder(METRIC_PREFIX + "consumer.outcome_cache.backlog", backlog)
+                .description("Batch outcome writes queued for Redis or waiting for a retry")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register the gauges of the adaptive batch controller's decisions for a partition.
+     *
+     * @param partition Partition of the reservation-requests topic
+     * @param batchSize Records per batch the consumer currently processes
+     * @param lingerMs Milliseconds the partition is paused after an underfilled poll
+     */
+    public void registerAdaptiveBatchGauges(int partition, Supplier<Number> batchSize, Supplier<Number> lingerMs) {
+        Gauge.builder(METRIC_PREFIX + "consumer.batch.size.target", batchSize)
+                .tag("partition", String.valueOf(partition))
+                .description("Records per batch chosen by the adaptive batch controller")
+                .strongReference(true)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "consumer.linger", lingerMs)
+                .tag("partition", String.valueOf(partition))
+                .description("Linger after an underfilled poll chosen by the adaptive batch controller")
+                .baseUnit("milliseconds")
+                .strongReference(true)
+                .register(meterRegistry);
     }
 
     /**
@@ -342,10 +496,10 @@ public class CloudWatchMetricsService {
      * @param queueDepth Number of pending requests
      */
     public void recordQueueDepth(String skuId, int queueDepth) {
-        meterRegistry.gauge(METRIC_PREFIX + "queue.depth",
-                io.micrometer.core.instrument.Tags.of("sku_id", skuId),
-                queueDepth);
-        logger.debug("Recorded queue depth for SKU: {}, depth: {}", skuId, queueDepth);
+        this.queueDepth.set(skuTag(skuId), queueDepth);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded queue depth for SKU: {}, depth: {}", skuId, queueDepth);
+        }
     }
 
     /**
@@ -358,24 +512,15 @@ public class CloudWatchMetricsService {
     public void recordBatchAllocationRate(String skuId, int successfulAllocations, int totalRequests) {
         double allocationRate = totalRequests > 0 ? (double) successfulAllocations / totalRequests : 0.0;
 
-        meterRegistry.gauge(METRIC_PREFIX + "batch.allocation.rate",
-                io.micrometer.core.instrument.Tags.of("sku_id", skuId),
-                allocationRate);
-
-        Counter.builder(METRIC_PREFIX + "batch.allocated")
-                .tag("sku_id", skuId)
-                .description("Successful allocations from batch")
-                .register(meterRegistry)
-                .increment(successfulAllocations);
+        String skuTag = skuTag(skuId);
+        batchAllocationRate.set(skuTag, allocationRate);
+        batchAllocated.get(skuTag).increment(successfulAllocations);
+        batchRejected.get(skuTag).increment(totalRequests - successfulAllocations);
 
-        Counter.builder(METRIC_PREFIX + "batch.rejected")
-                .tag("sku_id", skuId)
-                .description("Rejected requests from batch")
-                .register(meterRegistry)
-                .increment(totalRequests - successfulAllocations);
-
-        logger.debug("Recorded batch allocation rate for SKU: {}, rate: {}, allocated: {}/{}",
-                     skuId, allocationRate, successfulAllocations, totalRequests);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Recorded batch allocation rate for SKU: {}, rate: {}, allocated: {}/{}",
+                         skuId, allocationRate, successfulAllocations, totalRequests);
+        }
     }
 
     /**
@@ -384,11 +529,7 @@ public class CloudWatchMetricsService {
      * @param durationMs Duration in milliseconds
      */
     public void recordEndToEndLatency(long durationMs) {
-        Timer.builder(RESERVATION_PREFIX + "e2e.latency")
-                .description("End-to-end reservation latency (API to Kafka to DB)")
-                .publishPercentiles(0.5, 0.95, 0.99)
-                .register(meterRegistry)
-                .record(durationMs, TimeUnit.MILLISECONDS);
+        endToEndLatency.record(durationMs, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -398,11 +539,60 @@ public class CloudWatchMetricsService {
      * @param oversellCount Number of oversold units
      */
     public void recordOversell(String skuId, int oversellCount) {
-        Counter.builder(INVENTORY_PREFIX + "oversell")
-                .tag("sku_id", skuId)
-                .description("CRITICAL: Inventory oversell detected")
-                .register(meterRegistry)
-                .increment(oversellCount);
+        inventoryOversell.get(skuTag(skuId)).increment(oversellCount);
         logger.error("CRITICAL: Recorded oversell for SKU: {}, count: {}", skuId, oversellCount);
     }
+
+    /**
+     * sku_id tag value for a SKU: the SKU itself while fewer than max-sku-tags SKUs are
+     * tagged (or it already is), OTHER_SKU after that.
+     */
+    String skuTag(String skuId) {
+        if (taggedSkus.contains(skuId)) {
+            return skuId;
+        }
+        return skuTagsFull ? OTHER_SKU : admitSkuTag(skuId);
+    }
+
+    private synchronized String admitSkuTag(String skuId) {
+        if (taggedSkus.contains(skuId)) {
+            return skuId;
+        }
+        if (taggedSkus.size() >= maxSkuTags) {
+            skuTagsFull = true;
+            logger.warn("SKU tag limit of {} reached, further SKUs are recorded as \"{}\"", maxSkuTags, OTHER_SKU);
+            return OTHER_SKU;
+        }
+        taggedSkus.add(skuId);
+        return skuId;
+    }
+
+    private MeterTable<Counter> counters(String name, String description, String tagKey) {
+        return MeterTable.of(tagKey, tags -> counter(name, description, tags));
+    }
+
+    private MeterTable<Counter> counters(String name, String description, String firstTagKey, String secondTagKey) {
+        return MeterTable.of(firstTagKey, secondTagKey, tags -> counter(name, description, tags));
+    }
+
+    private Counter counter(String name, String description, Tags tags) {
+        return Counter.builder(name)
+                .tags(tags)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    private MeterTable<Timer> timers(String tagKey, Supplier<Timer.Builder> builder) {
+        return MeterTable.of(tagKey, tags -> builder.get().tags(tags).register(meterRegistry));
+    }
+
+    private MeterTable<Timer> timers(String firstTagKey, String secondTagKey, Supplier<Timer.Builder> builder) {
+        return MeterTable.of(firstTagKey, secondTagKey, tags -> builder.get().tags(tags).register(meterRegistry));
+    }
+
+    private static Timer.Builder percentileTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(0.5, 0.95, 0.99);
+    }
 }
@@ -0,0 +1,83 @@
+package com.cred.freestyle.flashsale.infrastructure.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Live gauges of one metric name, one mutable state holder per tag value.
+ *
+ * The gauge is registered (strongly referenced) the first time a tag value is set, bound
+ * to its AtomicLong; after that, setting a value is a map lookup and an atomic write, and
+ * the registry samples the latest value on every publish. Double-valued tables keep the
+ * raw bits of the double in the AtomicLong.
+ *
+ * @param <K> Tag value type (SKU ID, partition)
+ * @author Flash Sale Team
+ */
+final class GaugeTable<K> {
+
+    private final MeterRegistry registry;
+    private final String name;
+    private final String description;
+    private final String tagKey;
+    private final boolean doubleValued;
+
+    private final Map<K, AtomicLong> states = new ConcurrentHashMap<>();
+
+    private GaugeTable(MeterRegistry registry, String name, String description, String tagKey,
+                       boolean doubleValued) {
+        this.registry = registry;
+        this.name = name;
+        this.description = description;
+        this.tagKey = tagKey;
+        this.doubleValued = doubleValued;
+    }
+
+    static <K> GaugeTable<K> longs(MeterRegistry registry, String name, String description, String tagKey) {
+        return new GaugeTable<>(registry, name, description, tagKey, false);
+    }
+
+    static <K> GaugeTable<K> doubles(MeterRegistry registry, String name, String description, String tagKey) {
+        return new GaugeTable<>(registry, name, description, tagKey, true);
+    }
+
+    /**
+     * Set the value of a long-valued gauge.
+     */
+    void set(K tagValue, long value) {
+        state(tagValue).set(value);
+    }
+
+    /**
+     * Set the value of a double-valued gauge.
+     */
+    void set(K tagValue, double value) {
+        state(tagValue).set(Double.doubleToRawLongBits(value));
+    }
+
+    private AtomicLong state(K tagValue) {
+        AtomicLong state = states.get(tagValue);
+        if (state == null) {
+            state = states.computeIfAbsent(tagValue, this::register);
+        }
+        return state;
+    }
+
+    private AtomicLong register(K tagValue) {
+        AtomicLong state = new AtomicLong();
+        ToDoubleFunction<AtomicLong> read = doubleValued
+                ? holder -> Double.longBitsToDouble(holder.get())
+                : AtomicLong::get;
+        Gauge.builder(name, state, read)
+                .tag(tagKey, String.valueOf(tagValue))
+                .description(description)
+                .strongReference(true)
+                .register(registry);
+        return state;
+    }
+}
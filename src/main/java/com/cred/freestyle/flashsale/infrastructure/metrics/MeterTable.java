@@ -0,0 +1,72 @@
+package com.cred.freestyle.flashsale.infrastructure.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Meters of one metric name, resolved once per tag value and cached.
+ *
+ * The hot path is a map lookup per tag, with no builder, tag array or registry lookup;
+ * the meter is only built and registered the first time a tag value is seen. Callers
+ * bound the tag values (see CloudWatchMetricsService's SKU tag limit).
+ *
+ * @param <M> Meter type
+ * @author Flash Sale Team
+ */
+final class MeterTable<M extends Meter> {
+
+    private final String firstTagKey;
+    private final String secondTagKey;
+    private final Function<Tags, M> factory;
+
+    private final Map<String, M> meters = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, M>> nestedMeters = new ConcurrentHashMap<>();
+
+    private MeterTable(String firstTagKey, String secondTagKey, Function<Tags, M> factory) {
+        this.firstTagKey = firstTagKey;
+        this.secondTagKey = secondTagKey;
+        this.factory = factory;
+    }
+
+    /**
+     * @param tagKey Tag the meters differ by
+     * @param factory Builds and registers the meter for a tag set
+     */
+    static <M extends Meter> MeterTable<M> of(String tagKey, Function<Tags, M> factory) {
+        return new MeterTable<>(tagKey, null, factory);
+    }
+
+    /**
+     * @param firstTagKey First tag the meters differ by
+     * @param secondTagKey Second tag the meters differ by
+     * @param factory Builds and registers the meter for a tag set
+     */
+    static <M extends Meter> MeterTable<M> of(String firstTagKey, String secondTagKey, Function<Tags, M> factory) {
+        return new MeterTable<>(firstTagKey, secondTagKey, factory);
+    }
+
+    M get(String tagValue) {
+        M meter = meters.get(tagValue);
+        if (meter == null) {
+            meter = meters.computeIfAbsent(tagValue, value -> factory.apply(Tags.of(firstTagKey, value)));
+        }
+        return meter;
+    }
+
+    M get(String firstTagValue, String secondTagValue) {
+        Map<String, M> byFirst = nestedMeters.get(firstTagValue);
+        if (byFirst == null) {
+            byFirst = nestedMeters.computeIfAbsent(firstTagValue, value -> new ConcurrentHashMap<>());
+        }
+        M meter = byFirst.get(secondTagValue);
+        if (meter == null) {
+            meter = byFirst.computeIfAbsent(secondTagValue,
+                    value -> factory.apply(Tags.of(firstTagKey, firstTagValue, secondTagKey, value)));
+        }
+        return meter;
+    }
+}
@@ -32,6 +32,8 @@ public class RateLimitConfig implements WebMvcConfigurer {
             // Apply rate limiting to write endpoints (reservation creation)
             registry.addInterceptor(rateLimitInterceptor)
                    .addPathPatterns("/api/v1/reservations")  // POST /api/v1/reservations
+                   .addPathPatterns("/api/v1/reservations/async")  // POST /api/v1/reservations/async
+                   .addPathPatterns("/api/v1/reservations/cart")  // POST /api/v1/reservations/cart (up to max-items admissions)
                    .addPathPatterns("/api/v1/orders/**");    // POST /api/v1/orders/*/checkout
 
             // Optionally: Add different rate limiter for read endpoints with more permissive limits
@@ -1,5 +1,6 @@
 package com.cred.freestyle.flashsale.infrastructure.ratelimit;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
@@ -30,6 +31,11 @@ public class RateLimitInterceptor implements HandlerInterceptor {
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
             throws Exception {
 
+        // Async endpoints are re-dispatched once their result is ready - already counted
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
         // Extract user info from request
         String userId = extractUserId(request);
         String ipAddress = getClientIp(request);
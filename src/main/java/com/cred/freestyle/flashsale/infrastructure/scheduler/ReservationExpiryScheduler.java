@@ -15,7 +15,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Scheduled job to clean up expired reservations (Layer 2 of Three-Layer Redundancy System).
@@ -32,6 +34,7 @@ import java.util.List;
  * 4. Releases reserved inventory
  * 5. Publishes expiry events to Kafka (Layer 3)
  * 6. Updates Redis cache (sync with Layer 1)
+ * 7. Broadcasts RELEASED per SKU so every node reopens SKUs it marked sold out
  *
  * Reliability:
  * - Catches any expirations missed by Redis TTL (Layer 1)
@@ -120,12 +123,14 @@ public class ReservationExpiryScheduler {
 
             int processedCount = 0;
             int failedCount = 0;
+            Set<String> releasedSkus = new LinkedHashSet<>();
 
             // Step 2: Process each expired reservation
             for (Reservation reservation : expiredReservations) {
                 try {
                     processExpiredReservation(reservation, now);
                     processedCount++;
+                    releasedSkus.add(reservation.getSkuId());
 
                     // Record metric for each expiry
                     metricsService.recordReservationExpiry(reservation.getSkuId());
@@ -139,6 +144,9 @@ public class ReservationExpiryScheduler {
                 }
             }
 
+            // Step 3: One RELEASED broadcast per SKU, not per reservation
+            publishReleasedInventory(releasedSkus);
+
             long duration = System.currentTimeMillis() - startTime;
 
             logger.info("Cleanup completed: {} processed, {} failed, duration: {}ms",
@@ -241,18 +249,41 @@ public class ReservationExpiryScheduler {
         Instant now = Instant.now();
 
         List<Reservation> expiredReservations = reservationRepository.findExpiredReservations(now);
+        Set<String> releasedSkus = new LinkedHashSet<>();
 
         for (Reservation reservation : expiredReservations) {
             try {
                 processExpiredReservation(reservation, now);
+                releasedSkus.add(reservation.getSkuId());
             } catch (Exception e) {
                 logger.error("Error processing reservation: {}",
                             reservation.getReservationId(), e);
             }
         }
 
+        publishReleasedInventory(releasedSkus);
+
         logger.info("Manual cleanup completed: {} reservations processed",
                    expiredReservations.size());
         return expiredReservations.size();
     }
+
+    /**
+     * Broadcast RELEASED inventory updates for SKUs that got stock back.
+     * Reopens the SKUs in every node's SoldOutRegistry.
+     *
+     * @param skuIds SKUs with released reservations
+     */
+    private void publishReleasedInventory(Set<String> skuIds) {
+        for (String skuId : skuIds) {
+            try {
+                Integer availableCount = cacheService.getStockCount(skuId).orElse(null);
+                kafkaProducerService.publishInventoryUpdate(
+                        skuId, availableCount, KafkaProducerService.INVENTORY_EVENT_RELEASED);
+            } catch (Exception e) {
+                logger.error("Failed to publish released inventory for sku: {}", skuId, e);
+                // Continue - sold-out markers lapse on their own TTL
+            }
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package com.cred.freestyle.flashsale.repository;
+
+import com.cred.freestyle.flashsale.domain.model.ConsumerOffset;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository interface for ConsumerOffset entity.
+ * Offsets are written inside the batch consumer's transaction, next to the reservations.
+ *
+ * @author Flash Sale Team
+ */
+@Repository
+public interface ConsumerOffsetRepository extends JpaRepository<ConsumerOffset, ConsumerOffset.Key> {
+
+    /**
+     * Find the committed offsets of a consumer group on a topic.
+     *
+     * @param groupId Consumer group ID
+     * @param topic Topic name
+     * @return One row per partition committed so far
+     */
+    List<ConsumerOffset> findByGroupIdAndTopic(String groupId, String topic);
+
+    /**
+     * Store the next offset to consume for a partition (joins the caller's transaction).
+     * Never moves an offset backwards, so a batch replayed after a rewind cannot undo a
+     * later commit.
+     *
+     * @param groupId Consumer group ID
+     * @param topic Topic name
+     * @param partition Partition number
+     * @param nextOffset Offset of the first record not yet committed
+     * @return Number of rows written
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO consumer_offsets (group_id, topic, partition_id, next_offset, updated_at) " +
+                   "VALUES (:groupId, :topic, :partition, :nextOffset, now()) " +
+                   "ON CONFLICT (group_id, topic, partition_id) DO UPDATE SET " +
+                   "next_offset = GREATEST(consumer_offsets.next_offset, EXCLUDED.next_offset), " +
+                   "updated_at = EXCLUDED.updated_at",
+           nativeQuery = true)
+    int upsertOffset(
+            @Param("groupId") String groupId,
+            @Param("topic") String topic,
+            @Param("partition") int partition,
+            @Param("nextOffset") long nextOffset
+    );
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.LockModeType;
 import java.util.List;
@@ -74,6 +75,7 @@ public interface InventoryRepository extends JpaRepository<Inventory, String> {
      * @return Number of rows updated (1 if successful, 0 if failed due to version mismatch)
      */
     @Modifying
+    @Transactional
     @Query("UPDATE Inventory i SET " +
            "i.reservedCount = i.reservedCount + :quantity, " +
            "i.availableCount = i.totalCount - (i.reservedCount + :quantity) - i.soldCount, " +
@@ -89,6 +91,7 @@ public interface InventoryRepository extends JpaRepository<Inventory, String> {
      * @return Number of rows updated
      */
     @Modifying
+    @Transactional
     @Query("UPDATE Inventory i SET " +
            "i.reservedCount = i.reservedCount - :quantity, " +
            "i.availableCount = i.totalCount - (i.reservedCount - :quantity) - i.soldCount, " +
@@ -104,6 +107,7 @@ public interface InventoryRepository extends JpaRepository<Inventory, String> {
      * @return Number of rows updated
      */
     @Modifying
+    @Transactional
     @Query("UPDATE Inventory i SET " +
            "i.reservedCount = i.reservedCount - :quantity, " +
            "i.soldCount = i.soldCount + :quantity, " +
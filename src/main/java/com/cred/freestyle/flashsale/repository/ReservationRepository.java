@@ -9,17 +9,19 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Repository interface for Reservation entity.
  * Provides data access methods for reservation management.
+ * Bulk inserts are in {@link ReservationRepositoryCustom}.
  *
  * @author Flash Sale Team
  */
 @Repository
-public interface ReservationRepository extends JpaRepository<Reservation, String> {
+public interface ReservationRepository extends JpaRepository<Reservation, String>, ReservationRepositoryCustom {
 
     /**
      * Find reservation by idempotency key.
@@ -102,6 +104,22 @@ public interface ReservationRepository extends JpaRepository<Reservation, String
             @Param("skuId") String skuId
     );
 
+    /**
+     * Find which of the given users have an active reservation for a product, in one query.
+     * Used by the batch consumer to validate a whole SKU batch at once.
+     *
+     * @param skuId Product SKU ID
+     * @param userIds Candidate user IDs
+     * @return User IDs among the candidates with an active reservation
+     */
+    @Query("SELECT DISTINCT r.userId FROM Reservation r " +
+           "WHERE r.skuId = :skuId AND r.userId IN :userIds " +
+           "AND r.status = 'RESERVED' AND r.expiresAt > CURRENT_TIMESTAMP")
+    List<String> findUserIdsWithActiveReservation(
+            @Param("skuId") String skuId,
+            @Param("userIds") Collection<String> userIds
+    );
+
     /**
      * Find all expired reservations that need to be processed.
      * Finds RESERVED reservations where expiresAt < current time.
@@ -0,0 +1,27 @@
+package com.cred.freestyle.flashsale.repository;
+
+import com.cred.freestyle.flashsale.domain.model.Reservation;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Custom (non-derived) data access methods for Reservation entity.
+ *
+ * @author Flash Sale Team
+ */
+public interface ReservationRepositoryCustom {
+
+    /**
+     * Insert reservations in one statement, skipping any whose idempotency key already exists.
+     * Duplicate detection is done by the unique idx_idempotency_key index
+     * (INSERT ... ON CONFLICT DO NOTHING), so no lock or prior lookup is needed.
+     *
+     * Reservation ID and creation time are assigned here when missing, since the rows
+     * bypass the persistence context (and @PrePersist).
+     *
+     * @param reservations Reservations to insert
+     * @return IDs of the reservations that were inserted; the others were duplicates
+     */
+    Set<String> insertIgnoringDuplicates(List<Reservation> reservations);
+}
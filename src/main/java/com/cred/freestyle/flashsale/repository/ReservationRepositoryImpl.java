@@ -0,0 +1,99 @@
+package com.cred.freestyle.flashsale.repository;
+
+import com.cred.freestyle.flashsale.domain.model.Reservation;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * JDBC implementation of {@link ReservationRepositoryCustom}.
+ * Picked up by Spring Data as a fragment of {@link ReservationRepository}.
+ *
+ * Bulk inserts bypass the persistence context: ids and timestamps are generated here and
+ * each column travels as one array parameter, unnested by PostgreSQL into rows. A batch of
+ * any size is a single round trip with the same statement text (8 parameters), so the
+ * driver keeps it server-side prepared.
+ *
+ * @author Flash Sale Team
+ */
+public class ReservationRepositoryImpl implements ReservationRepositoryCustom {
+
+    private static final String BULK_INSERT_SQL =
+            "INSERT INTO reservations " +
+            "(reservation_id, user_id, sku_id, quantity, status, expires_at, idempotency_key, created_at) " +
+            "SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::int[], ?::varchar[], " +
+            "?::timestamptz[], ?::varchar[], ?::timestamptz[]) " +
+            "ON CONFLICT (idempotency_key) DO NOTHING RETURNING reservation_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReservationRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Set<String> insertIgnoringDuplicates(List<Reservation> reservations) {
+        if (reservations == null || reservations.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        int rows = reservations.size();
+        String[] reservationIds = new String[rows];
+        String[] userIds = new String[rows];
+        String[] skuIds = new String[rows];
+        Integer[] quantities = new Integer[rows];
+        String[] statuses = new String[rows];
+        Timestamp[] expiresAt = new Timestamp[rows];
+        String[] idempotencyKeys = new String[rows];
+        Timestamp[] createdAt = new Timestamp[rows];
+        Instant now = Instant.now();
+
+        for (int i = 0; i < rows; i++) {
+            Reservation reservation = reservations.get(i);
+            if (reservation.getReservationId() == null) {
+                reservation.setReservationId(UUID.randomUUID().toString());
+            }
+            if (reservation.getCreatedAt() == null) {
+                reservation.setCreatedAt(now);
+            }
+
+            reservationIds[i] = reservation.getReservationId();
+            userIds[i] = reservation.getUserId();
+            skuIds[i] = reservation.getSkuId();
+            quantities[i] = reservation.getQuantity();
+            statuses[i] = reservation.getStatus().name();
+            expiresAt[i] = Timestamp.from(reservation.getExpiresAt());
+            idempotencyKeys[i] = reservation.getIdempotencyKey();
+            createdAt[i] = Timestamp.from(reservation.getCreatedAt());
+        }
+
+        List<String> inserted = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(BULK_INSERT_SQL);
+            statement.setArray(1, array(connection, "varchar", reservationIds));
+            statement.setArray(2, array(connection, "varchar", userIds));
+            statement.setArray(3, array(connection, "varchar", skuIds));
+            statement.setArray(4, array(connection, "int4", quantities));
+            statement.setArray(5, array(connection, "varchar", statuses));
+            statement.setArray(6, array(connection, "timestamptz", expiresAt));
+            statement.setArray(7, array(connection, "varchar", idempotencyKeys));
+            statement.setArray(8, array(connection, "timestamptz", createdAt));
+            return statement;
+        }, (rs, rowNum) -> rs.getString(1));
+
+        return new HashSet<>(inserted);
+    }
+
+    private static Array array(Connection connection, String type, Object[] values) throws SQLException {
+        return connection.createArrayOf(type, values);
+    }
+}
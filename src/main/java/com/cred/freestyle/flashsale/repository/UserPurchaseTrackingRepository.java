@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -138,6 +139,21 @@ public interface UserPurchaseTrackingRepository extends JpaRepository<UserPurcha
     @Query("SELECT upt.userId FROM UserPurchaseTracking upt WHERE upt.skuId = :skuId")
     List<String> findUserIdsBySkuId(@Param("skuId") String skuId);
 
+    /**
+     * Find which of the given users have purchased a product, in one query.
+     * Used by the batch consumer to validate a whole SKU batch at once.
+     *
+     * @param skuId Product SKU ID
+     * @param userIds Candidate user IDs
+     * @return User IDs among the candidates that have purchased the product
+     */
+    @Query("SELECT upt.userId FROM UserPurchaseTracking upt " +
+           "WHERE upt.skuId = :skuId AND upt.userId IN :userIds")
+    List<String> findPurchasedUserIds(
+            @Param("skuId") String skuId,
+            @Param("userIds") Collection<String> userIds
+    );
+
     /**
      * Find all SKU IDs purchased by a user.
      *
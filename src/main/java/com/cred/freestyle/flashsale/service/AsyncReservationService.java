@@ -1,23 +1,29 @@
 package com.cred.freestyle.flashsale.service;
 
+import com.cred.freestyle.flashsale.exception.ReservationQueuedException;
+import com.cred.freestyle.flashsale.infrastructure.cache.Admission;
+import com.cred.freestyle.flashsale.infrastructure.cache.AdmissionReleaser;
+import com.cred.freestyle.flashsale.infrastructure.cache.AdmissionResult;
 import com.cred.freestyle.flashsale.infrastructure.cache.RedisCacheService;
-import com.cred.freestyle.flashsale.infrastructure.messaging.KafkaProducerService;
+import com.cred.freestyle.flashsale.infrastructure.cache.SoldOutRegistry;
+import com.cred.freestyle.flashsale.infrastructure.messaging.ConsumerLagTracker;
+import com.cred.freestyle.flashsale.infrastructure.messaging.ReservationOutcomeRegistry;
+import com.cred.freestyle.flashsale.infrastructure.messaging.ReservationRequestBatcher;
 import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
 import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
-import com.cred.freestyle.flashsale.repository.ReservationRepository;
-import com.cred.freestyle.flashsale.repository.UserPurchaseTrackingRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Async reservation service implementing Kafka-based batch processing.
@@ -28,9 +34,17 @@ import java.util.concurrent.TimeUnit;
  *
  * Flow:
  * 1. API receives reservation request
- * 2. This service validates user limits and publishes to Kafka
+ * 2. This service rejects SKUs known sold out on this node (no network I/O), then runs
+ *    the Redis admission gate (one round trip) and publishes to Kafka, micro-batched
+ *    per SKU into envelope records by ReservationRequestBatcher
  * 3. Kafka consumer processes batch (250 requests in 10ms)
- * 4. Response is available via polling or callback
+ * 4. Consumer publishes the outcome to reservation-responses, completing the
+ *    caller's future registered in ReservationOutcomeRegistry
+ *
+ * Waiting room: the admission gate issues at most stock x over-admission-factor tickets
+ * per SKU. Requests beyond that are not published; the user gets a queue position
+ * (ReservationQueuedException) and is admitted on retry as outcomes, expiries and
+ * cancellations free tickets, so consumer load follows stock rather than demand.
  *
  * @author Flash Sale Team
  */
@@ -39,37 +53,47 @@ public class AsyncReservationService {
 
     private static final Logger logger = LoggerFactory.getLogger(AsyncReservationService.class);
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ReservationRequestBatcher requestBatcher;
     private final RedisCacheService cacheService;
-    private final ReservationRepository reservationRepository;
-    private final UserPurchaseTrackingRepository userPurchaseTrackingRepository;
+    private final AdmissionReleaser admissionReleaser;
     private final CloudWatchMetricsService metricsService;
-    private final ObjectMapper objectMapper;
+    private final ReservationOutcomeRegistry outcomeRegistry;
+    private final SoldOutRegistry soldOutRegistry;
+    private final ConsumerLagTracker lagTracker;
 
     private static final String RESERVATION_REQUESTS_TOPIC = "reservation-requests";
     private static final int KAFKA_PUBLISH_TIMEOUT_MS = 5000; // 5 seconds
 
+    @Value("${flashsale.reservation.waiting-room.enabled:true}")
+    private boolean waitingRoomEnabled = true;
+
+    @Value("${flashsale.reservation.waiting-room.over-admission-factor:1.5}")
+    private double overAdmissionFactor = 1.5;
+
     public AsyncReservationService(
-            KafkaTemplate<String, String> kafkaTemplate,
+            ReservationRequestBatcher requestBatcher,
             RedisCacheService cacheService,
-            ReservationRepository reservationRepository,
-            UserPurchaseTrackingRepository userPurchaseTrackingRepository,
+            AdmissionReleaser admissionReleaser,
             CloudWatchMetricsService metricsService,
-            ObjectMapper objectMapper
+            ReservationOutcomeRegistry outcomeRegistry,
+            SoldOutRegistry soldOutRegistry,
+            ConsumerLagTracker lagTracker
     ) {
-        this.kafkaTemplate = kafkaTemplate;
+        this.requestBatcher = requestBatcher;
         this.cacheService = cacheService;
-        this.reservationRepository = reservationRepository;
-        this.userPurchaseTrackingRepository = userPurchaseTrackingRepository;
+        this.admissionReleaser = admissionReleaser;
         this.metricsService = metricsService;
-        this.objectMapper = objectMapper;
+        this.outcomeRegistry = outcomeRegistry;
+        this.soldOutRegistry = soldOutRegistry;
+        this.lagTracker = lagTracker;
     }
 
     /**
      * Submit a reservation request to Kafka for batch processing.
      *
-     * This method performs fast pre-validation and publishes to Kafka.
-     * The actual inventory allocation happens in the batch consumer.
+     * This method runs the Redis admission gate and publishes to Kafka.
+     * The actual inventory allocation happens in the batch consumer, which
+     * re-validates every request against the database.
      *
      * @param userId User ID
      * @param skuId Product SKU ID
@@ -82,13 +106,113 @@ public class AsyncReservationService {
             String skuId,
             Integer quantity
     ) {
-        long startTime = System.currentTimeMillis();
+        return submitReservationRequest(UUID.randomUUID().toString(), userId, skuId, quantity,
+                generateIdempotencyKey(userId, skuId));
+    }
+
+    /**
+     * Submit a reservation request and return a future for its processing outcome.
+     *
+     * The future is registered before the request is published, so the outcome
+     * published by InventoryBatchConsumer completes it without any polling.
+     * It completes exceptionally if pre-validation or the Kafka publish fails.
+     * Callers that stop waiting should cancel the future to release its registry entry.
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     * @param quantity Quantity to reserve (always 1 for flash sales)
+     * @return CompletableFuture with the reservation outcome
+     */
+    public CompletableFuture<ReservationResponseMessage> submitReservationRequestForOutcome(
+            String userId,
+            String skuId,
+            Integer quantity
+    ) {
+        return submitReservationRequestForOutcome(userId, skuId, quantity, generateIdempotencyKey(userId, skuId));
+    }
+
+    /**
+     * Submit a reservation request scoped to one attempt, e.g. one item of a cart, and
+     * return a future for its processing outcome.
+     *
+     * The idempotency key carries the attempt ID, so a retry after the attempt's holds were
+     * cancelled is not rejected by the batch consumer's idempotency window, which still
+     * remembers the earlier attempt. Concurrent requests for the same SKU are still stopped
+     * by the pending marker and the consumer's active reservation check.
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     * @param quantity Quantity to reserve (always 1 for flash sales)
+     * @param attemptId ID shared by the requests of one attempt
+     * @return CompletableFuture with the reservation outcome
+     */
+    public CompletableFuture<ReservationResponseMessage> submitAttemptRequestForOutcome(
+            String userId,
+            String skuId,
+            Integer quantity,
+            String attemptId
+    ) {
+        return submitReservationRequestForOutcome(userId, skuId, quantity,
+                generateIdempotencyKey(userId, skuId) + ":" + attemptId);
+    }
+
+    private CompletableFuture<ReservationResponseMessage> submitReservationRequestForOutcome(
+            String userId,
+            String skuId,
+            Integer quantity,
+            String idempotencyKey
+    ) {
         String requestId = UUID.randomUUID().toString();
+        CompletableFuture<ReservationResponseMessage> outcome = outcomeRegistry.register(requestId);
+
+        submitReservationRequest(requestId, userId, skuId, quantity, idempotencyKey)
+            .whenComplete((id, ex) -> {
+                if (ex != null) {
+                    outcomeRegistry.fail(requestId, ex);
+                }
+            });
+
+        // A rejected request releases its pending marker so the user may try again.
+        // Successful requests keep it until PENDING_TTL - the active reservation blocks retries anyway.
+        // The admission ticket goes back to the waiting room once the outcome arrives, or as soon
+        // as the caller stops waiting (timed out or cancelled); failed submissions release their own.
+        // Both are batched with other releases off the completing thread (see AdmissionReleaser).
+        outcome.whenComplete((response, ex) -> {
+            if (ex == null && response.getStatus() != ReservationResponseMessage.ResponseStatus.SUCCESS) {
+                admissionReleaser.clearPending(userId, skuId);
+            }
+            if (ex == null || ex instanceof TimeoutException || ex instanceof CancellationException) {
+                releaseTicket(skuId, requestId);
+            }
+        });
+
+        return outcome;
+    }
+
+    /**
+     * Get number of requests submitted from this node still waiting for their outcome.
+     * Used for load shedding on the async API path.
+     *
+     * @return Pending outcome count
+     */
+    public int getPendingOutcomeCount() {
+        return outcomeRegistry.getPendingCount();
+    }
+
+    private CompletableFuture<String> submitReservationRequest(
+            String requestId,
+            String userId,
+            String skuId,
+            Integer quantity,
+            String idempotencyKey
+    ) {
+        long startTime = System.currentTimeMillis();
         String correlationId = String.format("%s-%s-%d", userId, skuId, System.currentTimeMillis());
 
         logger.info("Submitting reservation request: requestId={}, userId={}, skuId={}, quantity={}",
                    requestId, userId, skuId, quantity);
 
+        boolean admitted = false;
         try {
             // Step 1: Validate quantity (must be exactly 1 per user, business rule)
             if (quantity == null || quantity != 1) {
@@ -103,26 +227,35 @@ public class AsyncReservationService {
                 return failedFuture;
             }
 
-            // Step 2: Fast pre-validation (cache-only checks to minimize latency)
-            validateUserLimits(userId, skuId);
-
-            // Step 3: Check cached inventory availability (fail fast if clearly out of stock)
-            Optional<Integer> cachedStock = cacheService.getStockCount(skuId);
-            if (cachedStock.isPresent() && cachedStock.get() < quantity) {
-                logger.warn("Insufficient cached inventory for SKU: {}, requested: {}, available: {}",
-                           skuId, quantity, cachedStock.get());
-                metricsService.recordReservationFailure(skuId, "OUT_OF_STOCK");
-                metricsService.recordInventoryStockOut(skuId);
+            // Step 2: Reject SKUs this node knows are sold out without touching Redis or Kafka
+            if (soldOutRegistry.isSoldOut(skuId)) {
+                metricsService.recordCacheHit("sold-out");
+                CompletableFuture<String> failedFuture = new CompletableFuture<>();
+                failedFuture.completeExceptionally(rejectAdmission(AdmissionResult.OUT_OF_STOCK, userId, skuId));
+                return failedFuture;
+            }
 
+            // Step 3: Admission gate - user limit, active reservation, stock and in-flight
+            // duplicate checks plus the waiting room in a single atomic Redis round trip
+            // (marks request pending and takes an admission ticket)
+            Admission admission = cacheService.admitReservation(userId, skuId, quantity, requestId,
+                    waitingRoomEnabled ? overAdmissionFactor : 0);
+            if (admission.getResult() == AdmissionResult.WAITING) {
+                logger.debug("User {} waiting for SKU {} at position {}", userId, skuId, admission.getQueuePosition());
+                metricsService.recordQueueDepth(skuId, (int) admission.getQueuePosition());
                 CompletableFuture<String> failedFuture = new CompletableFuture<>();
-                failedFuture.completeExceptionally(
-                    new IllegalStateException("Product is out of stock")
-                );
+                failedFuture.completeExceptionally(new ReservationQueuedException(
+                    skuId, admission.getQueuePosition(), lagTracker.suggestRetryAfterSeconds(skuId)));
+                return failedFuture;
+            }
+            if (!admission.isAdmitted()) {
+                CompletableFuture<String> failedFuture = new CompletableFuture<>();
+                failedFuture.completeExceptionally(rejectAdmission(admission.getResult(), userId, skuId));
                 return failedFuture;
             }
+            admitted = true;
 
             // Step 4: Create reservation request message
-            String idempotencyKey = generateIdempotencyKey(userId, skuId);
             ReservationRequestMessage message = new ReservationRequestMessage(
                 requestId,
                 userId,
@@ -133,13 +266,10 @@ public class AsyncReservationService {
             );
 
             // Step 5: Publish to Kafka (partitioned by SKU for single-writer pattern)
-            String messageJson = objectMapper.writeValueAsString(message);
-
             long kafkaStartTime = System.currentTimeMillis();
-            CompletableFuture<SendResult<String, String>> kafkaFuture = kafkaTemplate.send(
-                RESERVATION_REQUESTS_TOPIC,
+            CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> kafkaFuture = requestBatcher.send(
                 skuId, // Key for partitioning - ensures all requests for same SKU go to same partition
-                messageJson
+                message
             );
 
             // Step 6: Handle Kafka publish result
@@ -151,6 +281,8 @@ public class AsyncReservationService {
                     logger.error("Failed to publish reservation request to Kafka: requestId={}, skuId={}",
                                requestId, skuId, ex);
                     metricsService.recordError("KAFKA_PUBLISH_ERROR", "submitReservationRequest");
+                    admissionReleaser.clearPending(userId, skuId);
+                    releaseTicket(skuId, requestId);
                     throw new RuntimeException("Failed to submit reservation request", ex);
                 }
 
@@ -165,18 +297,14 @@ public class AsyncReservationService {
                 return requestId;
             });
 
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to serialize reservation request: requestId={}", requestId, e);
-            metricsService.recordError("JSON_SERIALIZATION_ERROR", "submitReservationRequest");
-
-            CompletableFuture<String> failedFuture = new CompletableFuture<>();
-            failedFuture.completeExceptionally(e);
-            return failedFuture;
-
         } catch (Exception e) {
             logger.error("Error submitting reservation request: requestId={}, userId={}, skuId={}",
                        requestId, userId, skuId, e);
             metricsService.recordError("RESERVATION_SUBMISSION_ERROR", "submitReservationRequest");
+            if (admitted) {
+                admissionReleaser.clearPending(userId, skuId);
+                releaseTicket(skuId, requestId);
+            }
 
             CompletableFuture<String> failedFuture = new CompletableFuture<>();
             failedFuture.completeExceptionally(e);
@@ -206,70 +334,44 @@ public class AsyncReservationService {
             if (e.getCause() instanceof IllegalStateException) {
                 throw (IllegalStateException) e.getCause();
             }
+            if (e.getCause() instanceof ReservationQueuedException) {
+                throw (ReservationQueuedException) e.getCause();
+            }
 
             throw new RuntimeException("Failed to submit reservation request", e);
         }
     }
 
     /**
-     * Validate user purchase limits before submitting to Kafka.
-     * This is a fast pre-validation to fail fast and reduce unnecessary Kafka traffic.
+     * Record a rejected admission and build the exception returned to the caller.
      *
+     * @param admission Admission gate result
      * @param userId User ID
      * @param skuId Product SKU ID
-     * @throws IllegalStateException if user limit exceeded
-     */
-    private void validateUserLimits(String userId, String skuId) {
-        // Check if user has already purchased (cache first)
-        if (hasUserAlreadyPurchased(userId, skuId)) {
-            logger.warn("User {} has already purchased SKU: {}", userId, skuId);
-            metricsService.recordReservationFailure(skuId, "USER_ALREADY_PURCHASED");
-            throw new IllegalStateException("User has already purchased this product");
-        }
-
-        // Check if user has active reservation (cache first)
-        if (hasActiveReservation(userId, skuId)) {
-            logger.warn("User {} already has active reservation for SKU: {}", userId, skuId);
-            metricsService.recordReservationFailure(skuId, "USER_HAS_ACTIVE_RESERVATION");
-            throw new IllegalStateException("User already has an active reservation for this product");
-        }
-    }
-
-    /**
-     * Check if user has already purchased this product.
+     * @return IllegalStateException describing the rejection
      */
-    private boolean hasUserAlreadyPurchased(String userId, String skuId) {
-        // Check cache first
-        if (cacheService.hasUserPurchased(userId, skuId)) {
-            metricsService.recordCacheHit("user_limit");
-            return true;
-        }
-
-        // Check database
-        boolean hasPurchased = userPurchaseTrackingRepository.existsByUserIdAndSkuId(userId, skuId);
-        if (hasPurchased) {
-            cacheService.markUserPurchased(userId, skuId);
-        }
-        metricsService.recordCacheMiss("user_limit");
-        return hasPurchased;
-    }
-
-    /**
-     * Check if user has active reservation.
-     * Checks cache first for performance, falls back to database for accuracy.
-     */
-    private boolean hasActiveReservation(String userId, String skuId) {
-        // Check cache first
-        Optional<String> cachedReservation = cacheService.getActiveReservation(userId, skuId);
-        if (cachedReservation.isPresent()) {
-            metricsService.recordCacheHit("reservation");
-            return true;
+    private IllegalStateException rejectAdmission(AdmissionResult admission, String userId, String skuId) {
+        switch (admission) {
+            case USER_ALREADY_PURCHASED:
+                logger.warn("User {} has already purchased SKU: {}", userId, skuId);
+                metricsService.recordReservationFailure(skuId, "USER_ALREADY_PURCHASED");
+                return new IllegalStateException("User has already purchased this product");
+            case USER_HAS_ACTIVE_RESERVATION:
+                logger.warn("User {} already has active reservation for SKU: {}", userId, skuId);
+                metricsService.recordReservationFailure(skuId, "USER_HAS_ACTIVE_RESERVATION");
+                return new IllegalStateException("User already has an active reservation for this product");
+            case OUT_OF_STOCK:
+                logger.warn("Insufficient cached inventory for SKU: {}", skuId);
+                metricsService.recordReservationFailure(skuId, "OUT_OF_STOCK");
+                metricsService.recordInventoryStockOut(skuId);
+                return new IllegalStateException("Product is out of stock");
+            case REQUEST_IN_PROGRESS:
+                logger.warn("User {} already has a reservation request in progress for SKU: {}", userId, skuId);
+                metricsService.recordReservationFailure(skuId, "DUPLICATE_REQUEST");
+                return new IllegalStateException("A reservation request for this product is already in progress");
+            default:
+                throw new IllegalArgumentException("Not a rejection: " + admission);
         }
-
-        // Check database as fallback to ensure consistency with batch consumer
-        boolean hasActive = reservationRepository.hasActiveReservation(userId, skuId);
-        metricsService.recordCacheMiss("reservation");
-        return hasActive;
     }
 
     /**
@@ -282,23 +384,42 @@ public class AsyncReservationService {
      * - Second simultaneous request has same key → rejected as duplicate
      * - This prevents users from getting multiple reservations for same product
      *
-     * Note: Once user's reservation expires/cancels, they can request again (new record)
+     * Note: Once user's reservation expires/cancels, they can request again (new record).
+     * Cart items append their attempt ID (see submitAttemptRequestForOutcome).
      */
     private String generateIdempotencyKey(String userId, String skuId) {
         return userId + ":" + skuId;  // No timestamp! User can only have one request per SKU
     }
 
     /**
-     * Get estimated queue position for a request.
-     * This can be used to provide users with wait time estimates.
+     * Return the request's admission ticket to the SKU's waiting room, batched with other
+     * releases off the calling thread (outcome listener, Kafka producer callbacks).
+     */
+    private void releaseTicket(String skuId, String requestId) {
+        if (waitingRoomEnabled) {
+            admissionReleaser.releaseTicket(skuId, requestId);
+        }
+    }
+
+    /**
+     * Get a user's position in the SKU's waiting room.
+     * Polling keeps the user's place; users that stop polling are dropped after the idle timeout.
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     * @return 1-based queue position, or 0 if the user is not waiting
+     */
+    public long getQueuePosition(String userId, String skuId) {
+        return cacheService.getWaitingPosition(userId, skuId);
+    }
+
+    /**
+     * Get the number of users waiting for admission to a SKU.
      *
      * @param skuId Product SKU ID
-     * @return Estimated queue depth
+     * @return Waiting room size
      */
     public int getEstimatedQueueDepth(String skuId) {
-        // This would require tracking via metrics or a separate queue depth service
-        // For now, return a placeholder
-        // TODO: Implement queue depth tracking via Kafka consumer lag monitoring
-        return 0;
+        return (int) Math.min(cacheService.getWaitingCount(skuId), Integer.MAX_VALUE);
     }
 }
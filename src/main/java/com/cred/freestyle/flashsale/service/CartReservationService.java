@@ -0,0 +1,282 @@
+package com.cred.freestyle.flashsale.service;
+
+import com.cred.freestyle.flashsale.domain.model.Reservation;
+import com.cred.freestyle.flashsale.exception.CartReservationFailedException;
+import com.cred.freestyle.flashsale.exception.ReservationFailedException;
+import com.cred.freestyle.flashsale.exception.ReservationQueuedException;
+import com.cred.freestyle.flashsale.exception.ReservationTimeoutException;
+import com.cred.freestyle.flashsale.infrastructure.cache.RedisCacheService;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reserves several SKUs for one user as a single all-or-nothing unit.
+ *
+ * Each item is still allocated by the single writer of its SKU's partition
+ * (InventoryBatchConsumer), so the cart is coordinated as a saga rather than a
+ * distributed transaction:
+ * 1. Every item goes through the admission gate and is published at once, so the
+ *    items are processed by their partitions in parallel (and micro-batched with
+ *    other requests for the same SKU)
+ * 2. The cart waits until every item has an outcome, or the cart timeout elapses
+ * 3. If all items were reserved, the cart succeeds; otherwise every hold taken for
+ *    the cart is cancelled (compensation) and the first failure is reported
+ *
+ * Outcomes that arrive after the cart has already failed are compensated as they
+ * arrive, up to late-outcome-window-ms; anything later falls back to reservation expiry.
+ *
+ * Outcomes are completed on the reservation-responses listener or on the timer thread
+ * behind orTimeout, so the commit and compensation steps (database, Kafka and Redis
+ * writes) run on a bounded completion executor instead.
+ *
+ * @author Flash Sale Team
+ */
+@Service
+public class CartReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartReservationService.class);
+
+    private final AsyncReservationService asyncReservationService;
+    private final ReservationService reservationService;
+    private final RedisCacheService cacheService;
+    private final CloudWatchMetricsService metricsService;
+
+    @Value("${flashsale.reservation.cart.max-items:10}")
+    private int maxItems = 10;
+
+    @Value("${flashsale.reservation.cart.timeout-ms:5000}")
+    private long timeoutMs = 5000;
+
+    @Value("${flashsale.reservation.cart.late-outcome-window-ms:30000}")
+    private long lateOutcomeWindowMs = 30000;
+
+    @Value("${flashsale.reservation.cart.completion-threads:4}")
+    private int completionThreads = 4;
+
+    @Value("${flashsale.reservation.cart.completion-queue-capacity:256}")
+    private int completionQueueCapacity = 256;
+
+    private ExecutorService completionExecutor;
+
+    public CartReservationService(
+            AsyncReservationService asyncReservationService,
+            ReservationService reservationService,
+            RedisCacheService cacheService,
+            CloudWatchMetricsService metricsService
+    ) {
+        this.asyncReservationService = asyncReservationService;
+        this.reservationService = reservationService;
+        this.cacheService = cacheService;
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Reserve every item of a cart, or none of them.
+     *
+     * The returned future completes exceptionally, after releasing the holds taken
+     * for the other items, with:
+     * - CartReservationFailedException if an item was rejected
+     * - ReservationQueuedException if an item's SKU placed the user in its waiting room
+     * - ReservationTimeoutException if an item's outcome did not arrive within the cart timeout
+     *
+     * @param userId User ID
+     * @param items SKU ID to quantity, in cart order
+     * @return Future completed with one reservation per item, in cart order
+     * @throws IllegalArgumentException if the cart is empty or has more than max-items SKUs
+     */
+    public CompletableFuture<List<Reservation>> reserveCart(String userId, Map<String, Integer> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Cart must contain at least one item");
+        }
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException(
+                    String.format("Cart may contain at most %d products, got %d", maxItems, items.size()));
+        }
+
+        long startTime = System.currentTimeMillis();
+        // Fresh idempotency keys per attempt: a retry after compensation is not a duplicate
+        String cartId = UUID.randomUUID().toString();
+        logger.info("Reserving cart {} for user: {}, SKUs: {}", cartId, userId, items.keySet());
+
+        // Step 1: Fan out - publish every item before waiting on any of them
+        List<CartItem> cartItems = new ArrayList<>(items.size());
+        for (Map.Entry<String, Integer> item : items.entrySet()) {
+            CompletableFuture<ReservationResponseMessage> outcome = asyncReservationService
+                    .submitAttemptRequestForOutcome(userId, item.getKey(), item.getValue(), cartId);
+            // Bound how long a late outcome can still be compensated (releases the registry entry)
+            outcome.orTimeout(timeoutMs + lateOutcomeWindowMs, TimeUnit.MILLISECONDS);
+            cartItems.add(new CartItem(item.getKey(), item.getValue(), outcome));
+        }
+
+        // Step 2: Wait for every item; copies time out without giving up on the outcome itself
+        CompletableFuture<?>[] settled = cartItems.stream()
+                .map(item -> item.outcome.copy()
+                        .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                        .handle((outcome, ex) -> item.settle(outcome, ex)))
+                .toArray(CompletableFuture[]::new);
+
+        // Step 3: Commit or compensate, off the thread that settled the last item
+        return CompletableFuture.allOf(settled).thenApplyAsync(ignored -> {
+            CartItem failed = cartItems.stream().filter(item -> !item.isReserved()).findFirst().orElse(null);
+            if (failed == null) {
+                List<Reservation> reservations = new ArrayList<>(cartItems.size());
+                for (CartItem item : cartItems) {
+                    reservations.add(reservationService.toReservation(item.response, userId, item.skuId, item.quantity));
+                }
+                metricsService.recordEndToEndLatency(System.currentTimeMillis() - startTime);
+                logger.info("Reserved cart for user: {}, items: {}", userId, reservations.size());
+                return reservations;
+            }
+
+            int released = compensate(userId, cartItems);
+            throw toCartFailure(failed, released);
+        }, completionExecutor());
+    }
+
+    /**
+     * Release every hold taken for a failed cart. Items whose outcome has not arrived yet
+     * are released when it does.
+     *
+     * @return Number of reservations released now
+     */
+    private int compensate(String userId, List<CartItem> cartItems) {
+        int released = 0;
+        for (CartItem item : cartItems) {
+            if (item.isReserved()) {
+                if (release(userId, item.skuId, item.response.getReservationId())) {
+                    released++;
+                }
+            } else if (item.failure instanceof TimeoutException) {
+                // Outcome may still be a success - release it when (or if already) it arrives
+                item.outcome.thenAcceptAsync(late -> {
+                    if (late.getStatus() == ReservationResponseMessage.ResponseStatus.SUCCESS) {
+                        logger.info("Releasing late reservation {} of failed cart for user: {}",
+                                   late.getReservationId(), userId);
+                        release(userId, item.skuId, late.getReservationId());
+                    }
+                }, completionExecutor());
+            }
+        }
+
+        metricsService.recordError("CART_RESERVATION_ROLLBACK", "reserveCart");
+        logger.warn("Cart reservation failed for user: {}, released {} holds", userId, released);
+        return released;
+    }
+
+    private boolean release(String userId, String skuId, String reservationId) {
+        try {
+            reservationService.cancelReservation(reservationId);
+            // Let the user retry the cart right away instead of waiting out the pending marker;
+            // the retry's idempotency keys are new, so the consumer does not reject it as a duplicate
+            cacheService.clearPendingReservation(userId, skuId);
+            return true;
+        } catch (Exception e) {
+            // Reservation expiry releases the hold if compensation fails
+            logger.error("Failed to release reservation {} of failed cart for user: {}, SKU: {}",
+                        reservationId, userId, skuId, e);
+            metricsService.recordError("CART_COMPENSATION_ERROR", "reserveCart");
+            return false;
+        }
+    }
+
+    /**
+     * Executor for the commit and compensation steps, created on first use. Bounded threads
+     * and queue; when both are full the completing thread runs the step itself.
+     */
+    private synchronized ExecutorService completionExecutor() {
+        if (completionExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            completionExecutor = new ThreadPoolExecutor(
+                    completionThreads, completionThreads,
+                    60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(completionQueueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "cart-completion-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return completionExecutor;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (completionExecutor != null) {
+            completionExecutor.shutdown();
+        }
+    }
+
+    private RuntimeException toCartFailure(CartItem failed, int released) {
+        Throwable cause = failed.failure;
+        if (cause instanceof TimeoutException) {
+            return new ReservationTimeoutException(failed.skuId, timeoutMs);
+        }
+        if (cause instanceof ReservationQueuedException) {
+            return (ReservationQueuedException) cause;
+        }
+        if (cause == null) {
+            return new CartReservationFailedException(failed.skuId, failed.response.getStatus().name(),
+                    failed.response.getErrorMessage(), released);
+        }
+        if (cause instanceof ReservationFailedException) {
+            ReservationFailedException rejection = (ReservationFailedException) cause;
+            return new CartReservationFailedException(failed.skuId, rejection.getStatus(),
+                    rejection.getErrorMessage(), released);
+        }
+        if (cause instanceof IllegalStateException || cause instanceof IllegalArgumentException) {
+            // Admission gate rejections (already purchased, out of stock, request in progress, ...)
+            return new CartReservationFailedException(failed.skuId, "REJECTED", cause.getMessage(), released);
+        }
+        return new CartReservationFailedException(failed.skuId, "PROCESSING_ERROR", cause.getMessage(), released);
+    }
+
+    /**
+     * One cart item and its outcome once settled.
+     */
+    private static class CartItem {
+        private final String skuId;
+        private final Integer quantity;
+        private final CompletableFuture<ReservationResponseMessage> outcome;
+        private volatile ReservationResponseMessage response;
+        private volatile Throwable failure;
+
+        CartItem(String skuId, Integer quantity, CompletableFuture<ReservationResponseMessage> outcome) {
+            this.skuId = skuId;
+            this.quantity = quantity;
+            this.outcome = outcome;
+        }
+
+        Void settle(ReservationResponseMessage response, Throwable ex) {
+            if (ex != null) {
+                this.failure = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            } else {
+                this.response = response;
+            }
+            return null;
+        }
+
+        boolean isReserved() {
+            return failure == null && response != null
+                    && response.getStatus() == ReservationResponseMessage.ResponseStatus.SUCCESS;
+        }
+    }
+}
@@ -3,20 +3,31 @@ package com.cred.freestyle.flashsale.service;
 import com.cred.freestyle.flashsale.domain.model.Reservation;
 import com.cred.freestyle.flashsale.domain.model.Reservation.ReservationStatus;
 import com.cred.freestyle.flashsale.exception.ReservationFailedException;
+import com.cred.freestyle.flashsale.exception.ReservationOverloadedException;
+import com.cred.freestyle.flashsale.exception.ReservationQueuedException;
+import com.cred.freestyle.flashsale.exception.ReservationTimeoutException;
 import com.cred.freestyle.flashsale.infrastructure.cache.RedisCacheService;
+import com.cred.freestyle.flashsale.infrastructure.messaging.ConsumerLagTracker;
 import com.cred.freestyle.flashsale.infrastructure.messaging.KafkaProducerService;
 import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationEvent;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
 import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
 import com.cred.freestyle.flashsale.repository.InventoryRepository;
 import com.cred.freestyle.flashsale.repository.ReservationRepository;
 import com.cred.freestyle.flashsale.repository.UserPurchaseTrackingRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Service for managing reservations in the flash sale system.
@@ -45,12 +56,20 @@ public class ReservationService {
     private final KafkaProducerService kafkaProducerService;
     private final CloudWatchMetricsService metricsService;
     private final AsyncReservationService asyncReservationService;
+    private final ConsumerLagTracker lagTracker;
 
     private static final int RESERVATION_DURATION_SECONDS = 120; // 2 minutes
-    private static final int RESERVATION_POLL_MAX_ATTEMPTS = 100; // Max 100 polling attempts (~1 second total)
-    private static final int RESERVATION_POLL_INITIAL_INTERVAL_MS = 5; // Start with 5ms for fast discovery
-    private static final int RESERVATION_POLL_MAX_INTERVAL_MS = 100; // Cap at 100ms
-    private static final int RESERVATION_POLL_BACKOFF_THRESHOLD = 5; // After 5 attempts, start backing off
+
+    // Max time to wait for the batch consumer to publish the outcome (includes Kafka publish)
+    @Value("${flashsale.reservation.outcome-timeout-ms:3000}")
+    private long outcomeTimeoutMs;
+
+    // Async API path: per-request timeout and max in-flight requests per node before shedding load
+    @Value("${flashsale.reservation.async.timeout-ms:5000}")
+    private long asyncTimeoutMs;
+
+    @Value("${flashsale.reservation.async.max-pending:20000}")
+    private int asyncMaxPending;
 
     public ReservationService(
             ReservationRepository reservationRepository,
@@ -59,7 +78,8 @@ public class ReservationService {
             RedisCacheService cacheService,
             KafkaProducerService kafkaProducerService,
             CloudWatchMetricsService metricsService,
-            AsyncReservationService asyncReservationService
+            AsyncReservationService asyncReservationService,
+            ConsumerLagTracker lagTracker
     ) {
         this.reservationRepository = reservationRepository;
         this.inventoryRepository = inventoryRepository;
@@ -68,6 +88,7 @@ public class ReservationService {
         this.kafkaProducerService = kafkaProducerService;
         this.metricsService = metricsService;
         this.asyncReservationService = asyncReservationService;
+        this.lagTracker = lagTracker;
     }
 
     /**
@@ -76,10 +97,12 @@ public class ReservationService {
      * This method now uses AsyncReservationService which:
      * 1. Performs fast cache-based pre-validation
      * 2. Publishes request to Kafka topic (reservation-requests)
-     * 3. Returns immediately with a request ID
+     * 3. Registers the request in ReservationOutcomeRegistry
      * 4. InventoryBatchConsumer processes in batches of 250 (10ms per batch)
+     *    and publishes the outcome to reservation-responses
      *
-     * For synchronous API endpoints, this method polls for the result.
+     * For synchronous API endpoints, this method blocks until the outcome is pushed
+     * back to this node - no Redis or database polling is involved.
      *
      * Architecture Benefits:
      * - Achieves 25K RPS (vs 2K with direct DB)
@@ -102,22 +125,21 @@ public class ReservationService {
                        userId, skuId, quantity);
 
             // Step 1: Submit to Kafka via AsyncReservationService
-            // This performs cache-based pre-validation and publishes to Kafka
-            String requestId = asyncReservationService.submitReservationRequestSync(userId, skuId, quantity);
-
-            logger.info("Reservation request submitted to Kafka: requestId={}, userId={}, skuId={}",
-                       requestId, userId, skuId);
+            // This performs cache-based pre-validation, registers for the outcome and publishes to Kafka
+            CompletableFuture<ReservationResponseMessage> outcomeFuture =
+                    asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity);
 
-            // Step 2: Poll for batch processing completion
-            // The batch consumer will create the reservation in the database
-            Reservation reservation = pollForReservation(userId, skuId, startTime);
+            // Step 2: Wait for the batch consumer to push the outcome back
+            ReservationResponseMessage outcome = awaitOutcome(outcomeFuture, userId, skuId);
 
-            if (reservation == null) {
+            if (outcome == null) {
                 logger.error("Timeout waiting for reservation to be processed: userId={}, skuId={}", userId, skuId);
                 metricsService.recordError("RESERVATION_TIMEOUT", "createReservation");
                 throw new IllegalStateException("Reservation request timed out - please check status later");
             }
 
+            Reservation reservation = toReservation(outcome, userId, skuId, quantity);
+
             long totalDuration = System.currentTimeMillis() - startTime;
             logger.info("Reservation created successfully: reservationId={}, userId={}, skuId={}, duration={}ms",
                        reservation.getReservationId(), userId, skuId, totalDuration);
@@ -126,6 +148,9 @@ public class ReservationService {
 
             return reservation;
 
+        } catch (ReservationFailedException | ReservationQueuedException e) {
+            // Batch consumer rejection or waiting room - surfaced as-is so the API can map the status
+            throw e;
         } catch (IllegalStateException e) {
             // Pre-validation failures (user already purchased, out of stock, etc.)
             logger.warn("Reservation pre-validation failed for user: {}, SKU: {}: {}",
@@ -139,83 +164,127 @@ public class ReservationService {
     }
 
     /**
-     * Poll for reservation to be created by batch consumer with progressive backoff.
-     *
-     * The InventoryBatchConsumer processes requests in batches of 250 every 10ms.
-     * Expected wait time: 10-100ms depending on queue position.
+     * Create a reservation without blocking the calling thread.
      *
-     * Progressive Backoff Strategy:
-     * - First 5 attempts: 5ms interval (optimized for fast batch processing)
-     * - After 5 attempts: Exponentially increase to 10ms, 20ms, 50ms, up to 100ms cap
-     * - Total timeout: ~1 second (100 attempts with progressive intervals)
+     * Same flow as {@link #createReservation}, but the returned future is completed by
+     * the reservation-responses listener when the batch outcome arrives, so a servlet
+     * thread is only held for pre-validation and the Kafka send.
      *
-     * Benefits:
-     * - Minimizes latency for happy path (most requests processed in 10-50ms)
-     * - Reduces Redis load for slow cases by backing off
-     * - Avoids adding unnecessary 50-95ms polling overhead
+     * The future completes exceptionally with:
+     * - IllegalStateException / IllegalArgumentException for pre-validation failures
+     * - ReservationFailedException for batch consumer rejections
+     * - ReservationTimeoutException if no outcome arrives within the async timeout
+     * - ReservationQueuedException if the user was placed in the SKU's waiting room
      *
      * @param userId User ID
-     * @param skuId SKU ID
-     * @param startTime Request start time for timeout calculation
-     * @return Created reservation or null if timeout
+     * @param skuId Product SKU ID
+     * @param quantity Quantity to reserve (always 1 for flash sales)
+     * @return Future completed with the created reservation
+     * @throws ReservationOverloadedException if this node already holds the maximum pending requests
      */
-    private Reservation pollForReservation(String userId, String skuId, long startTime) {
-        int attempts = 0;
-        int pollInterval = RESERVATION_POLL_INITIAL_INTERVAL_MS;
-
-        while (attempts < RESERVATION_POLL_MAX_ATTEMPTS) {
-            // Check if request was rejected (fast-fail path)
-            Optional<String[]> rejection = cacheService.getRejection(userId, skuId);
-            if (rejection.isPresent()) {
-                String[] rejectionInfo = rejection.get();
-                String status = rejectionInfo[0];
-                String errorMessage = rejectionInfo[1];
-
-                logger.info("Request rejected after {} attempts ({}ms): status={}, message={}",
-                           attempts + 1, System.currentTimeMillis() - startTime, status, errorMessage);
-
-                // Clear the rejection cache entry
-                cacheService.clearRejection(userId, skuId);
-
-                // Throw exception with rejection details for error handling
-                throw new ReservationFailedException(status, errorMessage);
-            }
+    public CompletableFuture<Reservation> createReservationAsync(String userId, String skuId, Integer quantity) {
+        int pending = asyncReservationService.getPendingOutcomeCount();
+        if (pending >= asyncMaxPending) {
+            logger.warn("Shedding async reservation for user: {}, SKU: {} - {} requests pending",
+                       userId, skuId, pending);
+            metricsService.recordError("RESERVATION_OVERLOADED", "createReservationAsync");
+            throw new ReservationOverloadedException(pending, lagTracker.suggestRetryAfterSeconds(skuId));
+        }
 
-            // Check if reservation was created (success path)
-            Optional<String> cachedReservationId = cacheService.getActiveReservation(userId, skuId);
-
-            if (cachedReservationId.isPresent()) {
-                // Reservation was created by batch consumer
-                Optional<Reservation> reservation = reservationRepository.findById(cachedReservationId.get());
-                if (reservation.isPresent()) {
-                    logger.debug("Found reservation after {} attempts ({}ms) with interval progression: {}",
-                               attempts + 1,
-                               System.currentTimeMillis() - startTime,
-                               reservation.get().getReservationId());
-                    return reservation.get();
-                }
-            }
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<ReservationResponseMessage> outcomeFuture =
+                asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity);
+
+        // Timing out the registered future also releases its registry entry
+        return outcomeFuture
+                .orTimeout(asyncTimeoutMs, TimeUnit.MILLISECONDS)
+                .handle((outcome, ex) -> {
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                                ? ex.getCause()
+                                : ex;
+                        if (cause instanceof TimeoutException) {
+                            logger.warn("Async reservation timed out after {}ms: userId={}, skuId={}",
+                                       asyncTimeoutMs, userId, skuId);
+                            metricsService.recordError("RESERVATION_TIMEOUT", "createReservationAsync");
+                            throw new ReservationTimeoutException(skuId, asyncTimeoutMs);
+                        }
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        throw new CompletionException(cause);
+                    }
+
+                    Reservation reservation = toReservation(outcome, userId, skuId, quantity);
+                    metricsService.recordEndToEndLatency(System.currentTimeMillis() - startTime);
+                    return reservation;
+                });
+    }
 
-            // Not ready yet, wait and retry with progressive backoff
-            attempts++;
+    /**
+     * Map a batch outcome to the created reservation.
+     * The outcome carries everything the caller needs - no read-back from the database.
+     *
+     * @throws ReservationFailedException if the batch consumer rejected the request
+     */
+    Reservation toReservation(ReservationResponseMessage outcome, String userId, String skuId,
+                              Integer quantity) {
+        if (outcome.getStatus() != ReservationResponseMessage.ResponseStatus.SUCCESS) {
+            logger.info("Request rejected: requestId={}, status={}, message={}",
+                       outcome.getRequestId(), outcome.getStatus(), outcome.getErrorMessage());
+            throw new ReservationFailedException(outcome.getStatus().name(), outcome.getErrorMessage());
+        }
 
-            // Progressive backoff: 5ms → 10ms → 20ms → 50ms → 100ms (capped)
-            if (attempts > RESERVATION_POLL_BACKOFF_THRESHOLD && pollInterval < RESERVATION_POLL_MAX_INTERVAL_MS) {
-                pollInterval = Math.min(pollInterval * 2, RESERVATION_POLL_MAX_INTERVAL_MS);
-            }
+        return Reservation.builder()
+                .reservationId(outcome.getReservationId())
+                .userId(userId)
+                .skuId(skuId)
+                .quantity(quantity)
+                .status(ReservationStatus.RESERVED)
+                .expiresAt(outcome.getExpiresAt())
+                .createdAt(outcome.getProcessedAt())
+                .build();
+    }
 
-            try {
-                Thread.sleep(pollInterval);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.warn("Polling interrupted for userId={}, skuId={} after {} attempts", userId, skuId, attempts);
-                return null;
+    /**
+     * Wait for the outcome published by the batch consumer.
+     *
+     * The InventoryBatchConsumer processes requests in batches of 250 every 10ms and
+     * publishes one outcome per request; ReservationResponseListener completes the
+     * future as soon as it arrives, so the wait ends with the batch rather than on
+     * the next polling tick.
+     *
+     * @param outcomeFuture Future registered for the request
+     * @param userId User ID
+     * @param skuId SKU ID
+     * @return Outcome, or null on timeout
+     * @throws IllegalStateException if pre-validation failed before publishing
+     * @throws ReservationQueuedException if the user was placed in the waiting room
+     */
+    private ReservationResponseMessage awaitOutcome(CompletableFuture<ReservationResponseMessage> outcomeFuture,
+                                                    String userId, String skuId) {
+        try {
+            return outcomeFuture.get(outcomeTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Release the registry entry; a late outcome will simply be ignored
+            outcomeFuture.cancel(false);
+            logger.warn("Timed out after {}ms waiting for outcome: userId={}, skuId={}",
+                       outcomeTimeoutMs, userId, skuId);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcomeFuture.cancel(false);
+            logger.warn("Interrupted waiting for outcome: userId={}, skuId={}", userId, skuId);
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalStateException) {
+                throw (IllegalStateException) e.getCause();
             }
+            if (e.getCause() instanceof ReservationQueuedException) {
+                throw (ReservationQueuedException) e.getCause();
+            }
+            throw new RuntimeException("Failed to submit reservation request", e.getCause());
         }
-
-        logger.warn("Polling timeout after {} attempts ({}ms) for userId={}, skuId={}",
-                   attempts, System.currentTimeMillis() - startTime, userId, skuId);
-        return null;
     }
 
     /**
@@ -300,9 +369,14 @@ public class ReservationService {
         // Release inventory in database
         inventoryRepository.decrementReservedCount(reservation.getSkuId(), reservation.getQuantity());
 
-        // Update cache
-        cacheService.incrementStockCount(reservation.getSkuId(), reservation.getQuantity());
+        // Update cache and reopen the SKU on every node if it was marked sold out
+        Long availableCount = cacheService.incrementStockCount(reservation.getSkuId(), reservation.getQuantity());
         cacheService.clearActiveReservation(reservation.getUserId(), reservation.getSkuId());
+        kafkaProducerService.publishInventoryUpdate(
+                reservation.getSkuId(),
+                availableCount != null ? availableCount.intValue() : null,
+                KafkaProducerService.INVENTORY_EVENT_RELEASED
+        );
 
         // Record metrics
         metricsService.recordReservationExpiry(reservation.getSkuId());
@@ -359,9 +433,14 @@ public class ReservationService {
         // Release inventory in database
         inventoryRepository.decrementReservedCount(reservation.getSkuId(), reservation.getQuantity());
 
-        // Update cache
-        cacheService.incrementStockCount(reservation.getSkuId(), reservation.getQuantity());
+        // Update cache and reopen the SKU on every node if it was marked sold out
+        Long availableCount = cacheService.incrementStockCount(reservation.getSkuId(), reservation.getQuantity());
         cacheService.clearActiveReservation(reservation.getUserId(), reservation.getSkuId());
+        kafkaProducerService.publishInventoryUpdate(
+                reservation.getSkuId(),
+                availableCount != null ? availableCount.intValue() : null,
+                KafkaProducerService.INVENTORY_EVENT_RELEASED
+        );
 
         // Record metrics
         metricsService.recordReservationCancellation(reservation.getSkuId());
@@ -381,4 +460,25 @@ public class ReservationService {
         return reservationRepository.findActiveReservationsByUserId(userId, Instant.now());
     }
 
+    /**
+     * Get a user's position in a SKU's waiting room.
+     *
+     * @param userId User ID
+     * @param skuId Product SKU ID
+     * @return 1-based queue position, or 0 if the user is not waiting
+     */
+    public long getQueuePosition(String userId, String skuId) {
+        return asyncReservationService.getQueuePosition(userId, skuId);
+    }
+
+    /**
+     * Get the number of users waiting for admission to a SKU.
+     *
+     * @param skuId Product SKU ID
+     * @return Waiting room size
+     */
+    public int getQueueDepth(String skuId) {
+        return asyncReservationService.getEstimatedQueueDepth(skuId);
+    }
+
 }
@@ -63,7 +63,9 @@ import static org.mockito.Mockito.when;
     "spring.kafka.consumer.auto-offset-reset=earliest",
     "spring.kafka.consumer.group-id=test-consumer-group",
     "spring.kafka.consumer.enable-auto-commit=false",
-    "spring.kafka.consumer.max-poll-records=250"
+    "spring.kafka.consumer.max-poll-records=250",
+    // Tests rewrite the inventory row under the consumer and assert on it right after a batch
+    "flashsale.kafka.inventory-ledger.enabled=false"
 })
 @EmbeddedKafka(
     partitions = 1,
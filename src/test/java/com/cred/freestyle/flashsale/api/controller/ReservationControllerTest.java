@@ -1,9 +1,15 @@
 package com.cred.freestyle.flashsale.api.controller;
 
 import com.cred.freestyle.flashsale.api.exception.GlobalExceptionHandler;
+import com.cred.freestyle.flashsale.config.SecurityConfig;
 import com.cred.freestyle.flashsale.domain.model.Reservation;
 import com.cred.freestyle.flashsale.domain.model.Reservation.ReservationStatus;
+import com.cred.freestyle.flashsale.exception.CartReservationFailedException;
+import com.cred.freestyle.flashsale.exception.ReservationOverloadedException;
+import com.cred.freestyle.flashsale.exception.ReservationQueuedException;
+import com.cred.freestyle.flashsale.exception.ReservationTimeoutException;
 import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import com.cred.freestyle.flashsale.service.CartReservationService;
 import com.cred.freestyle.flashsale.service.ReservationService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,12 +19,14 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -29,19 +37,25 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 /**
  * Unit tests for ReservationController using MockMvc.
- * Tests HTTP layer in isolation with mocked service dependencies.
+ * Tests HTTP layer in isolation with mocked service dependencies, behind the application's
+ * security chain: requests authenticate as the gateway would, with the X-User-Id header.
  */
 @WebMvcTest(ReservationController.class)
-@ContextConfiguration(classes = {ReservationController.class, GlobalExceptionHandler.class})
+@ContextConfiguration(classes = {ReservationController.class, GlobalExceptionHandler.class, SecurityConfig.class})
 @DisplayName("ReservationController Tests")
 class ReservationControllerTest {
 
+    private static final String USER_ID_HEADER = "X-User-Id";
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockBean
     private ReservationService reservationService;
 
+    @MockBean
+    private CartReservationService cartReservationService;
+
     @MockBean
     private CloudWatchMetricsService metricsService;
 
@@ -76,6 +90,7 @@ class ReservationControllerTest {
 
         // When / Then
         mockMvc.perform(post("/api/v1/reservations")
+                        .header(USER_ID_HEADER, "user-123")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().isCreated())
@@ -102,6 +117,7 @@ class ReservationControllerTest {
 
         // When / Then
         mockMvc.perform(post("/api/v1/reservations")
+                        .header(USER_ID_HEADER, "user-123")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().isBadRequest());
@@ -122,6 +138,7 @@ class ReservationControllerTest {
 
         // When / Then
         mockMvc.perform(post("/api/v1/reservations")
+                        .header(USER_ID_HEADER, "user-123")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().isBadRequest());
@@ -143,6 +160,7 @@ class ReservationControllerTest {
 
         // When / Then
         mockMvc.perform(post("/api/v1/reservations")
+                        .header(USER_ID_HEADER, "user-123")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().isBadRequest());
@@ -167,6 +185,7 @@ class ReservationControllerTest {
 
         // When / Then
         mockMvc.perform(post("/api/v1/reservations")
+                        .header(USER_ID_HEADER, "user-123")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().is4xxClientError());
@@ -191,6 +210,7 @@ class ReservationControllerTest {
 
         // When / Then
         mockMvc.perform(post("/api/v1/reservations")
+                        .header(USER_ID_HEADER, "user-123")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().is4xxClientError());
@@ -215,6 +235,7 @@ class ReservationControllerTest {
 
         // When / Then
         mockMvc.perform(post("/api/v1/reservations")
+                        .header(USER_ID_HEADER, "user-123")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().is4xxClientError());
@@ -222,6 +243,255 @@ class ReservationControllerTest {
         verify(metricsService).recordReservationFailure("SKU-001", "DUPLICATE_RESERVATION");
     }
 
+    // ========================================
+    // POST /api/v1/reservations/async Tests
+    // ========================================
+
+    @Test
+    @DisplayName("POST /reservations/async - Completed outcome returns 201 Created")
+    void createReservationAsync_ValidRequest_Returns201() throws Exception {
+        // Given
+        String requestBody = """
+                {
+                    "userId": "user-123",
+                    "skuId": "SKU-001",
+                    "quantity": 1
+                }
+                """;
+
+        Reservation reservation = Reservation.builder()
+                .reservationId("RES-001")
+                .userId("user-123")
+                .skuId("SKU-001")
+                .quantity(1)
+                .status(ReservationStatus.RESERVED)
+                .expiresAt(Instant.now().plus(2, ChronoUnit.MINUTES))
+                .createdAt(Instant.now())
+                .build();
+
+        when(reservationService.createReservationAsync("user-123", "SKU-001", 1))
+                .thenReturn(CompletableFuture.completedFuture(reservation));
+
+        // When
+        MvcResult asyncResult = mockMvc.perform(post("/api/v1/reservations/async")
+                        .header(USER_ID_HEADER, "user-123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.reservationId").value("RES-001"))
+                .andExpect(jsonPath("$.status").value("RESERVED"));
+
+        verify(reservationService, never()).createReservation(any(), any(), any());
+        verify(metricsService).recordReservationLatency(anyLong());
+    }
+
+    @Test
+    @DisplayName("POST /reservations/async - Overloaded node returns 503 with Retry-After")
+    void createReservationAsync_Overloaded_Returns503() throws Exception {
+        // Given
+        String requestBody = """
+                {
+                    "userId": "user-123",
+                    "skuId": "SKU-001",
+                    "quantity": 1
+                }
+                """;
+
+        when(reservationService.createReservationAsync("user-123", "SKU-001", 1))
+                .thenThrow(new ReservationOverloadedException(20000, 1));
+
+        // When / Then
+        mockMvc.perform(post("/api/v1/reservations/async")
+                        .header(USER_ID_HEADER, "user-123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    @DisplayName("POST /reservations/async - Missing outcome returns 504 Gateway Timeout")
+    void createReservationAsync_Timeout_Returns504() throws Exception {
+        // Given
+        String requestBody = """
+                {
+                    "userId": "user-123",
+                    "skuId": "SKU-001",
+                    "quantity": 1
+                }
+                """;
+
+        when(reservationService.createReservationAsync("user-123", "SKU-001", 1))
+                .thenReturn(CompletableFuture.failedFuture(new ReservationTimeoutException("SKU-001", 5000)));
+
+        // When
+        MvcResult asyncResult = mockMvc.perform(post("/api/v1/reservations/async")
+                        .header(USER_ID_HEADER, "user-123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isGatewayTimeout());
+    }
+
+    @Test
+    @DisplayName("POST /reservations/async - Waiting room returns 202 with queue position")
+    void createReservationAsync_Queued_Returns202() throws Exception {
+        // Given
+        String requestBody = """
+                {
+                    "userId": "user-123",
+                    "skuId": "SKU-001",
+                    "quantity": 1
+                }
+                """;
+
+        when(reservationService.createReservationAsync("user-123", "SKU-001", 1))
+                .thenReturn(CompletableFuture.failedFuture(new ReservationQueuedException("SKU-001", 12, 1)));
+
+        // When
+        MvcResult asyncResult = mockMvc.perform(post("/api/v1/reservations/async")
+                        .header(USER_ID_HEADER, "user-123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.details.queuePosition").value(12));
+    }
+
+    @Test
+    @DisplayName("GET /reservations/queue-position - Returns position and queue depth")
+    void getQueuePosition_Waiting_Returns200() throws Exception {
+        // Given
+        when(reservationService.getQueuePosition("user-123", "SKU-001")).thenReturn(12L);
+        when(reservationService.getQueueDepth("SKU-001")).thenReturn(340);
+
+        // When / Then
+        mockMvc.perform(get("/api/v1/reservations/queue-position")
+                        .header(USER_ID_HEADER, "user-123")
+                        .param("userId", "user-123")
+                        .param("skuId", "SKU-001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.position").value(12))
+                .andExpect(jsonPath("$.queueDepth").value(340))
+                .andExpect(jsonPath("$.waiting").value(true));
+    }
+
+    // ========================================
+    // POST /api/v1/reservations/cart Tests
+    // ========================================
+
+    @Test
+    @DisplayName("POST /reservations/cart - All items reserved returns 201 Created")
+    void createCartReservation_AllReserved_Returns201() throws Exception {
+        // Given
+        String requestBody = """
+                {
+                    "userId": "user-123",
+                    "items": [
+                        { "skuId": "SKU-001", "quantity": 1 },
+                        { "skuId": "SKU-002", "quantity": 1 }
+                    ]
+                }
+                """;
+
+        List<Reservation> reservations = Arrays.asList(
+                Reservation.builder().reservationId("RES-001").userId("user-123").skuId("SKU-001").quantity(1)
+                        .status(ReservationStatus.RESERVED).expiresAt(Instant.now().plus(2, ChronoUnit.MINUTES))
+                        .createdAt(Instant.now()).build(),
+                Reservation.builder().reservationId("RES-002").userId("user-123").skuId("SKU-002").quantity(1)
+                        .status(ReservationStatus.RESERVED).expiresAt(Instant.now().plus(2, ChronoUnit.MINUTES))
+                        .createdAt(Instant.now()).build()
+        );
+
+        when(cartReservationService.reserveCart(eq("user-123"), any()))
+                .thenReturn(CompletableFuture.completedFuture(reservations));
+
+        // When
+        MvcResult asyncResult = mockMvc.perform(post("/api/v1/reservations/cart")
+                        .header(USER_ID_HEADER, "user-123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.itemCount").value(2))
+                .andExpect(jsonPath("$.reservations[1].reservationId").value("RES-002"));
+    }
+
+    @Test
+    @DisplayName("POST /reservations/cart - Rejected item returns 409 naming the SKU")
+    void createCartReservation_ItemRejected_Returns409() throws Exception {
+        // Given
+        String requestBody = """
+                {
+                    "userId": "user-123",
+                    "items": [
+                        { "skuId": "SKU-001", "quantity": 1 },
+                        { "skuId": "SKU-002", "quantity": 1 }
+                    ]
+                }
+                """;
+
+        when(cartReservationService.reserveCart(eq("user-123"), any()))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new CartReservationFailedException("SKU-002", "OUT_OF_STOCK", "Product is out of stock", 1)));
+
+        // When
+        MvcResult asyncResult = mockMvc.perform(post("/api/v1/reservations/cart")
+                        .header(USER_ID_HEADER, "user-123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.details.skuId").value("SKU-002"))
+                .andExpect(jsonPath("$.details.releasedReservations").value(1));
+    }
+
+    @Test
+    @DisplayName("POST /reservations/cart - Duplicate SKU returns 400")
+    void createCartReservation_DuplicateSku_Returns400() throws Exception {
+        // Given
+        String requestBody = """
+                {
+                    "userId": "user-123",
+                    "items": [
+                        { "skuId": "SKU-001", "quantity": 1 },
+                        { "skuId": "SKU-001", "quantity": 1 }
+                    ]
+                }
+                """;
+
+        // When / Then
+        mockMvc.perform(post("/api/v1/reservations/cart")
+                        .header(USER_ID_HEADER, "user-123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cartReservationService);
+    }
+
     // ========================================
     // GET /api/v1/reservations/{id} Tests
     // ========================================
@@ -245,7 +515,8 @@ class ReservationControllerTest {
                 .thenReturn(Optional.of(reservation));
 
         // When / Then
-        mockMvc.perform(get("/api/v1/reservations/{id}", reservationId))
+        mockMvc.perform(get("/api/v1/reservations/{id}", reservationId)
+                        .header(USER_ID_HEADER, "user-123"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.reservationId").value(reservationId))
                 .andExpect(jsonPath("$.userId").value("user-123"))
@@ -263,7 +534,8 @@ class ReservationControllerTest {
                 .thenReturn(Optional.empty());
 
         // When / Then
-        mockMvc.perform(get("/api/v1/reservations/{id}", reservationId))
+        mockMvc.perform(get("/api/v1/reservations/{id}", reservationId)
+                        .header(USER_ID_HEADER, "user-123"))
                 .andExpect(status().isNotFound());
 
         verify(reservationService).findReservationById(reservationId);
@@ -292,7 +564,8 @@ class ReservationControllerTest {
                 .thenReturn(cancelledReservation);
 
         // When / Then
-        mockMvc.perform(delete("/api/v1/reservations/{id}", reservationId))
+        mockMvc.perform(delete("/api/v1/reservations/{id}", reservationId)
+                        .header(USER_ID_HEADER, "user-123"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.reservationId").value(reservationId))
                 .andExpect(jsonPath("$.status").value("CANCELLED"));
@@ -309,7 +582,8 @@ class ReservationControllerTest {
                 .thenThrow(new IllegalStateException("Reservation not found: " + reservationId));
 
         // When / Then
-        mockMvc.perform(delete("/api/v1/reservations/{id}", reservationId))
+        mockMvc.perform(delete("/api/v1/reservations/{id}", reservationId)
+                        .header(USER_ID_HEADER, "user-123"))
                 .andExpect(status().is4xxClientError());
 
         verify(reservationService).cancelReservation(reservationId);
@@ -324,7 +598,8 @@ class ReservationControllerTest {
                 .thenThrow(new IllegalStateException("Cannot cancel reservation with status: CONFIRMED"));
 
         // When / Then
-        mockMvc.perform(delete("/api/v1/reservations/{id}", reservationId))
+        mockMvc.perform(delete("/api/v1/reservations/{id}", reservationId)
+                        .header(USER_ID_HEADER, "user-123"))
                 .andExpect(status().is4xxClientError());
 
         verify(reservationService).cancelReservation(reservationId);
@@ -361,7 +636,8 @@ class ReservationControllerTest {
                 .thenReturn(activeReservations);
 
         // When / Then
-        mockMvc.perform(get("/api/v1/reservations/user/{userId}/active", userId))
+        mockMvc.perform(get("/api/v1/reservations/user/{userId}/active", userId)
+                        .header(USER_ID_HEADER, "user-123"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[0].reservationId").value("RES-001"))
@@ -379,7 +655,8 @@ class ReservationControllerTest {
                 .thenReturn(Arrays.asList());
 
         // When / Then
-        mockMvc.perform(get("/api/v1/reservations/user/{userId}/active", userId))
+        mockMvc.perform(get("/api/v1/reservations/user/{userId}/active", userId)
+                        .header(USER_ID_HEADER, "user-123"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
 
@@ -0,0 +1,107 @@
+package com.cred.freestyle.flashsale.infrastructure.cache;
+
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AdmissionReleaser.
+ *
+ * @author Flash Sale Team
+ */
+@ExtendWith(MockitoExtension.class)
+class AdmissionReleaserTest {
+
+    @Mock
+    private RedisCacheService cacheService;
+
+    @Mock
+    private CloudWatchMetricsService metricsService;
+
+    private AdmissionReleaser releaser;
+
+    @BeforeEach
+    void setUp() {
+        releaser = new AdmissionReleaser(cacheService, metricsService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaser.shutdown();
+    }
+
+    @Test
+    void testRelease_QueuedReleasesGroupedBySku() throws InterruptedException {
+        // Arrange - Redis stalls on the first release while more outcomes arrive
+        CountDownLatch stalled = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            stalled.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(cacheService).releaseAdmissions(Map.of("SKU-001", List.of("req-1")), Map.of());
+        releaser.releaseTicket("SKU-001", "req-1");
+        verify(cacheService, timeout(1000)).releaseAdmissions(anyMap(), anyMap());
+
+        // Act
+        releaser.releaseTicket("SKU-001", "req-2");
+        releaser.releaseTicket("SKU-002", "req-3");
+        releaser.releaseTicket("SKU-001", "req-4");
+        releaser.clearPending("user-2", "SKU-001");
+        releaser.clearPending("user-4", "SKU-001");
+        stalled.countDown();
+
+        // Assert - one pipelined call for everything queued meanwhile, one list per SKU
+        verify(cacheService, timeout(1000)).releaseAdmissions(
+                Map.of("SKU-001", List.of("req-2", "req-4"), "SKU-002", List.of("req-3")),
+                Map.of("SKU-001", List.of("user-2", "user-4")));
+        verify(cacheService, times(2)).releaseAdmissions(anyMap(), anyMap());
+    }
+
+    @Test
+    void testReleaseTicket_BatchSizeCapsOneCall() {
+        // Arrange
+        ReflectionTestUtils.setField(releaser, "releaseBatchSize", 2);
+        CountDownLatch stalled = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            stalled.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(cacheService).releaseAdmissions(Map.of("SKU-001", List.of("req-0")), Map.of());
+        releaser.releaseTicket("SKU-001", "req-0");
+        verify(cacheService, timeout(1000)).releaseAdmissions(anyMap(), anyMap());
+
+        // Act
+        releaser.releaseTicket("SKU-001", "req-1");
+        releaser.releaseTicket("SKU-001", "req-2");
+        releaser.releaseTicket("SKU-001", "req-3");
+        stalled.countDown();
+
+        // Assert
+        verify(cacheService, timeout(1000)).releaseAdmissions(Map.of("SKU-001", List.of("req-1", "req-2")), Map.of());
+        verify(cacheService, timeout(1000)).releaseAdmissions(Map.of("SKU-001", List.of("req-3")), Map.of());
+    }
+
+    @Test
+    void testReleaseTicket_RedisFailureRecorded() {
+        // Arrange
+        doThrow(new RedisConnectionFailureException("Down")).when(cacheService).releaseAdmissions(anyMap(), anyMap());
+
+        // Act
+        releaser.releaseTicket("SKU-001", "req-1");
+
+        // Assert - dropped, the ticket lapses with its expiry
+        verify(metricsService, timeout(1000)).recordError("ADMISSION_RELEASE_ERROR", "releaseAdmissions");
+    }
+}
@@ -4,6 +4,7 @@ import com.cred.freestyle.flashsale.domain.model.Product;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import redis.embedded.RedisServer;
@@ -11,7 +12,10 @@ import redis.embedded.RedisServer;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
@@ -34,6 +38,9 @@ class RedisCacheIT {
     @Autowired
     private RedisCacheService redisCacheService;
 
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
     @BeforeAll
     static void startRedis() throws IOException {
         redisServer = new RedisServer(6370);
@@ -578,4 +585,172 @@ class RedisCacheIT {
         assertThat(result).isPresent();
         assertThat(result.get()).isEqualTo(85); // 100 - 20 + 10 - 5
     }
+
+    // ========================================
+    // Waiting Room Tests
+    // ========================================
+
+    @Test
+    @Order(29)
+    @DisplayName("admitReservation - Tickets beyond stock x factor put users in the waiting room")
+    void admitReservation_TicketsExhausted_UsersWait() {
+        // Given - 2 units, factor 1.0 -> 2 tickets
+        String skuId = "SKU-WAIT";
+        redisCacheService.setStockCount(skuId, 2);
+
+        // When
+        Admission first = redisCacheService.admitReservation("user-1", skuId, 1, "req-1", 1.0);
+        Admission second = redisCacheService.admitReservation("user-2", skuId, 1, "req-2", 1.0);
+        Admission third = redisCacheService.admitReservation("user-3", skuId, 1, "req-3", 1.0);
+        Admission fourth = redisCacheService.admitReservation("user-4", skuId, 1, "req-4", 1.0);
+
+        // Then
+        assertThat(first.isAdmitted()).isTrue();
+        assertThat(second.isAdmitted()).isTrue();
+        assertThat(third.getResult()).isEqualTo(AdmissionResult.WAITING);
+        assertThat(third.getQueuePosition()).isEqualTo(1);
+        assertThat(fourth.getQueuePosition()).isEqualTo(2);
+        assertThat(redisCacheService.getWaitingPosition("user-4", skuId)).isEqualTo(2);
+        assertThat(redisCacheService.getWaitingCount(skuId)).isEqualTo(2);
+    }
+
+    @Test
+    @Order(30)
+    @DisplayName("admitReservation - Released ticket admits the head of the waiting room first")
+    void admitReservation_TicketReleased_HeadAdmittedInOrder() {
+        // Given - 1 ticket held, two users waiting
+        String skuId = "SKU-WAIT-RELEASE";
+        redisCacheService.setStockCount(skuId, 1);
+        redisCacheService.admitReservation("user-1", skuId, 1, "req-1", 1.0);
+        redisCacheService.admitReservation("user-2", skuId, 1, "req-2", 1.0);
+        redisCacheService.admitReservation("user-3", skuId, 1, "req-3", 1.0);
+
+        // When - first request's outcome arrives (rejected), ticket released
+        redisCacheService.releaseAdmissions(Map.of(skuId, List.of("req-1")), Map.of(skuId, List.of("user-1")));
+        Admission secondInLine = redisCacheService.admitReservation("user-3", skuId, 1, "req-3b", 1.0);
+        Admission headOfLine = redisCacheService.admitReservation("user-2", skuId, 1, "req-2b", 1.0);
+
+        // Then - user-3 keeps waiting behind user-2, user-2 takes the freed ticket and leaves the room
+        assertThat(secondInLine.getResult()).isEqualTo(AdmissionResult.WAITING);
+        assertThat(headOfLine.isAdmitted()).isTrue();
+        assertThat(redisCacheService.getWaitingPosition("user-2", skuId)).isZero();
+        assertThat(redisCacheService.getWaitingPosition("user-3", skuId)).isEqualTo(1);
+    }
+
+    @Test
+    @Order(31)
+    @DisplayName("admitReservation - Factor 0 disables the waiting room")
+    void admitReservation_WaitingRoomDisabled_AdmitsWhileStockLasts() {
+        // Given
+        String skuId = "SKU-NO-WAIT";
+        redisCacheService.setStockCount(skuId, 1);
+
+        // When
+        Admission first = redisCacheService.admitReservation("user-1", skuId, 1, "req-1", 0);
+        Admission second = redisCacheService.admitReservation("user-2", skuId, 1, "req-2", 0);
+
+        // Then - stock is only decremented by the consumer, so both pass the gate
+        assertThat(first.isAdmitted()).isTrue();
+        assertThat(second.isAdmitted()).isTrue();
+        assertThat(redisCacheService.getWaitingCount(skuId)).isZero();
+    }
+
+    @Test
+    @Order(32)
+    @DisplayName("getUserSkuFlags - Returns purchase and reservation markers for many users at once")
+    void getUserSkuFlags_MixedUsers() {
+        // Given
+        String skuId = "SKU-BULK";
+        redisCacheService.markUserPurchased("user-1", skuId);
+        redisCacheService.cacheActiveReservation("user-2", skuId, "res-2");
+
+        // When
+        UserSkuFlags flags = redisCacheService.getUserSkuFlags(skuId, List.of("user-1", "user-2", "user-3"));
+
+        // Then
+        assertThat(flags.hasPurchased("user-1")).isTrue();
+        assertThat(flags.hasActiveReservation("user-1")).isFalse();
+        assertThat(flags.hasPurchased("user-2")).isFalse();
+        assertThat(flags.hasActiveReservation("user-2")).isTrue();
+        assertThat(flags.hasPurchased("user-3")).isFalse();
+        assertThat(flags.hasActiveReservation("user-3")).isFalse();
+    }
+
+    @Test
+    @Order(33)
+    @DisplayName("writeBatchOutcomes - Decrements stock and writes reservation keys in one call")
+    void writeBatchOutcomes_AllOutcomesWritten() {
+        // Given
+        String skuId = "SKU-OUTCOMES";
+        redisCacheService.setStockCount(skuId, 10);
+        BatchOutcomes outcomes = BatchOutcomes.forSku(skuId)
+                .decrementStock(2)
+                .reservation("user-1", "res-1")
+                .reservation("user-2", "res-2");
+
+        // When
+        boolean applied = redisCacheService.writeBatchOutcomes(outcomes);
+
+        // Then
+        assertThat(applied).isTrue();
+        assertThat(redisCacheService.getStockCount(skuId)).contains(8);
+        assertThat(redisCacheService.getActiveReservation("user-1", skuId)).contains("res-1");
+        assertThat(redisCacheService.getActiveReservation("user-2", skuId)).contains("res-2");
+        assertThat(redisCacheService.getActiveReservation("user-3", skuId)).isEmpty();
+    }
+
+    @Test
+    @Order(34)
+    @DisplayName("writeBatchOutcomes - Replayed outcomes are not applied twice")
+    void writeBatchOutcomes_Replayed_AppliedOnce() {
+        // Given - a retry after the reply of the first write was lost
+        String skuId = "SKU-OUTCOMES-RETRY";
+        redisCacheService.setStockCount(skuId, 10);
+        BatchOutcomes outcomes = BatchOutcomes.forSku(skuId).decrementStock(3).reservation("user-1", "res-1");
+
+        // When
+        boolean first = redisCacheService.writeBatchOutcomes(outcomes);
+        boolean replay = redisCacheService.writeBatchOutcomes(outcomes);
+
+        // Then
+        assertThat(first).isTrue();
+        assertThat(replay).isFalse();
+        assertThat(redisCacheService.getStockCount(skuId)).contains(7);
+    }
+
+    @Test
+    @Order(35)
+    @DisplayName("writeBatchOutcomes - Missing stock key is not created")
+    void writeBatchOutcomes_StockNotCached_LeftMissing() {
+        // Given
+        String skuId = "SKU-OUTCOMES-NO-STOCK";
+
+        // When
+        redisCacheService.writeBatchOutcomes(BatchOutcomes.forSku(skuId).decrementStock(1).reservation("user-1", "res-1"));
+
+        // Then
+        assertThat(redisCacheService.getStockCount(skuId)).isEmpty();
+        assertThat(redisCacheService.getActiveReservation("user-1", skuId)).contains("res-1");
+    }
+
+    @Test
+    @Order(36)
+    @DisplayName("getWaitingPosition - Polling refreshes the waiting room's TTL")
+    void getWaitingPosition_Polled_WaitingRoomKeptAlive() {
+        // Given - 1 ticket held, one user waiting, room about to expire
+        String skuId = "SKU-WAIT-POLL";
+        redisCacheService.setStockCount(skuId, 1);
+        redisCacheService.admitReservation("user-1", skuId, 1, "req-1", 1.0);
+        redisCacheService.admitReservation("user-2", skuId, 1, "req-2", 1.0);
+        redisTemplate.expire("waiting:" + skuId, Duration.ofMillis(500));
+        redisTemplate.expire("waiting_seen:" + skuId, Duration.ofMillis(500));
+
+        // When
+        long position = redisCacheService.getWaitingPosition("user-2", skuId);
+
+        // Then - both keys live for another idle TTL
+        assertThat(position).isEqualTo(1);
+        assertThat(redisTemplate.getExpire("waiting:" + skuId, TimeUnit.MILLISECONDS)).isGreaterThan(1000);
+        assertThat(redisTemplate.getExpire("waiting_seen:" + skuId, TimeUnit.MILLISECONDS)).isGreaterThan(1000);
+    }
 }
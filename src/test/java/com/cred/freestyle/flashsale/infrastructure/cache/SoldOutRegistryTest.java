@@ -0,0 +1,62 @@
+package com.cred.freestyle.flashsale.infrastructure.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SoldOutRegistry.
+ *
+ * @author Flash Sale Team
+ */
+class SoldOutRegistryTest {
+
+    private static final String TEST_SKU_ID = "SKU-001";
+
+    private SoldOutRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SoldOutRegistry();
+    }
+
+    @Test
+    @DisplayName("isSoldOut - Unknown SKU: Should be open")
+    void isSoldOut_UnknownSku() {
+        assertFalse(registry.isSoldOut(TEST_SKU_ID));
+    }
+
+    @Test
+    @DisplayName("markSoldOut - Should close SKU until reopened")
+    void markSoldOut_ThenReopen() {
+        registry.markSoldOut(TEST_SKU_ID);
+        assertTrue(registry.isSoldOut(TEST_SKU_ID));
+        assertFalse(registry.isSoldOut("SKU-002"));
+
+        registry.reopen(TEST_SKU_ID);
+        assertFalse(registry.isSoldOut(TEST_SKU_ID));
+        assertEquals(0, registry.getSoldOutCount());
+    }
+
+    @Test
+    @DisplayName("isSoldOut - Lapsed marker: Should reopen and evict")
+    void isSoldOut_MarkerLapsesAfterTtl() {
+        ReflectionTestUtils.setField(registry, "ttlMs", -1L);
+        registry.markSoldOut(TEST_SKU_ID);
+
+        assertFalse(registry.isSoldOut(TEST_SKU_ID));
+        assertEquals(0, registry.getSoldOutCount());
+    }
+
+    @Test
+    @DisplayName("isSoldOut - Registry disabled: Should never reject")
+    void isSoldOut_Disabled() {
+        ReflectionTestUtils.setField(registry, "enabled", false);
+        registry.markSoldOut(TEST_SKU_ID);
+
+        assertFalse(registry.isSoldOut(TEST_SKU_ID));
+    }
+}
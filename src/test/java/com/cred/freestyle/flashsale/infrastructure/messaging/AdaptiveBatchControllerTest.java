@@ -0,0 +1,160 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AdaptiveBatchController.
+ *
+ * @author Flash Sale Team
+ */
+@ExtendWith(MockitoExtension.class)
+class AdaptiveBatchControllerTest {
+
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Mock
+    private MessageListenerContainer listenerContainer;
+
+    @Mock
+    private ConsumerLagTracker lagTracker;
+
+    @Mock
+    private CloudWatchMetricsService metricsService;
+
+    private AdaptiveBatchController controller;
+
+    private static final TopicPartition PARTITION = new TopicPartition("reservation-requests", 0);
+
+    @BeforeEach
+    void setUp() {
+        controller = new AdaptiveBatchController(listenerRegistry, lagTracker, metricsService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        controller.shutdown();
+    }
+
+    @Test
+    void testOnPoll_StartsAtInitialBatchSize() {
+        // Act
+        int batchSize = controller.onPoll(PARTITION, 250);
+
+        // Assert
+        assertEquals(250, batchSize);
+        verify(metricsService).registerAdaptiveBatchGauges(eq(0), any(), any());
+    }
+
+    @Test
+    void testOnBatchCompleted_BacklogGrowsBatchUpToMax() {
+        // Arrange - every poll holds more than one batch
+        ReflectionTestUtils.setField(controller, "maxBatchSize", 400);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            int batchSize = controller.onPoll(PARTITION, 1000);
+            controller.onBatchCompleted(0, batchSize, batchSize, batchSize, 10);
+        }
+
+        // Assert
+        assertEquals(400, controller.batchSize(0));
+        assertEquals(0, controller.lingerMs(0));
+    }
+
+    @Test
+    void testOnBatchCompleted_SlowBatchShrinksDownToMin() {
+        // Act - latency above the 50ms target
+        for (int i = 0; i < 10; i++) {
+            int batchSize = controller.onPoll(PARTITION, 250);
+            controller.onBatchCompleted(0, batchSize, batchSize, batchSize, 200);
+        }
+
+        // Assert
+        assertEquals(50, controller.batchSize(0));
+    }
+
+    @Test
+    void testOnBatchCompleted_SoldOutGoesToMaxBatch() {
+        // Arrange
+        controller.onPoll(PARTITION, 100);
+
+        // Act - nothing allocated, fast bulk rejection
+        controller.onBatchCompleted(0, 100, 100, 0, 5);
+
+        // Assert
+        assertEquals(1000, controller.batchSize(0));
+    }
+
+    @Test
+    void testOnPoll_UnderfilledPollsLinger() {
+        // Arrange - quiet partition: small polls, fast batches
+        when(listenerRegistry.getListenerContainer(InventoryBatchConsumer.LISTENER_ID)).thenReturn(listenerContainer);
+        controller.onPoll(PARTITION, 10);
+        controller.onBatchCompleted(0, 10, 10, 10, 5);
+
+        // Act
+        controller.onPoll(PARTITION, 10);
+
+        // Assert - paused for the linger, then resumed by the scheduler
+        assertEquals(5, controller.lingerMs(0));
+        verify(listenerContainer).pausePartition(PARTITION);
+        verify(listenerContainer, timeout(1000)).resumePartition(PARTITION);
+    }
+
+    @Test
+    void testOnBatchCompleted_LingerBoundedByLatencyTarget() {
+        // Act - batches take 40ms of the 50ms target
+        for (int i = 0; i < 10; i++) {
+            controller.onBatchCompleted(0, 10, 10, 10, 40);
+        }
+
+        // Assert
+        assertEquals(10, controller.lingerMs(0));
+    }
+
+    @Test
+    void testOnPartitionsRevoked_ResumesLingeringPartition() {
+        // Arrange - long linger, so only revocation resumes it
+        ReflectionTestUtils.setField(controller, "maxLingerMs", 10_000L);
+        ReflectionTestUtils.setField(controller, "targetLatencyMs", 100_000L);
+        when(listenerRegistry.getListenerContainer(InventoryBatchConsumer.LISTENER_ID)).thenReturn(listenerContainer);
+        for (int i = 0; i < 100; i++) {
+            controller.onBatchCompleted(0, 10, 10, 10, 5);
+        }
+        controller.onPoll(PARTITION, 10);
+
+        // Act
+        controller.onPartitionsRevoked(List.of(PARTITION));
+
+        // Assert
+        verify(listenerContainer).pausePartition(PARTITION);
+        verify(listenerContainer).resumePartition(PARTITION);
+    }
+
+    @Test
+    void testOnPoll_Disabled() {
+        // Arrange
+        ReflectionTestUtils.setField(controller, "enabled", false);
+
+        // Act & Assert - whole poll as one batch, no pause
+        assertEquals(Integer.MAX_VALUE, controller.onPoll(PARTITION, 10));
+        verifyNoInteractions(listenerRegistry, metricsService);
+    }
+}
@@ -0,0 +1,148 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BatchPipeline.
+ *
+ * @author Flash Sale Team
+ */
+class BatchPipelineTest {
+
+    private BatchPipeline<Integer> pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("submit - Batches should pass every stage in submission order")
+    void submit_KeepsOrder() throws Exception {
+        List<String> trace = new CopyOnWriteArrayList<>();
+        LinkedHashMap<String, Consumer<Integer>> stages = new LinkedHashMap<>();
+        stages.put("first", batch -> trace.add("first-" + batch));
+        stages.put("second", batch -> trace.add("second-" + batch));
+        pipeline = new BatchPipeline<>("test", 4, stages);
+
+        CompletableFuture<Void> last = null;
+        for (int batch = 0; batch < 10; batch++) {
+            last = pipeline.submit(batch);
+        }
+        last.get(5, TimeUnit.SECONDS);
+
+        List<String> second = trace.stream().filter(step -> step.startsWith("second")).toList();
+        for (int batch = 0; batch < 10; batch++) {
+            assertEquals("second-" + batch, second.get(batch));
+            assertTrue(trace.indexOf("first-" + batch) < trace.indexOf("second-" + batch));
+        }
+    }
+
+    @Test
+    @DisplayName("submit - Next batch should enter a stage while the previous one is in the next stage")
+    void submit_OverlapsStages() throws Exception {
+        CountDownLatch secondBatchValidated = new CountDownLatch(1);
+        LinkedHashMap<String, Consumer<Integer>> stages = new LinkedHashMap<>();
+        stages.put("validate", batch -> {
+            if (batch == 2) {
+                secondBatchValidated.countDown();
+            }
+        });
+        stages.put("persist", batch -> {
+            if (batch == 1) {
+                await(secondBatchValidated);
+            }
+        });
+        pipeline = new BatchPipeline<>("test", 2, stages);
+
+        pipeline.submit(1);
+        CompletableFuture<Void> second = pipeline.submit(2);
+
+        second.get(5, TimeUnit.SECONDS);
+        assertNull(pipeline.failedBatch());
+    }
+
+    @Test
+    @DisplayName("submit - Should block while depth batches are in flight")
+    void submit_BoundedByDepth() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        LinkedHashMap<String, Consumer<Integer>> stages = new LinkedHashMap<>();
+        stages.put("slow", batch -> await(release));
+        pipeline = new BatchPipeline<>("test", 1, stages);
+
+        pipeline.submit(1);
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+            try {
+                pipeline.submit(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+        assertEquals(1, pipeline.occupancy("slow"));
+
+        release.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+        pipeline.drain();
+        assertEquals(0, pipeline.occupancy("slow"));
+    }
+
+    @Test
+    @DisplayName("submit - Failure should skip the batch's remaining stages and be kept until reset")
+    void submit_FailureKept() throws Exception {
+        List<Integer> published = new CopyOnWriteArrayList<>();
+        LinkedHashMap<String, Consumer<Integer>> stages = new LinkedHashMap<>();
+        stages.put("persist", batch -> {
+            if (batch == 1) {
+                throw new IllegalStateException("Database down");
+            }
+        });
+        stages.put("publish", published::add);
+        pipeline = new BatchPipeline<>("test", 2, stages);
+
+        pipeline.submit(1);
+        pipeline.submit(2);
+        pipeline.drain();
+
+        assertEquals(1, pipeline.failedBatch());
+        assertEquals("Database down", pipeline.failure().getMessage());
+        assertEquals(List.of(2), published);
+
+        pipeline.reset();
+        assertNull(pipeline.failedBatch());
+        assertNull(pipeline.failure());
+    }
+
+    @Test
+    @DisplayName("constructor - Should reject a depth below one")
+    void constructor_InvalidDepth() {
+        LinkedHashMap<String, Consumer<Integer>> stages = new LinkedHashMap<>();
+        stages.put("only", batch -> { });
+
+        assertThrows(IllegalArgumentException.class, () -> new BatchPipeline<>("test", 0, stages));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.ConsumerLagTracker.LagSnapshot;
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import org.apache.kafka.clients.producer.internals.BuiltInPartitioner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ConsumerLagTracker.
+ *
+ * @author Flash Sale Team
+ */
+@ExtendWith(MockitoExtension.class)
+class ConsumerLagTrackerTest {
+
+    @Mock
+    private CloudWatchMetricsService metricsService;
+
+    private ConsumerLagTracker tracker;
+
+    private static final String TEST_SKU_ID = "SKU-001";
+    private static final int PARTITIONS = 10;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new ConsumerLagTracker(metricsService);
+    }
+
+    @Test
+    void testPartitionFor_MatchesProducerPartitioning() {
+        for (int i = 0; i < 100; i++) {
+            String skuId = "SKU-" + i;
+
+            // Act
+            int partition = ConsumerLagTracker.partitionFor(skuId, PARTITIONS);
+
+            // Assert
+            assertEquals(BuiltInPartitioner.partitionForKey(skuId.getBytes(StandardCharsets.UTF_8), PARTITIONS),
+                partition);
+        }
+    }
+
+    @Test
+    void testLagSnapshot_LagAndConsumeRate() {
+        // Arrange
+        LagSnapshot first = LagSnapshot.from(new long[]{100, 50}, new long[]{40, 50}, 1_000, LagSnapshot.EMPTY);
+
+        // Act - 2 seconds later, partition 0 consumed 20 records
+        LagSnapshot second = LagSnapshot.from(new long[]{130, 50}, new long[]{60, 50}, 3_000, first);
+
+        // Assert
+        assertEquals(60, first.getLag(0));
+        assertEquals(0.0, first.getConsumeRate(0)); // No previous sample
+        assertEquals(70, second.getLag(0));
+        assertEquals(0, second.getLag(1));
+        assertEquals(70, second.getTotalLag());
+        assertEquals(10.0, second.getConsumeRate(0));
+        assertEquals(0.0, second.getConsumeRate(1));
+    }
+
+    @Test
+    void testGetLagForSku_UsesSkuPartition() {
+        // Arrange
+        int partition = ConsumerLagTracker.partitionFor(TEST_SKU_ID, PARTITIONS);
+        long[] end = new long[PARTITIONS];
+        end[partition] = 42;
+        setSnapshot(LagSnapshot.from(end, new long[PARTITIONS], 1_000, LagSnapshot.EMPTY));
+
+        // Act
+        long lag = tracker.getLagForSku(TEST_SKU_ID);
+
+        // Assert - SKU gauge registered once
+        assertEquals(42, lag);
+        assertEquals(42, tracker.getTotalLag());
+        tracker.getLagForSku(TEST_SKU_ID);
+        verify(metricsService, times(1)).registerSkuLagGauge(eq(TEST_SKU_ID), any());
+    }
+
+    @Test
+    void testSuggestRetryAfter_FromDrainTime() {
+        // Arrange - 100 records behind, consuming 20/s
+        primeSkuPartition(220, 100, 120);
+
+        // Act / Assert
+        assertEquals(5, tracker.estimateDrainSeconds(TEST_SKU_ID));
+        assertEquals(5, tracker.suggestRetryAfterSeconds(TEST_SKU_ID));
+    }
+
+    @Test
+    void testSuggestRetryAfter_Clamped() {
+        // No sample yet
+        assertEquals(1, tracker.suggestRetryAfterSeconds(TEST_SKU_ID));
+
+        // Arrange - 10,000 records behind, consuming 10/s
+        primeSkuPartition(10_100, 90, 100);
+
+        // Act / Assert
+        assertEquals(1_000, tracker.estimateDrainSeconds(TEST_SKU_ID));
+        assertEquals(30, tracker.suggestRetryAfterSeconds(TEST_SKU_ID));
+    }
+
+    /**
+     * Two samples one second apart for the SKU's partition.
+     */
+    private void primeSkuPartition(long endOffset, long firstCommitted, long secondCommitted) {
+        int partition = ConsumerLagTracker.partitionFor(TEST_SKU_ID, PARTITIONS);
+        long[] end = new long[PARTITIONS];
+        long[] committed1 = new long[PARTITIONS];
+        long[] committed2 = new long[PARTITIONS];
+        end[partition] = endOffset;
+        committed1[partition] = firstCommitted;
+        committed2[partition] = secondCommitted;
+
+        LagSnapshot first = LagSnapshot.from(end, committed1, 1_000, LagSnapshot.EMPTY);
+        setSnapshot(LagSnapshot.from(end, committed2, 2_000, first));
+    }
+
+    private void setSnapshot(LagSnapshot snapshot) {
+        ReflectionTestUtils.setField(tracker, "snapshot", snapshot);
+    }
+}
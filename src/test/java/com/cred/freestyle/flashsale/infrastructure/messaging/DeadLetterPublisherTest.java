@@ -0,0 +1,106 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for DeadLetterPublisher.
+ *
+ * @author Flash Sale Team
+ */
+@ExtendWith(MockitoExtension.class)
+class DeadLetterPublisherTest {
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Mock
+    private CloudWatchMetricsService metricsService;
+
+    private DeadLetterPublisher publisher;
+
+    private static final ConsumerRecord<String, byte[]> RECORD =
+            new ConsumerRecord<>("reservation-requests", 3, 42L, "SKU-001", new byte[]{1, 2, 3});
+
+    @BeforeEach
+    void setUp() {
+        publisher = new DeadLetterPublisher(kafkaTemplate, metricsService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPublish_ForwardsRecordWithFailureMetadata() {
+        // Arrange
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        // Act
+        publisher.publish(RECORD, DeadLetterPublisher.REASON_PROCESSING_FAILED,
+                new IllegalArgumentException("value too long"), 1000);
+
+        // Assert - same key and bytes, original coordinates and failure in the headers
+        ArgumentCaptor<ProducerRecord<String, byte[]>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        ProducerRecord<String, byte[]> deadLetter = captor.getValue();
+        assertEquals("reservation-requests.DLQ", deadLetter.topic());
+        assertEquals("SKU-001", deadLetter.key());
+        assertArrayEquals(new byte[]{1, 2, 3}, deadLetter.value());
+
+        Headers headers = deadLetter.headers();
+        assertEquals("reservation-requests", header(headers, KafkaHeaders.DLT_ORIGINAL_TOPIC));
+        assertEquals(3, ByteBuffer.wrap(headers.lastHeader(KafkaHeaders.DLT_ORIGINAL_PARTITION).value()).getInt());
+        assertEquals(42L, ByteBuffer.wrap(headers.lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET).value()).getLong());
+        assertEquals(IllegalArgumentException.class.getName(), header(headers, KafkaHeaders.DLT_EXCEPTION_FQCN));
+        assertEquals("value too long", header(headers, KafkaHeaders.DLT_EXCEPTION_MESSAGE));
+        assertEquals("PROCESSING_FAILED", header(headers, DeadLetterPublisher.REASON_HEADER));
+        verify(metricsService).recordDeadLetter(3, "PROCESSING_FAILED");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPublish_FailedSendThrows() {
+        // Arrange
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Broker unavailable")));
+
+        // Act & Assert - the caller must not move past the record
+        assertThrows(IllegalStateException.class, () -> publisher.publish(
+                RECORD, DeadLetterPublisher.REASON_UNDECODABLE, new IllegalArgumentException("bad bytes"), 1000));
+        verify(metricsService, never()).recordDeadLetter(anyInt(), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPublish_NoAckWithinTimeoutThrows() {
+        // Arrange - the broker never answers
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+
+        // Act & Assert - the caller's budget is spent, the record is not moved past
+        assertThrows(IllegalStateException.class, () -> publisher.publish(
+                RECORD, DeadLetterPublisher.REASON_PROCESSING_FAILED, new IllegalArgumentException("value too long"), 0));
+        verify(metricsService, never()).recordDeadLetter(anyInt(), anyString());
+    }
+
+    private static String header(Headers headers, String key) {
+        return new String(headers.lastHeader(key).value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,94 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for IdempotencyWindow.
+ *
+ * @author Flash Sale Team
+ */
+class IdempotencyWindowTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    private IdempotencyWindow window;
+
+    @BeforeEach
+    void setUp() {
+        // 10 buckets of 1s, 100 keys (10 per bucket)
+        window = new IdempotencyWindow(10_000, 10, 100, clock::get);
+    }
+
+    @Test
+    @DisplayName("contains - Should remember added keys only")
+    void contains_AddedKeys() {
+        window.add("user1:SKU-001");
+
+        assertTrue(window.contains("user1:SKU-001"));
+        assertFalse(window.contains("user2:SKU-001"));
+        assertEquals(1, window.size());
+    }
+
+    @Test
+    @DisplayName("add - Same key twice in a bucket should be stored once")
+    void add_SameKeyTwice() {
+        window.add("user1:SKU-001");
+        window.add("user1:SKU-001");
+
+        assertEquals(1, window.size());
+    }
+
+    @Test
+    @DisplayName("contains - Should forget keys once the window has passed")
+    void contains_EvictsAfterWindow() {
+        window.add("user1:SKU-001");
+
+        clock.addAndGet(9_000);
+        assertTrue(window.contains("user1:SKU-001"));
+
+        clock.addAndGet(1_000);
+        assertFalse(window.contains("user1:SKU-001"));
+        assertEquals(0, window.size());
+    }
+
+    @Test
+    @DisplayName("add - Full bucket should evict the oldest keys, never grow")
+    void add_BoundedByMaxKeys() {
+        long footprint = window.footprintBytes();
+
+        for (int i = 0; i < 1_000; i++) {
+            window.add("user" + i + ":SKU-001");
+        }
+
+        assertTrue(window.size() <= 100);
+        assertTrue(window.contains("user999:SKU-001"));
+        assertFalse(window.contains("user0:SKU-001"));
+        assertEquals(footprint, window.footprintBytes());
+    }
+
+    @Test
+    @DisplayName("clear - Should forget every key")
+    void clear_ForgetsEverything() {
+        window.add("user1:SKU-001");
+        clock.addAndGet(3_000);
+        window.add("user2:SKU-001");
+
+        window.clear();
+
+        assertFalse(window.contains("user1:SKU-001"));
+        assertFalse(window.contains("user2:SKU-001"));
+        assertEquals(0, window.size());
+    }
+
+    @Test
+    @DisplayName("constructor - Should reject fewer keys than buckets")
+    void constructor_InvalidSizing() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyWindow(10_000, 10, 5));
+    }
+}
@@ -1,27 +1,42 @@
 package com.cred.freestyle.flashsale.infrastructure.messaging;
 
+import com.cred.freestyle.flashsale.domain.model.ConsumerOffset;
 import com.cred.freestyle.flashsale.domain.model.Inventory;
 import com.cred.freestyle.flashsale.domain.model.Reservation;
-import com.cred.freestyle.flashsale.domain.model.Reservation.ReservationStatus;
+import com.cred.freestyle.flashsale.infrastructure.cache.BatchOutcomes;
 import com.cred.freestyle.flashsale.infrastructure.cache.RedisCacheService;
-import com.cred.freestyle.flashsale.infrastructure.lock.RedisDistributedLock;
+import com.cred.freestyle.flashsale.infrastructure.cache.UserSkuFlags;
+import com.cred.freestyle.flashsale.infrastructure.messaging.codec.ReservationRequestCodec;
 import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationEvent;
 import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
 import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import com.cred.freestyle.flashsale.repository.ConsumerOffsetRepository;
 import com.cred.freestyle.flashsale.repository.InventoryRepository;
 import com.cred.freestyle.flashsale.repository.ReservationRepository;
 import com.cred.freestyle.flashsale.repository.UserPurchaseTrackingRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.SerializationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -45,13 +60,13 @@ class InventoryBatchConsumerTest {
     private InventoryRepository inventoryRepository;
 
     @Mock
-    private UserPurchaseTrackingRepository userPurchaseTrackingRepository;
+    private InventoryLedger inventoryLedger;  // Disabled unless a test enables it
 
     @Mock
-    private RedisCacheService cacheService;
+    private UserPurchaseTrackingRepository userPurchaseTrackingRepository;
 
     @Mock
-    private RedisDistributedLock distributedLock;
+    private RedisCacheService cacheService;
 
     @Mock
     private KafkaProducerService kafkaProducerService;
@@ -59,6 +74,21 @@ class InventoryBatchConsumerTest {
     @Mock
     private CloudWatchMetricsService metricsService;
 
+    @Mock
+    private AdaptiveBatchController batchController;
+
+    @Mock
+    private ConsumerOffsetRepository consumerOffsetRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private DeadLetterPublisher deadLetterPublisher;
+
+    @Mock
+    private OutcomeCacheWriter outcomeCacheWriter;
+
     @Mock
     private Acknowledgment acknowledgment;
 
@@ -73,17 +103,32 @@ class InventoryBatchConsumerTest {
 
     @BeforeEach
     void setUp() {
-        objectMapper = new ObjectMapper();
+        objectMapper = new ObjectMapper().findAndRegisterModules(); // Instant support (JavaTimeModule)
         consumer = new InventoryBatchConsumer(
             reservationRepository,
             inventoryRepository,
+            inventoryLedger,
             userPurchaseTrackingRepository,
             cacheService,
-            distributedLock,
             kafkaProducerService,
             metricsService,
+            batchController,
+            consumerOffsetRepository,
+            new TransactionTemplate(transactionManager),
+            deadLetterPublisher,
+            outcomeCacheWriter,
             objectMapper
         );
+        // Polls are processed to completion, statement by statement, unless a test enables
+        // the pipeline or batch transactions
+        ReflectionTestUtils.setField(consumer, "pipelineDepth", 0);
+        ReflectionTestUtils.setField(consumer, "batchTransactions", false);
+
+        // Whole polls are one batch unless a test says otherwise
+        lenient().when(batchController.onPoll(any(TopicPartition.class), anyInt())).thenReturn(Integer.MAX_VALUE);
+
+        // Every user is a cache miss unless a test says otherwise
+        lenient().when(cacheService.getUserSkuFlags(anyString(), anyCollection())).thenReturn(UserSkuFlags.empty());
     }
 
     // ============= consumeReservationRequests Tests =============
@@ -91,7 +136,7 @@ class InventoryBatchConsumerTest {
     @Test
     void testConsumeReservationRequests_EmptyBatch() {
         // Arrange
-        List<ConsumerRecord<String, String>> emptyRecords = new ArrayList<>();
+        List<ConsumerRecord<String, byte[]>> emptyRecords = new ArrayList<>();
 
         // Act
         consumer.consumeReservationRequests(emptyRecords, acknowledgment);
@@ -115,27 +160,14 @@ class InventoryBatchConsumerTest {
     void testConsumeReservationRequests_SuccessfulProcessing() throws Exception {
         // Arrange
         ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
-        List<ConsumerRecord<String, String>> records = Arrays.asList(
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(
             createConsumerRecord(TEST_SKU_ID, message)
         );
 
         // Mock successful processing
         when(inventoryRepository.getAvailableCount(TEST_SKU_ID)).thenReturn(100);
         when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
-        when(cacheService.hasUserPurchased(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.hasActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(anyString())).thenReturn(false);
-
-        Reservation savedReservation = Reservation.builder()
-            .reservationId("res-001")
-            .userId(TEST_USER_ID_1)
-            .skuId(TEST_SKU_ID)
-            .quantity(1)
-            .status(ReservationStatus.RESERVED)
-            .build();
-        when(reservationRepository.saveAll(anyList())).thenReturn(Arrays.asList(savedReservation));
+        stubInsertedReservations("res-001");
 
         // Act
         consumer.consumeReservationRequests(records, acknowledgment);
@@ -151,12 +183,13 @@ class InventoryBatchConsumerTest {
     void testConsumeReservationRequests_FatalError() throws Exception {
         // Arrange
         ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
-        List<ConsumerRecord<String, String>> records = Arrays.asList(
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(
             createConsumerRecord(TEST_SKU_ID, message)
         );
 
-        // Simulate fatal error during processing
-        when(inventoryRepository.getAvailableCount(TEST_SKU_ID)).thenThrow(new RuntimeException("Database error"));
+        // Simulate the database failing during processing (retriable - no record is to blame)
+        when(inventoryRepository.getAvailableCount(TEST_SKU_ID))
+            .thenThrow(new DataAccessResourceFailureException("Database error"));
 
         // Act & Assert
         assertThrows(RuntimeException.class, () -> {
@@ -171,10 +204,10 @@ class InventoryBatchConsumerTest {
     @Test
     void testConsumeReservationRequests_InvalidJsonMessage() throws Exception {
         // Arrange
-        ConsumerRecord<String, String> invalidRecord = new ConsumerRecord<>(
-            "reservation-requests", 0, 0L, TEST_SKU_ID, "{invalid json}"
+        ConsumerRecord<String, byte[]> invalidRecord = new ConsumerRecord<>(
+            "reservation-requests", 0, 0L, TEST_SKU_ID, "{invalid json}".getBytes()
         );
-        List<ConsumerRecord<String, String>> records = Arrays.asList(invalidRecord);
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(invalidRecord);
 
         // Act
         consumer.consumeReservationRequests(records, acknowledgment);
@@ -182,6 +215,137 @@ class InventoryBatchConsumerTest {
         // Assert
         verify(acknowledgment).acknowledge();  // Should acknowledge even with parse errors
         verify(metricsService).recordError("MESSAGE_PARSE_ERROR", "parseMessages");
+        verify(deadLetterPublisher).publish(eq(invalidRecord), eq(DeadLetterPublisher.REASON_UNDECODABLE),
+            any(SerializationException.class), anyLong());
+    }
+
+    @Test
+    void testConsumeReservationRequests_LegacyJsonRecord() throws Exception {
+        // Arrange - JSON record published before the binary format switch
+        ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        ConsumerRecord<String, byte[]> jsonRecord = new ConsumerRecord<>(
+            "reservation-requests", 0, 0L, TEST_SKU_ID, objectMapper.writeValueAsBytes(message)
+        );
+
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations("res-001");
+
+        // Act
+        consumer.consumeReservationRequests(Arrays.asList(jsonRecord), acknowledgment);
+
+        // Assert
+        verify(acknowledgment).acknowledge();
+        verify(inventoryRepository).incrementReservedCount(TEST_SKU_ID, 1);
+        verify(metricsService, never()).recordError("MESSAGE_PARSE_ERROR", "parseMessages");
+    }
+
+    @Test
+    void testConsumeReservationRequests_EnvelopeRecordUnpacked() throws Exception {
+        // Arrange - one envelope record carrying two requests for the same SKU
+        ReservationRequestMessage msg1 = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        ReservationRequestMessage msg2 = createTestMessage(TEST_USER_ID_2, TEST_SKU_ID, TEST_REQUEST_ID_2);
+        ConsumerRecord<String, byte[]> envelope = new ConsumerRecord<>(
+            "reservation-requests", 0, 0L, TEST_SKU_ID, ReservationRequestCodec.encode(Arrays.asList(msg1, msg2))
+        );
+
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 2)).thenReturn(1);
+        stubInsertedReservations("res-001", "res-002");
+
+        // Act
+        consumer.consumeReservationRequests(Arrays.asList(envelope), acknowledgment);
+
+        // Assert - both requests allocated in one batch, each caller gets its own outcome
+        verify(acknowledgment).acknowledge();
+        verify(inventoryRepository).incrementReservedCount(TEST_SKU_ID, 2);
+        verify(metricsService).recordBatchProcessing(eq("ALL"), eq(2), anyLong());
+
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService, times(2)).publishReservationResponse(responseCaptor.capture());
+        assertEquals(TEST_REQUEST_ID_1, responseCaptor.getAllValues().get(0).getRequestId());
+        assertEquals(TEST_REQUEST_ID_2, responseCaptor.getAllValues().get(1).getRequestId());
+    }
+
+    @Test
+    void testConsumeReservationRequests_SkuGroupsProcessedConcurrently() throws Exception {
+        // Arrange - two SKUs on one partition; each allocation waits until the other has started
+        String otherSkuId = "SKU-002";
+        ReservationRequestMessage msg1 = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        ReservationRequestMessage msg2 = createTestMessage(TEST_USER_ID_2, otherSkuId, TEST_REQUEST_ID_2);
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(
+            createConsumerRecord(TEST_SKU_ID, msg1),
+            createConsumerRecord(otherSkuId, msg2)
+        );
+
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        when(inventoryRepository.incrementReservedCount(anyString(), eq(1))).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            return bothStarted.await(5, TimeUnit.SECONDS) ? 1 : 0;
+        });
+        stubInsertedReservations("res-001");
+
+        // Act
+        try {
+            consumer.consumeReservationRequests(records, acknowledgment);
+        } finally {
+            consumer.shutdown();
+        }
+
+        // Assert - both groups allocated side by side, one ack after both finished
+        verify(acknowledgment, times(1)).acknowledge();
+        verify(inventoryRepository).incrementReservedCount(TEST_SKU_ID, 1);
+        verify(inventoryRepository).incrementReservedCount(otherSkuId, 1);
+        verify(inventoryRepository, never()).getAvailableCount(anyString());
+        verify(kafkaProducerService, times(2)).publishReservationResponse(any(ReservationResponseMessage.class));
+        verify(metricsService).recordBatchStageLatency(eq(TEST_SKU_ID), eq("allocate"), anyLong());
+        verify(metricsService).recordBatchStageLatency(eq(otherSkuId), eq("allocate"), anyLong());
+    }
+
+    @Test
+    void testConsumeReservationRequests_SplitIntoControllerBatchSize() {
+        // Arrange - 4 records, controller batch size 2
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            records.add(createConsumerRecord(TEST_SKU_ID, createTestMessage("user" + i, TEST_SKU_ID, "req" + i)));
+        }
+        when(batchController.onPoll(new TopicPartition("reservation-requests", 0), 4)).thenReturn(2);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 2)).thenReturn(1);
+        stubInsertedReservations("res-001", "res-002");
+
+        // Act
+        consumer.consumeReservationRequests(records, acknowledgment);
+
+        // Assert - two allocations of 2, each batch reported, one ack for the poll
+        verify(inventoryRepository, times(2)).incrementReservedCount(TEST_SKU_ID, 2);
+        verify(batchController, times(2)).onBatchCompleted(eq(0), eq(2), eq(2), eq(2), anyLong());
+        verify(acknowledgment, times(1)).acknowledge();
+        verify(metricsService).recordBatchProcessing(eq("ALL"), eq(4), anyLong());
+    }
+
+    @Test
+    void testConsumeReservationRequests_PipelineAcksAfterLastStage() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(consumer, "pipelineDepth", 2);
+        ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(
+            createConsumerRecord(TEST_SKU_ID, message)
+        );
+
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations("res-001");
+
+        // Act
+        try {
+            consumer.consumeReservationRequests(records, acknowledgment);
+
+            // Assert - acked by the publish stage, after the outcome was published
+            verify(metricsService, timeout(5000)).recordBatchProcessing(eq("ALL"), eq(1), anyLong());
+            verify(acknowledgment).acknowledge();
+            verify(kafkaProducerService).publishReservationResponse(any(ReservationResponseMessage.class));
+            verify(reservationRepository).insertIgnoringDuplicates(anyList());
+        } finally {
+            consumer.shutdown();
+        }
     }
 
     // ============= processBatchForSku Tests =============
@@ -195,32 +359,14 @@ class InventoryBatchConsumerTest {
 
         // Phase 1: Full batch allocation succeeds (returns 1 = success)
         when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 2)).thenReturn(1);
-        when(cacheService.hasUserPurchased(anyString(), eq(TEST_SKU_ID))).thenReturn(false);
-        when(cacheService.getActiveReservation(anyString(), eq(TEST_SKU_ID))).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId(anyString(), eq(TEST_SKU_ID))).thenReturn(false);
-        when(reservationRepository.hasActiveReservation(anyString(), eq(TEST_SKU_ID))).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(anyString())).thenReturn(false);
-
-        Reservation res1 = Reservation.builder()
-            .reservationId("res-001")
-            .userId(TEST_USER_ID_1)
-            .skuId(TEST_SKU_ID)
-            .quantity(1)
-            .build();
-        Reservation res2 = Reservation.builder()
-            .reservationId("res-002")
-            .userId(TEST_USER_ID_2)
-            .skuId(TEST_SKU_ID)
-            .quantity(1)
-            .build();
-        when(reservationRepository.saveAll(anyList())).thenReturn(Arrays.asList(res1, res2));
+        stubInsertedReservations("res-001", "res-002");
 
         when(inventoryRepository.findBySkuId(TEST_SKU_ID)).thenReturn(Optional.of(
             createInventory(TEST_SKU_ID, 100, 2, 0)
         ));
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert
         // Verify Phase 1: Full batch allocation in single call
@@ -230,13 +376,17 @@ class InventoryBatchConsumerTest {
 
         @SuppressWarnings("unchecked")
         ArgumentCaptor<List<Reservation>> reservationCaptor = ArgumentCaptor.forClass(List.class);
-        verify(reservationRepository).saveAll(reservationCaptor.capture());
+        verify(reservationRepository).insertIgnoringDuplicates(reservationCaptor.capture());
         assertEquals(2, reservationCaptor.getValue().size());
 
-        verify(cacheService).decrementStockCount(TEST_SKU_ID, 2);
+        ArgumentCaptor<BatchOutcomes> outcomesCaptor = ArgumentCaptor.forClass(BatchOutcomes.class);
+        verify(outcomeCacheWriter).write(outcomesCaptor.capture());
+        assertEquals(2, outcomesCaptor.getValue().getStockDecrement());
+        assertEquals(2, outcomesCaptor.getValue().getReservations().size());
         verify(kafkaProducerService, times(2)).publishReservationCreated(any(ReservationEvent.class));
-        verify(metricsService, times(2)).recordReservationSuccess(TEST_SKU_ID);
+        verify(metricsService).recordReservationSuccess(TEST_SKU_ID, 2);
         verify(metricsService).recordBatchAllocationRate(TEST_SKU_ID, 2, 2);
+        verify(kafkaProducerService, never()).publishInventoryUpdate(anyString(), any(), anyString());
     }
 
     @Test
@@ -255,22 +405,14 @@ class InventoryBatchConsumerTest {
         when(inventoryRepository.getAvailableCount(TEST_SKU_ID)).thenReturn(2);
         when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 2)).thenReturn(1);
 
-        when(cacheService.hasUserPurchased(anyString(), eq(TEST_SKU_ID))).thenReturn(false);
-        when(cacheService.getActiveReservation(anyString(), eq(TEST_SKU_ID))).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId(anyString(), eq(TEST_SKU_ID))).thenReturn(false);
-        when(reservationRepository.hasActiveReservation(anyString(), eq(TEST_SKU_ID))).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(anyString())).thenReturn(false);
-
-        Reservation res1 = Reservation.builder().reservationId("res-001").userId("user1").skuId(TEST_SKU_ID).quantity(1).build();
-        Reservation res2 = Reservation.builder().reservationId("res-002").userId("user2").skuId(TEST_SKU_ID).quantity(1).build();
-        when(reservationRepository.saveAll(anyList())).thenReturn(Arrays.asList(res1, res2));
+        stubInsertedReservations("res-001", "res-002");
 
         when(inventoryRepository.findBySkuId(TEST_SKU_ID)).thenReturn(Optional.of(
             createInventory(TEST_SKU_ID, 100, 2, 0)
         ));
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert
         // Verify Phase 1: Tried full batch first
@@ -282,11 +424,12 @@ class InventoryBatchConsumerTest {
 
         @SuppressWarnings("unchecked")
         ArgumentCaptor<List<Reservation>> reservationCaptor = ArgumentCaptor.forClass(List.class);
-        verify(reservationRepository).saveAll(reservationCaptor.capture());
+        verify(reservationRepository).insertIgnoringDuplicates(reservationCaptor.capture());
         assertEquals(2, reservationCaptor.getValue().size());  // Only 2 reservations (FIFO)
 
         verify(kafkaProducerService, times(2)).publishReservationCreated(any(ReservationEvent.class));
         verify(metricsService).recordBatchAllocationRate(TEST_SKU_ID, 2, 3);  // 2 out of 3
+        verify(kafkaProducerService).publishInventoryUpdate(TEST_SKU_ID, 0, KafkaProducerService.INVENTORY_EVENT_SOLD_OUT);
     }
 
     @Test
@@ -300,21 +443,74 @@ class InventoryBatchConsumerTest {
         // Phase 2: Read available count - 0
         when(inventoryRepository.getAvailableCount(TEST_SKU_ID)).thenReturn(0);
 
-        when(cacheService.hasUserPurchased(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.hasActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(anyString())).thenReturn(false);
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert
         verify(inventoryRepository).incrementReservedCount(TEST_SKU_ID, 1);  // Phase 1 attempt
         verify(inventoryRepository).getAvailableCount(TEST_SKU_ID);  // Phase 2 read
-        verify(reservationRepository, never()).saveAll(anyList());
+        verify(reservationRepository, never()).insertIgnoringDuplicates(anyList());
         verify(metricsService).recordBatchAllocationRate(TEST_SKU_ID, 0, 1);
         verify(metricsService).recordInventoryStockOut(TEST_SKU_ID);
+        verify(kafkaProducerService).publishInventoryUpdate(TEST_SKU_ID, 0, KafkaProducerService.INVENTORY_EVENT_SOLD_OUT);
+    }
+
+    @Test
+    void testProcessBatchForSku_PartialAllocation_OneSoldOutOutcome() {
+        // Arrange - 3 requests, 1 available
+        ReservationRequestMessage msg1 = createTestMessage("user1", TEST_SKU_ID, "req1");
+        ReservationRequestMessage msg2 = createTestMessage("user2", TEST_SKU_ID, "req2");
+        ReservationRequestMessage msg3 = createTestMessage("user3", TEST_SKU_ID, "req3");
+
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 3)).thenReturn(0);
+        when(inventoryRepository.getAvailableCount(TEST_SKU_ID)).thenReturn(1);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations("res-001");
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, Arrays.asList(msg1, msg2, msg3));
+
+        // Assert - one success, then a single outcome covering both rejected requests
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService, times(2)).publishReservationResponse(responseCaptor.capture());
+
+        ReservationResponseMessage success = responseCaptor.getAllValues().get(0);
+        assertEquals("req1", success.getRequestId());
+        assertEquals(ReservationResponseMessage.ResponseStatus.SUCCESS, success.getStatus());
+
+        ReservationResponseMessage soldOut = responseCaptor.getAllValues().get(1);
+        assertTrue(soldOut.isBatch());
+        assertEquals(TEST_SKU_ID, soldOut.getSkuId());
+        assertEquals(Arrays.asList("req2", "req3"), soldOut.getRequestIds());
+        assertEquals(ReservationResponseMessage.ResponseStatus.OUT_OF_STOCK, soldOut.getStatus());
+    }
+
+    @Test
+    void testProcessBatchForSku_PartialAllocation_OneCacheWriteForAllOutcomes() {
+        // Arrange - 3 requests, 1 available
+        ReservationRequestMessage msg1 = createTestMessage("user1", TEST_SKU_ID, "req1");
+        ReservationRequestMessage msg2 = createTestMessage("user2", TEST_SKU_ID, "req2");
+        ReservationRequestMessage msg3 = createTestMessage("user3", TEST_SKU_ID, "req3");
+
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 3)).thenReturn(0);
+        when(inventoryRepository.getAvailableCount(TEST_SKU_ID)).thenReturn(1);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations("res-001");
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, Arrays.asList(msg1, msg2, msg3));
+
+        // Assert - decrement and reservation key handed over together, no keys for the rejected users
+        ArgumentCaptor<BatchOutcomes> outcomesCaptor = ArgumentCaptor.forClass(BatchOutcomes.class);
+        verify(outcomeCacheWriter).write(outcomesCaptor.capture());
+        BatchOutcomes outcomes = outcomesCaptor.getValue();
+        assertEquals(TEST_SKU_ID, outcomes.getSkuId());
+        assertEquals(1, outcomes.getStockDecrement());
+        assertEquals(Map.of("user1", "res-001"), outcomes.getReservations());
+        verify(cacheService, never()).cacheActiveReservation(anyString(), anyString(), anyString());
+        verify(metricsService).recordReservationSuccess(TEST_SKU_ID, 1);
     }
 
     @Test
@@ -323,15 +519,15 @@ class InventoryBatchConsumerTest {
         ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
         List<ReservationRequestMessage> requests = Arrays.asList(message);
 
-        when(cacheService.hasUserPurchased(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(true);  // Already purchased
+        stubCachedFlags(Set.of(TEST_USER_ID_1), Set.of());  // Already purchased
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert - No allocation attempt since no valid requests
         verify(inventoryRepository, never()).incrementReservedCount(anyString(), anyInt());
         verify(inventoryRepository, never()).getAvailableCount(anyString());
-        verify(reservationRepository, never()).saveAll(anyList());
+        verify(reservationRepository, never()).insertIgnoringDuplicates(anyList());
         verify(metricsService).recordReservationFailure(TEST_SKU_ID, "USER_ALREADY_PURCHASED");
         verify(metricsService).recordBatchAllocationRate(TEST_SKU_ID, 0, 1);
     }
@@ -342,41 +538,83 @@ class InventoryBatchConsumerTest {
         ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
         List<ReservationRequestMessage> requests = Arrays.asList(message);
 
-        when(cacheService.hasUserPurchased(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID_1, TEST_SKU_ID))
-            .thenReturn(Optional.of("existing-reservation"));  // Has active reservation
+        stubCachedFlags(Set.of(), Set.of(TEST_USER_ID_1));  // Has active reservation
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert - No allocation attempt since no valid requests
         verify(inventoryRepository, never()).incrementReservedCount(anyString(), anyInt());
         verify(inventoryRepository, never()).getAvailableCount(anyString());
-        verify(reservationRepository, never()).saveAll(anyList());
+        verify(reservationRepository, never()).insertIgnoringDuplicates(anyList());
         verify(metricsService).recordReservationFailure(TEST_SKU_ID, "USER_HAS_ACTIVE_RESERVATION");
         verify(metricsService).recordBatchAllocationRate(TEST_SKU_ID, 0, 1);
     }
 
     @Test
     void testProcessBatchForSku_DuplicateRequest() {
-        // Arrange - All requests filtered out during validation
+        // Arrange - Key already stored (e.g. redelivered batch): allocated, then dropped on insert
         ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
         List<ReservationRequestMessage> requests = Arrays.asList(message);
 
-        when(cacheService.hasUserPurchased(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.hasActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(message.getIdempotencyKey())).thenReturn(true);  // Duplicate
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations();  // ON CONFLICT DO NOTHING - nothing inserted
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
-        // Assert - No allocation attempt since no valid requests
-        verify(inventoryRepository, never()).incrementReservedCount(anyString(), anyInt());
-        verify(inventoryRepository, never()).getAvailableCount(anyString());
-        verify(reservationRepository, never()).saveAll(anyList());
+        // Assert - rejected as duplicate and the allocated unit handed back
+        verify(inventoryRepository).decrementReservedCount(TEST_SKU_ID, 1);
+        verify(metricsService).recordReservationFailure(TEST_SKU_ID, "DUPLICATE_REQUEST");
         verify(metricsService).recordBatchAllocationRate(TEST_SKU_ID, 0, 1);
+        verify(outcomeCacheWriter).write(argThat(BatchOutcomes::isEmpty));  // No stock decrement, no keys
+
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService).publishReservationResponse(responseCaptor.capture());
+        assertEquals(ReservationResponseMessage.ResponseStatus.DUPLICATE_REQUEST,
+            responseCaptor.getValue().getStatus());
+    }
+
+    @Test
+    void testProcessBatchForSku_DuplicateOfStoredKey_SkippedBeforeAllocation() {
+        // Arrange - First batch stores the key; the redelivered request comes in a later batch
+        ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations("res-001");
+        consumer.processBatchForSku(0, TEST_SKU_ID, Arrays.asList(message));
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, Arrays.asList(copyOf(message, TEST_REQUEST_ID_2)));
+
+        // Assert - no second allocation, lock or existence query
+        verify(metricsService).recordCacheHit("idempotency_window");
+        verify(inventoryRepository, times(1)).incrementReservedCount(anyString(), anyInt());
+        verify(reservationRepository, times(1)).insertIgnoringDuplicates(anyList());
+        verify(reservationRepository, never()).existsByIdempotencyKey(anyString());
+    }
+
+    @Test
+    void testProcessBatchForSku_IdempotencyWindowResetOnReassignment() {
+        // Arrange - key stored, then the partition is revoked and assigned again
+        ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        TopicPartition partition = new TopicPartition("reservation-requests", 0);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations("res-001");
+        consumer.processBatchForSku(0, TEST_SKU_ID, Arrays.asList(message));
+
+        consumer.onPartitionsRevoked(List.of(partition));
+        consumer.onPartitionsAssigned(Map.of(partition, 0L), null);
+        stubInsertedReservations();  // Stored by the first batch - ON CONFLICT DO NOTHING
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, Arrays.asList(copyOf(message, TEST_REQUEST_ID_2)));
+
+        // Assert - window forgot the key, so the duplicate is caught by the insert instead
+        verify(inventoryRepository, times(2)).incrementReservedCount(TEST_SKU_ID, 1);
+        verify(reservationRepository, times(2)).insertIgnoringDuplicates(anyList());
+        verify(inventoryRepository).decrementReservedCount(TEST_SKU_ID, 1);
+        verify(metricsService, never()).recordCacheHit("idempotency_window");
     }
 
     @Test
@@ -392,19 +630,14 @@ class InventoryBatchConsumerTest {
         // This stubbing is intentionally lenient - if called with 1, return 0 (failure)
         when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(0);
 
-        when(cacheService.hasUserPurchased(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.hasActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(anyString())).thenReturn(false);
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert
         verify(inventoryRepository, times(2)).incrementReservedCount(TEST_SKU_ID, 1);  // Phase 1 + Phase 2
         verify(inventoryRepository).getAvailableCount(TEST_SKU_ID);
-        verify(reservationRepository, never()).saveAll(anyList());  // Should not create reservations
+        verify(reservationRepository, never()).insertIgnoringDuplicates(anyList());  // Should not create reservations
         verify(metricsService).recordBatchAllocationRate(TEST_SKU_ID, 0, 1);
         verify(metricsService).recordInventoryStockOut(TEST_SKU_ID);
     }
@@ -417,26 +650,14 @@ class InventoryBatchConsumerTest {
 
         // Phase 1: Full batch succeeds
         when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
-        when(cacheService.hasUserPurchased(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.hasActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(anyString())).thenReturn(false);
-
-        Reservation reservation = Reservation.builder()
-            .reservationId("res-001")
-            .userId(TEST_USER_ID_1)
-            .skuId(TEST_SKU_ID)
-            .quantity(1)
-            .build();
-        when(reservationRepository.saveAll(anyList())).thenReturn(Arrays.asList(reservation));
+        stubInsertedReservations("res-001");
 
         // Simulate oversell: reserved + sold > total
         Inventory oversoldInventory = createInventory(TEST_SKU_ID, 100, 80, 30);  // 80+30=110 > 100
         when(inventoryRepository.findBySkuId(TEST_SKU_ID)).thenReturn(Optional.of(oversoldInventory));
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert
         verify(metricsService).recordOversell(TEST_SKU_ID, 10);  // 110 - 100 = 10
@@ -446,44 +667,23 @@ class InventoryBatchConsumerTest {
     void testProcessBatchForSku_MixedValidation() {
         // Arrange - Mix of valid, duplicate, and already purchased (only 1 valid request)
         ReservationRequestMessage valid = createTestMessage("user1", TEST_SKU_ID, "req1");
-        ReservationRequestMessage duplicate = createTestMessage("user2", TEST_SKU_ID, "req2");
+        ReservationRequestMessage duplicate = copyOf(valid, "req2");  // Same idempotency key in the batch
         ReservationRequestMessage purchased = createTestMessage("user3", TEST_SKU_ID, "req3");
         List<ReservationRequestMessage> requests = Arrays.asList(valid, duplicate, purchased);
 
         // Phase 1: Full batch allocation for 1 valid request
         when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
 
-        // user1 - valid
-        when(cacheService.hasUserPurchased("user1", TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation("user1", TEST_SKU_ID)).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId("user1", TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.hasActiveReservation("user1", TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(valid.getIdempotencyKey())).thenReturn(false);
-
-        // user2 - duplicate
-        when(cacheService.hasUserPurchased("user2", TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation("user2", TEST_SKU_ID)).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId("user2", TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.hasActiveReservation("user2", TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(duplicate.getIdempotencyKey())).thenReturn(true);
-
         // user3 - already purchased
-        when(cacheService.hasUserPurchased("user3", TEST_SKU_ID)).thenReturn(true);
-
-        Reservation res = Reservation.builder()
-            .reservationId("res-001")
-            .userId("user1")
-            .skuId(TEST_SKU_ID)
-            .quantity(1)
-            .build();
-        when(reservationRepository.saveAll(anyList())).thenReturn(Arrays.asList(res));
+        stubCachedFlags(Set.of("user3"), Set.of());
+        stubInsertedReservations("res-001");
 
         when(inventoryRepository.findBySkuId(TEST_SKU_ID)).thenReturn(Optional.of(
             createInventory(TEST_SKU_ID, 100, 1, 0)
         ));
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert
         verify(inventoryRepository).incrementReservedCount(TEST_SKU_ID, 1);  // Only 1 valid
@@ -491,7 +691,7 @@ class InventoryBatchConsumerTest {
 
         @SuppressWarnings("unchecked")
         ArgumentCaptor<List<Reservation>> reservationCaptor = ArgumentCaptor.forClass(List.class);
-        verify(reservationRepository).saveAll(reservationCaptor.capture());
+        verify(reservationRepository).insertIgnoringDuplicates(reservationCaptor.capture());
         assertEquals(1, reservationCaptor.getValue().size());
 
         verify(kafkaProducerService, times(1)).publishReservationCreated(any(ReservationEvent.class));
@@ -505,14 +705,14 @@ class InventoryBatchConsumerTest {
         List<ReservationRequestMessage> requests = Arrays.asList(message);
 
         when(inventoryRepository.getAvailableCount(TEST_SKU_ID)).thenReturn(100);
-        when(cacheService.hasUserPurchased(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(true);
+        stubCachedFlags(Set.of(TEST_USER_ID_1), Set.of());
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert
         verify(metricsService).recordCacheHit("user_limit");
-        verify(userPurchaseTrackingRepository, never()).existsByUserIdAndSkuId(anyString(), anyString());
+        verify(userPurchaseTrackingRepository, never()).findPurchasedUserIds(anyString(), anyCollection());
     }
 
     @Test
@@ -522,35 +722,531 @@ class InventoryBatchConsumerTest {
         List<ReservationRequestMessage> requests = Arrays.asList(message);
 
         when(inventoryRepository.getAvailableCount(TEST_SKU_ID)).thenReturn(100);
-        when(cacheService.hasUserPurchased(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(Optional.empty());
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.hasActiveReservation(TEST_USER_ID_1, TEST_SKU_ID)).thenReturn(false);
-        when(reservationRepository.existsByIdempotencyKey(anyString())).thenReturn(false);
         when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
-
-        Reservation res = Reservation.builder()
-            .reservationId("res-001")
-            .userId(TEST_USER_ID_1)
-            .skuId(TEST_SKU_ID)
-            .quantity(1)
-            .build();
-        when(reservationRepository.saveAll(anyList())).thenReturn(Arrays.asList(res));
+        stubInsertedReservations("res-001");
 
         when(inventoryRepository.findBySkuId(TEST_SKU_ID)).thenReturn(Optional.of(
             createInventory(TEST_SKU_ID, 100, 1, 0)
         ));
 
         // Act
-        consumer.processBatchForSku(TEST_SKU_ID, requests);
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
 
         // Assert
         verify(metricsService).recordCacheMiss("user_limit");
-        verify(userPurchaseTrackingRepository).existsByUserIdAndSkuId(TEST_USER_ID_1, TEST_SKU_ID);
+        verify(userPurchaseTrackingRepository).findPurchasedUserIds(TEST_SKU_ID, List.of(TEST_USER_ID_1));
+    }
+
+    @Test
+    void testProcessBatchForSku_BulkValidation_OneLookupPerBatch() {
+        // Arrange - user1 purchased (cached), user2 purchased (database), user3 active reservation (database)
+        List<ReservationRequestMessage> requests = Arrays.asList(
+            createTestMessage("user1", TEST_SKU_ID, "req1"),
+            createTestMessage("user2", TEST_SKU_ID, "req2"),
+            createTestMessage("user3", TEST_SKU_ID, "req3"),
+            createTestMessage("user4", TEST_SKU_ID, "req4")
+        );
+
+        stubCachedFlags(Set.of("user1"), Set.of());
+        when(userPurchaseTrackingRepository.findPurchasedUserIds(TEST_SKU_ID, List.of("user2", "user3", "user4")))
+            .thenReturn(List.of("user2"));
+        when(reservationRepository.findUserIdsWithActiveReservation(TEST_SKU_ID, List.of("user3", "user4")))
+            .thenReturn(List.of("user3"));
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations("res-004");
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
+
+        // Assert - one cache round trip and one query per table for the whole batch
+        verify(cacheService, times(1)).getUserSkuFlags(eq(TEST_SKU_ID), anyCollection());
+        verify(userPurchaseTrackingRepository, times(1)).findPurchasedUserIds(anyString(), anyCollection());
+        verify(reservationRepository, times(1)).findUserIdsWithActiveReservation(anyString(), anyCollection());
+        verify(cacheService).markUserPurchased("user2", TEST_SKU_ID);
+        verify(metricsService, times(2)).recordReservationFailure(TEST_SKU_ID, "USER_ALREADY_PURCHASED");
+        verify(metricsService).recordReservationFailure(TEST_SKU_ID, "USER_HAS_ACTIVE_RESERVATION");
+        verify(inventoryRepository).incrementReservedCount(TEST_SKU_ID, 1);
+    }
+
+    // ============= Batch Transaction Tests =============
+
+    @Test
+    void testConsumeReservationRequests_BatchTransaction_OneCommitPerBatch() {
+        // Arrange - two SKUs in one batch, last record at offset 7
+        ReflectionTestUtils.setField(consumer, "batchTransactions", true);
+        String otherSkuId = "SKU-002";
+        ReservationRequestMessage msg1 = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        ReservationRequestMessage msg2 = createTestMessage(TEST_USER_ID_2, otherSkuId, TEST_REQUEST_ID_2);
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(
+            createConsumerRecord(TEST_SKU_ID, msg1),
+            new ConsumerRecord<>("reservation-requests", 0, 7L, otherSkuId,
+                ReservationRequestCodec.encode(Collections.singletonList(msg2)))
+        );
+        when(inventoryRepository.incrementReservedCount(anyString(), eq(1))).thenReturn(1);
+        stubInsertedReservations("res-001", "res-002");
+
+        // Act
+        consumer.consumeReservationRequests(records, acknowledgment);
+
+        // Assert - one insert for both SKUs and the offsets, in one transaction, then outcomes
+        verify(reservationRepository, times(1)).insertIgnoringDuplicates(argThat(list -> list.size() == 2));
+        verify(consumerOffsetRepository).upsertOffset("inventory-batch-consumer", "reservation-requests", 0, 8L);
+        verify(transactionManager, times(1)).commit(any());
+        verify(kafkaProducerService, times(2)).publishReservationResponse(any(ReservationResponseMessage.class));
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void testConsumeReservationRequests_BatchTransaction_RollbackReleasesUnits() {
+        // Arrange
+        ReflectionTestUtils.setField(consumer, "batchTransactions", true);
+        ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(createConsumerRecord(TEST_SKU_ID, message));
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.available(0, TEST_SKU_ID, 1)).thenReturn(1);
+        when(inventoryLedger.allocate(0, TEST_SKU_ID, 1)).thenReturn(1);
+        when(reservationRepository.insertIgnoringDuplicates(anyList()))
+            .thenThrow(new RuntimeException("Database connection failed"));
+
+        // Act
+        consumer.consumeReservationRequests(records, acknowledgment);
+
+        // Assert - nothing stored and units handed back; the record failing on its own is
+        // dead-lettered and rejected, so the poll is not redelivered
+        verify(transactionManager).rollback(any());
+        verify(inventoryLedger).release(TEST_SKU_ID, 1);
+        verify(consumerOffsetRepository, never()).upsertOffset(anyString(), anyString(), anyInt(), anyLong());
+        verify(deadLetterPublisher).publish(eq(records.get(0)), eq(DeadLetterPublisher.REASON_PROCESSING_FAILED),
+            any(RuntimeException.class), anyLong());
+        verify(kafkaProducerService).publishReservationResponse(argThat((ReservationResponseMessage response) ->
+            response.getRequestId().equals(TEST_REQUEST_ID_1)
+                && response.getStatus() == ReservationResponseMessage.ResponseStatus.PROCESSING_ERROR));
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void testOnPartitionsAssigned_BatchTransaction_SeeksToCommittedOffset() {
+        // Arrange - partition 0 committed ahead of Kafka, partition 1 behind
+        ReflectionTestUtils.setField(consumer, "batchTransactions", true);
+        ConsumerSeekAware.ConsumerSeekCallback callback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+        when(consumerOffsetRepository.findByGroupIdAndTopic("inventory-batch-consumer", "reservation-requests"))
+            .thenReturn(List.of(
+                new ConsumerOffset("inventory-batch-consumer", "reservation-requests", 0, 42L, Instant.now()),
+                new ConsumerOffset("inventory-batch-consumer", "reservation-requests", 1, 5L, Instant.now())
+            ));
+
+        // Act
+        consumer.onPartitionsAssigned(Map.of(
+            new TopicPartition("reservation-requests", 0), 40L,
+            new TopicPartition("reservation-requests", 1), 10L
+        ), callback);
+
+        // Assert
+        verify(callback).seek("reservation-requests", 0, 42L);
+        verifyNoMoreInteractions(callback);
+    }
+
+    // ============= Dead Letter Tests =============
+
+    @Test
+    void testConsumeReservationRequests_PoisonRecord_BisectedToDeadLetter() {
+        // Arrange - 4 records, the third one fails every insert it is part of
+        ReflectionTestUtils.setField(consumer, "batchTransactions", true);
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String userId = i == 2 ? "poison" : "user" + i;
+            records.add(createConsumerRecord(TEST_SKU_ID, createTestMessage(userId, TEST_SKU_ID, "req" + i), i));
+        }
+        when(inventoryRepository.incrementReservedCount(eq(TEST_SKU_ID), anyInt())).thenReturn(1);
+        stubInsertFailingFor("poison");
+
+        // Act
+        consumer.consumeReservationRequests(records, acknowledgment);
+
+        // Assert - only the poison record dead-lettered and rejected, the others reserved
+        verify(deadLetterPublisher).publish(eq(records.get(2)), eq(DeadLetterPublisher.REASON_PROCESSING_FAILED),
+            any(DataIntegrityViolationException.class), longThat(timeoutMs -> timeoutMs <= 2000));
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService, times(4)).publishReservationResponse(responseCaptor.capture());
+        for (ReservationResponseMessage response : responseCaptor.getAllValues()) {
+            assertEquals(response.getRequestId().equals("req2")
+                ? ReservationResponseMessage.ResponseStatus.PROCESSING_ERROR
+                : ReservationResponseMessage.ResponseStatus.SUCCESS, response.getStatus());
+        }
+        verify(consumerOffsetRepository).upsertOffset("inventory-batch-consumer", "reservation-requests", 0, 4L);
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void testConsumeReservationRequests_PoisonRecordFailsValidation_BisectedToDeadLetter() {
+        // Arrange - 4 decodable records, the second one breaks the active reservation lookup
+        ReflectionTestUtils.setField(consumer, "batchTransactions", true);
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String userId = i == 1 ? "poison" : "user" + i;
+            records.add(createConsumerRecord(TEST_SKU_ID, createTestMessage(userId, TEST_SKU_ID, "req" + i), i));
+        }
+        when(reservationRepository.findUserIdsWithActiveReservation(eq(TEST_SKU_ID),
+                argThat(userIds -> userIds.contains("poison"))))
+            .thenThrow(new IllegalArgumentException("Malformed user ID"));
+        when(inventoryRepository.incrementReservedCount(eq(TEST_SKU_ID), anyInt())).thenReturn(1);
+        stubInsertFailingFor("poison");  // Never reached for it
+
+        // Act
+        consumer.consumeReservationRequests(records, acknowledgment);
+
+        // Assert - only the poison record dead-lettered and rejected, its neighbours reserved
+        verify(deadLetterPublisher).publish(eq(records.get(1)), eq(DeadLetterPublisher.REASON_PROCESSING_FAILED),
+            any(IllegalArgumentException.class), anyLong());
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService, times(4)).publishReservationResponse(responseCaptor.capture());
+        for (ReservationResponseMessage response : responseCaptor.getAllValues()) {
+            assertEquals(response.getRequestId().equals("req1")
+                ? ReservationResponseMessage.ResponseStatus.PROCESSING_ERROR
+                : ReservationResponseMessage.ResponseStatus.SUCCESS, response.getStatus());
+        }
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void testConsumeReservationRequests_PoisonRecordFailsAllocation_UnitsReleasedAndDeadLettered() {
+        // Arrange - a healthy SKU and a record whose SKU breaks the allocation statement
+        ReflectionTestUtils.setField(consumer, "batchTransactions", true);
+        ReflectionTestUtils.setField(consumer, "skuProcessingEnabled", false);
+        String badSkuId = "SKU-BAD";
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(
+            createConsumerRecord(TEST_SKU_ID, createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1), 0),
+            createConsumerRecord(badSkuId, createTestMessage(TEST_USER_ID_2, badSkuId, TEST_REQUEST_ID_2), 1)
+        );
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        when(inventoryRepository.incrementReservedCount(badSkuId, 1))
+            .thenThrow(new DataIntegrityViolationException("value too long for type character varying(64)"));
+        stubInsertedReservations("res-001");
+
+        // Act
+        consumer.consumeReservationRequests(records, acknowledgment);
+
+        // Assert - the healthy SKU's units handed back after the failed pass, then reserved
+        // on its own; the bad record dead-lettered instead of failing its neighbour
+        verify(inventoryRepository).decrementReservedCount(TEST_SKU_ID, 1);
+        verify(deadLetterPublisher).publish(eq(records.get(1)), eq(DeadLetterPublisher.REASON_PROCESSING_FAILED),
+            any(DataIntegrityViolationException.class), anyLong());
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService, times(2)).publishReservationResponse(responseCaptor.capture());
+        assertEquals(ReservationResponseMessage.ResponseStatus.SUCCESS, responseCaptor.getAllValues().get(0).getStatus());
+        assertEquals(TEST_REQUEST_ID_2, responseCaptor.getAllValues().get(1).getRequestId());
+        assertEquals(ReservationResponseMessage.ResponseStatus.PROCESSING_ERROR,
+            responseCaptor.getAllValues().get(1).getStatus());
+        verify(consumerOffsetRepository).upsertOffset("inventory-batch-consumer", "reservation-requests", 0, 1L);
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void testConsumeReservationRequests_RetriableFailure_NotDeadLettered() {
+        // Arrange - database unreachable: every record would fail, none is poison
+        ReflectionTestUtils.setField(consumer, "batchTransactions", true);
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(
+            createConsumerRecord(TEST_SKU_ID, createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1), 0),
+            createConsumerRecord(TEST_SKU_ID, createTestMessage(TEST_USER_ID_2, TEST_SKU_ID, TEST_REQUEST_ID_2), 1)
+        );
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 2)).thenReturn(1);
+        when(reservationRepository.insertIgnoringDuplicates(anyList()))
+            .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        // Act & Assert - the whole poll is left for redelivery
+        assertThrows(RuntimeException.class, () -> consumer.consumeReservationRequests(records, acknowledgment));
+        verify(reservationRepository, times(1)).insertIgnoringDuplicates(anyList());
+        verifyNoInteractions(deadLetterPublisher);
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void testConsumeReservationRequests_TooManyPoisonRecords_BatchRetried() {
+        // Arrange - two failing records, cap of one per batch
+        ReflectionTestUtils.setField(consumer, "batchTransactions", true);
+        ReflectionTestUtils.setField(consumer, "maxDeadLettersPerBatch", 1);
+        List<ConsumerRecord<String, byte[]>> records = Arrays.asList(
+            createConsumerRecord(TEST_SKU_ID, createTestMessage("poison", TEST_SKU_ID, TEST_REQUEST_ID_1), 0),
+            createConsumerRecord(TEST_SKU_ID, createTestMessage("poison", TEST_SKU_ID, TEST_REQUEST_ID_2), 1)
+        );
+        when(inventoryRepository.incrementReservedCount(eq(TEST_SKU_ID), anyInt())).thenReturn(1);
+        stubInsertFailingFor("poison");
+
+        // Act & Assert - systemic fault: retried instead of emptied into the dead-letter topic
+        assertThrows(RuntimeException.class, () -> consumer.consumeReservationRequests(records, acknowledgment));
+        verify(deadLetterPublisher, times(1)).publish(any(), anyString(), any(), anyLong());
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testConsumeReservationRequests_PipelineFailure_BisectsAndSkipsPoison() throws Exception {
+        // Arrange - pipelined batch of a good and a poison record
+        ReflectionTestUtils.setField(consumer, "pipelineDepth", 2);
+        ReflectionTestUtils.setField(consumer, "batchTransactions", true);
+        ConsumerSeekAware.ConsumerSeekCallback callback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+        consumer.registerSeekCallback(callback);
+        List<ConsumerRecord<String, byte[]>> failing = Arrays.asList(
+            createConsumerRecord(TEST_SKU_ID, createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1), 0),
+            createConsumerRecord(TEST_SKU_ID, createTestMessage("poison", TEST_SKU_ID, TEST_REQUEST_ID_2), 1)
+        );
+        List<ConsumerRecord<String, byte[]>> next = Arrays.asList(
+            createConsumerRecord(TEST_SKU_ID, createTestMessage(TEST_USER_ID_2, TEST_SKU_ID, "req-003"), 2)
+        );
+        when(inventoryRepository.incrementReservedCount(eq(TEST_SKU_ID), anyInt())).thenReturn(1);
+        stubInsertFailingFor("poison");
+
+        try {
+            consumer.consumeReservationRequests(failing, acknowledgment);
+            ((ThreadLocal<BatchPipeline<?>>) ReflectionTestUtils.getField(consumer, "listenerPipeline")).get().drain();
+            verify(transactionManager).rollback(any());
+
+            // Act - the next poll finds the failed batch
+            consumer.consumeReservationRequests(next, acknowledgment);
+
+            // Assert - poison dead-lettered, good record committed, resumed right after the batch
+            verify(deadLetterPublisher).publish(eq(failing.get(1)),
+                eq(DeadLetterPublisher.REASON_PROCESSING_FAILED), any(DataIntegrityViolationException.class),
+                anyLong());
+            verify(consumerOffsetRepository).upsertOffset("inventory-batch-consumer", "reservation-requests", 0, 1L);
+            verify(callback).seek("reservation-requests", 0, 2L);
+            verifyNoMoreInteractions(callback);
+            verify(acknowledgment, never()).acknowledge();
+        } finally {
+            consumer.shutdown();
+        }
+    }
+
+    // ============= Inventory Ledger Tests =============
+
+    @Test
+    void testProcessBatchForSku_LedgerAllocation_NoInventoryStatements() {
+        // Arrange - ledger holds 2 units for 3 requests
+        List<ReservationRequestMessage> requests = Arrays.asList(
+            createTestMessage("user1", TEST_SKU_ID, "req1"),
+            createTestMessage("user2", TEST_SKU_ID, "req2"),
+            createTestMessage("user3", TEST_SKU_ID, "req3")
+        );
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.available(0, TEST_SKU_ID, 3)).thenReturn(2);
+        when(inventoryLedger.allocate(0, TEST_SKU_ID, 3)).thenReturn(2);
+        stubInsertedReservations("res-001", "res-002");
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
+
+        // Assert - FIFO allocation and oversell check without touching the inventory row
+        verifyNoInteractions(inventoryRepository);
+        verify(inventoryLedger).oversell(TEST_SKU_ID);
+        verify(metricsService).recordBatchAllocationRate(TEST_SKU_ID, 2, 3);
+        verify(kafkaProducerService).publishInventoryUpdate(TEST_SKU_ID, 0, KafkaProducerService.INVENTORY_EVENT_SOLD_OUT);
+    }
+
+    @Test
+    void testProcessBatchForSku_LedgerDuplicate_ReleasedToLedger() {
+        // Arrange
+        ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.available(0, TEST_SKU_ID, 1)).thenReturn(1);
+        when(inventoryLedger.allocate(0, TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations();  // Duplicate on insert
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, Arrays.asList(message));
+
+        // Assert
+        verify(inventoryLedger).release(TEST_SKU_ID, 1);
+        verify(inventoryRepository, never()).decrementReservedCount(anyString(), anyInt());
+    }
+
+    @Test
+    void testProcessBatchForSku_LedgerSoldOut_RejectedWithoutValidation() {
+        // Arrange
+        List<ReservationRequestMessage> requests = Arrays.asList(
+            createTestMessage("user1", TEST_SKU_ID, "req1"),
+            createTestMessage("user2", TEST_SKU_ID, "req2")
+        );
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.available(0, TEST_SKU_ID, 2)).thenReturn(0);
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
+
+        // Assert - no user lookups, no allocation, no insert: one sold-out outcome
+        verify(cacheService, never()).getUserSkuFlags(anyString(), anyCollection());
+        verifyNoInteractions(userPurchaseTrackingRepository, reservationRepository);
+        verify(inventoryLedger, never()).allocate(anyInt(), anyString(), anyInt());
+
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService).publishReservationResponse(responseCaptor.capture());
+        assertEquals(Arrays.asList("req1", "req2"), responseCaptor.getValue().getRequestIds());
+        assertEquals(ReservationResponseMessage.ResponseStatus.OUT_OF_STOCK, responseCaptor.getValue().getStatus());
+        verify(metricsService).recordInventoryStockOut(TEST_SKU_ID);
+        verify(kafkaProducerService).publishInventoryUpdate(TEST_SKU_ID, 0, KafkaProducerService.INVENTORY_EVENT_SOLD_OUT);
+    }
+
+    @Test
+    void testProcessBatchForSku_LedgerShort_ValidatesStockPlusMargin() {
+        // Arrange - 10 requests, 1 unit left, margin of 2
+        ReflectionTestUtils.setField(consumer, "validationStockMargin", 2);
+        List<ReservationRequestMessage> requests = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            requests.add(createTestMessage("user" + i, TEST_SKU_ID, "req" + i));
+        }
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.available(0, TEST_SKU_ID, 10)).thenReturn(1);
+        when(inventoryLedger.allocate(0, TEST_SKU_ID, 3)).thenReturn(1);
+        stubInsertedReservations("res-001");
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
+
+        // Assert - only the first 3 users looked up; the other 9 share one sold-out outcome
+        verify(cacheService).getUserSkuFlags(TEST_SKU_ID, new LinkedHashSet<>(List.of("user1", "user2", "user3")));
+
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService, times(2)).publishReservationResponse(responseCaptor.capture());
+        assertEquals("req1", responseCaptor.getAllValues().get(0).getRequestId());
+        ReservationResponseMessage soldOut = responseCaptor.getAllValues().get(1);
+        assertTrue(soldOut.isBatch());
+        assertEquals(9, soldOut.getRequestIds().size());
+        assertEquals("req2", soldOut.getRequestIds().get(0));
+        assertEquals("req10", soldOut.getRequestIds().get(8));
+    }
+
+    @Test
+    void testProcessBatchForSku_LedgerShort_ValidatesNextRequestsWhenChecksFail() {
+        // Arrange - 1 unit left, no margin; the first user already purchased
+        ReflectionTestUtils.setField(consumer, "validationStockMargin", 0);
+        List<ReservationRequestMessage> requests = Arrays.asList(
+            createTestMessage("user1", TEST_SKU_ID, "req1"),
+            createTestMessage("user2", TEST_SKU_ID, "req2"),
+            createTestMessage("user3", TEST_SKU_ID, "req3")
+        );
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.available(0, TEST_SKU_ID, 3)).thenReturn(1);
+        when(cacheService.getUserSkuFlags(eq(TEST_SKU_ID), anyCollection()))
+            .thenReturn(UserSkuFlags.of(Set.of("user1"), Set.of()), UserSkuFlags.empty());
+        when(inventoryLedger.allocate(0, TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations("res-002");
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, requests);
+
+        // Assert - second round validated user2, user3 never looked up
+        verify(cacheService, times(2)).getUserSkuFlags(eq(TEST_SKU_ID), anyCollection());
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService, times(3)).publishReservationResponse(responseCaptor.capture());
+        List<ReservationResponseMessage> responses = responseCaptor.getAllValues();
+        assertEquals(ReservationResponseMessage.ResponseStatus.USER_ALREADY_PURCHASED, responses.get(0).getStatus());
+        assertEquals("req2", responses.get(1).getRequestId());
+        assertEquals(ReservationResponseMessage.ResponseStatus.SUCCESS, responses.get(1).getStatus());
+        assertEquals(List.of("req3"), responses.get(2).getRequestIds());
+    }
+
+    // ============= Outcome Publication Tests =============
+
+    @Test
+    void testProcessBatchForSku_PublishesSuccessOutcomePerRequest() {
+        // Arrange
+        ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 1)).thenReturn(1);
+        stubInsertedReservations("res-001");
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, Arrays.asList(message));
+
+        // Assert
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService).publishReservationResponse(responseCaptor.capture());
+        ReservationResponseMessage response = responseCaptor.getValue();
+        assertEquals(TEST_REQUEST_ID_1, response.getRequestId());
+        assertEquals(ReservationResponseMessage.ResponseStatus.SUCCESS, response.getStatus());
+        assertEquals("res-001", response.getReservationId());
+        assertNotNull(response.getExpiresAt());
+        assertTrue(response.getExpiresAt().isAfter(Instant.now()));
+        verify(cacheService, never()).cacheRejection(anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testProcessBatchForSku_PublishesRejectionOutcome() {
+        // Arrange
+        ReservationRequestMessage message = createTestMessage(TEST_USER_ID_1, TEST_SKU_ID, TEST_REQUEST_ID_1);
+        stubCachedFlags(Set.of(TEST_USER_ID_1), Set.of());
+
+        // Act
+        consumer.processBatchForSku(0, TEST_SKU_ID, Arrays.asList(message));
+
+        // Assert
+        ArgumentCaptor<ReservationResponseMessage> responseCaptor =
+            ArgumentCaptor.forClass(ReservationResponseMessage.class);
+        verify(kafkaProducerService).publishReservationResponse(responseCaptor.capture());
+        assertEquals(TEST_REQUEST_ID_1, responseCaptor.getValue().getRequestId());
+        assertEquals(ReservationResponseMessage.ResponseStatus.USER_ALREADY_PURCHASED,
+            responseCaptor.getValue().getStatus());
+        verify(reservationRepository, never()).insertIgnoringDuplicates(anyList());
     }
 
     // ============= Helper Methods =============
 
+    private void stubCachedFlags(Set<String> purchased, Set<String> activeReservation) {
+        when(cacheService.getUserSkuFlags(eq(TEST_SKU_ID), anyCollection()))
+            .thenReturn(UserSkuFlags.of(purchased, activeReservation));
+    }
+
+    /**
+     * Simulate the idempotent insert: the first rows get the given IDs and are reported
+     * inserted, the remaining rows are reported as duplicates.
+     */
+    private void stubInsertedReservations(String... reservationIds) {
+        doAnswer(invocation -> {
+            List<Reservation> reservations = invocation.getArgument(0);
+            Set<String> inserted = new HashSet<>();
+            for (int i = 0; i < reservationIds.length; i++) {
+                reservations.get(i).setReservationId(reservationIds[i]);
+                inserted.add(reservationIds[i]);
+            }
+            return inserted;
+        }).when(reservationRepository).insertIgnoringDuplicates(anyList());
+    }
+
+    /**
+     * Simulate an insert that fails whenever the batch holds a reservation of the given user,
+     * and otherwise stores every row.
+     */
+    private void stubInsertFailingFor(String poisonUserId) {
+        doAnswer(invocation -> {
+            List<Reservation> reservations = invocation.getArgument(0);
+            Set<String> inserted = new HashSet<>();
+            for (Reservation reservation : reservations) {
+                if (reservation.getUserId().equals(poisonUserId)) {
+                    throw new DataIntegrityViolationException("value too long for type character varying(255)");
+                }
+                reservation.setReservationId(UUID.randomUUID().toString());
+                inserted.add(reservation.getReservationId());
+            }
+            return inserted;
+        }).when(reservationRepository).insertIgnoringDuplicates(anyList());
+    }
+
+    private ReservationRequestMessage copyOf(ReservationRequestMessage message, String requestId) {
+        return new ReservationRequestMessage(
+            requestId,
+            message.getUserId(),
+            message.getSkuId(),
+            message.getQuantity(),
+            message.getIdempotencyKey(),
+            message.getUserId() + "-" + message.getSkuId()
+        );
+    }
+
     private ReservationRequestMessage createTestMessage(String userId, String skuId, String requestId) {
         String idempotencyKey = userId + ":" + skuId + ":" + System.nanoTime();
         return new ReservationRequestMessage(
@@ -563,13 +1259,14 @@ class InventoryBatchConsumerTest {
         );
     }
 
-    private ConsumerRecord<String, String> createConsumerRecord(String key, ReservationRequestMessage message) {
-        try {
-            String json = objectMapper.writeValueAsString(message);
-            return new ConsumerRecord<>("reservation-requests", 0, 0L, key, json);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to create test record", e);
-        }
+    private ConsumerRecord<String, byte[]> createConsumerRecord(String key, ReservationRequestMessage message) {
+        return createConsumerRecord(key, message, 0L);
+    }
+
+    private ConsumerRecord<String, byte[]> createConsumerRecord(String key, ReservationRequestMessage message,
+                                                                long offset) {
+        byte[] value = ReservationRequestCodec.encode(Collections.singletonList(message));
+        return new ConsumerRecord<>("reservation-requests", 0, offset, key, value);
     }
 
     private Inventory createInventory(String skuId, int totalCount, int reservedCount, int soldCount) {
@@ -0,0 +1,205 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.domain.model.Inventory;
+import com.cred.freestyle.flashsale.domain.model.Reservation.ReservationStatus;
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import com.cred.freestyle.flashsale.repository.InventoryRepository;
+import com.cred.freestyle.flashsale.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for InventoryLedger.
+ *
+ * @author Flash Sale Team
+ */
+@ExtendWith(MockitoExtension.class)
+class InventoryLedgerTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private CloudWatchMetricsService metricsService;
+
+    private InventoryLedger ledger;
+
+    private static final String TEST_SKU_ID = "SKU-001";
+
+    @BeforeEach
+    void setUp() {
+        ledger = new InventoryLedger(inventoryRepository, reservationRepository, metricsService);
+    }
+
+    @Test
+    void testAllocate_LoadsOnceThenAllocatesFromMemory() {
+        // Arrange
+        stubInventory(100, 10, 5, 10);
+
+        // Act
+        int first = ledger.allocate(0, TEST_SKU_ID, 50);
+        int second = ledger.allocate(0, TEST_SKU_ID, 20);
+
+        // Assert - one load, no per-batch statements
+        assertEquals(50, first);
+        assertEquals(20, second);
+        verify(inventoryRepository, times(1)).findBySkuId(TEST_SKU_ID);
+        verify(inventoryRepository, never()).incrementReservedCount(anyString(), anyInt());
+    }
+
+    @Test
+    void testAllocate_PartialWhenShort() {
+        // Arrange - 100 total, 90 reserved, 5 sold: 5 available
+        stubInventory(100, 90, 5, 90);
+        ReflectionTestUtils.setField(ledger, "refreshIntervalMs", Long.MAX_VALUE);
+
+        // Act
+        int granted = ledger.allocate(0, TEST_SKU_ID, 8);
+
+        // Assert
+        assertEquals(5, granted);
+        assertEquals(0, ledger.allocate(0, TEST_SKU_ID, 1));
+        assertEquals(0, ledger.oversell(TEST_SKU_ID));
+    }
+
+    @Test
+    void testAllocate_RefreshPicksUpReturnedStock() {
+        // Arrange - sold out in memory; meanwhile 3 reservations expired in Postgres
+        ReflectionTestUtils.setField(ledger, "refreshIntervalMs", 0L);
+        when(inventoryRepository.findBySkuId(TEST_SKU_ID)).thenReturn(
+            Optional.of(inventory(10, 10, 0)),
+            Optional.of(inventory(10, 7, 0))
+        );
+        when(reservationRepository.countBySkuIdAndStatus(TEST_SKU_ID, ReservationStatus.RESERVED))
+            .thenReturn(10L, 7L);
+
+        // Act
+        int granted = ledger.allocate(0, TEST_SKU_ID, 5);
+
+        // Assert
+        assertEquals(3, granted);
+    }
+
+    @Test
+    void testAvailable_DoesNotAllocate() {
+        // Arrange - 100 total, 90 reserved, 5 sold: 5 available
+        stubInventory(100, 90, 5, 90);
+        ReflectionTestUtils.setField(ledger, "refreshIntervalMs", Long.MAX_VALUE);
+
+        // Act
+        int available = ledger.available(0, TEST_SKU_ID, 8);
+
+        // Assert - still allocatable afterwards
+        assertEquals(5, available);
+        assertEquals(5, ledger.allocate(0, TEST_SKU_ID, 8));
+        assertEquals(0, ledger.available(0, TEST_SKU_ID, 1));
+        verify(inventoryRepository, times(1)).findBySkuId(TEST_SKU_ID);
+    }
+
+    @Test
+    void testFlush_CoalescesDeltaIntoOneUpdate() {
+        // Arrange
+        stubInventory(100, 0, 0, 0);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 7)).thenReturn(1);
+        ledger.allocate(0, TEST_SKU_ID, 5);
+        ledger.allocate(0, TEST_SKU_ID, 3);
+        ledger.release(TEST_SKU_ID, 1);
+
+        // Act
+        ledger.flush();
+        ledger.flush();
+
+        // Assert - 5 + 3 - 1 written once, nothing left for the second flush
+        verify(inventoryRepository, times(1)).incrementReservedCount(TEST_SKU_ID, 7);
+        verify(inventoryRepository, never()).decrementReservedCount(anyString(), anyInt());
+    }
+
+    @Test
+    void testFlush_FailureKeepsDeltaForNextFlush() {
+        // Arrange
+        stubInventory(100, 0, 0, 0);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 4))
+            .thenThrow(new RuntimeException("Database error"))
+            .thenReturn(1);
+        ledger.allocate(0, TEST_SKU_ID, 4);
+
+        // Act
+        ledger.flush();
+        ledger.flush();
+
+        // Assert
+        verify(inventoryRepository, times(2)).incrementReservedCount(TEST_SKU_ID, 4);
+        verify(metricsService).recordError("INVENTORY_LEDGER_FLUSH_ERROR", "flush");
+    }
+
+    @Test
+    void testLoad_WritesBackReservationsMissingFromRow() {
+        // Arrange - 12 RESERVED reservations but the row only counts 10 (delta lost in a crash)
+        stubInventory(100, 10, 0, 12);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 2)).thenReturn(1);
+
+        // Act
+        int granted = ledger.allocate(0, TEST_SKU_ID, 100);
+        ledger.release(TEST_SKU_ID, granted);
+        ledger.flush();
+
+        // Assert - only 88 were available, and the 2 missing units are written back
+        assertEquals(88, granted);
+        verify(inventoryRepository).incrementReservedCount(TEST_SKU_ID, 2);
+    }
+
+    @Test
+    void testOnPartitionsRevoked_FlushesAndForgets() {
+        // Arrange
+        stubInventory(100, 0, 0, 0);
+        when(inventoryRepository.incrementReservedCount(TEST_SKU_ID, 3)).thenReturn(1);
+        ledger.allocate(2, TEST_SKU_ID, 3);
+
+        // Act
+        ledger.onPartitionsRevoked(List.of(2));
+        ledger.allocate(2, TEST_SKU_ID, 1);
+
+        // Assert - persisted before hand-over, rebuilt on next use
+        verify(inventoryRepository).incrementReservedCount(TEST_SKU_ID, 3);
+        verify(inventoryRepository, times(2)).findBySkuId(TEST_SKU_ID);
+    }
+
+    @Test
+    void testAllocate_UnknownSku() {
+        // Arrange
+        when(inventoryRepository.findBySkuId(TEST_SKU_ID)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertEquals(0, ledger.allocate(0, TEST_SKU_ID, 1));
+    }
+
+    private void stubInventory(int total, int reserved, int sold, long reservedRows) {
+        when(inventoryRepository.findBySkuId(TEST_SKU_ID)).thenReturn(Optional.of(inventory(total, reserved, sold)));
+        when(reservationRepository.countBySkuIdAndStatus(TEST_SKU_ID, ReservationStatus.RESERVED))
+            .thenReturn(reservedRows);
+    }
+
+    private Inventory inventory(int total, int reserved, int sold) {
+        return Inventory.builder()
+            .skuId(TEST_SKU_ID)
+            .totalCount(total)
+            .reservedCount(reserved)
+            .soldCount(sold)
+            .availableCount(total - reserved - sold)
+            .build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.cache.BatchOutcomes;
+import com.cred.freestyle.flashsale.infrastructure.cache.RedisCacheService;
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for OutcomeCacheWriter.
+ *
+ * @author Flash Sale Team
+ */
+@ExtendWith(MockitoExtension.class)
+class OutcomeCacheWriterTest {
+
+    @Mock
+    private RedisCacheService cacheService;
+
+    @Mock
+    private CloudWatchMetricsService metricsService;
+
+    private OutcomeCacheWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new OutcomeCacheWriter(cacheService, metricsService);
+        ReflectionTestUtils.setField(writer, "retryBackoffMs", 1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    void testWrite_WritesOffCallerThread() {
+        // Arrange
+        BatchOutcomes outcomes = BatchOutcomes.forSku("SKU-001").decrementStock(1).reservation("user1", "res-1");
+
+        // Act
+        writer.write(outcomes);
+
+        // Assert
+        verify(cacheService, timeout(1000)).writeBatchOutcomes(outcomes);
+        verify(metricsService).registerOutcomeCacheBacklogGauge(any());
+    }
+
+    @Test
+    void testWrite_FailedWriteRetried() {
+        // Arrange - Redis blips twice, then recovers
+        BatchOutcomes outcomes = BatchOutcomes.forSku("SKU-001").decrementStock(1).reservation("user1", "res-1");
+        when(cacheService.writeBatchOutcomes(outcomes))
+                .thenThrow(new RedisConnectionFailureException("Connection reset"))
+                .thenThrow(new RedisConnectionFailureException("Connection reset"))
+                .thenReturn(true);
+
+        // Act
+        writer.write(outcomes);
+
+        // Assert - the same outcomes (same batch ID) until applied
+        verify(cacheService, timeout(1000).times(3)).writeBatchOutcomes(outcomes);
+        verify(metricsService, never()).recordError(anyString(), anyString());
+    }
+
+    @Test
+    void testWrite_RetriesExhaustedDropped() {
+        // Arrange
+        ReflectionTestUtils.setField(writer, "maxAttempts", 2);
+        BatchOutcomes outcomes = BatchOutcomes.forSku("SKU-001").decrementStock(1);
+        when(cacheService.writeBatchOutcomes(outcomes)).thenThrow(new RedisConnectionFailureException("Down"));
+
+        // Act
+        writer.write(outcomes);
+
+        // Assert
+        verify(metricsService, timeout(1000)).recordError("OUTCOME_CACHE_DROPPED", "writeBatchOutcomes");
+        verify(cacheService, times(2)).writeBatchOutcomes(outcomes);
+        assertEquals(0, writer.backlog());
+    }
+
+    @Test
+    void testWrite_BufferFullDropsWithoutBlocking() throws InterruptedException {
+        // Arrange - Redis stalls on the first write, buffer of 2
+        ReflectionTestUtils.setField(writer, "queueCapacity", 2);
+        CountDownLatch stalled = new CountDownLatch(1);
+        when(cacheService.writeBatchOutcomes(any())).thenAnswer(invocation -> {
+            stalled.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            writer.write(BatchOutcomes.forSku("SKU-001").decrementStock(1));
+        }
+
+        // Assert - third write dropped at once, the other two drain once Redis recovers
+        verify(metricsService).recordError("OUTCOME_CACHE_DROPPED", "writeBatchOutcomes");
+        assertEquals(2, writer.backlog());
+        stalled.countDown();
+        verify(cacheService, timeout(1000).times(2)).writeBatchOutcomes(any());
+    }
+
+    @Test
+    void testWrite_EmptyOutcomesSkipped() {
+        // Act
+        writer.write(BatchOutcomes.forSku("SKU-001"));
+        writer.shutdown();
+
+        // Assert
+        verify(cacheService, never()).writeBatchOutcomes(any());
+    }
+}
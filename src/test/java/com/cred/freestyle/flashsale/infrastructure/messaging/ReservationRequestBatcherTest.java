@@ -0,0 +1,161 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ReservationRequestBatcher.
+ *
+ * @author Flash Sale Team
+ */
+@ExtendWith(MockitoExtension.class)
+class ReservationRequestBatcherTest {
+
+    @Mock
+    private KafkaTemplate<String, List<ReservationRequestMessage>> kafkaTemplate;
+
+    private ReservationRequestBatcher batcher;
+
+    private static final String TEST_SKU_ID = "SKU-001";
+
+    @BeforeEach
+    void setUp() {
+        batcher = new ReservationRequestBatcher(kafkaTemplate);
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "windowMs", 1000L);
+        ReflectionTestUtils.setField(batcher, "maxRequests", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.flushAll();
+    }
+
+    @Test
+    void testSend_Disabled_OneRecordPerRequest() {
+        // Arrange
+        ReflectionTestUtils.setField(batcher, "enabled", false);
+        ReservationRequestMessage message = message("req-1", TEST_SKU_ID);
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        // Act
+        batcher.send(TEST_SKU_ID, message);
+
+        // Assert
+        verify(kafkaTemplate).send("reservation-requests", TEST_SKU_ID, Collections.singletonList(message));
+    }
+
+    @Test
+    void testSend_MaxRequestsReached_PublishesOneEnvelope() throws Exception {
+        // Arrange
+        SendResult<String, List<ReservationRequestMessage>> result = sendResult();
+        when(kafkaTemplate.send(anyString(), anyString(), anyList())).thenReturn(CompletableFuture.completedFuture(result));
+        ReservationRequestMessage m1 = message("req-1", TEST_SKU_ID);
+        ReservationRequestMessage m2 = message("req-2", TEST_SKU_ID);
+        ReservationRequestMessage m3 = message("req-3", TEST_SKU_ID);
+
+        // Act
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> f1 = batcher.send(TEST_SKU_ID, m1);
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> f2 = batcher.send(TEST_SKU_ID, m2);
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> f3 = batcher.send(TEST_SKU_ID, m3);
+
+        // Assert - single record keyed by SKU, requests in arrival order, every caller completed
+        ArgumentCaptor<List<ReservationRequestMessage>> valueCaptor = valueCaptor();
+        verify(kafkaTemplate).send(eq("reservation-requests"), eq(TEST_SKU_ID), valueCaptor.capture());
+        assertEquals(Arrays.asList(m1, m2, m3), valueCaptor.getValue());
+
+        assertSame(result, f1.get());
+        assertSame(result, f2.get());
+        assertSame(result, f3.get());
+    }
+
+    @Test
+    void testSend_WindowElapsed_FlushesPartialBatch() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(batcher, "windowMs", 1L);
+        ReservationRequestMessage message = message("req-1", TEST_SKU_ID);
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        // Act
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> future = batcher.send(TEST_SKU_ID, message);
+
+        // Assert - lone request is flushed by the window
+        assertNotNull(future.get(1, TimeUnit.SECONDS));
+        verify(kafkaTemplate).send("reservation-requests", TEST_SKU_ID, Collections.singletonList(message));
+    }
+
+    @Test
+    void testSend_DifferentSkus_SeparateBatches() {
+        // Arrange
+        ReservationRequestMessage m1 = message("req-1", TEST_SKU_ID);
+        ReservationRequestMessage m2 = message("req-2", "SKU-002");
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        // Act
+        batcher.send(TEST_SKU_ID, m1);
+        batcher.send("SKU-002", m2);
+        batcher.flushAll();
+
+        // Assert
+        verify(kafkaTemplate).send("reservation-requests", TEST_SKU_ID, Collections.singletonList(m1));
+        verify(kafkaTemplate).send("reservation-requests", "SKU-002", Collections.singletonList(m2));
+    }
+
+    @Test
+    void testSend_PublishFailure_FailsEveryCaller() {
+        // Arrange
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Kafka error")));
+
+        // Act
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> f1 = batcher.send(TEST_SKU_ID, message("req-1", TEST_SKU_ID));
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> f2 = batcher.send(TEST_SKU_ID, message("req-2", TEST_SKU_ID));
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> f3 = batcher.send(TEST_SKU_ID, message("req-3", TEST_SKU_ID));
+
+        // Assert
+        assertThrows(ExecutionException.class, f1::get);
+        assertThrows(ExecutionException.class, f2::get);
+        assertThrows(ExecutionException.class, f3::get);
+    }
+
+    private ReservationRequestMessage message(String requestId, String skuId) {
+        return new ReservationRequestMessage(requestId, "user-" + requestId, skuId, 1,
+            "user-" + requestId + ":" + skuId, "user-" + requestId + "-" + skuId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<List<ReservationRequestMessage>> valueCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private SendResult<String, List<ReservationRequestMessage>> sendResult() {
+        RecordMetadata metadata = new RecordMetadata(
+            new TopicPartition("reservation-requests", 0), 0L, 0, 0L, 0, 0);
+        return new SendResult<>(null, metadata);
+    }
+}
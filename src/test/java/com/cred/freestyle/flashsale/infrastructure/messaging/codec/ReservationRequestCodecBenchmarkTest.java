@@ -0,0 +1,113 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging.codec;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Micro-benchmark of the reservation-requests wire format: previous JSON path
+ * (Jackson + StringSerializer) against the binary codec.
+ *
+ * Reports bytes per message and decode ns per message, for single-request records
+ * and 50-request envelopes. Skipped in normal builds; run with:
+ * mvn test -Dtest=ReservationRequestCodecBenchmarkTest -Dbenchmark=true
+ *
+ * @author Flash Sale Team
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ReservationRequestCodecBenchmarkTest {
+
+    private static final int MESSAGES = 20_000;
+    private static final int ENVELOPE_SIZE = 50;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void compareJsonAndBinary() throws Exception {
+        List<ReservationRequestMessage> messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            String userId = "user-" + i;
+            String skuId = "SKU-" + (i % 10);
+            messages.add(new ReservationRequestMessage(UUID.randomUUID().toString(), userId, skuId, 1,
+                    userId + ":" + skuId, userId + "-" + skuId + "-" + System.currentTimeMillis()));
+        }
+
+        // Encode once per format
+        List<byte[]> json = new ArrayList<>(MESSAGES);
+        List<byte[]> binary = new ArrayList<>(MESSAGES);
+        List<byte[]> envelopes = new ArrayList<>(MESSAGES / ENVELOPE_SIZE);
+        long jsonBytes = 0;
+        long binaryBytes = 0;
+        long envelopeBytes = 0;
+        for (ReservationRequestMessage message : messages) {
+            byte[] j = objectMapper.writeValueAsString(message).getBytes(StandardCharsets.UTF_8);
+            byte[] b = ReservationRequestCodec.encode(Collections.singletonList(message));
+            json.add(j);
+            binary.add(b);
+            jsonBytes += j.length;
+            binaryBytes += b.length;
+        }
+        for (int i = 0; i < MESSAGES; i += ENVELOPE_SIZE) {
+            byte[] e = ReservationRequestCodec.encode(messages.subList(i, i + ENVELOPE_SIZE));
+            envelopes.add(e);
+            envelopeBytes += e.length;
+        }
+
+        ReservationRequestDeserializer deserializer = new ReservationRequestDeserializer(objectMapper);
+
+        double jsonNs = measure(() -> {
+            for (byte[] value : json) {
+                objectMapper.readValue(new String(value, StandardCharsets.UTF_8),
+                        ReservationRequestMessage.class);
+            }
+        });
+        double binaryNs = measure(() -> {
+            for (byte[] value : binary) {
+                deserializer.deserialize("reservation-requests", value);
+            }
+        });
+        double reusingNs = measure(() -> {
+            deserializer.recycle();
+            for (byte[] value : envelopes) {
+                deserializer.deserializeReusing(value);
+            }
+        });
+
+        System.out.printf("%-28s %10s %12s%n", "format", "bytes/msg", "decode ns/msg");
+        System.out.printf("%-28s %10.1f %12.1f%n", "json (single)", (double) jsonBytes / MESSAGES, jsonNs);
+        System.out.printf("%-28s %10.1f %12.1f%n", "binary (single)", (double) binaryBytes / MESSAGES, binaryNs);
+        System.out.printf("%-28s %10.1f %12.1f%n", "binary (envelope, reused)", (double) envelopeBytes / MESSAGES, reusingNs);
+
+        assertTrue(binaryBytes < jsonBytes);
+    }
+
+    /**
+     * Average ns per message over the measured rounds, after warm-up.
+     */
+    private double measure(ThrowingRunnable round) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            round.run();
+        }
+        return (double) (System.nanoTime() - start) / ((long) MEASURED_ROUNDS * MESSAGES);
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
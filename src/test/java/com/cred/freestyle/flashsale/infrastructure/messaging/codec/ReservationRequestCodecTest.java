@@ -0,0 +1,162 @@
+package com.cred.freestyle.flashsale.infrastructure.messaging.codec;
+
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the binary reservation-requests wire format
+ * (ReservationRequestCodec, ReservationRequestSerializer, ReservationRequestDeserializer).
+ *
+ * @author Flash Sale Team
+ */
+class ReservationRequestCodecTest {
+
+    private static final String TEST_SKU_ID = "SKU-001";
+
+    private ObjectMapper objectMapper;
+    private ReservationRequestSerializer serializer;
+    private ReservationRequestDeserializer deserializer;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper().findAndRegisterModules(); // Instant support (JavaTimeModule)
+        serializer = new ReservationRequestSerializer();
+        deserializer = new ReservationRequestDeserializer(objectMapper);
+    }
+
+    @Test
+    @DisplayName("Binary round trip - Should preserve every field")
+    void roundTrip_PreservesFields() {
+        ReservationRequestMessage original = message("req-1", "user-1");
+
+        List<ReservationRequestMessage> decoded = deserializer.deserialize(
+            "reservation-requests", serializer.serialize("reservation-requests", Collections.singletonList(original)));
+
+        assertEquals(1, decoded.size());
+        ReservationRequestMessage message = decoded.get(0);
+        assertEquals("req-1", message.getRequestId());
+        assertEquals("user-1", message.getUserId());
+        assertEquals(TEST_SKU_ID, message.getSkuId());
+        assertEquals(1, message.getQuantity());
+        assertEquals("user-1:" + TEST_SKU_ID, message.getIdempotencyKey());
+        assertEquals(original.getTimestamp().truncatedTo(ChronoUnit.MILLIS), message.getTimestamp());
+        assertEquals("user-1-" + TEST_SKU_ID + "-" + original.getTimestamp().toEpochMilli(), message.getCorrelationId());
+    }
+
+    @Test
+    @DisplayName("Binary envelope - Should keep request order")
+    void roundTrip_Envelope() {
+        List<ReservationRequestMessage> decoded = deserializer.deserialize("reservation-requests",
+            ReservationRequestCodec.encode(Arrays.asList(message("req-1", "user-1"), message("req-2", "user-2"))));
+
+        assertEquals(2, decoded.size());
+        assertEquals("req-1", decoded.get(0).getRequestId());
+        assertEquals("req-2", decoded.get(1).getRequestId());
+    }
+
+    @Test
+    @DisplayName("Binary format - Should be smaller than JSON")
+    void encode_SmallerThanJson() throws Exception {
+        ReservationRequestMessage message = message("9b2f6f0e-5c1d-4a51-9f57-0f8c2d1f9a11", "user-12345");
+
+        byte[] binary = ReservationRequestCodec.encode(Collections.singletonList(message));
+        byte[] json = objectMapper.writeValueAsBytes(message);
+
+        assertTrue(binary.length < json.length, "binary=" + binary.length + " json=" + json.length);
+    }
+
+    @Test
+    @DisplayName("Serializer - Should copy routing metadata into headers")
+    void serialize_AddsRoutingHeaders() {
+        RecordHeaders headers = new RecordHeaders();
+
+        serializer.serialize("reservation-requests", headers,
+            Arrays.asList(message("req-1", "user-1"), message("req-2", "user-2")));
+
+        assertEquals(TEST_SKU_ID, new String(
+            headers.lastHeader(ReservationRequestSerializer.SKU_HEADER).value(), StandardCharsets.UTF_8));
+        int keys = 0;
+        for (Header header : headers.headers(ReservationRequestSerializer.IDEMPOTENCY_KEY_HEADER)) {
+            keys++;
+        }
+        assertEquals(2, keys);
+    }
+
+    @Test
+    @DisplayName("Deserializer - Unknown version: Should reject")
+    void deserialize_UnknownVersion() {
+        byte[] data = ReservationRequestCodec.encode(Collections.singletonList(message("req-1", "user-1")));
+        data[1] = 2;
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("reservation-requests", data));
+    }
+
+    @Test
+    @DisplayName("Deserializer - Truncated record: Should reject")
+    void deserialize_Truncated() {
+        byte[] data = ReservationRequestCodec.encode(Collections.singletonList(message("req-1", "user-1")));
+        byte[] truncated = Arrays.copyOf(data, data.length - 3);
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("reservation-requests", truncated));
+    }
+
+    @Test
+    @DisplayName("Serializer - Missing required field: Should reject")
+    void serialize_MissingRequestId() {
+        ReservationRequestMessage message = message(null, "user-1");
+
+        assertThrows(SerializationException.class,
+            () -> serializer.serialize("reservation-requests", Collections.singletonList(message)));
+    }
+
+    @Test
+    @DisplayName("Deserializer - Legacy JSON record: Should fall back to JSON")
+    void deserialize_JsonFallback() throws Exception {
+        ReservationRequestMessage message = message("req-1", "user-1");
+
+        List<ReservationRequestMessage> single = deserializer.deserialize(
+            "reservation-requests", objectMapper.writeValueAsBytes(message));
+        List<ReservationRequestMessage> array = deserializer.deserialize(
+            "reservation-requests", objectMapper.writeValueAsBytes(Arrays.asList(message, message)));
+
+        assertEquals("req-1", single.get(0).getRequestId());
+        assertEquals(2, array.size());
+    }
+
+    @Test
+    @DisplayName("deserializeReusing - Should recycle instances after recycle()")
+    void deserializeReusing_RecyclesInstances() {
+        byte[] first = ReservationRequestCodec.encode(Collections.singletonList(message("req-1", "user-1")));
+        byte[] second = ReservationRequestCodec.encode(Collections.singletonList(message("req-2", "user-2")));
+
+        ReservationRequestMessage decoded1 = deserializer.deserializeReusing(first).get(0);
+        deserializer.recycle();
+        ReservationRequestMessage decoded2 = deserializer.deserializeReusing(second).get(0);
+
+        assertSame(decoded1, decoded2);
+        assertEquals("req-2", decoded2.getRequestId());
+        assertEquals("user-2", decoded2.getUserId());
+    }
+
+    private ReservationRequestMessage message(String requestId, String userId) {
+        ReservationRequestMessage message = new ReservationRequestMessage(
+            requestId, userId, TEST_SKU_ID, 1, userId + ":" + TEST_SKU_ID, userId + "-" + TEST_SKU_ID);
+        message.setTimestamp(Instant.now());
+        return message;
+    }
+}
@@ -0,0 +1,168 @@
+package com.cred.freestyle.flashsale.infrastructure.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CloudWatchMetricsService.
+ *
+ * @author Flash Sale Team
+ */
+class CloudWatchMetricsServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CloudWatchMetricsService metricsService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metricsService = new CloudWatchMetricsService(meterRegistry);
+    }
+
+    @Test
+    void testRecordReservationSuccess_MeterResolvedOnce() {
+        // Act
+        metricsService.recordReservationSuccess("SKU-001", 3);
+        Counter first = meterRegistry.get("flashsale.reservation.success").tag("sku_id", "SKU-001").counter();
+        metricsService.recordReservationSuccess("SKU-001");
+
+        // Assert - same meter incremented in place
+        assertSame(first, meterRegistry.get("flashsale.reservation.success").tag("sku_id", "SKU-001").counter());
+        assertEquals(4.0, first.count());
+    }
+
+    @Test
+    void testRecordReservationFailure_TaggedBySkuAndReason() {
+        // Act
+        metricsService.recordReservationFailure("SKU-001", "OUT_OF_STOCK");
+        metricsService.recordReservationFailure("SKU-001", "OUT_OF_STOCK");
+        metricsService.recordReservationFailure("SKU-001", "DUPLICATE_REQUEST");
+
+        // Assert
+        assertEquals(2.0, meterRegistry.get("flashsale.reservation.failure")
+                .tags("sku_id", "SKU-001", "reason", "OUT_OF_STOCK").counter().count());
+        assertEquals(1.0, meterRegistry.get("flashsale.reservation.failure")
+                .tags("sku_id", "SKU-001", "reason", "DUPLICATE_REQUEST").counter().count());
+    }
+
+    @Test
+    void testSkuTagLimit_LaterSkusFoldedIntoOther() {
+        // Arrange
+        ReflectionTestUtils.setField(metricsService, "maxSkuTags", 2);
+
+        // Act
+        metricsService.recordReservationSuccess("SKU-001");
+        metricsService.recordReservationSuccess("SKU-002");
+        metricsService.recordReservationSuccess("SKU-003");
+        metricsService.recordReservationSuccess("SKU-004");
+        metricsService.recordReservationSuccess("SKU-001");
+
+        // Assert - the first two keep their tag, the rest share one meter
+        assertEquals(2.0, meterRegistry.get("flashsale.reservation.success").tag("sku_id", "SKU-001").counter().count());
+        assertEquals(1.0, meterRegistry.get("flashsale.reservation.success").tag("sku_id", "SKU-002").counter().count());
+        assertEquals(2.0, meterRegistry.get("flashsale.reservation.success")
+                .tag("sku_id", CloudWatchMetricsService.OTHER_SKU).counter().count());
+        assertEquals(3, meterRegistry.find("flashsale.reservation.success").counters().size());
+    }
+
+    @Test
+    void testSkuTagLimit_AppliesToTimers() {
+        // Arrange
+        ReflectionTestUtils.setField(metricsService, "maxSkuTags", 1);
+
+        // Act
+        metricsService.recordBatchStageLatency("SKU-001", "persist", 5);
+        metricsService.recordBatchStageLatency("SKU-002", "persist", 7);
+
+        // Assert
+        Timer other = meterRegistry.get("flashsale.batch.stage.latency")
+                .tags("sku_id", CloudWatchMetricsService.OTHER_SKU, "stage", "persist").timer();
+        assertEquals(1, other.count());
+        assertEquals(2, meterRegistry.find("flashsale.batch.stage.latency").timers().size());
+    }
+
+    @Test
+    void testRecordError_UntouchedBySkuLimit() {
+        // Arrange
+        ReflectionTestUtils.setField(metricsService, "maxSkuTags", 0);
+
+        // Act
+        metricsService.recordError("BATCH_PROCESSING_ERROR", "processBatchForSku");
+
+        // Assert
+        assertEquals(1.0, meterRegistry.get("flashsale.error")
+                .tags("error_type", "BATCH_PROCESSING_ERROR", "operation", "processBatchForSku").counter().count());
+    }
+
+    // ============= Live Gauge Tests =============
+
+    @Test
+    void testRecordInventoryLevel_GaugeReportsLatestValue() {
+        // Act
+        metricsService.recordInventoryLevel("SKU-001", 100);
+        System.gc();  // Gauge state must be strongly held
+        metricsService.recordInventoryLevel("SKU-001", 75);
+
+        // Assert
+        assertEquals(75.0, meterRegistry.get("flashsale.inventory.available").tag("sku_id", "SKU-001").gauge().value());
+        assertEquals(1, meterRegistry.find("flashsale.inventory.available").gauges().size());
+    }
+
+    @Test
+    void testRecordBatchAllocationRate_DoubleGaugeAndCounters() {
+        // Act
+        metricsService.recordBatchAllocationRate("SKU-001", 1, 4);
+        metricsService.recordBatchAllocationRate("SKU-001", 3, 4);
+
+        // Assert
+        assertEquals(0.75, meterRegistry.get("flashsale.batch.allocation.rate").tag("sku_id", "SKU-001").gauge().value());
+        assertEquals(4.0, meterRegistry.get("flashsale.batch.allocated").tag("sku_id", "SKU-001").counter().count());
+        assertEquals(4.0, meterRegistry.get("flashsale.batch.rejected").tag("sku_id", "SKU-001").counter().count());
+    }
+
+    @Test
+    void testRecordBatchProcessing_BatchSizeGauge() {
+        // Act
+        metricsService.recordBatchProcessing("SKU-001", 250, 12);
+        metricsService.recordBatchProcessing("SKU-001", 400, 18);
+
+        // Assert
+        assertEquals(400.0, meterRegistry.get("flashsale.batch.size").tag("sku_id", "SKU-001").gauge().value());
+        assertEquals(2, meterRegistry.get("flashsale.batch.latency").tag("sku_id", "SKU-001").timer().count());
+    }
+
+    @Test
+    void testRecordConsumerLag_PerPartitionGauge() {
+        // Act
+        metricsService.recordConsumerLag(3, 500);
+        metricsService.recordConsumerLag(4, 20);
+        metricsService.recordConsumerLag(3, 120);
+
+        // Assert
+        assertEquals(120.0, meterRegistry.get("flashsale.kafka.consumer.lag").tag("partition", "3").gauge().value());
+        assertEquals(20.0, meterRegistry.get("flashsale.kafka.consumer.lag").tag("partition", "4").gauge().value());
+    }
+
+    @Test
+    void testRecordQueueDepth_FoldedSkusShareOneGauge() {
+        // Arrange
+        ReflectionTestUtils.setField(metricsService, "maxSkuTags", 1);
+
+        // Act
+        metricsService.recordQueueDepth("SKU-001", 7);
+        metricsService.recordQueueDepth("SKU-002", 3);
+        metricsService.recordQueueDepth("SKU-003", 9);
+
+        // Assert
+        assertEquals(7.0, meterRegistry.get("flashsale.queue.depth").tag("sku_id", "SKU-001").gauge().value());
+        assertEquals(9.0, meterRegistry.get("flashsale.queue.depth")
+                .tag("sku_id", CloudWatchMetricsService.OTHER_SKU).gauge().value());
+        assertEquals(2, meterRegistry.find("flashsale.queue.depth").gauges().size());
+    }
+}
@@ -15,11 +15,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -66,6 +68,7 @@ class ReservationExpirySchedulerTest {
                 kafkaProducerService,
                 metricsService
         );
+        ReflectionTestUtils.setField(scheduler, "schedulerEnabled", true); // @Value default
     }
 
     @Test
@@ -148,6 +151,26 @@ class ReservationExpirySchedulerTest {
         verify(metricsService, times(2)).recordReservationExpiry(TEST_SKU_ID);
     }
 
+    @Test
+    @DisplayName("cleanupExpiredReservations - Released stock: Should broadcast RELEASED once per SKU")
+    void cleanupExpiredReservations_BroadcastsReleasedPerSku() {
+        // Arrange
+        Reservation reservation1 = createExpiredReservation();
+        Reservation reservation2 = createExpiredReservation();
+        reservation2.setReservationId("res-456");
+
+        when(reservationRepository.findExpiredReservations(any(Instant.class)))
+                .thenReturn(Arrays.asList(reservation1, reservation2));
+        when(cacheService.getStockCount(TEST_SKU_ID)).thenReturn(Optional.of(2));
+
+        // Act
+        scheduler.cleanupExpiredReservations();
+
+        // Assert - Reopens the SKU on every node with a single event
+        verify(kafkaProducerService).publishInventoryUpdate(
+                TEST_SKU_ID, 2, KafkaProducerService.INVENTORY_EVENT_RELEASED);
+    }
+
     @Test
     @DisplayName("cleanupExpiredReservations - Kafka publish fails: Should continue processing")
     void cleanupExpiredReservations_KafkaPublishFails() {
@@ -0,0 +1,130 @@
+package com.cred.freestyle.flashsale.repository;
+
+import com.cred.freestyle.flashsale.domain.model.Reservation;
+import com.cred.freestyle.flashsale.domain.model.Reservation.ReservationStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of the bulk reservation insert against JPA saveAll, on a real PostgreSQL.
+ *
+ * Writes batches of 250 (one consumer batch) through both paths and logs rows/sec.
+ * Run with: mvn verify -Dbenchmark=true -Dit.test=ReservationBulkInsertBenchmarkIT
+ */
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Reservation bulk insert benchmark")
+class ReservationBulkInsertBenchmarkIT {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationBulkInsertBenchmarkIT.class);
+
+    private static final int BATCH_SIZE = 250;
+    private static final int WARMUP_BATCHES = 20;
+    private static final int MEASURED_BATCHES = 100;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("flashsale_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.hikari.data-source-properties.reWriteBatchedInserts", () -> "true");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("spring.jpa.properties.hibernate.jdbc.batch_size", () -> "20");
+        registry.add("spring.jpa.properties.hibernate.order_inserts", () -> "true");
+    }
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("insertIgnoringDuplicates - Should out-insert saveAll")
+    void bulkInsert_VersusSaveAll() {
+        // Given - both paths warmed up (JIT, statement caches)
+        runSaveAll(WARMUP_BATCHES);
+        runBulkInsert(WARMUP_BATCHES);
+
+        // When
+        double saveAllRowsPerSec = runSaveAll(MEASURED_BATCHES);
+        double bulkRowsPerSec = runBulkInsert(MEASURED_BATCHES);
+
+        // Then
+        logger.info("Reservation insert, {} batches of {}: saveAll {} rows/sec, bulk insert {} rows/sec ({}x)",
+                   MEASURED_BATCHES, BATCH_SIZE, Math.round(saveAllRowsPerSec), Math.round(bulkRowsPerSec),
+                   String.format("%.1f", bulkRowsPerSec / saveAllRowsPerSec));
+        assertThat(reservationRepository.count())
+                .isEqualTo(2L * (WARMUP_BATCHES + MEASURED_BATCHES) * BATCH_SIZE);
+        assertThat(bulkRowsPerSec).isGreaterThan(saveAllRowsPerSec);
+    }
+
+    private double runSaveAll(int batches) {
+        long start = System.nanoTime();
+        for (int b = 0; b < batches; b++) {
+            reservationRepository.saveAll(newBatch());  // ids from @PrePersist, as the consumer used to
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return rowsPerSec(batches, System.nanoTime() - start);
+    }
+
+    private double runBulkInsert(int batches) {
+        long start = System.nanoTime();
+        for (int b = 0; b < batches; b++) {
+            Set<String> inserted = reservationRepository.insertIgnoringDuplicates(newBatch());
+            assertThat(inserted).hasSize(BATCH_SIZE);
+        }
+        return rowsPerSec(batches, System.nanoTime() - start);
+    }
+
+    private List<Reservation> newBatch() {
+        String skuId = "SKU-" + UUID.randomUUID();
+        Instant expiresAt = Instant.now().plus(2, ChronoUnit.MINUTES);
+        List<Reservation> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            String userId = UUID.randomUUID().toString();
+            batch.add(Reservation.builder()
+                    .userId(userId)
+                    .skuId(skuId)
+                    .status(ReservationStatus.RESERVED)
+                    .expiresAt(expiresAt)
+                    .idempotencyKey(userId + ":" + skuId)
+                    .build());
+        }
+        return batch;
+    }
+
+    private static double rowsPerSec(int batches, long elapsedNanos) {
+        return (double) batches * BATCH_SIZE / (elapsedNanos / 1_000_000_000.0);
+    }
+}
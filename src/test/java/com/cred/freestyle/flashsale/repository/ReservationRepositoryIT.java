@@ -18,6 +18,7 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -307,4 +308,66 @@ class ReservationRepositoryIT {
         // Then
         assertThat(count).isEqualTo(2);
     }
+
+    // ========================================
+    // insertIgnoringDuplicates Tests
+    // ========================================
+
+    @Test
+    @DisplayName("insertIgnoringDuplicates - Should skip rows whose idempotency key already exists")
+    void insertIgnoringDuplicates_SkipsExistingKeys() {
+        // Given
+        testReservation.setIdempotencyKey("user-123:SKU-001");
+        reservationRepository.saveAndFlush(testReservation);
+
+        Reservation duplicate = Reservation.builder()
+                .userId("user-123")
+                .skuId("SKU-001")
+                .status(ReservationStatus.RESERVED)
+                .expiresAt(Instant.now().plus(2, ChronoUnit.MINUTES))
+                .idempotencyKey("user-123:SKU-001")
+                .build();
+        Reservation fresh = Reservation.builder()
+                .userId("user-456")
+                .skuId("SKU-001")
+                .status(ReservationStatus.RESERVED)
+                .expiresAt(Instant.now().plus(2, ChronoUnit.MINUTES))
+                .idempotencyKey("user-456:SKU-001")
+                .build();
+
+        // When
+        Set<String> inserted = reservationRepository.insertIgnoringDuplicates(List.of(duplicate, fresh));
+
+        // Then
+        assertThat(inserted).containsExactly(fresh.getReservationId());
+        assertThat(reservationRepository.findByIdempotencyKey("user-456:SKU-001")).isPresent();
+        assertThat(reservationRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("insertIgnoringDuplicates - Should keep only the first of repeated keys in one call")
+    void insertIgnoringDuplicates_RepeatedKeyInSameCall() {
+        // Given
+        Reservation first = Reservation.builder()
+                .userId("user-789")
+                .skuId("SKU-002")
+                .status(ReservationStatus.RESERVED)
+                .expiresAt(Instant.now().plus(2, ChronoUnit.MINUTES))
+                .idempotencyKey("user-789:SKU-002")
+                .build();
+        Reservation repeated = Reservation.builder()
+                .userId("user-789")
+                .skuId("SKU-002")
+                .status(ReservationStatus.RESERVED)
+                .expiresAt(Instant.now().plus(2, ChronoUnit.MINUTES))
+                .idempotencyKey("user-789:SKU-002")
+                .build();
+
+        // When
+        Set<String> inserted = reservationRepository.insertIgnoringDuplicates(List.of(first, repeated));
+
+        // Then
+        assertThat(inserted).hasSize(1);
+        assertThat(reservationRepository.findByIdempotencyKey("user-789:SKU-002")).isPresent();
+    }
 }
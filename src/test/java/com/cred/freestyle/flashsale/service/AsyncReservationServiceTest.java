@@ -1,11 +1,20 @@
 package com.cred.freestyle.flashsale.service;
 
+import com.cred.freestyle.flashsale.exception.ReservationQueuedException;
+import com.cred.freestyle.flashsale.infrastructure.cache.Admission;
+import com.cred.freestyle.flashsale.infrastructure.cache.AdmissionReleaser;
+import com.cred.freestyle.flashsale.infrastructure.cache.AdmissionResult;
 import com.cred.freestyle.flashsale.infrastructure.cache.RedisCacheService;
+import com.cred.freestyle.flashsale.infrastructure.cache.SoldOutRegistry;
+import com.cred.freestyle.flashsale.infrastructure.messaging.ConsumerLagTracker;
+import com.cred.freestyle.flashsale.infrastructure.messaging.ReservationOutcomeRegistry;
+import com.cred.freestyle.flashsale.infrastructure.messaging.ReservationRequestBatcher;
 import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationRequestMessage;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
 import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
-import com.cred.freestyle.flashsale.repository.ReservationRepository;
-import com.cred.freestyle.flashsale.repository.UserPurchaseTrackingRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,9 +23,13 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
 
-import java.util.Optional;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -33,21 +46,17 @@ import static org.mockito.Mockito.*;
 class AsyncReservationServiceTest {
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, List<ReservationRequestMessage>> kafkaTemplate;
 
     @Mock
     private RedisCacheService cacheService;
 
-    @Mock
-    private ReservationRepository reservationRepository;
-
-    @Mock
-    private UserPurchaseTrackingRepository userPurchaseTrackingRepository;
-
     @Mock
     private CloudWatchMetricsService metricsService;
 
-    private ObjectMapper objectMapper;
+    private AdmissionReleaser admissionReleaser;
+    private ReservationOutcomeRegistry outcomeRegistry;
+    private SoldOutRegistry soldOutRegistry;
     private AsyncReservationService service;
 
     private static final String TEST_USER_ID = "user123";
@@ -56,27 +65,32 @@ class AsyncReservationServiceTest {
 
     @BeforeEach
     void setUp() {
-        objectMapper = new ObjectMapper();
+        outcomeRegistry = new ReservationOutcomeRegistry();
+        soldOutRegistry = new SoldOutRegistry();
+        admissionReleaser = new AdmissionReleaser(cacheService, metricsService);
         service = new AsyncReservationService(
-            kafkaTemplate,
+            new ReservationRequestBatcher(kafkaTemplate), // micro-batching off: one send per request
             cacheService,
-            reservationRepository,
-            userPurchaseTrackingRepository,
+            admissionReleaser,
             metricsService,
-            objectMapper
+            outcomeRegistry,
+            soldOutRegistry,
+            new ConsumerLagTracker(metricsService) // no sample yet: Retry-After falls back to the minimum
         );
     }
 
+    @AfterEach
+    void tearDown() {
+        admissionReleaser.shutdown();
+    }
+
     @Test
     void testSubmitReservationRequest_Success() throws Exception {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(Optional.empty());
-        when(cacheService.getStockCount(TEST_SKU_ID)).thenReturn(Optional.of(100));
+        stubAdmission(AdmissionResult.ADMITTED);
 
-        CompletableFuture<SendResult<String, String>> kafkaFuture = CompletableFuture.completedFuture(null);
-        when(kafkaTemplate.send(anyString(), anyString(), anyString()))
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> kafkaFuture = CompletableFuture.completedFuture(sendResult());
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
             .thenReturn(kafkaFuture);
 
         // Act
@@ -94,7 +108,7 @@ class AsyncReservationServiceTest {
         // Verify Kafka send was called
         ArgumentCaptor<String> topicCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<List<ReservationRequestMessage>> messageCaptor = messageCaptor();
 
         verify(kafkaTemplate).send(topicCaptor.capture(), keyCaptor.capture(), messageCaptor.capture());
 
@@ -102,10 +116,7 @@ class AsyncReservationServiceTest {
         assertEquals(TEST_SKU_ID, keyCaptor.getValue()); // Partition key
 
         // Verify message content
-        ReservationRequestMessage message = objectMapper.readValue(
-            messageCaptor.getValue(),
-            ReservationRequestMessage.class
-        );
+        ReservationRequestMessage message = messageCaptor.getValue().get(0);
         assertEquals(TEST_USER_ID, message.getUserId());
         assertEquals(TEST_SKU_ID, message.getSkuId());
         assertEquals(TEST_QUANTITY, message.getQuantity());
@@ -118,7 +129,7 @@ class AsyncReservationServiceTest {
     @Test
     void testSubmitReservationRequest_UserAlreadyPurchased() {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(true);
+        stubAdmission(AdmissionResult.USER_ALREADY_PURCHASED);
 
         // Act & Assert
         CompletableFuture<String> result = service.submitReservationRequest(
@@ -131,7 +142,7 @@ class AsyncReservationServiceTest {
         assertTrue(result.isCompletedExceptionally());
 
         // Verify no Kafka send
-        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyString());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyList());
 
         // Verify metrics
         verify(metricsService).recordReservationFailure(TEST_SKU_ID, "USER_ALREADY_PURCHASED");
@@ -140,9 +151,7 @@ class AsyncReservationServiceTest {
     @Test
     void testSubmitReservationRequest_UserHasActiveReservation() {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(Optional.of("existing-reservation-id"));
+        stubAdmission(AdmissionResult.USER_HAS_ACTIVE_RESERVATION);
 
         // Act & Assert
         CompletableFuture<String> result = service.submitReservationRequest(
@@ -154,21 +163,16 @@ class AsyncReservationServiceTest {
         assertTrue(result.isCompletedExceptionally());
 
         // Verify no Kafka send
-        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyString());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyList());
 
         // Verify metrics
         verify(metricsService).recordReservationFailure(TEST_SKU_ID, "USER_HAS_ACTIVE_RESERVATION");
-        verify(metricsService).recordCacheHit("reservation");
     }
 
     @Test
-    void testSubmitReservationRequest_UserHasActiveReservation_DatabaseFallback() {
-        // Arrange - Cache miss, but DB finds active reservation
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(Optional.empty()); // Cache miss
-        when(reservationRepository.hasActiveReservation(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(true); // DB finds active reservation
+    void testSubmitReservationRequest_RequestInProgress() {
+        // Arrange - another request from the same user for the same SKU holds the pending marker
+        stubAdmission(AdmissionResult.REQUEST_IN_PROGRESS);
 
         // Act & Assert
         CompletableFuture<String> result = service.submitReservationRequest(
@@ -179,24 +183,19 @@ class AsyncReservationServiceTest {
 
         assertTrue(result.isCompletedExceptionally());
 
-        // Verify database fallback was called
-        verify(reservationRepository).hasActiveReservation(TEST_USER_ID, TEST_SKU_ID);
-
-        // Verify no Kafka send
-        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyString());
+        // Verify duplicate never reaches Kafka and the other request's marker is kept
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyList());
+        admissionReleaser.shutdown();
+        verify(cacheService, never()).releaseAdmissions(anyMap(), anyMap());
 
         // Verify metrics
-        verify(metricsService).recordReservationFailure(TEST_SKU_ID, "USER_HAS_ACTIVE_RESERVATION");
-        verify(metricsService).recordCacheMiss("reservation");
+        verify(metricsService).recordReservationFailure(TEST_SKU_ID, "DUPLICATE_REQUEST");
     }
 
     @Test
     void testSubmitReservationRequest_OutOfStock() {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(Optional.empty());
-        when(cacheService.getStockCount(TEST_SKU_ID)).thenReturn(Optional.of(0));
+        stubAdmission(AdmissionResult.OUT_OF_STOCK);
 
         // Act & Assert
         CompletableFuture<String> result = service.submitReservationRequest(
@@ -208,24 +207,61 @@ class AsyncReservationServiceTest {
         assertTrue(result.isCompletedExceptionally());
 
         // Verify no Kafka send
-        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyString());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyList());
 
         // Verify metrics
         verify(metricsService).recordReservationFailure(TEST_SKU_ID, "OUT_OF_STOCK");
         verify(metricsService).recordInventoryStockOut(TEST_SKU_ID);
     }
 
+    @Test
+    void testSubmitReservationRequest_SoldOutLocally() {
+        // Arrange - SOLD_OUT broadcast already received by this node
+        soldOutRegistry.markSoldOut(TEST_SKU_ID);
+
+        // Act
+        CompletableFuture<String> result = service.submitReservationRequest(
+            TEST_USER_ID,
+            TEST_SKU_ID,
+            TEST_QUANTITY
+        );
+
+        // Assert - rejected without Redis or Kafka
+        assertTrue(result.isCompletedExceptionally());
+        verify(cacheService, never()).admitReservation(anyString(), anyString(), anyInt(), anyString(), anyDouble());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyList());
+        verify(metricsService).recordReservationFailure(TEST_SKU_ID, "OUT_OF_STOCK");
+    }
+
+    @Test
+    void testSubmitReservationRequest_ReopenedAfterRelease() {
+        // Arrange - RELEASED broadcast reopens the SKU
+        soldOutRegistry.markSoldOut(TEST_SKU_ID);
+        soldOutRegistry.reopen(TEST_SKU_ID);
+        stubAdmission(AdmissionResult.ADMITTED);
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        // Act
+        CompletableFuture<String> result = service.submitReservationRequest(
+            TEST_USER_ID,
+            TEST_SKU_ID,
+            TEST_QUANTITY
+        );
+
+        // Assert
+        assertFalse(result.isCompletedExceptionally());
+        verify(kafkaTemplate).send(anyString(), eq(TEST_SKU_ID), anyList());
+    }
+
     @Test
     void testSubmitReservationRequest_KafkaPublishFailure() {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(Optional.empty());
-        when(cacheService.getStockCount(TEST_SKU_ID)).thenReturn(Optional.of(100));
+        stubAdmission(AdmissionResult.ADMITTED);
 
-        CompletableFuture<SendResult<String, String>> kafkaFuture = new CompletableFuture<>();
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> kafkaFuture = new CompletableFuture<>();
         kafkaFuture.completeExceptionally(new RuntimeException("Kafka error"));
-        when(kafkaTemplate.send(anyString(), anyString(), anyString()))
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
             .thenReturn(kafkaFuture);
 
         // Act & Assert
@@ -244,13 +280,10 @@ class AsyncReservationServiceTest {
     @Test
     void testSubmitReservationRequestSync_Success() throws Exception {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(Optional.empty());
-        when(cacheService.getStockCount(TEST_SKU_ID)).thenReturn(Optional.of(100));
+        stubAdmission(AdmissionResult.ADMITTED);
 
-        CompletableFuture<SendResult<String, String>> kafkaFuture = CompletableFuture.completedFuture(null);
-        when(kafkaTemplate.send(anyString(), anyString(), anyString()))
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> kafkaFuture = CompletableFuture.completedFuture(sendResult());
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
             .thenReturn(kafkaFuture);
 
         // Act
@@ -262,13 +295,13 @@ class AsyncReservationServiceTest {
 
         // Assert
         assertNotNull(requestId);
-        verify(kafkaTemplate).send(anyString(), anyString(), anyString());
+        verify(kafkaTemplate).send(anyString(), anyString(), anyList());
     }
 
     @Test
     void testSubmitReservationRequestSync_ThrowsIllegalStateException() {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(true);
+        stubAdmission(AdmissionResult.USER_ALREADY_PURCHASED);
 
         // Act & Assert
         assertThrows(IllegalStateException.class, () -> {
@@ -277,62 +310,291 @@ class AsyncReservationServiceTest {
     }
 
     @Test
-    void testHasUserAlreadyPurchased_CacheHit() {
+    void testSubmitReservationRequestForOutcome_CompletedByPublishedOutcome() throws Exception {
+        // Arrange
+        stubAdmission(AdmissionResult.ADMITTED);
+
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        // Act
+        CompletableFuture<ReservationResponseMessage> outcome =
+            service.submitReservationRequestForOutcome(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
+
+        // Assert - pending until the batch consumer outcome arrives
+        assertFalse(outcome.isDone());
+        assertEquals(1, outcomeRegistry.getPendingCount());
+
+        ArgumentCaptor<List<ReservationRequestMessage>> messageCaptor = messageCaptor();
+        verify(kafkaTemplate).send(eq("reservation-requests"), eq(TEST_SKU_ID), messageCaptor.capture());
+        String requestId = messageCaptor.getValue().get(0)
+            .getRequestId();
+
+        outcomeRegistry.complete(ReservationResponseMessage.success(requestId, "res-001", Instant.now()));
+
+        assertEquals("res-001", outcome.get().getReservationId());
+        assertEquals(0, outcomeRegistry.getPendingCount());
+    }
+
+    @Test
+    void testSubmitReservationRequestForOutcome_PreValidationFailure() {
+        // Arrange
+        stubAdmission(AdmissionResult.USER_ALREADY_PURCHASED);
+
+        // Act
+        CompletableFuture<ReservationResponseMessage> outcome =
+            service.submitReservationRequestForOutcome(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
+
+        // Assert - failed immediately and released from the registry
+        ExecutionException ex = assertThrows(ExecutionException.class, outcome::get);
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+        assertEquals(0, outcomeRegistry.getPendingCount());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyList());
+    }
+
+    @Test
+    void testSubmitReservationRequest_SingleAdmissionRoundTrip() {
+        // Arrange
+        stubAdmission(AdmissionResult.ADMITTED);
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        // Act
+        service.submitReservationRequest(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
+
+        // Assert - pre-validation is one gate call, no per-check Redis reads and no database fallback
+        verify(cacheService).admitReservation(eq(TEST_USER_ID), eq(TEST_SKU_ID), eq(TEST_QUANTITY), anyString(), anyDouble());
+        verify(cacheService, never()).hasUserPurchased(anyString(), anyString());
+        verify(cacheService, never()).getActiveReservation(anyString(), anyString());
+        verify(cacheService, never()).getStockCount(anyString());
+    }
+
+    @Test
+    void testSubmitReservationRequest_KafkaPublishFailure_ClearsPending() {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(true);
+        stubAdmission(AdmissionResult.ADMITTED);
+
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> kafkaFuture = new CompletableFuture<>();
+        kafkaFuture.completeExceptionally(new RuntimeException("Kafka error"));
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(kafkaFuture);
 
         // Act
         service.submitReservationRequest(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
 
+        // Assert - user can retry immediately
+        assertPendingCleared();
+    }
+
+    @Test
+    void testSubmitReservationRequestForOutcome_CompletedBySoldOutBatchOutcome() throws Exception {
+        // Arrange
+        stubAdmission(AdmissionResult.ADMITTED);
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        CompletableFuture<ReservationResponseMessage> outcome =
+            service.submitReservationRequestForOutcome(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
+
+        ArgumentCaptor<List<ReservationRequestMessage>> messageCaptor = messageCaptor();
+        verify(kafkaTemplate).send(anyString(), anyString(), messageCaptor.capture());
+        String requestId = messageCaptor.getValue().get(0)
+            .getRequestId();
+
+        // Act - one outcome for every request the sold-out batch could not serve
+        int completed = outcomeRegistry.completeAll(ReservationResponseMessage.batchFailure(
+            TEST_SKU_ID, List.of("other-node-request", requestId),
+            ReservationResponseMessage.ResponseStatus.OUT_OF_STOCK, "Product is out of stock"));
+
+        // Assert
+        assertEquals(1, completed);
+        assertEquals(requestId, outcome.get().getRequestId());
+        assertEquals(ReservationResponseMessage.ResponseStatus.OUT_OF_STOCK, outcome.get().getStatus());
+    }
+
+    @Test
+    void testSubmitReservationRequestForOutcome_RejectionClearsPending() throws Exception {
+        // Arrange
+        stubAdmission(AdmissionResult.ADMITTED);
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        CompletableFuture<ReservationResponseMessage> outcome =
+            service.submitReservationRequestForOutcome(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
+
+        ArgumentCaptor<List<ReservationRequestMessage>> messageCaptor = messageCaptor();
+        verify(kafkaTemplate).send(anyString(), anyString(), messageCaptor.capture());
+        String requestId = messageCaptor.getValue().get(0)
+            .getRequestId();
+
+        // Act
+        outcomeRegistry.complete(ReservationResponseMessage.failure(
+            requestId, ReservationResponseMessage.ResponseStatus.OUT_OF_STOCK, "Product is out of stock"));
+
         // Assert
-        verify(cacheService).hasUserPurchased(TEST_USER_ID, TEST_SKU_ID);
-        verify(userPurchaseTrackingRepository, never()).existsByUserIdAndSkuId(anyString(), anyString());
-        verify(metricsService).recordCacheHit("user_limit");
+        assertEquals(ReservationResponseMessage.ResponseStatus.OUT_OF_STOCK, outcome.get().getStatus());
+        assertPendingCleared();
+    }
+
+    @Test
+    void testSubmitReservationRequest_WaitingRoom() {
+        // Arrange - no admission ticket free, user placed 7th in the waiting room
+        when(cacheService.admitReservation(eq(TEST_USER_ID), eq(TEST_SKU_ID), eq(TEST_QUANTITY), anyString(), eq(1.5)))
+            .thenReturn(Admission.waiting(7));
+
+        // Act
+        CompletableFuture<ReservationResponseMessage> outcome =
+            service.submitReservationRequestForOutcome(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
+
+        // Assert - queue position returned, nothing published
+        ExecutionException ex = assertThrows(ExecutionException.class, outcome::get);
+        ReservationQueuedException queued = assertInstanceOf(ReservationQueuedException.class, ex.getCause());
+        assertEquals(7, queued.getQueuePosition());
+        assertTrue(queued.getRetryAfterSeconds() > 0);
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyList());
+        verify(metricsService).recordQueueDepth(TEST_SKU_ID, 7);
+        assertEquals(0, outcomeRegistry.getPendingCount());
     }
 
     @Test
-    void testHasUserAlreadyPurchased_CacheMiss_DatabaseCheck() {
+    void testSubmitReservationRequest_WaitingRoomDisabled() {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(Optional.empty());
-        when(cacheService.getStockCount(TEST_SKU_ID)).thenReturn(Optional.of(100));
-        when(userPurchaseTrackingRepository.existsByUserIdAndSkuId(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(true);
+        ReflectionTestUtils.setField(service, "waitingRoomEnabled", false);
+        stubAdmission(AdmissionResult.ADMITTED);
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> kafkaFuture = new CompletableFuture<>();
+        kafkaFuture.completeExceptionally(new RuntimeException("Kafka error"));
+        when(kafkaTemplate.send(anyString(), anyString(), anyList())).thenReturn(kafkaFuture);
 
         // Act
         service.submitReservationRequest(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
 
-        // Assert - should check database after cache miss
-        verify(userPurchaseTrackingRepository).existsByUserIdAndSkuId(TEST_USER_ID, TEST_SKU_ID);
+        // Assert - gate runs without tickets, nothing to release
+        verify(cacheService).admitReservation(eq(TEST_USER_ID), eq(TEST_SKU_ID), eq(TEST_QUANTITY), anyString(), eq(0.0));
+        admissionReleaser.shutdown();
+        verify(cacheService, never()).releaseAdmissions(argThat(tickets -> !tickets.isEmpty()), anyMap());
+    }
+
+    @Test
+    void testSubmitReservationRequestForOutcome_OutcomeReleasesTicket() {
+        // Arrange
+        stubAdmission(AdmissionResult.ADMITTED);
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        service.submitReservationRequestForOutcome(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
+
+        ArgumentCaptor<List<ReservationRequestMessage>> messageCaptor = messageCaptor();
+        verify(kafkaTemplate).send(anyString(), anyString(), messageCaptor.capture());
+        String requestId = messageCaptor.getValue().get(0).getRequestId();
+        verify(cacheService, never()).releaseAdmissions(anyMap(), anyMap());
+
+        // Act
+        outcomeRegistry.complete(ReservationResponseMessage.success(requestId, "res-001", Instant.now()));
+
+        // Assert - ticket goes back to the waiting room, pending marker kept on success
+        admissionReleaser.shutdown();
+        verify(cacheService).releaseAdmissions(Map.of(TEST_SKU_ID, List.of(requestId)), Map.of());
+    }
+
+    @Test
+    void testSubmitReservationRequestForOutcome_CancelledReleasesTicket() {
+        // Arrange
+        stubAdmission(AdmissionResult.ADMITTED);
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        CompletableFuture<ReservationResponseMessage> outcome =
+            service.submitReservationRequestForOutcome(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY);
+
+        ArgumentCaptor<List<ReservationRequestMessage>> messageCaptor = messageCaptor();
+        verify(kafkaTemplate).send(anyString(), anyString(), messageCaptor.capture());
+        String requestId = messageCaptor.getValue().get(0).getRequestId();
+
+        // Act - the caller stops waiting
+        outcome.cancel(false);
+
+        // Assert - ticket returned now rather than when it expires
+        verify(cacheService, timeout(1000)).releaseAdmissions(Map.of(TEST_SKU_ID, List.of(requestId)), Map.of());
+    }
+
+    @Test
+    void testGetEstimatedQueueDepth_WaitingRoomSize() {
+        // Arrange
+        when(cacheService.getWaitingCount(TEST_SKU_ID)).thenReturn(42L);
+
+        // Act & Assert
+        assertEquals(42, service.getEstimatedQueueDepth(TEST_SKU_ID));
     }
 
     @Test
     void testIdempotencyKeyGeneration() throws Exception {
         // Arrange
-        when(cacheService.hasUserPurchased(TEST_USER_ID, TEST_SKU_ID)).thenReturn(false);
-        when(cacheService.getActiveReservation(TEST_USER_ID, TEST_SKU_ID))
-            .thenReturn(Optional.empty());
-        when(cacheService.getStockCount(TEST_SKU_ID)).thenReturn(Optional.of(100));
+        stubAdmission(AdmissionResult.ADMITTED);
 
-        CompletableFuture<SendResult<String, String>> kafkaFuture = CompletableFuture.completedFuture(null);
-        when(kafkaTemplate.send(anyString(), anyString(), anyString()))
+        CompletableFuture<SendResult<String, List<ReservationRequestMessage>>> kafkaFuture = CompletableFuture.completedFuture(sendResult());
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
             .thenReturn(kafkaFuture);
 
         // Act
         service.submitReservationRequest(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY).get();
 
         // Assert
-        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<List<ReservationRequestMessage>> messageCaptor = messageCaptor();
         verify(kafkaTemplate).send(anyString(), anyString(), messageCaptor.capture());
 
-        ReservationRequestMessage message = objectMapper.readValue(
-            messageCaptor.getValue(),
-            ReservationRequestMessage.class
-        );
+        ReservationRequestMessage message = messageCaptor.getValue().get(0);
 
         // Idempotency key format: userId:skuId (no timestamp to prevent duplicate reservations)
         assertNotNull(message.getIdempotencyKey());
         assertEquals(TEST_USER_ID + ":" + TEST_SKU_ID, message.getIdempotencyKey());
     }
+
+    @Test
+    void testIdempotencyKeyGeneration_ScopedToAttempt() {
+        // Arrange
+        stubAdmission(AdmissionResult.ADMITTED);
+        when(kafkaTemplate.send(anyString(), anyString(), anyList()))
+            .thenReturn(CompletableFuture.completedFuture(sendResult()));
+
+        // Act - two attempts of the same cart item
+        service.submitAttemptRequestForOutcome(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY, "cart-1");
+        service.submitAttemptRequestForOutcome(TEST_USER_ID, TEST_SKU_ID, TEST_QUANTITY, "cart-2");
+
+        // Assert - each attempt has its own key, distinct from the plain userId:skuId key
+        ArgumentCaptor<List<ReservationRequestMessage>> messageCaptor = messageCaptor();
+        verify(kafkaTemplate, times(2)).send(anyString(), anyString(), messageCaptor.capture());
+        assertEquals(TEST_USER_ID + ":" + TEST_SKU_ID + ":cart-1", messageCaptor.getAllValues().get(0).get(0).getIdempotencyKey());
+        assertEquals(TEST_USER_ID + ":" + TEST_SKU_ID + ":cart-2", messageCaptor.getAllValues().get(1).get(0).getIdempotencyKey());
+    }
+
+    /**
+     * Wait for queued releases, then check the user's pending marker was among them.
+     */
+    private void assertPendingCleared() {
+        admissionReleaser.shutdown();
+        ArgumentCaptor<Map<String, List<String>>> pendingCaptor = mapCaptor();
+        verify(cacheService, atLeastOnce()).releaseAdmissions(anyMap(), pendingCaptor.capture());
+        assertTrue(pendingCaptor.getAllValues().contains(Map.of(TEST_SKU_ID, List.of(TEST_USER_ID))));
+    }
+
+    private void stubAdmission(AdmissionResult result) {
+        when(cacheService.admitReservation(eq(TEST_USER_ID), eq(TEST_SKU_ID), eq(TEST_QUANTITY), anyString(), anyDouble()))
+            .thenReturn(Admission.of(result));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<List<ReservationRequestMessage>> messageCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<Map<String, List<String>>> mapCaptor() {
+        return ArgumentCaptor.forClass(Map.class);
+    }
+
+    private SendResult<String, List<ReservationRequestMessage>> sendResult() {
+        RecordMetadata metadata = new RecordMetadata(
+            new TopicPartition("reservation-requests", 0), 0L, 0, 0L, 0, 0);
+        return new SendResult<>(null, metadata);
+    }
 }
@@ -0,0 +1,243 @@
+package com.cred.freestyle.flashsale.service;
+
+import com.cred.freestyle.flashsale.domain.model.Reservation;
+import com.cred.freestyle.flashsale.exception.CartReservationFailedException;
+import com.cred.freestyle.flashsale.exception.ReservationQueuedException;
+import com.cred.freestyle.flashsale.exception.ReservationTimeoutException;
+import com.cred.freestyle.flashsale.infrastructure.cache.RedisCacheService;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage.ResponseStatus;
+import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for CartReservationService.
+ *
+ * @author Flash Sale Team
+ */
+@ExtendWith(MockitoExtension.class)
+class CartReservationServiceTest {
+
+    @Mock
+    private AsyncReservationService asyncReservationService;
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Mock
+    private RedisCacheService cacheService;
+
+    @Mock
+    private CloudWatchMetricsService metricsService;
+
+    private CartReservationService service;
+
+    private static final String TEST_USER_ID = "user123";
+    private static final String SKU_1 = "SKU-001";
+    private static final String SKU_2 = "SKU-002";
+
+    @BeforeEach
+    void setUp() {
+        service = new CartReservationService(asyncReservationService, reservationService, cacheService, metricsService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testReserveCart_AllItemsReserved() throws Exception {
+        // Arrange
+        stubOutcome(SKU_1, CompletableFuture.completedFuture(success("RES-1")));
+        stubOutcome(SKU_2, CompletableFuture.completedFuture(success("RES-2")));
+        when(reservationService.toReservation(any(), eq(TEST_USER_ID), anyString(), eq(1)))
+            .thenAnswer(invocation -> Reservation.builder()
+                .reservationId(invocation.<ReservationResponseMessage>getArgument(0).getReservationId())
+                .skuId(invocation.getArgument(2))
+                .build());
+
+        // Act
+        List<Reservation> reservations = service.reserveCart(TEST_USER_ID, cart(SKU_1, SKU_2))
+            .get(1, TimeUnit.SECONDS);
+
+        // Assert - one reservation per item, in cart order, nothing released
+        assertEquals(2, reservations.size());
+        assertEquals("RES-1", reservations.get(0).getReservationId());
+        assertEquals(SKU_2, reservations.get(1).getSkuId());
+        verify(reservationService, never()).cancelReservation(anyString());
+    }
+
+    @Test
+    void testReserveCart_ItemRejected_ReleasesOtherItems() {
+        // Arrange
+        stubOutcome(SKU_1, CompletableFuture.completedFuture(success("RES-1")));
+        stubOutcome(SKU_2, CompletableFuture.completedFuture(
+            ReservationResponseMessage.failure("req-2", ResponseStatus.OUT_OF_STOCK, "Product is out of stock")));
+
+        // Act
+        ExecutionException thrown = assertThrows(ExecutionException.class,
+            () -> service.reserveCart(TEST_USER_ID, cart(SKU_1, SKU_2)).get(1, TimeUnit.SECONDS));
+
+        // Assert
+        CartReservationFailedException failure = assertInstanceOf(CartReservationFailedException.class, thrown.getCause());
+        assertEquals(SKU_2, failure.getSkuId());
+        assertEquals("OUT_OF_STOCK", failure.getStatus());
+        assertEquals(1, failure.getReleasedCount());
+        verify(reservationService).cancelReservation("RES-1");
+        verify(cacheService).clearPendingReservation(TEST_USER_ID, SKU_1);
+    }
+
+    @Test
+    void testReserveCart_AdmissionRejected() {
+        // Arrange
+        stubOutcome(SKU_1, CompletableFuture.failedFuture(new IllegalStateException("Product is out of stock")));
+        stubOutcome(SKU_2, CompletableFuture.completedFuture(success("RES-2")));
+
+        // Act
+        ExecutionException thrown = assertThrows(ExecutionException.class,
+            () -> service.reserveCart(TEST_USER_ID, cart(SKU_1, SKU_2)).get(1, TimeUnit.SECONDS));
+
+        // Assert
+        CartReservationFailedException failure = assertInstanceOf(CartReservationFailedException.class, thrown.getCause());
+        assertEquals(SKU_1, failure.getSkuId());
+        assertEquals("REJECTED", failure.getStatus());
+        verify(reservationService).cancelReservation("RES-2");
+    }
+
+    @Test
+    void testReserveCart_ItemQueued_PropagatesQueuePosition() {
+        // Arrange
+        stubOutcome(SKU_1, CompletableFuture.completedFuture(success("RES-1")));
+        stubOutcome(SKU_2, CompletableFuture.failedFuture(new ReservationQueuedException(SKU_2, 7, 2)));
+
+        // Act
+        ExecutionException thrown = assertThrows(ExecutionException.class,
+            () -> service.reserveCart(TEST_USER_ID, cart(SKU_1, SKU_2)).get(1, TimeUnit.SECONDS));
+
+        // Assert
+        ReservationQueuedException queued = assertInstanceOf(ReservationQueuedException.class, thrown.getCause());
+        assertEquals(7, queued.getQueuePosition());
+        verify(reservationService).cancelReservation("RES-1");
+    }
+
+    @Test
+    void testReserveCart_Timeout_ReleasesLateSuccess() {
+        // Arrange
+        ReflectionTestUtils.setField(service, "timeoutMs", 50L);
+        CompletableFuture<ReservationResponseMessage> late = new CompletableFuture<>();
+        stubOutcome(SKU_1, CompletableFuture.completedFuture(success("RES-1")));
+        stubOutcome(SKU_2, late);
+
+        // Act
+        ExecutionException thrown = assertThrows(ExecutionException.class,
+            () -> service.reserveCart(TEST_USER_ID, cart(SKU_1, SKU_2)).get(1, TimeUnit.SECONDS));
+        late.complete(success("RES-2"));
+
+        // Assert - the late hold is released when its outcome arrives
+        assertInstanceOf(ReservationTimeoutException.class, thrown.getCause());
+        verify(reservationService).cancelReservation("RES-1");
+        verify(reservationService, timeout(1000)).cancelReservation("RES-2");
+    }
+
+    @Test
+    void testReserveCart_CompensationRunsOffCompletingThread() {
+        // Arrange - the rejection arrives on the response listener thread
+        CompletableFuture<ReservationResponseMessage> rejected = new CompletableFuture<>();
+        stubOutcome(SKU_1, CompletableFuture.completedFuture(success("RES-1")));
+        stubOutcome(SKU_2, rejected);
+        AtomicReference<String> cancelThread = new AtomicReference<>();
+        when(reservationService.cancelReservation("RES-1")).thenAnswer(invocation -> {
+            cancelThread.set(Thread.currentThread().getName());
+            return null;
+        });
+        CompletableFuture<List<Reservation>> result = service.reserveCart(TEST_USER_ID, cart(SKU_1, SKU_2));
+
+        // Act
+        rejected.complete(ReservationResponseMessage.failure("req-2", ResponseStatus.OUT_OF_STOCK, "Product is out of stock"));
+
+        // Assert - the listener thread is not held up by the cancel
+        assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertTrue(cancelThread.get().startsWith("cart-completion-"));
+    }
+
+    @Test
+    void testReserveCart_RetryAfterFailure_FreshIdempotencyScope() throws Exception {
+        // Arrange - first attempt rejected on SKU_2, retry succeeds
+        when(asyncReservationService.submitAttemptRequestForOutcome(eq(TEST_USER_ID), eq(SKU_1), eq(1), anyString()))
+            .thenReturn(CompletableFuture.completedFuture(success("RES-1")))
+            .thenReturn(CompletableFuture.completedFuture(success("RES-3")));
+        when(asyncReservationService.submitAttemptRequestForOutcome(eq(TEST_USER_ID), eq(SKU_2), eq(1), anyString()))
+            .thenReturn(CompletableFuture.completedFuture(
+                ReservationResponseMessage.failure("req-2", ResponseStatus.OUT_OF_STOCK, "Product is out of stock")))
+            .thenReturn(CompletableFuture.completedFuture(success("RES-4")));
+        when(reservationService.toReservation(any(), eq(TEST_USER_ID), anyString(), eq(1)))
+            .thenReturn(Reservation.builder().build());
+
+        // Act
+        assertThrows(ExecutionException.class,
+            () -> service.reserveCart(TEST_USER_ID, cart(SKU_1, SKU_2)).get(1, TimeUnit.SECONDS));
+        List<Reservation> retried = service.reserveCart(TEST_USER_ID, cart(SKU_1, SKU_2)).get(1, TimeUnit.SECONDS);
+
+        // Assert - the retry's items share a new attempt ID, so the consumer does not see
+        // the SKU_1 hold cancelled by the first attempt as a duplicate
+        ArgumentCaptor<String> attemptIds = ArgumentCaptor.forClass(String.class);
+        verify(asyncReservationService, times(4))
+            .submitAttemptRequestForOutcome(eq(TEST_USER_ID), anyString(), eq(1), attemptIds.capture());
+        List<String> ids = attemptIds.getAllValues();
+        assertEquals(ids.get(0), ids.get(1));
+        assertEquals(ids.get(2), ids.get(3));
+        assertNotEquals(ids.get(0), ids.get(2));
+        assertEquals(2, retried.size());
+        verify(reservationService).cancelReservation("RES-1");
+        verify(cacheService).clearPendingReservation(TEST_USER_ID, SKU_1);
+    }
+
+    @Test
+    void testReserveCart_TooManyItems() {
+        // Arrange
+        ReflectionTestUtils.setField(service, "maxItems", 1);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.reserveCart(TEST_USER_ID, cart(SKU_1, SKU_2)));
+        verifyNoInteractions(asyncReservationService);
+    }
+
+    private void stubOutcome(String skuId, CompletableFuture<ReservationResponseMessage> outcome) {
+        when(asyncReservationService.submitAttemptRequestForOutcome(eq(TEST_USER_ID), eq(skuId), eq(1), anyString()))
+            .thenReturn(outcome);
+    }
+
+    private Map<String, Integer> cart(String... skuIds) {
+        Map<String, Integer> items = new LinkedHashMap<>();
+        for (String skuId : skuIds) {
+            items.put(skuId, 1);
+        }
+        return items;
+    }
+
+    private ReservationResponseMessage success(String reservationId) {
+        return ReservationResponseMessage.success("req-" + reservationId, reservationId,
+            Instant.now().plusSeconds(120));
+    }
+}
@@ -2,9 +2,14 @@ package com.cred.freestyle.flashsale.service;
 
 import com.cred.freestyle.flashsale.domain.model.Reservation;
 import com.cred.freestyle.flashsale.domain.model.Reservation.ReservationStatus;
+import com.cred.freestyle.flashsale.exception.ReservationFailedException;
+import com.cred.freestyle.flashsale.exception.ReservationOverloadedException;
+import com.cred.freestyle.flashsale.exception.ReservationTimeoutException;
 import com.cred.freestyle.flashsale.infrastructure.cache.RedisCacheService;
+import com.cred.freestyle.flashsale.infrastructure.messaging.ConsumerLagTracker;
 import com.cred.freestyle.flashsale.infrastructure.messaging.KafkaProducerService;
 import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationEvent;
+import com.cred.freestyle.flashsale.infrastructure.messaging.events.ReservationResponseMessage;
 import com.cred.freestyle.flashsale.infrastructure.metrics.CloudWatchMetricsService;
 import com.cred.freestyle.flashsale.repository.InventoryRepository;
 import com.cred.freestyle.flashsale.repository.ReservationRepository;
@@ -16,12 +21,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -56,6 +64,9 @@ class ReservationServiceTest {
     @Mock
     private AsyncReservationService asyncReservationService;
 
+    @Mock
+    private ConsumerLagTracker lagTracker;
+
     @InjectMocks
     private ReservationService reservationService;
 
@@ -68,6 +79,9 @@ class ReservationServiceTest {
         userId = "user-123";
         skuId = "SKU-001";
         quantity = 1;
+        ReflectionTestUtils.setField(reservationService, "outcomeTimeoutMs", 500L);
+        ReflectionTestUtils.setField(reservationService, "asyncTimeoutMs", 200L);
+        ReflectionTestUtils.setField(reservationService, "asyncMaxPending", 100);
     }
 
     // ========================================
@@ -75,30 +89,17 @@ class ReservationServiceTest {
     // ========================================
 
     @Test
-    @DisplayName("createReservation - Success: Should create reservation via Kafka batch processing")
+    @DisplayName("createReservation - Success: Should create reservation from pushed batch outcome")
     void createReservation_Success() {
         // Given
         String requestId = "req-123";
         String reservationId = "RES-001";
+        Instant expiresAt = Instant.now().plusSeconds(120);
 
-        // Mock AsyncReservationService to return request ID
-        when(asyncReservationService.submitReservationRequestSync(userId, skuId, quantity))
-                .thenReturn(requestId);
-
-        // Mock polling: reservation appears in cache on first check
-        when(cacheService.getActiveReservation(userId, skuId))
-                .thenReturn(Optional.of(reservationId));
-
-        Reservation savedReservation = Reservation.builder()
-                .reservationId(reservationId)
-                .userId(userId)
-                .skuId(skuId)
-                .quantity(quantity)
-                .status(ReservationStatus.RESERVED)
-                .expiresAt(Instant.now().plusSeconds(120))
-                .build();
-
-        when(reservationRepository.findById(reservationId)).thenReturn(Optional.of(savedReservation));
+        // Mock AsyncReservationService to return the outcome pushed by the batch consumer
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(CompletableFuture.completedFuture(
+                        ReservationResponseMessage.success(requestId, reservationId, expiresAt)));
 
         // When
         Reservation result = reservationService.createReservation(userId, skuId, quantity);
@@ -109,14 +110,16 @@ class ReservationServiceTest {
         assertThat(result.getUserId()).isEqualTo(userId);
         assertThat(result.getSkuId()).isEqualTo(skuId);
         assertThat(result.getStatus()).isEqualTo(ReservationStatus.RESERVED);
+        assertThat(result.getExpiresAt()).isEqualTo(expiresAt);
 
         // Verify interactions
-        verify(asyncReservationService).submitReservationRequestSync(userId, skuId, quantity);
-        verify(cacheService, atLeastOnce()).getActiveReservation(userId, skuId);
-        verify(reservationRepository).findById(reservationId);
+        verify(asyncReservationService).submitReservationRequestForOutcome(userId, skuId, quantity);
         verify(metricsService).recordEndToEndLatency(anyLong());
 
-        // Verify NO direct DB updates
+        // Verify NO polling and NO direct DB access
+        verify(cacheService, never()).getActiveReservation(anyString(), anyString());
+        verify(cacheService, never()).getRejection(anyString(), anyString());
+        verify(reservationRepository, never()).findById(anyString());
         verify(inventoryRepository, never()).incrementReservedCount(anyString(), anyInt());
         verify(reservationRepository, never()).save(any(Reservation.class));
     }
@@ -124,17 +127,16 @@ class ReservationServiceTest {
     @Test
     @DisplayName("createReservation - UserAlreadyPurchased: Should throw exception when user already purchased")
     void createReservation_UserAlreadyPurchased() {
-        // Given - AsyncReservationService performs pre-validation and throws exception
-        when(asyncReservationService.submitReservationRequestSync(userId, skuId, quantity))
-                .thenThrow(new IllegalStateException("User has already purchased this product"));
+        // Given - AsyncReservationService performs pre-validation and fails the outcome
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new IllegalStateException("User has already purchased this product")));
 
         // When / Then
         assertThatThrownBy(() -> reservationService.createReservation(userId, skuId, quantity))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("already purchased");
 
-        // Verify no polling happened
-        verify(cacheService, never()).getActiveReservation(anyString(), anyString());
         verify(reservationRepository, never()).findById(anyString());
 
         // IllegalStateException is caught and re-thrown without calling recordError
@@ -146,16 +148,15 @@ class ReservationServiceTest {
     @DisplayName("createReservation - UserAlreadyPurchasedInDb: Should throw when user purchased (DB check)")
     void createReservation_UserAlreadyPurchasedInDb() {
         // Given - AsyncReservationService performs pre-validation (cache miss, DB hit)
-        when(asyncReservationService.submitReservationRequestSync(userId, skuId, quantity))
-                .thenThrow(new IllegalStateException("User has already purchased this product"));
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new IllegalStateException("User has already purchased this product")));
 
         // When / Then
         assertThatThrownBy(() -> reservationService.createReservation(userId, skuId, quantity))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("already purchased");
 
-        // Verify no polling happened
-        verify(cacheService, never()).getActiveReservation(anyString(), anyString());
         verify(reservationRepository, never()).findById(anyString());
     }
 
@@ -163,16 +164,15 @@ class ReservationServiceTest {
     @DisplayName("createReservation - UserHasActiveReservation: Should throw when user has active reservation")
     void createReservation_UserHasActiveReservation() {
         // Given - AsyncReservationService performs pre-validation and detects active reservation
-        when(asyncReservationService.submitReservationRequestSync(userId, skuId, quantity))
-                .thenThrow(new IllegalStateException("User already has an active reservation for this product"));
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new IllegalStateException("User already has an active reservation for this product")));
 
         // When / Then
         assertThatThrownBy(() -> reservationService.createReservation(userId, skuId, quantity))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("active reservation");
 
-        // Verify no polling happened
-        verify(cacheService, never()).getActiveReservation(anyString(), anyString());
         verify(reservationRepository, never()).findById(anyString());
     }
 
@@ -180,89 +180,128 @@ class ReservationServiceTest {
     @DisplayName("createReservation - OutOfStockCache: Should throw when cache shows out of stock")
     void createReservation_OutOfStockCache() {
         // Given - AsyncReservationService performs pre-validation and detects out of stock
-        when(asyncReservationService.submitReservationRequestSync(userId, skuId, quantity))
-                .thenThrow(new IllegalStateException("Product is out of stock"));
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Product is out of stock")));
 
         // When / Then
         assertThatThrownBy(() -> reservationService.createReservation(userId, skuId, quantity))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("out of stock");
 
-        // Verify no polling happened
-        verify(cacheService, never()).getActiveReservation(anyString(), anyString());
         verify(reservationRepository, never()).findById(anyString());
         verify(inventoryRepository, never()).incrementReservedCount(anyString(), anyInt());
     }
 
     @Test
-    @DisplayName("createReservation - PollingTimeout: Should throw when batch processing times out")
-    void createReservation_PollingTimeout() {
-        // Given
-        String requestId = "req-123";
+    @DisplayName("createReservation - Rejected: Should surface batch consumer rejection status")
+    void createReservation_RejectedByBatchConsumer() {
+        // Given - batch consumer publishes an OUT_OF_STOCK outcome
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(CompletableFuture.completedFuture(ReservationResponseMessage.failure(
+                        "req-123",
+                        ReservationResponseMessage.ResponseStatus.OUT_OF_STOCK,
+                        "Product is out of stock")));
 
-        // Mock AsyncReservationService to return request ID
-        when(asyncReservationService.submitReservationRequestSync(userId, skuId, quantity))
-                .thenReturn(requestId);
+        // When / Then
+        assertThatThrownBy(() -> reservationService.createReservation(userId, skuId, quantity))
+                .isInstanceOf(ReservationFailedException.class)
+                .hasMessageContaining("out of stock");
 
-        // Mock polling: reservation never appears in cache (timeout scenario)
-        // With progressive backoff (5ms → 10ms → 20ms → 50ms → 100ms),
-        // 100 attempts will exhaust the timeout (~1 second)
-        when(cacheService.getActiveReservation(userId, skuId))
-                .thenReturn(Optional.empty());
+        verify(metricsService, never()).recordEndToEndLatency(anyLong());
+    }
+
+    @Test
+    @DisplayName("createReservation - OutcomeTimeout: Should throw and release the pending outcome on timeout")
+    void createReservation_OutcomeTimeout() {
+        // Given - outcome never arrives
+        CompletableFuture<ReservationResponseMessage> pendingOutcome = new CompletableFuture<>();
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(pendingOutcome);
 
         // When / Then
         assertThatThrownBy(() -> reservationService.createReservation(userId, skuId, quantity))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("timed out");
 
-        // Verify polling happened 100 times (max attempts with progressive backoff)
-        verify(cacheService, times(100)).getActiveReservation(userId, skuId);
+        assertThat(pendingOutcome).isCancelled();
         verify(metricsService).recordError(eq("RESERVATION_TIMEOUT"), eq("createReservation"));
+        verify(cacheService, never()).getActiveReservation(anyString(), anyString());
     }
 
     @Test
-    @DisplayName("createReservation - PollingWithRetries: Should succeed after multiple polling attempts")
-    void createReservation_PollingWithRetries() {
-        // Given
-        String requestId = "req-123";
+    @DisplayName("createReservation - DelayedOutcome: Should complete as soon as the outcome is pushed")
+    void createReservation_DelayedOutcome() {
+        // Given - outcome is pushed shortly after submission
         String reservationId = "RES-001";
+        CompletableFuture<ReservationResponseMessage> pendingOutcome = new CompletableFuture<>();
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(pendingOutcome);
+        CompletableFuture.runAsync(
+                () -> pendingOutcome.complete(ReservationResponseMessage.success(
+                        "req-123", reservationId, Instant.now().plusSeconds(120))),
+                CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
 
-        // Mock AsyncReservationService to return request ID
-        when(asyncReservationService.submitReservationRequestSync(userId, skuId, quantity))
-                .thenReturn(requestId);
+        // When
+        Reservation result = reservationService.createReservation(userId, skuId, quantity);
 
-        // Mock polling: reservation appears in cache after 3 attempts
-        // With progressive backoff, first 3 attempts use 5ms interval (happy path)
-        // Total latency: ~15ms (3 attempts × 5ms) - optimized for fast batch processing
-        when(cacheService.getActiveReservation(userId, skuId))
-                .thenReturn(Optional.empty())
-                .thenReturn(Optional.empty())
-                .thenReturn(Optional.of(reservationId));
+        // Then
+        assertThat(result.getReservationId()).isEqualTo(reservationId);
+        verify(metricsService).recordEndToEndLatency(anyLong());
+    }
 
-        Reservation savedReservation = Reservation.builder()
-                .reservationId(reservationId)
-                .userId(userId)
-                .skuId(skuId)
-                .quantity(quantity)
-                .status(ReservationStatus.RESERVED)
-                .expiresAt(Instant.now().plusSeconds(120))
-                .build();
+    // ========================================
+    // createReservationAsync() Tests
+    // ========================================
 
-        when(reservationRepository.findById(reservationId)).thenReturn(Optional.of(savedReservation));
+    @Test
+    @DisplayName("createReservationAsync - Success: Should complete with reservation when outcome is pushed")
+    void createReservationAsync_Success() {
+        // Given
+        CompletableFuture<ReservationResponseMessage> pendingOutcome = new CompletableFuture<>();
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(pendingOutcome);
 
         // When
-        Reservation result = reservationService.createReservation(userId, skuId, quantity);
+        CompletableFuture<Reservation> result = reservationService.createReservationAsync(userId, skuId, quantity);
 
-        // Then
-        assertThat(result).isNotNull();
-        assertThat(result.getReservationId()).isEqualTo(reservationId);
+        // Then - not blocked on the outcome
+        assertThat(result).isNotDone();
 
-        // Verify polling happened 3 times before finding the reservation
-        verify(cacheService, times(3)).getActiveReservation(userId, skuId);
-        verify(reservationRepository).findById(reservationId);
+        pendingOutcome.complete(ReservationResponseMessage.success("req-123", "RES-001", Instant.now().plusSeconds(120)));
+        assertThat(result.join().getReservationId()).isEqualTo("RES-001");
         verify(metricsService).recordEndToEndLatency(anyLong());
     }
 
+    @Test
+    @DisplayName("createReservationAsync - Overloaded: Should shed request when too many are pending")
+    void createReservationAsync_Overloaded() {
+        // Given
+        when(asyncReservationService.getPendingOutcomeCount()).thenReturn(100);
+        when(lagTracker.suggestRetryAfterSeconds(skuId)).thenReturn(4L);
+
+        // When / Then - Retry-After follows the SKU partition's estimated drain time
+        assertThatThrownBy(() -> reservationService.createReservationAsync(userId, skuId, quantity))
+                .isInstanceOf(ReservationOverloadedException.class)
+                .extracting("retryAfterSeconds").isEqualTo(4L);
+
+        verify(asyncReservationService, never()).submitReservationRequestForOutcome(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("createReservationAsync - Timeout: Should fail with ReservationTimeoutException")
+    void createReservationAsync_Timeout() {
+        // Given - outcome never arrives
+        CompletableFuture<ReservationResponseMessage> pendingOutcome = new CompletableFuture<>();
+        when(asyncReservationService.submitReservationRequestForOutcome(userId, skuId, quantity))
+                .thenReturn(pendingOutcome);
+
+        // When / Then
+        assertThatThrownBy(() -> reservationService.createReservationAsync(userId, skuId, quantity).join())
+                .hasCauseInstanceOf(ReservationTimeoutException.class);
+
+        verify(metricsService).recordError(eq("RESERVATION_TIMEOUT"), eq("createReservationAsync"));
+    }
+
     // ========================================
     // confirmReservation() Tests
     // ========================================